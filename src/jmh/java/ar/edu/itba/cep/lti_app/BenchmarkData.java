@@ -0,0 +1,43 @@
+package ar.edu.itba.cep.lti_app;
+
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Helper class that generates realistic data for benchmarks.
+ */
+public final class BenchmarkData {
+
+    /**
+     * Size of a realistic LTI ID token payload, in bytes.
+     */
+    public static final int ID_TOKEN_PAYLOAD_SIZE = 1500;
+
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private BenchmarkData() {
+    }
+
+
+    /**
+     * Creates a {@link String} that looks like a JWT (i.e three base64url encoded parts separated by dots).
+     *
+     * @param random      The {@link Random} used to generate the content.
+     * @param payloadSize The size of the payload, in bytes.
+     * @return The created {@link String}.
+     */
+    public static String jwtLike(final Random random, final int payloadSize) {
+        final var encoder = Base64.getUrlEncoder().withoutPadding();
+        final var header = new byte[36];
+        final var payload = new byte[payloadSize];
+        final var signature = new byte[256];
+        random.nextBytes(header);
+        random.nextBytes(payload);
+        random.nextBytes(signature);
+        return encoder.encodeToString(header)
+                + "." + encoder.encodeToString(payload)
+                + "." + encoder.encodeToString(signature);
+    }
+}
@@ -0,0 +1,78 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import ar.edu.itba.cep.lti.AuthenticationResponse;
+import ar.edu.itba.cep.lti.dtos.AuthenticationResponseDto;
+import ar.edu.itba.cep.lti.dtos.ExamTakingResponseDto;
+import ar.edu.itba.cep.lti_app.BenchmarkData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the (de)serialization of the bodies exchanged with the LTI service in each of the encodings
+ * negotiated by the {@link WireEncoding}: the JWT bearing authentication response sent to it,
+ * and the exam taking response received from it. The size of each payload is printed on setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireEncodingBenchmark {
+
+    @Param({"json", "smile"})
+    private String encoding;
+
+    private ObjectMapper objectMapper;
+    private AuthenticationResponseDto authenticationResponse;
+    private byte[] authenticationResponseBytes;
+    private byte[] examTakingResponseBytes;
+
+
+    @Setup
+    public void setup() throws IOException {
+        final var random = new Random(0);
+        final var jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+        objectMapper = "smile".equals(encoding) ? Jackson2ObjectMapperBuilder.smile().build() : jsonMapper;
+        authenticationResponse = AuthenticationResponseDto.fromModel(new AuthenticationResponse(
+                BenchmarkData.jwtLike(random, BenchmarkData.ID_TOKEN_PAYLOAD_SIZE),
+                BenchmarkData.jwtLike(random, 200)
+        ));
+        authenticationResponseBytes = objectMapper.writeValueAsBytes(authenticationResponse);
+        final var examTakingResponse = jsonMapper.createObjectNode()
+                .put("examId", 123456L)
+                .put("tokenId", UUID.randomUUID().toString())
+                .put("accessToken", BenchmarkData.jwtLike(random, 600))
+                .put("refreshToken", BenchmarkData.jwtLike(random, 400))
+                .put("returnUrl", "https://lms.example.com/mod/lti/return.php?course=3&instanceid=12");
+        examTakingResponseBytes = objectMapper.writeValueAsBytes(examTakingResponse);
+        System.out.printf(
+                "%n%s payload sizes: authentication response = %d bytes, exam taking response = %d bytes%n",
+                encoding,
+                authenticationResponseBytes.length,
+                examTakingResponseBytes.length
+        );
+    }
+
+
+    @Benchmark
+    public byte[] writeAuthenticationResponse() throws IOException {
+        return objectMapper.writeValueAsBytes(authenticationResponse);
+    }
+
+    @Benchmark
+    public AuthenticationResponseDto readAuthenticationResponse() throws IOException {
+        return objectMapper.readValue(authenticationResponseBytes, AuthenticationResponseDto.class);
+    }
+
+    @Benchmark
+    public ExamTakingResponseDto readExamTakingResponse() throws IOException {
+        return objectMapper.readValue(examTakingResponseBytes, ExamTakingResponseDto.class);
+    }
+}
@@ -0,0 +1,76 @@
+package ar.edu.itba.cep.lti_app.web.controller;
+
+import ar.edu.itba.cep.lti_app.BenchmarkData;
+import org.apache.commons.lang.text.StrSubstitutor;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the expansion of the "exam taking" url template with {@link StrSubstitutor}
+ * (i.e parsing the template on each request) against the precompiled {@link UrlTemplate}.
+ * As the {@link UrlTemplate} percent-encodes the values (according to RFC 3986), the like-for-like baseline is
+ * {@link #strSubstitutorEncoded()}, which encodes them with {@link UriUtils#encode(String, java.nio.charset.Charset)}
+ * before substituting them; {@link #strSubstitutor()} (which does not encode them) is kept as a reference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExamTakingUrlTemplateBenchmark {
+
+    private static final String TEMPLATE = "https://cep.bellotapps.com/student-login" +
+            "?exam-id=${exam-id}&access-token=${access-token}&refresh-token=${refresh-token}&token-id=${token-id}";
+
+    private Long examId;
+    private UUID tokenId;
+    private String accessToken;
+    private String refreshToken;
+    private UrlTemplate urlTemplate;
+
+
+    @Setup
+    public void setup() {
+        final var random = new Random(0);
+        examId = 123456L;
+        tokenId = UUID.randomUUID();
+        accessToken = BenchmarkData.jwtLike(random, 600);
+        refreshToken = BenchmarkData.jwtLike(random, 400);
+        urlTemplate = UrlTemplate.compile(TEMPLATE, "exam-id", "token-id", "access-token", "refresh-token");
+    }
+
+
+    @Benchmark
+    public String strSubstitutor() {
+        final var valueMap = Map.of(
+                "exam-id", examId,
+                "token-id", tokenId,
+                "access-token", accessToken,
+                "refresh-token", refreshToken
+        );
+        return StrSubstitutor.replace(TEMPLATE, valueMap);
+    }
+
+    @Benchmark
+    public String strSubstitutorEncoded() {
+        final var valueMap = Map.of(
+                "exam-id", UriUtils.encode(examId.toString(), StandardCharsets.UTF_8),
+                "token-id", UriUtils.encode(tokenId.toString(), StandardCharsets.UTF_8),
+                "access-token", UriUtils.encode(accessToken, StandardCharsets.UTF_8),
+                "refresh-token", UriUtils.encode(refreshToken, StandardCharsets.UTF_8)
+        );
+        return StrSubstitutor.replace(TEMPLATE, valueMap);
+    }
+
+    @Benchmark
+    public String precompiled() {
+        return urlTemplate.expand(examId.toString(), tokenId.toString(), accessToken, refreshToken);
+    }
+}
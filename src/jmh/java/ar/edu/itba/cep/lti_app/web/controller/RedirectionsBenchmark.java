@@ -0,0 +1,82 @@
+package ar.edu.itba.cep.lti_app.web.controller;
+
+import ar.edu.itba.cep.lti_app.BenchmarkData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the redirections built on each LTI launch: the authentication request redirection built by the
+ * {@link LtiLoginController} (through the {@link org.springframework.web.util.UriComponentsBuilder} vs. the
+ * {@link AuthenticationRequestRedirectEncoder}), and the exam taking redirection built by the
+ * {@link LtiExamTakingController}. Run it with {@code -prof gc} to compare the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedirectionsBenchmark {
+
+    private String endpoint;
+    private String clientId;
+    private String loginHint;
+    private String redirectUri;
+    private String nonce;
+    private String ltiMessageHint;
+    private String state;
+    private AuthenticationRequestRedirectEncoder encoder;
+
+    private String examId;
+    private String tokenId;
+    private String accessToken;
+    private String refreshToken;
+    private String returnUrl;
+
+
+    @Setup
+    public void setup() {
+        final var random = new Random(0);
+        endpoint = "https://lms.example.com/mod/lti/auth.php";
+        clientId = "Xk3lrR0a4dUZ1pq";
+        loginHint = "2";
+        redirectUri = "https://lti.cep.example.com/exam-taking";
+        nonce = UUID.randomUUID().toString();
+        ltiMessageHint = "{\"cmid\":12,\"launchid\":\"ltilaunch_1234567890\"}";
+        state = BenchmarkData.jwtLike(random, 200);
+        encoder = new AuthenticationRequestRedirectEncoder(16);
+
+        examId = "123456";
+        tokenId = UUID.randomUUID().toString();
+        accessToken = BenchmarkData.jwtLike(random, 600);
+        refreshToken = BenchmarkData.jwtLike(random, 400);
+        returnUrl = "https://lms.example.com/mod/lti/return.php?course=3&launch_container=3&instanceid=12";
+    }
+
+
+    @Benchmark
+    public String authenticationRequestUri() {
+        return "redirect:" + LtiLoginController.buildAuthenticationRequestUri(
+                endpoint,
+                clientId,
+                loginHint,
+                redirectUri,
+                nonce,
+                ltiMessageHint,
+                state
+        );
+    }
+
+    @Benchmark
+    public String authenticationRequestRedirectEncoder() {
+        return encoder.encode(endpoint, clientId, loginHint, redirectUri, nonce, ltiMessageHint, state);
+    }
+
+    @Benchmark
+    public String examTakingRedirection() {
+        return LtiExamTakingController.examTakingRedirection(examId, tokenId, accessToken, refreshToken, returnUrl);
+    }
+}
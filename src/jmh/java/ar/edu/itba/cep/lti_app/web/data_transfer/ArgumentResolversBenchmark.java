@@ -0,0 +1,179 @@
+package ar.edu.itba.cep.lti_app.web.data_transfer;
+
+import ar.edu.itba.cep.lti_app.Application;
+import ar.edu.itba.cep.lti_app.BenchmarkData;
+import ar.edu.itba.cep.lti_app.web.dtos.AuthenticationResponseForm;
+import ar.edu.itba.cep.lti_app.web.dtos.LoginInitiationRequestDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.FormHttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the {@link org.springframework.web.method.support.HandlerMethodArgumentResolver}s
+ * that read the LTI forms (through the {@link FormDecoder}), compared with decoding the whole form body
+ * into a parameter map (as the servlet container does), and taking the same fields from it.
+ * Note that the {@link MockHttpServletRequest} does not decode its body into its parameters,
+ * so the parameter map is decoded with a {@link FormHttpMessageConverter},
+ * and that its input stream reads byte by byte, so the body is read from a {@link ByteArrayServletInputStream}
+ * (which, as the one of the servlet container, reads in bulk).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArgumentResolversBenchmark {
+
+    private final AuthenticationRequestFormArgumentResolver authenticationRequestFormArgumentResolver =
+            new AuthenticationRequestFormArgumentResolver(new Application.Properties());
+    private final LoginInitiationRequestDtoArgumentResolver loginInitiationRequestDtoArgumentResolver =
+            new LoginInitiationRequestDtoArgumentResolver(new Application.Properties());
+
+    private final FormHttpMessageConverter formHttpMessageConverter = new FormHttpMessageConverter();
+
+    private byte[] authenticationResponseBody;
+    private byte[] loginInitiationBody;
+
+
+    @Setup
+    public void setup() {
+        final var random = new Random(0);
+        authenticationResponseBody = ("id_token=" + BenchmarkData.jwtLike(random, BenchmarkData.ID_TOKEN_PAYLOAD_SIZE)
+                + "&state=" + BenchmarkData.jwtLike(random, 200))
+                .getBytes();
+        loginInitiationBody = ("iss=https%3A%2F%2Flms.example.com"
+                + "&login_hint=2"
+                + "&target_link_uri=https%3A%2F%2Flti.cep.example.com%2Fexam-taking"
+                + "&lti_message_hint=%7B%22cmid%22%3A12%2C%22launchid%22%3A%22ltilaunch_1234567890%22%7D"
+                + "&lti_deployment_id=1"
+                + "&client_id=Xk3lrR0a4dUZ1pq")
+                .getBytes();
+    }
+
+
+    @Benchmark
+    public Object authenticationResponseFormParameters() throws IOException {
+        final var parameters = parameters(authenticationResponseBody);
+        return new AuthenticationResponseForm(parameters.getFirst("id_token"), parameters.getFirst("state"));
+    }
+
+    @Benchmark
+    public Object authenticationResponseForm() throws IOException {
+        return authenticationRequestFormArgumentResolver
+                .resolveArgument(null, null, formRequest(authenticationResponseBody), null);
+    }
+
+    @Benchmark
+    public Object loginInitiationRequestDtoParameters() throws IOException {
+        final var parameters = parameters(loginInitiationBody);
+        return new LoginInitiationRequestDto(
+                parameters.getFirst("iss"),
+                parameters.getFirst("login_hint"),
+                parameters.getFirst("target_link_uri"),
+                parameters.getFirst("lti_message_hint"),
+                parameters.getFirst("lti_deployment_id"),
+                parameters.getFirst("client_id")
+        );
+    }
+
+    @Benchmark
+    public Object loginInitiationRequestDto() throws IOException {
+        return loginInitiationRequestDtoArgumentResolver
+                .resolveArgument(null, null, formRequest(loginInitiationBody), null);
+    }
+
+
+    /**
+     * Decodes the given form {@code body} into a parameter map.
+     *
+     * @param body The form body.
+     * @return The parameter map.
+     * @throws IOException Never (the body is in memory).
+     */
+    private MultiValueMap<String, String> parameters(final byte[] body) throws IOException {
+        final var message = new MockHttpInputMessage(body);
+        message.getHeaders().setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+        return formHttpMessageConverter.read(null, message);
+    }
+
+    /**
+     * Creates a {@link NativeWebRequest} with a fresh form url encoded request
+     * (i.e the parameters have not been decoded yet).
+     *
+     * @param body The request's body.
+     * @return The created {@link NativeWebRequest}.
+     */
+    private static NativeWebRequest formRequest(final byte[] body) {
+        final var request = new MockHttpServletRequest("POST", "/");
+        request.setContentType(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+        request.setContent(body);
+        return new ServletWebRequest(new HttpServletRequestWrapper(request) {
+            @Override
+            public ServletInputStream getInputStream() {
+                return new ByteArrayServletInputStream(body);
+            }
+        });
+    }
+
+
+    /**
+     * A {@link ServletInputStream} that reads from a byte array in bulk.
+     */
+    private static final class ByteArrayServletInputStream extends ServletInputStream {
+
+        /**
+         * The {@link ByteArrayInputStream} from which bytes are read.
+         */
+        private final ByteArrayInputStream delegate;
+
+
+        /**
+         * Constructor.
+         *
+         * @param bytes The bytes to be read.
+         */
+        private ByteArrayServletInputStream(final byte[] bytes) {
+            this.delegate = new ByteArrayInputStream(bytes);
+        }
+
+
+        @Override
+        public int read() {
+            return delegate.read();
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            return delegate.read(b, off, len);
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(final ReadListener readListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ar.edu.itba.cep.lti_app.web.dtos;
+
+import ar.edu.itba.cep.lti_app.BenchmarkData;
+import org.openjdk.jmh.annotations.*;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Bean Validation of the forms received on each LTI launch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private Validator validator;
+    private AuthenticationResponseForm authenticationResponseForm;
+    private LoginInitiationRequestDto loginInitiationRequestDto;
+
+
+    @Setup
+    public void setup() {
+        final var random = new Random(0);
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        authenticationResponseForm = new AuthenticationResponseForm(
+                BenchmarkData.jwtLike(random, BenchmarkData.ID_TOKEN_PAYLOAD_SIZE),
+                BenchmarkData.jwtLike(random, 200)
+        );
+        loginInitiationRequestDto = new LoginInitiationRequestDto(
+                "https://lms.example.com",
+                "2",
+                "https://lti.cep.example.com/exam-taking",
+                "{\"cmid\":12,\"launchid\":\"ltilaunch_1234567890\"}",
+                "1",
+                "Xk3lrR0a4dUZ1pq"
+        );
+    }
+
+
+    @Benchmark
+    public Set<?> authenticationResponseForm() {
+        return validator.validate(authenticationResponseForm);
+    }
+
+    @Benchmark
+    public Set<?> loginInitiationRequestDto() {
+        return validator.validate(loginInitiationRequestDto);
+    }
+}
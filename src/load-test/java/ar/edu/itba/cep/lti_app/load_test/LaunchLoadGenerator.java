@@ -0,0 +1,272 @@
+package ar.edu.itba.cep.lti_app.load_test;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Generates load against a running lti-app by driving complete LTI launches (i.e the OIDC flow),
+ * keeping a fixed amount of launches in flight (closed model).
+ * Each launch is performed asynchronously, so the generator itself uses just a few threads.
+ */
+class LaunchLoadGenerator implements AutoCloseable {
+
+    /**
+     * The name of the step that represents a whole launch.
+     */
+    /* package */ static final String LAUNCH = "launch";
+
+    /**
+     * The base {@link URI} of the lti-app.
+     */
+    private final URI baseUri;
+    /**
+     * The flow to be driven (i.e {@code exam-taking} or {@code exam-selection}).
+     */
+    private final String flow;
+    /**
+     * The {@link ExecutorService} used by the {@link #httpClient}.
+     */
+    private final ExecutorService executor;
+    /**
+     * The {@link HttpClient} used to perform requests.
+     */
+    private final HttpClient httpClient;
+    /**
+     * {@link Recorder}s of latencies (in microseconds), by step.
+     */
+    private final Map<String, Recorder> latencies;
+    /**
+     * Error counters, by step.
+     */
+    private final Map<String, LongAdder> errors;
+    /**
+     * Indicates whether the generator must stop launching.
+     */
+    private final AtomicBoolean stopped;
+
+
+    /**
+     * Constructor.
+     *
+     * @param baseUri The base {@link URI} of the lti-app.
+     * @param flow    The flow to be driven (i.e {@code exam-taking} or {@code exam-selection}).
+     */
+    /* package */ LaunchLoadGenerator(final URI baseUri, final String flow) {
+        this.baseUri = baseUri;
+        this.flow = flow;
+        this.executor = Executors.newFixedThreadPool(4);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(executor)
+                .build();
+        this.latencies = new LinkedHashMap<>();
+        this.errors = new LinkedHashMap<>();
+        this.stopped = new AtomicBoolean(false);
+        steps().forEach(step -> {
+            latencies.put(step, new Recorder(3));
+            errors.put(step, new LongAdder());
+        });
+    }
+
+
+    /**
+     * Starts keeping the given amount of launches in flight, until {@link #stop()} is called.
+     *
+     * @param concurrency The amount of launches in flight.
+     */
+    /* package */ void start(final int concurrency) {
+        for (var i = 0; i < concurrency; i++) {
+            loop();
+        }
+    }
+
+    /**
+     * Stops launching (launches in flight are completed).
+     */
+    /* package */ void stop() {
+        stopped.set(true);
+    }
+
+    /**
+     * Takes the latencies recorded since the last call to this method, by step, discarding them from the generator.
+     *
+     * @return The latencies histograms (in microseconds), by step.
+     */
+    /* package */ Map<String, Histogram> takeLatencies() {
+        final var result = new LinkedHashMap<String, Histogram>();
+        latencies.forEach((step, recorder) -> result.put(step, recorder.getIntervalHistogram()));
+        return result;
+    }
+
+    /**
+     * Takes the amount of errors since the last call to this method, by step, discarding them from the generator.
+     *
+     * @return The amount of errors, by step.
+     */
+    /* package */ Map<String, Long> takeErrors() {
+        final var result = new LinkedHashMap<String, Long>();
+        errors.forEach((step, counter) -> result.put(step, counter.sumThenReset()));
+        return result;
+    }
+
+    @Override
+    public void close() {
+        stop();
+        executor.shutdownNow();
+    }
+
+
+    /**
+     * Performs launches one after the other, until the generator is stopped.
+     */
+    private void loop() {
+        if (stopped.get()) {
+            return;
+        }
+        timed(LAUNCH, this::launch).whenComplete((ignored, throwable) -> loop());
+    }
+
+    /**
+     * @return The steps of the flow (including the whole {@link #LAUNCH}).
+     */
+    private List<String> steps() {
+        return "exam-selection".equals(flow)
+                ? List.of(LAUNCH, "init-login", "exam-selection-post", "exam-selection-get")
+                : List.of(LAUNCH, "init-login", "exam-taking-post", "exam-taking-get");
+    }
+
+    /**
+     * Performs a launch: the login initiation, the authentication response POST (as the LMS would do it),
+     * and the GET to the resulting page.
+     *
+     * @return A {@link CompletableFuture} that completes when the launch completes.
+     */
+    private CompletableFuture<HttpResponse<Void>> launch() {
+        final var steps = steps();
+        final var loginInitiation = HttpRequest.newBuilder(baseUri.resolve(
+                "/init-login?iss=https%3A%2F%2Flms.example.com&login_hint=2&lti_deployment_id=1"
+                        + "&target_link_uri=" + encode(baseUri.resolve("/" + flow).toString())))
+                .GET()
+                .build();
+        return step(steps.get(1), loginInitiation, 307)
+                .thenCompose(response -> step(steps.get(2), authenticationResponse(response), 303))
+                .thenCompose(response -> step(steps.get(3), followRedirection(response), 200));
+    }
+
+    /**
+     * Creates the authentication response form POST that the LMS would perform,
+     * taking the state from the authentication request redirection.
+     *
+     * @param authenticationRequest The authentication request redirection response.
+     * @return The created {@link HttpRequest}.
+     */
+    private HttpRequest authenticationResponse(final HttpResponse<Void> authenticationRequest) {
+        final var location = authenticationRequest.headers().firstValue("Location").orElseThrow();
+        final var body = "id_token=" + StubLtiService.jwtLike() + "&state=" + encode(queryParam(location, "state"));
+        return HttpRequest.newBuilder(baseUri.resolve("/" + flow))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    /**
+     * Creates a GET request that follows the given redirection {@code response}.
+     *
+     * @param response The redirection response.
+     * @return The created {@link HttpRequest}.
+     */
+    private HttpRequest followRedirection(final HttpResponse<Void> response) {
+        final var location = response.headers().firstValue("Location").orElseThrow();
+        return HttpRequest.newBuilder(response.uri().resolve(location)).GET().build();
+    }
+
+    /**
+     * Performs a step of a launch, measuring it.
+     *
+     * @param step           The name of the step.
+     * @param request        The {@link HttpRequest} to be performed.
+     * @param expectedStatus The expected status code of the response.
+     * @return A {@link CompletableFuture} with the response,
+     * which is completed exceptionally if the response has an unexpected status.
+     */
+    private CompletableFuture<HttpResponse<Void>> step(
+            final String step,
+            final HttpRequest request,
+            final int expectedStatus) {
+        return timed(step, () -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> {
+                    if (response.statusCode() != expectedStatus) {
+                        throw new IllegalStateException("Unexpected status " + response.statusCode() + " in " + step);
+                    }
+                    return response;
+                }));
+    }
+
+    /**
+     * Measures the given {@code action}, recording its latency if successful, or counting an error otherwise.
+     *
+     * @param step   The name of the measured step.
+     * @param action The action to be measured.
+     * @param <T>    The concrete type of the action's result.
+     * @return The {@link CompletableFuture} returned by the {@code action}.
+     */
+    private <T> CompletableFuture<T> timed(final String step, final Supplier<CompletableFuture<T>> action) {
+        final var start = System.nanoTime();
+        return action.get().whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                latencies.get(step).recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            } else {
+                errors.get(step).increment();
+            }
+        });
+    }
+
+    /**
+     * Takes the value of a query param from the given {@code uri}.
+     *
+     * @param uri  The uri.
+     * @param name The name of the query param.
+     * @return The decoded value of the query param.
+     */
+    private static String queryParam(final String uri, final String name) {
+        final var query = URI.create(uri).getRawQuery();
+        for (final var param : query.split("&")) {
+            final var separator = param.indexOf('=');
+            if (separator > 0 && param.substring(0, separator).equals(name)) {
+                return URLDecoder.decode(param.substring(separator + 1), StandardCharsets.UTF_8);
+            }
+        }
+        throw new IllegalStateException("Missing " + name + " query param in " + uri);
+    }
+
+    /**
+     * URL-encodes the given {@code value}.
+     *
+     * @param value The value to be encoded.
+     * @return The encoded value.
+     */
+    private static String encode(final String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
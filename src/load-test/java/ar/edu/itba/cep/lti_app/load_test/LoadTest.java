@@ -0,0 +1,213 @@
+package ar.edu.itba.cep.lti_app.load_test;
+
+import ar.edu.itba.cep.lti_app.Application;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test of the LTI launch flow.
+ * Starts a {@link StubLtiService}, boots the application against it (without Eureka nor Zipkin),
+ * drives complete launches with a {@link LaunchLoadGenerator}, and reports throughput, latency percentiles, errors,
+ * and the resource usage of the process (peak threads, heap and GC) during the measurement interval.
+ * <p>
+ * Arguments are passed as {@code --name=value} (durations as in Spring Boot, e.g {@code 30s}):
+ * <ul>
+ * <li>{@code concurrency}: Amount of launches in flight (defaults to 200).</li>
+ * <li>{@code warmup}: Duration of the warm-up interval, whose results are discarded (defaults to 10s).</li>
+ * <li>{@code duration}: Duration of the measurement interval (defaults to 60s).</li>
+ * <li>{@code flow}: {@code exam-taking} or {@code exam-selection} (defaults to exam-taking).</li>
+ * <li>{@code client}: The {@code lti-service.client} to be used (defaults to rest-template).</li>
+ * <li>{@code stub-latency}: Fixed latency of the stub lti-service (defaults to 50ms).</li>
+ * <li>{@code stub-jitter}: Max. random latency of the stub lti-service (defaults to 20ms).</li>
+ * <li>{@code stub-error-rate}: Probability of a stub lti-service error (defaults to 0).</li>
+ * </ul>
+ */
+public class LoadTest {
+
+    /**
+     * Sampling period of the heap usage.
+     */
+    private static final Duration HEAP_SAMPLING_PERIOD = Duration.ofMillis(100);
+
+    /**
+     * Entry point.
+     *
+     * @param args Program arguments.
+     * @throws InterruptedException If interrupted while the test is running.
+     */
+    public static void main(final String[] args) throws InterruptedException {
+        final var arguments = parse(args);
+        final var concurrency = Integer.parseInt(arguments.getOrDefault("concurrency", "200"));
+        final var warmup = duration(arguments, "warmup", "10s");
+        final var duration = duration(arguments, "duration", "60s");
+        final var flow = arguments.getOrDefault("flow", "exam-taking");
+        final var client = arguments.getOrDefault("client", "rest-template");
+        final var stubSettings = new StubLtiService.Settings(
+                duration(arguments, "stub-latency", "50ms"),
+                duration(arguments, "stub-jitter", "20ms"),
+                Double.parseDouble(arguments.getOrDefault("stub-error-rate", "0"))
+        );
+
+        try (final var stub = new StubLtiService(stubSettings);
+             final var context = new SpringApplicationBuilder(Application.class)
+                     .run(
+                             // Passed as arguments so they override the application's configuration files
+                             "--server.port=0",
+                             "--eureka.client.enabled=false",
+                             "--ribbon.eureka.enabled=false",
+                             "--spring.zipkin.enabled=false",
+                             "--logging.level.root=WARN",
+                             "--lti-service.client=" + client,
+                             "--lti-service.ribbon.listOfServers=localhost:" + stub.getPort()
+                     );
+             final var generator = new LaunchLoadGenerator(
+                     URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port")),
+                     flow
+             )) {
+            System.out.printf("Running %s launches with %d in flight (client: %s). Warming up for %s...%n",
+                    flow, concurrency, client, warmup);
+            generator.start(concurrency);
+            TimeUnit.NANOSECONDS.sleep(warmup.toNanos());
+            generator.takeLatencies();
+            generator.takeErrors();
+
+            final var resources = new ResourceUsage();
+            System.out.printf("Measuring for %s...%n", duration);
+            final var start = System.nanoTime();
+            TimeUnit.NANOSECONDS.sleep(duration.toNanos());
+            final var latencies = generator.takeLatencies();
+            final var errors = generator.takeErrors();
+            final var elapsed = Duration.ofNanos(System.nanoTime() - start);
+            generator.stop();
+            resources.stop();
+
+            report(latencies, errors, elapsed);
+            resources.report();
+        }
+    }
+
+
+    /**
+     * Prints the results of the measurement interval.
+     *
+     * @param latencies The latencies histograms (in microseconds), by step.
+     * @param errors    The amount of errors, by step.
+     * @param elapsed   The duration of the measurement interval.
+     */
+    private static void report(
+            final Map<String, Histogram> latencies,
+            final Map<String, Long> errors,
+            final Duration elapsed) {
+        final var launches = latencies.get(LaunchLoadGenerator.LAUNCH).getTotalCount();
+        System.out.printf("%nThroughput: %.1f launches/s%n", launches * 1000d / elapsed.toMillis());
+        System.out.printf("%-22s %10s %8s %10s %10s %10s %10s%n",
+                "step (ms)", "count", "errors", "p50", "p99", "p99.9", "max");
+        latencies.forEach((step, histogram) -> System.out.printf("%-22s %10d %8d %10.2f %10.2f %10.2f %10.2f%n",
+                step,
+                histogram.getTotalCount(),
+                errors.get(step),
+                histogram.getValueAtPercentile(50) / 1000d,
+                histogram.getValueAtPercentile(99) / 1000d,
+                histogram.getValueAtPercentile(99.9) / 1000d,
+                histogram.getMaxValue() / 1000d
+        ));
+    }
+
+    /**
+     * Parses the given {@code --name=value} arguments.
+     *
+     * @param args The arguments.
+     * @return The parsed arguments, by name.
+     */
+    private static Map<String, String> parse(final String[] args) {
+        final var result = new HashMap<String, String>();
+        for (final var arg : args) {
+            final var separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator == -1) {
+                throw new IllegalArgumentException("Arguments must be passed as --name=value. Got " + arg);
+            }
+            result.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return result;
+    }
+
+    /**
+     * Gets a {@link Duration} argument.
+     *
+     * @param arguments    The parsed arguments.
+     * @param name         The name of the argument.
+     * @param defaultValue The value to be used if the argument is missing.
+     * @return The {@link Duration}.
+     */
+    private static Duration duration(final Map<String, String> arguments, final String name, final String defaultValue) {
+        return DurationStyle.detectAndParse(arguments.getOrDefault(name, defaultValue));
+    }
+
+
+    /**
+     * Tracks the resource usage of the process (threads, heap and GC) from its creation until {@link #stop()}.
+     */
+    private static final class ResourceUsage {
+
+        private final long gcCountStart;
+        private final long gcTimeStart;
+        private final AtomicLong maxHeapUsed;
+        private final ScheduledExecutorService sampler;
+        private long gcCount;
+        private long gcTime;
+        private int peakThreads;
+
+        private ResourceUsage() {
+            ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+            this.gcCountStart = gcCount();
+            this.gcTimeStart = gcTime();
+            this.maxHeapUsed = new AtomicLong();
+            this.sampler = Executors.newSingleThreadScheduledExecutor();
+            this.sampler.scheduleAtFixedRate(
+                    () -> maxHeapUsed.accumulateAndGet(
+                            ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+                            Math::max
+                    ),
+                    0,
+                    HEAP_SAMPLING_PERIOD.toMillis(),
+                    TimeUnit.MILLISECONDS
+            );
+        }
+
+        private void stop() {
+            sampler.shutdownNow();
+            this.peakThreads = ManagementFactory.getThreadMXBean().getPeakThreadCount();
+            this.gcCount = gcCount() - gcCountStart;
+            this.gcTime = gcTime() - gcTimeStart;
+        }
+
+        private void report() {
+            System.out.printf("%nPeak threads: %d%n", peakThreads);
+            System.out.printf("Max. heap used: %.1f MiB%n", maxHeapUsed.get() / (1024d * 1024d));
+            System.out.printf("GC: %d collections, %d ms%n", gcCount, gcTime);
+        }
+
+        private static long gcCount() {
+            return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                    .mapToLong(bean -> Math.max(0, bean.getCollectionCount()))
+                    .sum();
+        }
+
+        private static long gcTime() {
+            return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                    .mapToLong(bean -> Math.max(0, bean.getCollectionTime()))
+                    .sum();
+        }
+    }
+}
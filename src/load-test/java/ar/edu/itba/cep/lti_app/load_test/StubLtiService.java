@@ -0,0 +1,205 @@
+package ar.edu.itba.cep.lti_app.load_test;
+
+import ar.edu.itba.cep.lti.constants.Paths;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local stub of the LTI service, which serves the login initiation, exam selection, exam selected and exam taking
+ * paths with canned responses (taken from the {@code stub-responses} resources),
+ * injecting a configurable latency and error rate.
+ * Responses are delayed without blocking threads, so the stub does not distort the thread count of the process.
+ */
+class StubLtiService implements AutoCloseable {
+
+    /**
+     * The base path in which the stub serves (i.e the same as the real LTI service).
+     */
+    /* package */ static final String BASE_PATH = "/lti/app";
+    /**
+     * Placeholder (in the canned responses) that is replaced with a random UUID.
+     */
+    private static final String UUID_PLACEHOLDER = "${uuid}";
+    /**
+     * Placeholder (in the canned responses) that is replaced with a random JWT-like string.
+     */
+    private static final String JWT_PLACEHOLDER = "${jwt}";
+
+    /**
+     * The underlying {@link HttpServer}.
+     */
+    private final HttpServer server;
+    /**
+     * {@link ExecutorService} in which the {@link #server} handles exchanges.
+     */
+    private final ExecutorService executor;
+    /**
+     * {@link ScheduledExecutorService} used to send delayed responses.
+     */
+    private final ScheduledExecutorService scheduler;
+    /**
+     * The {@link Settings} of the stub.
+     */
+    private final Settings settings;
+
+
+    /**
+     * Constructor.
+     *
+     * @param settings The {@link Settings} of the stub.
+     * @throws UncheckedIOException If the server cannot be started.
+     */
+    /* package */ StubLtiService(final Settings settings) throws UncheckedIOException {
+        this.settings = settings;
+        this.scheduler = Executors.newScheduledThreadPool(2);
+        try {
+            this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.executor = Executors.newFixedThreadPool(2);
+        this.server.setExecutor(executor);
+        register(Paths.LOGIN_INITIATION_PATH, "login-initiation.json");
+        register(Paths.EXAM_SELECTION_PATH, "exam-selection.json");
+        register(Paths.EXAM_SELECTED_PATH, "exam-selected.json");
+        register(Paths.EXAM_TAKING_PATH, "exam-taking.json");
+        this.server.start();
+    }
+
+
+    /**
+     * @return The port in which the stub is listening.
+     */
+    /* package */ int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+
+    /**
+     * Registers a handler for the given {@code path}, answering with the given canned {@code response}.
+     *
+     * @param path     The path (relative to the {@link #BASE_PATH}).
+     * @param response The name of the resource with the canned response.
+     */
+    private void register(final String path, final String response) {
+        final var template = readResource("stub-responses/" + response);
+        server.createContext(BASE_PATH + path, exchange -> {
+            drain(exchange.getRequestBody());
+            final var random = ThreadLocalRandom.current();
+            final var delay = settings.getLatency().toNanos()
+                    + (settings.getLatencyJitter().isZero() ? 0 : random.nextLong(settings.getLatencyJitter().toNanos()));
+            final var fail = random.nextDouble() < settings.getErrorRate();
+            scheduler.schedule(() -> respond(exchange, fail, template), delay, TimeUnit.NANOSECONDS);
+        });
+    }
+
+    /**
+     * Sends the response of the given {@code exchange}.
+     *
+     * @param exchange The {@link HttpExchange} to be answered.
+     * @param fail     Whether an error must be injected.
+     * @param template The canned response template.
+     */
+    private static void respond(final HttpExchange exchange, final boolean fail, final String template) {
+        try (exchange) {
+            if (fail) {
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            final var body = template
+                    .replace(UUID_PLACEHOLDER, UUID.randomUUID().toString())
+                    .replace(JWT_PLACEHOLDER, jwtLike())
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (final IOException ignored) {
+            // The client is gone. Nothing to do.
+        }
+    }
+
+    /**
+     * Reads the given resource as a {@link String}.
+     *
+     * @param name The name of the resource.
+     * @return The resource's content.
+     */
+    private static String readResource(final String name) {
+        try (final var input = StubLtiService.class.getClassLoader().getResourceAsStream(name)) {
+            if (input == null) {
+                throw new IllegalStateException("Missing resource " + name);
+            }
+            return StreamUtils.copyToString(input, StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads and discards the given {@code input}.
+     *
+     * @param input The {@link InputStream} to be drained.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static void drain(final InputStream input) throws IOException {
+        try (input) {
+            StreamUtils.drain(input);
+        }
+    }
+
+    /**
+     * @return A random {@link String} that looks like a JWT.
+     */
+    /* package */ static String jwtLike() {
+        final var random = ThreadLocalRandom.current();
+        final var encoder = Base64.getUrlEncoder().withoutPadding();
+        final var payload = new byte[1200];
+        random.nextBytes(payload);
+        return "eyJhbGciOiJSUzI1NiIsInR5cCI6IkpXVCJ9." + encoder.encodeToString(payload) + ".c2lnbmF0dXJl";
+    }
+
+
+    /**
+     * Settings of the {@link StubLtiService}.
+     */
+    @Getter
+    @AllArgsConstructor
+    /* package */ static final class Settings {
+        /**
+         * The fixed latency added to each response.
+         */
+        private final Duration latency;
+        /**
+         * The max. random latency added to each response (on top of the fixed {@link #latency}).
+         */
+        private final Duration latencyJitter;
+        /**
+         * The probability of answering with an internal server error.
+         */
+        private final double errorRate;
+    }
+}
@@ -7,6 +7,10 @@ import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Main class.
  */
@@ -35,5 +39,185 @@ public class Application {
          * The url template at which the "exam taking" feature is deployed.
          */
         private String examTakingUrlTemplate;
+        /**
+         * Configuration of how "take exam" launches lead the student to the exam.
+         */
+        private final ExamTakingLaunch examTakingLaunch = new ExamTakingLaunch();
+        /**
+         * Configuration of the waiting room in which "take exam" launches wait when there are too many in flight.
+         */
+        private final WaitingRoom waitingRoom = new WaitingRoom();
+        /**
+         * Configuration of the coalescing of duplicated LTI launches (i.e same state and ID token).
+         */
+        private final LaunchCoalescing launchCoalescing = new LaunchCoalescing();
+        /**
+         * Configuration of the local pre-validation of ID tokens (performed before calling the LTI service).
+         */
+        private final IdTokenPreValidation idTokenPreValidation = new IdTokenPreValidation();
+        /**
+         * Configuration of the decoding of the LTI forms (i.e login initiations and authentication responses).
+         */
+        private final Forms forms = new Forms();
+
+
+        /**
+         * Configuration properties for the "take exam" waiting room.
+         */
+        @Data
+        public static class WaitingRoom {
+            /**
+             * Whether the waiting room is enabled (if not, launches are always performed immediately).
+             */
+            private boolean enabled = true;
+            /**
+             * The max. amount of "take exam" launches in flight. Launches exceeding it wait in the waiting room.
+             */
+            private int maxInFlight = 100;
+            /**
+             * The max. amount of launches that can wait in the waiting room.
+             * Launches exceeding it get a "service unavailable" response.
+             */
+            private int maxQueueSize = 5000;
+            /**
+             * How often the waiting page refreshes itself.
+             */
+            private Duration refreshInterval = Duration.ofSeconds(3);
+            /**
+             * How long a waiting launch is kept without its page being refreshed
+             * (i.e after this, the student is considered gone, and the launch is discarded).
+             */
+            private Duration abandonAfter = Duration.ofSeconds(30);
+            /**
+             * How long the result of a launch is kept (after it completes) for its waiting page to get it.
+             */
+            private Duration resultTtl = Duration.ofMinutes(1);
+        }
+
+        /**
+         * Configuration properties for the coalescing of duplicated LTI launches.
+         */
+        @Data
+        public static class LaunchCoalescing {
+            /**
+             * How long the result of a launch is kept, so that a duplicate gets it without performing the launch again.
+             */
+            private Duration resultTtl = Duration.ofSeconds(10);
+            /**
+             * The max. amount of results kept in the memory of each instance
+             * (i.e the results that carry credentials, which are never kept in the launch state store).
+             */
+            private long maxLocalResults = 10_000;
+        }
+
+        /**
+         * Configuration properties for the local pre-validation of ID tokens.
+         * The LTI service still performs the authoritative validation;
+         * this just avoids calling it with ID tokens that are certainly invalid.
+         */
+        @Data
+        public static class IdTokenPreValidation {
+            /**
+             * Whether ID tokens are pre-validated.
+             */
+            private boolean enabled = false;
+            /**
+             * The platforms whose ID tokens are pre-validated.
+             */
+            private List<Platform> platforms = new ArrayList<>();
+            /**
+             * Whether ID tokens issued by platforms that are not configured are rejected
+             * (if not, they are passed to the LTI service without being pre-validated).
+             */
+            private boolean rejectUnknownIssuers = false;
+            /**
+             * The clock skew tolerated when checking the expiration and issuing time of an ID token.
+             */
+            private Duration clockSkew = Duration.ofSeconds(30);
+            /**
+             * How often the key sets of the platforms are refreshed.
+             */
+            private Duration jwksRefreshInterval = Duration.ofMinutes(10);
+            /**
+             * The min. time between refreshes of a key set triggered by an ID token signed with an unknown key.
+             */
+            private Duration jwksMinRefreshInterval = Duration.ofSeconds(30);
+            /**
+             * Timeout for fetching a key set.
+             */
+            private Duration jwksTimeout = Duration.ofSeconds(5);
+
+
+            /**
+             * Configuration properties of a platform (i.e LMS) whose ID tokens are pre-validated.
+             */
+            @Data
+            public static class Platform {
+                /**
+                 * The issuer identifier of the platform (i.e the {@code iss} claim of its ID tokens).
+                 */
+                private String issuer;
+                /**
+                 * The url of the platform's JSON Web Key Set.
+                 */
+                private String jwksUrl;
+                /**
+                 * The client ids given to this tool by the platform (i.e the accepted {@code aud} claims).
+                 * If empty, the audience is not checked.
+                 */
+                private List<String> clientIds = new ArrayList<>();
+            }
+        }
+
+        /**
+         * Configuration properties for the decoding of the LTI forms.
+         * Forms with fields exceeding their max. length are rejected.
+         */
+        @Data
+        public static class Forms {
+            /**
+             * The max. length of the ID token (once url-decoded, in bytes).
+             */
+            private int maxIdTokenLength = 64 * 1024;
+            /**
+             * The max. length of any other field (once url-decoded, in bytes).
+             */
+            private int maxFieldLength = 8 * 1024;
+        }
+
+        /**
+         * Configuration properties for how "take exam" launches lead the student to the exam.
+         */
+        @Data
+        public static class ExamTakingLaunch {
+            /**
+             * How the exam is shown once the launch is performed.
+             */
+            private Mode mode = Mode.REDIRECT;
+            /**
+             * How long a launch is kept server side (only used by the {@link Mode#HANDLE} mode).
+             */
+            private Duration handleTtl = Duration.ofMinutes(2);
+
+
+            /**
+             * The ways in which the exam can be shown once the launch is performed.
+             */
+            public enum Mode {
+                /**
+                 * Redirects to the "take exam" view, passing the exam and tokens in the query string.
+                 */
+                REDIRECT,
+                /**
+                 * Keeps the exam and tokens server side, and redirects to the "take exam" view
+                 * passing just a short, opaque handle in the query string (which can be used only once).
+                 */
+                HANDLE,
+                /**
+                 * Renders the "take exam" view as the response of the launch (i.e without a redirection).
+                 */
+                RENDER
+            }
+        }
     }
 }
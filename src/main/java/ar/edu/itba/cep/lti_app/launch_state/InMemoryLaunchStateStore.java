@@ -0,0 +1,128 @@
+package ar.edu.itba.cep.lti_app.launch_state;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link LaunchStateStore} that keeps values in memory, evicting them once their TTL elapses,
+ * or when there are too many.
+ * Values are only reachable from this instance of the application,
+ * so it is meant for single instance deployments (or deployments with sticky sessions),
+ * and to be used as the near-cache (or as a local stand-in of the remote store) of a {@link NearCachedLaunchStateStore}.
+ * Hits, misses and evictions are published as metrics.
+ */
+class InMemoryLaunchStateStore implements LaunchStateStore {
+
+    /**
+     * The values, by key.
+     */
+    private final Cache<String, Entry> values;
+
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize       The max. amount of values kept.
+     * @param name          The name of the store (used to tag the cache metrics).
+     * @param meterRegistry The {@link MeterRegistry} in which the cache metrics are published.
+     */
+    /* package */ InMemoryLaunchStateStore(final long maxSize, final String name, final MeterRegistry meterRegistry) {
+        this.values = CaffeineCacheMetrics.monitor(
+                meterRegistry,
+                Caffeine.newBuilder()
+                        .expireAfter(new EntryExpiry())
+                        .maximumSize(maxSize)
+                        .recordStats()
+                        .build(),
+                name
+        );
+    }
+
+
+    @Override
+    public CompletableFuture<Optional<String>> get(final String key) {
+        return CompletableFuture.completedFuture(Optional.ofNullable(values.getIfPresent(key)).map(Entry::getValue));
+    }
+
+    @Override
+    public CompletableFuture<Void> put(final String key, final String value, final Duration ttl) {
+        values.put(key, new Entry(value, ttl.toNanos()));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> getAndDelete(final String key) {
+        return CompletableFuture.completedFuture(Optional.ofNullable(values.asMap().remove(key)).map(Entry::getValue));
+    }
+
+
+    /**
+     * A stored value, together with its TTL.
+     */
+    private static final class Entry {
+        /**
+         * The value.
+         */
+        private final String value;
+        /**
+         * How long the value must be kept, in nanoseconds.
+         */
+        private final long ttlNanos;
+
+
+        /**
+         * Constructor.
+         *
+         * @param value    The value.
+         * @param ttlNanos How long the value must be kept, in nanoseconds.
+         */
+        private Entry(final String value, final long ttlNanos) {
+            this.value = value;
+            this.ttlNanos = ttlNanos;
+        }
+
+
+        /**
+         * @return The value.
+         */
+        private String getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * {@link Expiry} that expires each {@link Entry} once its own TTL elapses since it was (last) written.
+     */
+    private static final class EntryExpiry implements Expiry<String, Entry> {
+
+        @Override
+        public long expireAfterCreate(final String key, final Entry entry, final long currentTime) {
+            return entry.ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(
+                final String key,
+                final Entry entry,
+                final long currentTime,
+                final long currentDuration) {
+            return entry.ttlNanos;
+        }
+
+        @Override
+        public long expireAfterRead(
+                final String key,
+                final Entry entry,
+                final long currentTime,
+                final long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
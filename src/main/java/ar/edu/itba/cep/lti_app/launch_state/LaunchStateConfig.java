@@ -0,0 +1,128 @@
+package ar.edu.itba.cep.lti_app.launch_state;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration class for the {@link LaunchStateStore}.
+ */
+@Configuration
+@EnableConfigurationProperties(LaunchStateConfig.Properties.class)
+class LaunchStateConfig {
+
+    /**
+     * Value of the {@code lti-app.launch-state.store} property that selects the {@link InMemoryLaunchStateStore}.
+     */
+    private static final String MEMORY_STORE = "memory";
+    /**
+     * Value of the {@code lti-app.launch-state.store} property that selects the {@link RedisLaunchStateStore}.
+     */
+    private static final String REDIS_STORE = "redis";
+
+
+    /**
+     * A {@link LaunchStateStore} that keeps values in the memory of this instance. This is the default store.
+     *
+     * @param properties    The {@link Properties} used to configure the store.
+     * @param meterRegistry The {@link MeterRegistry} in which the store metrics are published.
+     * @return The created {@link LaunchStateStore}.
+     */
+    @Bean
+    @ConditionalOnProperty(
+            prefix = "lti-app.launch-state",
+            name = "store",
+            havingValue = MEMORY_STORE,
+            matchIfMissing = true
+    )
+    public LaunchStateStore inMemoryLaunchStateStore(final Properties properties, final MeterRegistry meterRegistry) {
+        return new InMemoryLaunchStateStore(properties.getMaxSize(), "lti-app.launch-state", meterRegistry);
+    }
+
+    /**
+     * A {@link LaunchStateStore} that keeps values in Redis (shared by all the instances),
+     * with a near-cache in the memory of this instance.
+     *
+     * @param properties    The {@link Properties} used to configure the store.
+     * @param meterRegistry The {@link MeterRegistry} in which the store metrics are published.
+     * @return The created {@link LaunchStateStore}.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "lti-app.launch-state", name = "store", havingValue = REDIS_STORE)
+    public LaunchStateStore redisLaunchStateStore(final Properties properties, final MeterRegistry meterRegistry) {
+        final var redis = properties.getRedis();
+        final var nearCache = properties.getNearCache();
+        return new NearCachedLaunchStateStore(
+                new RedisLaunchStateStore(redis.getUri(), redis.getKeyPrefix(), redis.getTimeout(), meterRegistry),
+                new InMemoryLaunchStateStore(nearCache.getMaxSize(), "lti-app.launch-state.near-cache", meterRegistry),
+                nearCache.getTtl()
+        );
+    }
+
+
+    /**
+     * Configuration properties for the {@link LaunchStateStore}.
+     */
+    @Data
+    @ConfigurationProperties("lti-app.launch-state")
+    /* package */ static final class Properties {
+        /**
+         * The store in which launch state is kept.
+         * Either {@code memory} (only reachable from this instance) or {@code redis} (shared by all the instances).
+         */
+        private String store = MEMORY_STORE;
+        /**
+         * The max. amount of values kept (only used with the {@code memory} store).
+         */
+        private long maxSize = 100_000;
+        /**
+         * Configuration of the near-cache (only used with the {@code redis} store).
+         */
+        private final NearCache nearCache = new NearCache();
+        /**
+         * Configuration of the Redis server (only used with the {@code redis} store).
+         */
+        private final Redis redis = new Redis();
+
+
+        /**
+         * Configuration properties for the near-cache.
+         */
+        @Data
+        /* package */ static final class NearCache {
+            /**
+             * The max. time values are kept in the near-cache.
+             */
+            private Duration ttl = Duration.ofSeconds(10);
+            /**
+             * The max. amount of values kept in the near-cache.
+             */
+            private long maxSize = 10_000;
+        }
+
+        /**
+         * Configuration properties for the Redis server.
+         */
+        @Data
+        /* package */ static final class Redis {
+            /**
+             * The uri of the Redis server.
+             */
+            private String uri = "redis://localhost:6379";
+            /**
+             * The prefix prepended to all the keys.
+             */
+            private String keyPrefix = "lti-app:launch-state:";
+            /**
+             * The timeout of the operations.
+             */
+            private Duration timeout = Duration.ofMillis(500);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ar.edu.itba.cep.lti_app.launch_state;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Defines behaviour for an object that keeps, for a short time, state related to LTI launches
+ * (e.g results of launches, or launches kept server side) that must be reachable from any instance of the application,
+ * so that requests of the same student can be served by any of them (i.e without sticky sessions).
+ * Values are written once: a key is never updated with a different value (except for refreshing its TTL),
+ * so implementations can cache them freely, except when they are deleted with {@link #getAndDelete(String)}.
+ * Stores are best effort: an unreachable store behaves as if values had expired.
+ */
+public interface LaunchStateStore {
+
+    /**
+     * Retrieves the value with the given {@code key}.
+     *
+     * @param key The key of the value.
+     * @return A {@link CompletableFuture} that completes with an {@link Optional} with the value,
+     * or empty if there is no value with the given {@code key} (i.e it never existed, it expired,
+     * or the store could not be reached).
+     */
+    CompletableFuture<Optional<String>> get(final String key);
+
+    /**
+     * Stores the given {@code value} with the given {@code key} for the given {@code ttl}.
+     *
+     * @param key   The key of the value.
+     * @param value The value to be stored.
+     * @param ttl   How long the value must be kept.
+     * @return A {@link CompletableFuture} that completes (always normally) once the value is stored
+     * (or once the store gave up storing it).
+     */
+    CompletableFuture<Void> put(final String key, final String value, final Duration ttl);
+
+    /**
+     * Retrieves the value with the given {@code key}, deleting it atomically,
+     * so that it is retrieved (through this method) at most once, by any instance.
+     *
+     * @param key The key of the value.
+     * @return A {@link CompletableFuture} that completes with an {@link Optional} with the value,
+     * or empty if there is no value with the given {@code key} (i.e it never existed, it expired,
+     * it was already retrieved, or the store could not be reached).
+     */
+    CompletableFuture<Optional<String>> getAndDelete(final String key);
+}
@@ -0,0 +1,79 @@
+package ar.edu.itba.cep.lti_app.launch_state;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link LaunchStateStore} that keeps values in a remote {@link LaunchStateStore} (shared by all the instances),
+ * and caches them in a near (i.e in memory) {@link LaunchStateStore} for a short time,
+ * so that values written or read by this instance are read again without reaching the remote store.
+ * Writes go to both stores. Misses are not cached, so values written by other instances are seen right away.
+ * Note that a cached value might outlive its remote copy for up to the near-cache's TTL.
+ * Values retrieved with {@link #getAndDelete(String)} are taken from the remote store only
+ * (the one copy all the instances agree on), so they are retrieved at most once, even if they are cached.
+ * The remote store can be any {@link LaunchStateStore} (e.g an {@link InMemoryLaunchStateStore} as a local stand-in).
+ */
+class NearCachedLaunchStateStore implements LaunchStateStore, AutoCloseable {
+
+    /**
+     * The remote {@link LaunchStateStore}.
+     */
+    private final LaunchStateStore remote;
+    /**
+     * The near {@link LaunchStateStore}.
+     */
+    private final LaunchStateStore near;
+    /**
+     * The max. time values are kept in the {@link #near} store.
+     */
+    private final Duration nearTtl;
+
+
+    /**
+     * Constructor.
+     *
+     * @param remote  The remote {@link LaunchStateStore}.
+     * @param near    The near {@link LaunchStateStore}.
+     * @param nearTtl The max. time values are kept in the {@code near} store.
+     */
+    /* package */ NearCachedLaunchStateStore(
+            final LaunchStateStore remote,
+            final LaunchStateStore near,
+            final Duration nearTtl) {
+        this.remote = remote;
+        this.near = near;
+        this.nearTtl = nearTtl;
+    }
+
+
+    @Override
+    public CompletableFuture<Optional<String>> get(final String key) {
+        return near.get(key).thenCompose(cached -> {
+            if (cached.isPresent()) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            return remote.get(key).thenCompose(value -> value
+                    .map(present -> near.put(key, present, nearTtl).thenApply(ignored -> value))
+                    .orElseGet(() -> CompletableFuture.completedFuture(value)));
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> put(final String key, final String value, final Duration ttl) {
+        final var cachedTtl = ttl.compareTo(nearTtl) < 0 ? ttl : nearTtl;
+        return near.put(key, value, cachedTtl).thenCompose(ignored -> remote.put(key, value, ttl));
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> getAndDelete(final String key) {
+        return near.getAndDelete(key).thenCompose(ignored -> remote.getAndDelete(key));
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (remote instanceof AutoCloseable) {
+            ((AutoCloseable) remote).close();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package ar.edu.itba.cep.lti_app.launch_state;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.StringCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link LaunchStateStore} that keeps values in Redis (shared by all the instances of the application),
+ * using a single, non-blocking connection (pipelined by Lettuce).
+ * The connection is established lazily (so the application starts even if Redis can not be reached),
+ * and established again if it could not be.
+ * Operations that fail (or time out) are counted, and behave as a miss (reads) or are discarded (writes).
+ */
+class RedisLaunchStateStore implements LaunchStateStore, AutoCloseable {
+
+    /**
+     * The name of the counters of failed operations.
+     */
+    private static final String FAILURES_COUNTER_NAME = "lti-app.launch-state.failures";
+    /**
+     * The script that gets a value and deletes it atomically
+     * (as {@code GETDEL} is not available in all the supported Redis versions).
+     */
+    private static final String GET_AND_DELETE_SCRIPT = ""
+            + "local value = redis.call('GET', KEYS[1]) "
+            + "if value then redis.call('DEL', KEYS[1]) end "
+            + "return value";
+
+    /**
+     * The {@link RedisClient} used to connect to Redis.
+     */
+    private final RedisClient client;
+    /**
+     * The {@link RedisURI} of the Redis server.
+     */
+    private final RedisURI uri;
+    /**
+     * The prefix prepended to all the keys (so that the store can share the Redis server).
+     */
+    private final String keyPrefix;
+    /**
+     * The connection (being established, established, or that could not be established).
+     */
+    private final AtomicReference<CompletableFuture<StatefulRedisConnection<String, String>>> connection;
+    /**
+     * Counts failed reads.
+     */
+    private final Counter getFailures;
+    /**
+     * Counts failed writes.
+     */
+    private final Counter putFailures;
+    /**
+     * Counts failed reads with deletion.
+     */
+    private final Counter getAndDeleteFailures;
+
+
+    /**
+     * Constructor.
+     *
+     * @param uri           The uri of the Redis server (e.g {@code redis://localhost:6379}).
+     * @param keyPrefix     The prefix prepended to all the keys.
+     * @param timeout       The timeout of the operations (and of establishing the connection).
+     * @param meterRegistry The {@link MeterRegistry} in which failed operations are counted.
+     */
+    /* package */ RedisLaunchStateStore(
+            final String uri,
+            final String keyPrefix,
+            final Duration timeout,
+            final MeterRegistry meterRegistry) {
+        this.uri = RedisURI.create(uri);
+        this.uri.setTimeout(timeout);
+        this.client = RedisClient.create();
+        this.client.setOptions(ClientOptions.builder().timeoutOptions(TimeoutOptions.enabled(timeout)).build());
+        this.keyPrefix = keyPrefix;
+        this.connection = new AtomicReference<>(connect());
+        this.getFailures = failuresCounter("get", meterRegistry);
+        this.putFailures = failuresCounter("put", meterRegistry);
+        this.getAndDeleteFailures = failuresCounter("get-and-delete", meterRegistry);
+    }
+
+
+    @Override
+    public CompletableFuture<Optional<String>> get(final String key) {
+        return connection()
+                .thenCompose(redis -> redis.async().get(keyPrefix + key))
+                .thenApply(Optional::ofNullable)
+                .exceptionally(throwable -> {
+                    getFailures.increment();
+                    return Optional.empty();
+                });
+    }
+
+    @Override
+    public CompletableFuture<Void> put(final String key, final String value, final Duration ttl) {
+        return connection()
+                .thenCompose(redis -> redis.async().set(keyPrefix + key, value, SetArgs.Builder.px(ttl.toMillis())))
+                .<Void>thenApply(ignored -> null)
+                .exceptionally(throwable -> {
+                    putFailures.increment();
+                    return null;
+                });
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> getAndDelete(final String key) {
+        return connection()
+                .thenCompose(redis -> redis.async()
+                        .<String>eval(GET_AND_DELETE_SCRIPT, ScriptOutputType.VALUE, keyPrefix + key))
+                .thenApply(Optional::ofNullable)
+                .exceptionally(throwable -> {
+                    getAndDeleteFailures.increment();
+                    return Optional.empty();
+                });
+    }
+
+    @Override
+    public void close() {
+        connection.get().thenAccept(StatefulRedisConnection::close);
+        client.shutdown();
+    }
+
+
+    /**
+     * Returns the connection, establishing it again if the last attempt failed.
+     * Once established, Lettuce reconnects it automatically.
+     *
+     * @return A {@link CompletableFuture} that completes with the connection.
+     */
+    private CompletableFuture<StatefulRedisConnection<String, String>> connection() {
+        final var current = connection.get();
+        if (!current.isCompletedExceptionally()) {
+            return current;
+        }
+        final var reconnection = connect();
+        if (connection.compareAndSet(current, reconnection)) {
+            return reconnection;
+        }
+        reconnection.thenAccept(StatefulRedisConnection::close); // Another caller is reconnecting already.
+        return connection.get();
+    }
+
+    /**
+     * Starts establishing a connection.
+     *
+     * @return A {@link CompletableFuture} that completes with the connection once established.
+     */
+    private CompletableFuture<StatefulRedisConnection<String, String>> connect() {
+        return client.connectAsync(StringCodec.UTF8, uri).toCompletableFuture();
+    }
+
+    /**
+     * Creates a counter of failed operations.
+     *
+     * @param operation     The operation whose failures are counted.
+     * @param meterRegistry The {@link MeterRegistry} in which the counter is registered.
+     * @return The created {@link Counter}.
+     */
+    private static Counter failuresCounter(final String operation, final MeterRegistry meterRegistry) {
+        return Counter.builder(FAILURES_COUNTER_NAME)
+                .description("Failed (or timed out) operations of the Redis launch state store")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,52 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import ar.edu.itba.cep.lti.*;
+import com.bellotapps.webapps_commons.exceptions.ExternalServiceException;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous counterpart of the LTI services defined in the commons library that are used by this application.
+ * Each operation returns a {@link CompletableFuture} that completes once the LTI service answers,
+ * so callers (e.g controllers) don't have to park a thread while waiting for the response.
+ * Failures are reported by completing the returned {@link CompletableFuture} exceptionally
+ * with an {@link ExternalServiceException}.
+ */
+public interface AsyncLtiService {
+
+    /**
+     * Performs the login initiation operation.
+     *
+     * @param loginInitiationRequest The {@link LoginInitiationRequest} to be processed.
+     * @return A {@link CompletableFuture} with the resulting {@link AuthenticationRequest}.
+     * @see LtiLoginService#loginInitiation(LoginInitiationRequest)
+     */
+    CompletableFuture<AuthenticationRequest> loginInitiation(final LoginInitiationRequest loginInitiationRequest);
+
+    /**
+     * Performs the exam selection operation.
+     *
+     * @param authenticationResponse The {@link AuthenticationResponse} to be processed.
+     * @return A {@link CompletableFuture} with the resulting {@link ExamSelectionResponse}.
+     * @see LtiExamSelectionService#examSelection(AuthenticationResponse)
+     */
+    CompletableFuture<ExamSelectionResponse> examSelection(final AuthenticationResponse authenticationResponse);
+
+    /**
+     * Performs the exam selected operation.
+     *
+     * @param examSelectedRequest The {@link ExamSelectedRequest} to be processed.
+     * @return A {@link CompletableFuture} with the resulting {@link ExamSelectedResponse}.
+     * @see LtiExamSelectionService#examSelected(ExamSelectedRequest)
+     */
+    CompletableFuture<ExamSelectedResponse> examSelected(final ExamSelectedRequest examSelectedRequest);
+
+    /**
+     * Performs the exam taking operation.
+     *
+     * @param authenticationResponse The {@link AuthenticationResponse} to be processed.
+     * @return A {@link CompletableFuture} with the resulting {@link ExamTakingResponse}.
+     * @see LtiExamTakingService#takeExam(AuthenticationResponse)
+     */
+    CompletableFuture<ExamTakingResponse> takeExam(final AuthenticationResponse authenticationResponse);
+}
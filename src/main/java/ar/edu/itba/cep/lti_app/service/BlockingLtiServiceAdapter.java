@@ -0,0 +1,109 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import ar.edu.itba.cep.lti.*;
+import com.bellotapps.webapps_commons.exceptions.ExternalServiceException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.sleuth.instrument.async.LazyTraceExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * An {@link AsyncLtiService} that adapts a blocking {@link LtiService} (e.g the {@link RestTemplateLtiService}),
+ * executing its operations in a dedicated and bounded pool of threads.
+ * This releases the servlet container's worker threads while the LTI service answers,
+ * and bounds how many threads can be waiting for it at the same time.
+ */
+class BlockingLtiServiceAdapter implements AsyncLtiService, DisposableBean {
+
+    /**
+     * The adapted {@link LtiService}.
+     */
+    private final LtiService ltiService;
+    /**
+     * The {@link ThreadPoolTaskExecutor} in which the blocking operations are executed.
+     */
+    private final ThreadPoolTaskExecutor threadPool;
+    /**
+     * An {@link Executor} that wraps the {@link #threadPool} in order to propagate tracing context.
+     */
+    private final Executor executor;
+
+
+    /**
+     * Constructor.
+     *
+     * @param ltiService  The adapted {@link LtiService}.
+     * @param properties  The {@link LtiServiceConfig.Properties} needed to configure this adapter.
+     * @param beanFactory The {@link BeanFactory} used to lazily look up tracing components.
+     */
+    /* package */ BlockingLtiServiceAdapter(
+            final LtiService ltiService,
+            final LtiServiceConfig.Properties properties,
+            final BeanFactory beanFactory) {
+        this.ltiService = ltiService;
+        this.threadPool = new ThreadPoolTaskExecutor();
+        this.threadPool.setThreadNamePrefix("lti-service-");
+        this.threadPool.setCorePoolSize(properties.getBlockingPoolSize());
+        this.threadPool.setMaxPoolSize(properties.getBlockingPoolSize());
+        this.threadPool.setQueueCapacity(properties.getBlockingQueueCapacity());
+        this.threadPool.initialize();
+        this.executor = new LazyTraceExecutor(beanFactory, threadPool);
+    }
+
+
+    @Override
+    public CompletableFuture<AuthenticationRequest> loginInitiation(final LoginInitiationRequest loginInitiationRequest) {
+        return supplyAsync(() -> ltiService.loginInitiation(loginInitiationRequest));
+    }
+
+    @Override
+    public CompletableFuture<ExamSelectionResponse> examSelection(final AuthenticationResponse authenticationResponse) {
+        return supplyAsync(() -> ltiService.examSelection(authenticationResponse));
+    }
+
+    @Override
+    public CompletableFuture<ExamSelectedResponse> examSelected(final ExamSelectedRequest examSelectedRequest) {
+        return supplyAsync(() -> ltiService.examSelected(examSelectedRequest));
+    }
+
+    @Override
+    public CompletableFuture<ExamTakingResponse> takeExam(final AuthenticationResponse authenticationResponse) {
+        return supplyAsync(() -> ltiService.takeExam(authenticationResponse));
+    }
+
+    @Override
+    public void destroy() {
+        threadPool.shutdown();
+    }
+
+
+    /**
+     * Executes the given {@code operation} in the {@link #executor},
+     * as part of the {@link LtiCall} and {@link InstanceAttempt} being performed by the calling thread (if any).
+     *
+     * @param operation The blocking operation to be executed.
+     * @param <T>       The concrete type of the operation's result.
+     * @return A {@link CompletableFuture} that will complete with the {@code operation}'s result.
+     * If the {@link #threadPool} is saturated, it will be completed exceptionally with an
+     * {@link ExternalServiceException}.
+     */
+    private <T> CompletableFuture<T> supplyAsync(final Supplier<T> operation) {
+        try {
+            final var call = LtiCall.current().orElse(null);
+            final var attempt = InstanceAttempt.current().orElse(null);
+            return CompletableFuture.supplyAsync(
+                    () -> LtiCall.perform(call, () -> InstanceAttempt.perform(attempt, operation)),
+                    executor
+            );
+        } catch (final TaskRejectedException e) {
+            return CompletableFuture.failedFuture(
+                    new ExternalServiceException("lti-service", "Too many requests waiting for the LTI service", e)
+            );
+        }
+    }
+}
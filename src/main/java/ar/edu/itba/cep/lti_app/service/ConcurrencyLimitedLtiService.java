@@ -0,0 +1,174 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import com.bellotapps.webapps_commons.exceptions.ExternalServiceException;
+import com.netflix.concurrency.limits.Limit;
+import com.netflix.concurrency.limits.Limiter;
+import com.netflix.concurrency.limits.limit.AIMDLimit;
+import com.netflix.concurrency.limits.limit.VegasLimit;
+import com.netflix.concurrency.limits.limiter.AbstractLimiter;
+import com.netflix.concurrency.limits.limiter.SimpleLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.InterruptedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * An {@link InterceptingLtiService} that limits the amount of concurrent calls of each operation,
+ * adapting the limit to the round trip time measured for the operation (i.e Vegas or AIMD).
+ * Calls that exceed the limit are rejected immediately with an {@link ExternalServiceException},
+ * instead of queueing and letting latency grow without bound.
+ * The current limit, the in-flight calls and the rejections are published as metrics.
+ */
+class ConcurrencyLimitedLtiService extends InterceptingLtiService {
+
+    /**
+     * The name of the gauges that indicate the current limit of each operation.
+     */
+    private static final String LIMIT_GAUGE_NAME = "lti-service.concurrency-limit.limit";
+    /**
+     * The name of the gauges that indicate the in-flight calls of each operation.
+     */
+    private static final String IN_FLIGHT_GAUGE_NAME = "lti-service.concurrency-limit.in-flight";
+    /**
+     * The name of the counters of rejected calls of each operation.
+     */
+    private static final String REJECTIONS_COUNTER_NAME = "lti-service.concurrency-limit.rejections";
+    /**
+     * The name of the tag that holds the operation name.
+     */
+    private static final String OPERATION_TAG = "operation";
+
+    /**
+     * The {@link Limiter}s of each operation.
+     */
+    private final Map<LtiOperation, AbstractLimiter<Void>> limiters;
+    /**
+     * The rejections {@link Counter}s of each operation.
+     */
+    private final Map<LtiOperation, Counter> rejections;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate      The {@link AsyncLtiService} to which operations are delegated.
+     * @param meterRegistry The {@link MeterRegistry} in which the metrics are published.
+     * @param properties    The {@link LtiServiceConfig.Properties.ConcurrencyLimit} used to configure the limiters.
+     */
+    /* package */ ConcurrencyLimitedLtiService(
+            final AsyncLtiService delegate,
+            final MeterRegistry meterRegistry,
+            final LtiServiceConfig.Properties.ConcurrencyLimit properties) {
+        super(delegate);
+        this.limiters = new EnumMap<>(LtiOperation.class);
+        this.rejections = new EnumMap<>(LtiOperation.class);
+        for (final var operation : LtiOperation.values()) {
+            final var operationName = operation.getOperationName();
+            final AbstractLimiter<Void> limiter = SimpleLimiter.newBuilder()
+                    .named("lti-service." + operationName)
+                    .limit(limit(properties))
+                    .build();
+            Gauge.builder(LIMIT_GAUGE_NAME, limiter, AbstractLimiter::getLimit)
+                    .description("Current concurrency limit of the operation")
+                    .tag(OPERATION_TAG, operationName)
+                    .register(meterRegistry);
+            Gauge.builder(IN_FLIGHT_GAUGE_NAME, limiter, AbstractLimiter::getInflight)
+                    .description("Calls of the operation currently in flight")
+                    .tag(OPERATION_TAG, operationName)
+                    .register(meterRegistry);
+            this.limiters.put(operation, limiter);
+            this.rejections.put(operation, Counter.builder(REJECTIONS_COUNTER_NAME)
+                    .description("Calls of the operation rejected because the concurrency limit was reached")
+                    .tag(OPERATION_TAG, operationName)
+                    .register(meterRegistry));
+        }
+    }
+
+
+    @Override
+    protected <T> CompletableFuture<T> intercept(
+            final LtiOperation operation,
+            final Supplier<CompletableFuture<T>> invocation) {
+        final var listener = limiters.get(operation).acquire(null).orElse(null);
+        if (listener == null) {
+            rejections.get(operation).increment();
+            return CompletableFuture.failedFuture(new ExternalServiceException(
+                    "lti-service",
+                    "Concurrency limit of the LTI service reached",
+                    new RejectedExecutionException("Concurrency limit of " + operation.getOperationName() + " reached")
+            ));
+        }
+        return invoke(invocation).whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                listener.onSuccess();
+            } else if (isOverload(throwable)) {
+                listener.onDropped();
+            } else {
+                listener.onIgnore();
+            }
+        });
+    }
+
+
+    /**
+     * Builds the {@link Limit} algorithm for the given {@code properties}.
+     *
+     * @param properties The {@link LtiServiceConfig.Properties.ConcurrencyLimit} properties.
+     * @return The {@link Limit}.
+     */
+    private static Limit limit(final LtiServiceConfig.Properties.ConcurrencyLimit properties) {
+        switch (properties.getAlgorithm()) {
+            case VEGAS:
+                return VegasLimit.newBuilder()
+                        .initialLimit(properties.getInitialLimit())
+                        .maxConcurrency(properties.getMaxLimit())
+                        .build();
+            case AIMD:
+                return AIMDLimit.newBuilder()
+                        .initialLimit(properties.getInitialLimit())
+                        .minLimit(properties.getMinLimit())
+                        .maxLimit(properties.getMaxLimit())
+                        .timeout(properties.getAimdTimeout().toNanos(), TimeUnit.NANOSECONDS)
+                        .build();
+            default:
+                throw new IllegalArgumentException("Unknown concurrency limit algorithm " + properties.getAlgorithm());
+        }
+    }
+
+    /**
+     * Indicates whether the given {@code throwable} means that the LTI service is overloaded
+     * (i.e a timeout, a server error response, or a rejection of the client's pool),
+     * in which case the limit must be decreased.
+     * Other failures (e.g client error responses, or mapping failures) say nothing about the load,
+     * so they are ignored.
+     *
+     * @param throwable The {@link Throwable} with which an operation failed.
+     * @return {@code true} if the failure means overload, or {@code false} otherwise.
+     */
+    private static boolean isOverload(final Throwable throwable) {
+        for (var cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedIOException
+                    || cause instanceof TimeoutException
+                    || cause instanceof RejectedExecutionException) {
+                return true;
+            }
+            if (cause instanceof RestClientResponseException) {
+                return ((RestClientResponseException) cause).getRawStatusCode() >= 500;
+            }
+            if (cause instanceof WebClientResponseException) {
+                return ((WebClientResponseException) cause).getRawStatusCode() >= 500;
+            }
+        }
+        return false;
+    }
+}
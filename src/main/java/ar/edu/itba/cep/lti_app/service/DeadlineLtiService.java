@@ -0,0 +1,190 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import com.bellotapps.webapps_commons.exceptions.ExternalServiceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * An {@link InterceptingLtiService} that bounds each operation by a deadline:
+ * the one of the request being handled (see {@link RequestDeadline}), or a new one if there is none.
+ * Operations are performed as an {@link LtiCall} (which makes the client apply the operation's timeouts,
+ * bounded by the time left, and propagate the deadline to the LTI service),
+ * and they are cancelled in the client if the deadline expires, or if the request is aborted.
+ */
+class DeadlineLtiService extends InterceptingLtiService {
+
+    /**
+     * The prefix of the names of the deadline metrics.
+     */
+    private static final String METRICS_PREFIX = "lti-service.deadline.";
+    /**
+     * The name of the tag that holds the operation name.
+     */
+    private static final String OPERATION_TAG = "operation";
+
+    /**
+     * The {@link LtiServiceConfig.Properties} used to configure the timeouts.
+     */
+    private final LtiServiceConfig.Properties properties;
+    /**
+     * The {@link ScheduledExecutorService} in which expirations are scheduled.
+     */
+    private final ScheduledExecutorService scheduler;
+    /**
+     * Counts the operations whose deadline expired, by operation.
+     */
+    private final Map<LtiOperation, Counter> exceededCounters;
+    /**
+     * Counts the operations cancelled because the request was aborted, by operation.
+     */
+    private final Map<LtiOperation, Counter> abortedCounters;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate      The {@link AsyncLtiService} to which operations are delegated.
+     * @param meterRegistry The {@link MeterRegistry} in which the metrics are published.
+     * @param properties    The {@link LtiServiceConfig.Properties} used to configure the timeouts.
+     */
+    /* package */ DeadlineLtiService(
+            final AsyncLtiService delegate,
+            final MeterRegistry meterRegistry,
+            final LtiServiceConfig.Properties properties) {
+        this(delegate, meterRegistry, properties, newScheduler());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param delegate      The {@link AsyncLtiService} to which operations are delegated.
+     * @param meterRegistry The {@link MeterRegistry} in which the metrics are published.
+     * @param properties    The {@link LtiServiceConfig.Properties} used to configure the timeouts.
+     * @param scheduler     The {@link ScheduledExecutorService} in which expirations are scheduled.
+     */
+    /* package */ DeadlineLtiService(
+            final AsyncLtiService delegate,
+            final MeterRegistry meterRegistry,
+            final LtiServiceConfig.Properties properties,
+            final ScheduledExecutorService scheduler) {
+        super(delegate);
+        this.properties = properties;
+        this.scheduler = scheduler;
+        this.exceededCounters = new EnumMap<>(LtiOperation.class);
+        this.abortedCounters = new EnumMap<>(LtiOperation.class);
+        for (final var operation : LtiOperation.values()) {
+            this.exceededCounters.put(operation, Counter.builder(METRICS_PREFIX + "exceeded")
+                    .description("Operations whose deadline expired before the LTI service answered")
+                    .tag(OPERATION_TAG, operation.getOperationName())
+                    .register(meterRegistry));
+            this.abortedCounters.put(operation, Counter.builder(METRICS_PREFIX + "aborted")
+                    .description("Operations cancelled because the request that performed them was aborted")
+                    .tag(OPERATION_TAG, operation.getOperationName())
+                    .register(meterRegistry));
+        }
+    }
+
+
+    @Override
+    protected <T> CompletableFuture<T> intercept(
+            final LtiOperation operation,
+            final Supplier<CompletableFuture<T>> invocation) {
+        final var timeouts = properties.getTimeouts();
+        final var deadline = RequestDeadline.current()
+                .orElseGet(() -> RequestDeadline.after(timeouts.getDeadline()));
+        final var remaining = deadline.remaining();
+        if (remaining.isNegative() || remaining.isZero()) {
+            exceededCounters.get(operation).increment();
+            return CompletableFuture.failedFuture(exceeded(operation));
+        }
+        final var operationTimeouts = timeouts.getOperations().get(operation);
+        final var call = new LtiCall(
+                deadline,
+                operationTimeouts != null && operationTimeouts.getConnectTimeout() != null
+                        ? operationTimeouts.getConnectTimeout()
+                        : properties.getHttp().getConnectTimeout(),
+                operationTimeouts != null && operationTimeouts.getReadTimeout() != null
+                        ? operationTimeouts.getReadTimeout()
+                        : properties.getHttp().getReadTimeout()
+        );
+        final var result = new CompletableFuture<T>();
+        LtiCall.perform(call, () -> invoke(invocation)).whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(throwable);
+            }
+        });
+        if (result.isDone()) {
+            return result;
+        }
+        final var expiration = scheduler.schedule(() -> {
+            if (result.completeExceptionally(exceeded(operation))) {
+                exceededCounters.get(operation).increment();
+                call.abort();
+            }
+        }, remaining.toNanos(), TimeUnit.NANOSECONDS);
+        deadline.onAbort(() -> {
+            if (result.completeExceptionally(aborted(operation))) {
+                abortedCounters.get(operation).increment();
+                call.abort();
+            }
+        });
+        result.whenComplete((value, throwable) -> expiration.cancel(false));
+        return result;
+    }
+
+
+    /**
+     * Creates the {@link ScheduledExecutorService} in which expirations are scheduled.
+     *
+     * @return The created {@link ScheduledExecutorService}.
+     */
+    private static ScheduledExecutorService newScheduler() {
+        final var executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final var thread = new Thread(runnable, "lti-service-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true); // Most expirations are cancelled, as operations complete in time.
+        return executor;
+    }
+
+    /**
+     * Creates the exception with which an operation fails when its deadline expires.
+     *
+     * @param operation The {@link LtiOperation}.
+     * @return The {@link ExternalServiceException}.
+     */
+    private static ExternalServiceException exceeded(final LtiOperation operation) {
+        return new ExternalServiceException(
+                "lti-service",
+                "Deadline exceeded while waiting for the " + operation.getOperationName() + " operation",
+                new TimeoutException()
+        );
+    }
+
+    /**
+     * Creates the exception with which an operation fails when the request that performs it is aborted.
+     *
+     * @param operation The {@link LtiOperation}.
+     * @return The {@link ExternalServiceException}.
+     */
+    private static ExternalServiceException aborted(final LtiOperation operation) {
+        return new ExternalServiceException(
+                "lti-service",
+                "Request aborted while waiting for the " + operation.getOperationName() + " operation",
+                new CancellationException()
+        );
+    }
+}
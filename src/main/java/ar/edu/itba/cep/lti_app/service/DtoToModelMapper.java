@@ -0,0 +1,12 @@
+package ar.edu.itba.cep.lti_app.service;
+
+/**
+ * Function interface used to map a DTO class into its model version.
+ *
+ * @param <M> The model's concrete type
+ * @param <D> The DTO's concrete type
+ */
+@FunctionalInterface
+interface DtoToModelMapper<M, D> {
+    M map(final D model);
+}
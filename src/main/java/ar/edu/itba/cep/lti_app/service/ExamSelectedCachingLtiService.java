@@ -0,0 +1,115 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import ar.edu.itba.cep.lti.*;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Value;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An {@link AsyncLtiService} decorator that caches the negative results of the "exam selected" operation
+ * (i.e {@link NonExistingExamSelectedResponse} and {@link NotUpcomingExamSelectedResponse}),
+ * so that selecting the same wrong exam again does not reach the LTI service.
+ * Results are cached by exam id and by the launch that selects the exam (i.e its state,
+ * through which the LTI service knows the platform, deployment and user performing the selection),
+ * so that a result is never shared between requesters, as the exam might exist, or be upcoming, for another one.
+ * Positive results ({@link ExistingExamSelectedResponse}) are never cached,
+ * as their JWT is generated by the LTI service for each request.
+ * Hits, misses and evictions are published as metrics.
+ */
+class ExamSelectedCachingLtiService implements AsyncLtiService {
+
+    /**
+     * The name of the cache (used to tag the cache metrics).
+     */
+    private static final String CACHE_NAME = "lti-service.exam-selected";
+
+    /**
+     * The {@link AsyncLtiService} to which operations are delegated.
+     */
+    private final AsyncLtiService delegate;
+    /**
+     * The negative results, by {@link NegativeResultKey}.
+     */
+    private final Cache<NegativeResultKey, ExamSelectedResponse> negativeResults;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate      The {@link AsyncLtiService} to which operations are delegated.
+     * @param meterRegistry The {@link MeterRegistry} in which the cache metrics are published.
+     * @param properties    The {@link LtiServiceConfig.Properties.ExamSelectedCache} used to configure the cache.
+     */
+    /* package */ ExamSelectedCachingLtiService(
+            final AsyncLtiService delegate,
+            final MeterRegistry meterRegistry,
+            final LtiServiceConfig.Properties.ExamSelectedCache properties) {
+        this.delegate = delegate;
+        this.negativeResults = CaffeineCacheMetrics.monitor(
+                meterRegistry,
+                Caffeine.newBuilder()
+                        .expireAfterWrite(properties.getNegativeTtl())
+                        .maximumSize(properties.getMaxSize())
+                        .recordStats()
+                        .build(),
+                CACHE_NAME
+        );
+    }
+
+
+    @Override
+    public CompletableFuture<AuthenticationRequest> loginInitiation(final LoginInitiationRequest loginInitiationRequest) {
+        return delegate.loginInitiation(loginInitiationRequest);
+    }
+
+    @Override
+    public CompletableFuture<ExamSelectionResponse> examSelection(final AuthenticationResponse authenticationResponse) {
+        return delegate.examSelection(authenticationResponse);
+    }
+
+    @Override
+    public CompletableFuture<ExamSelectedResponse> examSelected(final ExamSelectedRequest examSelectedRequest) {
+        final var examId = examSelectedRequest.getExamId();
+        final var state = examSelectedRequest.getState();
+        if (examId == null || state == null) {
+            return delegate.examSelected(examSelectedRequest);
+        }
+        final var key = new NegativeResultKey(state, examId);
+        final var cached = negativeResults.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return delegate.examSelected(examSelectedRequest).thenApply(response -> {
+            if (response instanceof NonExistingExamSelectedResponse
+                    || response instanceof NotUpcomingExamSelectedResponse) {
+                negativeResults.put(key, response);
+            }
+            return response;
+        });
+    }
+
+    @Override
+    public CompletableFuture<ExamTakingResponse> takeExam(final AuthenticationResponse authenticationResponse) {
+        return delegate.takeExam(authenticationResponse);
+    }
+
+
+    /**
+     * The key with which a negative result is cached (i.e the launch that selects the exam, and the exam).
+     */
+    @Value
+    private static class NegativeResultKey {
+        /**
+         * The state of the launch that selects the exam.
+         */
+        private final String state;
+        /**
+         * The id of the selected exam.
+         */
+        private final Long examId;
+    }
+}
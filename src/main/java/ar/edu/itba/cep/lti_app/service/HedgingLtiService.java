@@ -0,0 +1,390 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.cloud.sleuth.instrument.async.TraceableScheduledExecutorService;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * An {@link InterceptingLtiService} that hedges the latency critical operations (i.e those performed while the user
+ * waits for the launch to complete): if an operation has not completed after a delay (a high percentile of its
+ * recent response times), a second attempt is sent (to a different instance, when possible),
+ * and the first successful answer wins. The operation only fails if all of its attempts fail.
+ * <p>
+ * Hedges are limited by a budget (tokens earned by each call, and spent by each hedge),
+ * so that hedging can never more than double the load of the LTI service, even when it is slow as a whole.
+ * The losing attempt is not cancelled (its answer is just discarded), so operations are only hedged
+ * if the LTI service can answer them more than once (i.e the state and nonce in the requests are checked,
+ * not consumed, by it).
+ */
+class HedgingLtiService extends InterceptingLtiService {
+
+    /**
+     * The operations that are hedged.
+     */
+    private static final Set<LtiOperation> HEDGED_OPERATIONS =
+            EnumSet.of(LtiOperation.LOGIN_INITIATION, LtiOperation.EXAM_SELECTION);
+    /**
+     * The prefix of the names of the hedging metrics.
+     */
+    private static final String METRICS_PREFIX = "lti-service.hedging.";
+    /**
+     * The name of the tag that holds the operation name.
+     */
+    private static final String OPERATION_TAG = "operation";
+    /**
+     * How often (at most) the hedging delay of an operation is recalculated, in nanoseconds.
+     */
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The {@link ScheduledExecutorService} in which hedges are scheduled.
+     */
+    private final ScheduledExecutorService scheduler;
+    /**
+     * The {@link LatencyWindow} of each hedged operation.
+     */
+    private final Map<LtiOperation, LatencyWindow> latencyWindows;
+    /**
+     * The {@link OperationMetrics} of each hedged operation.
+     */
+    private final Map<LtiOperation, OperationMetrics> metrics;
+    /**
+     * The budget of hedges (i.e how many hedges can be sent right now).
+     */
+    private final TokenBudget budget;
+    /**
+     * The clock with which response times are measured (in terms of {@link System#nanoTime()}).
+     */
+    private final LongSupplier clock;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate      The {@link AsyncLtiService} to which operations are delegated.
+     * @param meterRegistry The {@link MeterRegistry} in which the metrics are published.
+     * @param properties    The {@link LtiServiceConfig.Properties.Hedging} used to configure the hedging.
+     * @param beanFactory   The {@link BeanFactory} used to lazily look up tracing components.
+     * @throws IllegalArgumentException If the {@code properties} are not valid.
+     */
+    /* package */ HedgingLtiService(
+            final AsyncLtiService delegate,
+            final MeterRegistry meterRegistry,
+            final LtiServiceConfig.Properties.Hedging properties,
+            final BeanFactory beanFactory) throws IllegalArgumentException {
+        this(delegate, meterRegistry, properties, newScheduler(beanFactory), System::nanoTime);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param delegate      The {@link AsyncLtiService} to which operations are delegated.
+     * @param meterRegistry The {@link MeterRegistry} in which the metrics are published.
+     * @param properties    The {@link LtiServiceConfig.Properties.Hedging} used to configure the hedging.
+     * @param scheduler     The {@link ScheduledExecutorService} in which hedges are scheduled.
+     * @param clock         The clock with which response times are measured
+     *                      (in nanoseconds, with the semantics of {@link System#nanoTime()}).
+     * @throws IllegalArgumentException If the {@code properties} are not valid.
+     */
+    /* package */ HedgingLtiService(
+            final AsyncLtiService delegate,
+            final MeterRegistry meterRegistry,
+            final LtiServiceConfig.Properties.Hedging properties,
+            final ScheduledExecutorService scheduler,
+            final LongSupplier clock) throws IllegalArgumentException {
+        super(delegate);
+        Assert.isTrue(
+                properties.getPercentile() > 0 && properties.getPercentile() < 1,
+                "The hedging percentile must be between 0 and 1"
+        );
+        Assert.isTrue(
+                properties.getBudgetRatio() > 0 && properties.getBudgetRatio() <= 1,
+                "The hedging budget ratio must be greater than 0, and not greater than 1"
+        );
+        Assert.isTrue(properties.getWindowSize() > 0, "The hedging window size must be positive");
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.latencyWindows = new EnumMap<>(LtiOperation.class);
+        this.metrics = new EnumMap<>(LtiOperation.class);
+        for (final var operation : HEDGED_OPERATIONS) {
+            final var window = new LatencyWindow(properties, clock);
+            this.latencyWindows.put(operation, window);
+            this.metrics.put(operation, new OperationMetrics(operation, window, meterRegistry));
+        }
+        this.budget = new TokenBudget(properties.getBudgetRatio(), properties.getMaxBudget());
+    }
+
+
+    @Override
+    protected <T> CompletableFuture<T> intercept(
+            final LtiOperation operation,
+            final Supplier<CompletableFuture<T>> invocation) {
+        if (!HEDGED_OPERATIONS.contains(operation)) {
+            return invoke(invocation);
+        }
+        budget.deposit();
+        final var latencyWindow = latencyWindows.get(operation);
+        final var operationMetrics = metrics.get(operation);
+        final var result = new CompletableFuture<T>();
+        final var pending = new AtomicInteger(1); // Attempts that have not completed yet.
+
+        final var call = LtiCall.current().orElse(null); // The hedge is sent from another thread.
+        final var first = InstanceAttempt.current().orElseGet(InstanceAttempt::any); // E.g a retry.
+        final var start = clock.getAsLong();
+        InstanceAttempt.perform(first, () -> invoke(invocation)).whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                latencyWindow.record(clock.getAsLong() - start);
+            }
+            complete(result, pending, value, throwable);
+        });
+        if (result.isDone()) {
+            return result;
+        }
+
+        final var hedge = scheduler.schedule(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (!budget.withdraw()) {
+                operationMetrics.throttled.increment();
+                return;
+            }
+            // The hedge is not sent if the first attempt has just completed (i.e there are no pending attempts).
+            if (pending.getAndUpdate(p -> p == 0 ? 0 : p + 1) == 0) {
+                budget.refund();
+                return;
+            }
+            operationMetrics.hedges.increment();
+            final var second = InstanceAttempt.avoiding(first);
+            LtiCall.perform(call, () -> InstanceAttempt.perform(second, () -> invoke(invocation)))
+                    .whenComplete((value, throwable) -> {
+                        if (complete(result, pending, value, throwable)) {
+                            operationMetrics.wins.increment();
+                        }
+                    });
+        }, latencyWindow.delay(), TimeUnit.NANOSECONDS);
+        result.whenComplete((value, throwable) -> hedge.cancel(false));
+        return result;
+    }
+
+
+    /**
+     * Creates the {@link ScheduledExecutorService} in which hedges are scheduled (a single daemon thread),
+     * propagating the tracing context to the hedges.
+     *
+     * @param beanFactory The {@link BeanFactory} used to lazily look up tracing components.
+     * @return The created {@link ScheduledExecutorService}.
+     */
+    private static ScheduledExecutorService newScheduler(final BeanFactory beanFactory) {
+        final var executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final var thread = new Thread(runnable, "lti-service-hedging");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true); // Most hedges are cancelled, as the first attempt answers in time.
+        return new TraceableScheduledExecutorService(beanFactory, executor);
+    }
+
+    /**
+     * Records the completion of an attempt, completing the {@code result} with it if it is the first successful one,
+     * or if it is the last one to fail.
+     *
+     * @param result    The {@link CompletableFuture} with the operation's result.
+     * @param pending   The amount of pending attempts (including the one being completed).
+     * @param value     The value of the attempt (if it succeeded).
+     * @param throwable The failure of the attempt, or {@code null} if it succeeded.
+     * @param <T>       The concrete type of the operation's result.
+     * @return {@code true} if the attempt completed the {@code result} with its value, or {@code false} otherwise.
+     */
+    private static <T> boolean complete(
+            final CompletableFuture<T> result,
+            final AtomicInteger pending,
+            final T value,
+            final Throwable throwable) {
+        final var last = pending.decrementAndGet() == 0;
+        if (throwable == null) {
+            return result.complete(value);
+        }
+        if (last) {
+            result.completeExceptionally(throwable);
+        }
+        return false;
+    }
+
+
+    /**
+     * A sliding window of the response times of an operation, used to calculate its hedging delay.
+     */
+    private static final class LatencyWindow {
+
+        /**
+         * The percentile of the response times after which the operation is hedged.
+         */
+        private final double percentile;
+        /**
+         * The min. hedging delay, in nanoseconds.
+         */
+        private final long minDelay;
+        /**
+         * The hedging delay used until there are enough samples, in nanoseconds.
+         */
+        private final long defaultDelay;
+        /**
+         * The min. amount of samples needed to calculate the hedging delay.
+         */
+        private final int minSamples;
+        /**
+         * The response times in the window, in nanoseconds (used as a ring buffer).
+         */
+        private final long[] samples;
+        /**
+         * The clock with which the staleness of the {@link #delay} is measured.
+         */
+        private final LongSupplier clock;
+        /**
+         * The amount of samples recorded (capped to the window size).
+         */
+        private int count;
+        /**
+         * The position in which the next sample is recorded.
+         */
+        private int next;
+        /**
+         * The last calculated hedging delay, in nanoseconds.
+         */
+        private volatile long delay;
+        /**
+         * The time (in terms of the {@link #clock}) when the {@link #delay} was last calculated.
+         */
+        private volatile long calculatedAt;
+
+
+        /**
+         * Constructor.
+         *
+         * @param properties The {@link LtiServiceConfig.Properties.Hedging} used to configure the window.
+         * @param clock      The clock with which the staleness of the delay is measured.
+         */
+        private LatencyWindow(final LtiServiceConfig.Properties.Hedging properties, final LongSupplier clock) {
+            this.percentile = properties.getPercentile();
+            this.minDelay = properties.getMinDelay().toNanos();
+            this.defaultDelay = properties.getDefaultDelay().toNanos();
+            this.minSamples = properties.getMinSamples();
+            this.samples = new long[properties.getWindowSize()];
+            this.delay = Math.max(minDelay, defaultDelay);
+            this.clock = clock;
+            this.calculatedAt = clock.getAsLong();
+        }
+
+
+        /**
+         * Records a response time.
+         *
+         * @param responseTime The response time, in nanoseconds.
+         */
+        private synchronized void record(final long responseTime) {
+            samples[next] = responseTime;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /**
+         * Returns the hedging delay (i.e the configured percentile of the response times in the window),
+         * recalculating it if it is stale.
+         *
+         * @return The hedging delay, in nanoseconds.
+         */
+        private long delay() {
+            final var now = clock.getAsLong();
+            if (now - calculatedAt > DELAY_REFRESH_NANOS) {
+                calculatedAt = now;
+                delay = Math.max(minDelay, calculate());
+            }
+            return delay;
+        }
+
+        /**
+         * Calculates the configured percentile of the response times in the window.
+         *
+         * @return The percentile, or the default delay if there are not enough samples.
+         */
+        private long calculate() {
+            final long[] sorted;
+            synchronized (this) {
+                if (count < minSamples) {
+                    return defaultDelay;
+                }
+                sorted = Arrays.copyOf(samples, count);
+            }
+            Arrays.sort(sorted);
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+        }
+    }
+
+    /**
+     * The hedging metrics of an operation.
+     */
+    private static final class OperationMetrics {
+
+        /**
+         * Counts the hedges sent.
+         */
+        private final Counter hedges;
+        /**
+         * Counts the hedges that answered before the first attempt.
+         */
+        private final Counter wins;
+        /**
+         * Counts the hedges that were not sent because the budget was exhausted.
+         */
+        private final Counter throttled;
+
+
+        /**
+         * Constructor.
+         *
+         * @param operation     The {@link LtiOperation}.
+         * @param window        The {@link LatencyWindow} of the operation.
+         * @param meterRegistry The {@link MeterRegistry} in which the metrics are published.
+         */
+        private OperationMetrics(
+                final LtiOperation operation,
+                final LatencyWindow window,
+                final MeterRegistry meterRegistry) {
+            final var operationName = operation.getOperationName();
+            this.hedges = Counter.builder(METRICS_PREFIX + "hedges")
+                    .description("Hedges sent for the operation")
+                    .tag(OPERATION_TAG, operationName)
+                    .register(meterRegistry);
+            this.wins = Counter.builder(METRICS_PREFIX + "wins")
+                    .description("Hedges of the operation that answered before the first attempt")
+                    .tag(OPERATION_TAG, operationName)
+                    .register(meterRegistry);
+            this.throttled = Counter.builder(METRICS_PREFIX + "throttled")
+                    .description("Hedges of the operation not sent because the hedging budget was exhausted")
+                    .tag(OPERATION_TAG, operationName)
+                    .register(meterRegistry);
+            Gauge.builder(METRICS_PREFIX + "delay", window, w -> w.delay / 1_000_000d)
+                    .description("Time after which the operation is hedged")
+                    .baseUnit("milliseconds")
+                    .tag(OPERATION_TAG, operationName)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * An attempt of a call to the LTI service, bound to the thread that performs it while the call is being sent.
+ * It records the instance to which the call is sent (once the load balancer chooses it),
+ * and it can ask the load balancer to avoid the instance of another attempt (e.g so that a hedged attempt
+ * is not sent to the same slow instance as the first one). Avoiding an instance is best effort:
+ * it is only honoured by the {@link LatencyAwareRule}, and only if there are other instances to choose from.
+ */
+final class InstanceAttempt {
+
+    /**
+     * The attempt being performed by the current thread.
+     */
+    private static final ThreadLocal<InstanceAttempt> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The attempt whose instance must be avoided, or {@code null} if there is none.
+     */
+    private final InstanceAttempt avoided;
+    /**
+     * The instance (i.e host and port) to which the call was sent, or {@code null} if it was not sent yet.
+     */
+    private volatile String instance;
+
+
+    /**
+     * Constructor.
+     *
+     * @param avoided The attempt whose instance must be avoided, or {@code null} if there is none.
+     */
+    private InstanceAttempt(final InstanceAttempt avoided) {
+        this.avoided = avoided;
+    }
+
+
+    /**
+     * Creates an attempt that can be sent to any instance.
+     *
+     * @return The created {@link InstanceAttempt}.
+     */
+    /* package */ static InstanceAttempt any() {
+        return new InstanceAttempt(null);
+    }
+
+    /**
+     * Creates an attempt that must avoid the instance of the given {@code attempt}.
+     *
+     * @param attempt The attempt whose instance must be avoided.
+     * @return The created {@link InstanceAttempt}.
+     */
+    /* package */ static InstanceAttempt avoiding(final InstanceAttempt attempt) {
+        return new InstanceAttempt(attempt);
+    }
+
+    /**
+     * @return An {@link Optional} with the attempt being performed by the current thread,
+     * or empty if the current thread is not performing an attempt.
+     */
+    /* package */ static Optional<InstanceAttempt> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    /**
+     * Performs the given {@code call} as the given {@code attempt}
+     * (i.e with the {@code attempt} bound to the current thread while the {@code call} is performed).
+     *
+     * @param attempt The {@link InstanceAttempt} (or {@code null} to perform the {@code call} outside of an attempt).
+     * @param call    The call to be performed.
+     * @param <T>     The type of the result of the {@code call}.
+     * @return The result of the {@code call}.
+     */
+    /* package */ static <T> T perform(final InstanceAttempt attempt, final Supplier<T> call) {
+        final var previous = CURRENT.get();
+        CURRENT.set(attempt);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+
+    /**
+     * Records the instance to which the call was sent.
+     *
+     * @param host The host of the instance.
+     * @param port The port of the instance.
+     */
+    /* package */ void sentTo(final String host, final int port) {
+        this.instance = host + ":" + port;
+    }
+
+    /**
+     * Indicates whether the given instance must be avoided.
+     *
+     * @param host The host of the instance.
+     * @param port The port of the instance.
+     * @return {@code true} if the instance must be avoided, or {@code false} otherwise.
+     */
+    /* package */ boolean avoids(final String host, final int port) {
+        return avoided != null && avoided.instance != null && avoided.instance.equals(host + ":" + port);
+    }
+}
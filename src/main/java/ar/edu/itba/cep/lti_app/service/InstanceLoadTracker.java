@@ -0,0 +1,349 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks the load of each instance of the LTI service (identified by host and port):
+ * a peak-sensitive, exponentially weighted moving average (EWMA) of its response time,
+ * the amount of requests in flight, and whether it is ejected because of consecutive failures.
+ * The stats of each instance are published as metrics (tagged by instance).
+ * The stats (and metrics) of instances that receive no requests for a while (e.g instances that left the cluster)
+ * are evicted, so they do not grow without bound as instances come and go.
+ */
+class InstanceLoadTracker {
+
+    /**
+     * The prefix of the names of the per-instance metrics.
+     */
+    private static final String METRICS_PREFIX = "lti-service.instances.";
+
+    /**
+     * The {@link InstanceStats}, by instance (i.e host and port).
+     */
+    private final Map<String, InstanceStats> stats;
+    /**
+     * The {@link LtiServiceConfig.Properties.LoadBalancing} used to configure the tracking.
+     */
+    private final LtiServiceConfig.Properties.LoadBalancing properties;
+    /**
+     * The {@link MeterRegistry} in which the per-instance metrics are published.
+     */
+    private final MeterRegistry meterRegistry;
+    /**
+     * The per-instance metrics, by instance (i.e host and port).
+     */
+    private final Map<String, List<Meter>> meters;
+    /**
+     * The clock with which requests are timed (with the semantics of {@link System#nanoTime()}).
+     */
+    private final LongSupplier clock;
+    /**
+     * The last time (in terms of the {@link #clock}) idle instances were evicted.
+     */
+    private final AtomicLong lastEviction;
+
+
+    /**
+     * Constructor.
+     *
+     * @param properties    The {@link LtiServiceConfig.Properties.LoadBalancing} used to configure the tracking.
+     * @param meterRegistry The {@link MeterRegistry} in which the per-instance metrics are published.
+     */
+    /* package */ InstanceLoadTracker(
+            final LtiServiceConfig.Properties.LoadBalancing properties,
+            final MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param properties    The {@link LtiServiceConfig.Properties.LoadBalancing} used to configure the tracking.
+     * @param meterRegistry The {@link MeterRegistry} in which the per-instance metrics are published.
+     * @param clock         The clock with which requests are timed (with the semantics of {@link System#nanoTime()}).
+     */
+    /* package */ InstanceLoadTracker(
+            final LtiServiceConfig.Properties.LoadBalancing properties,
+            final MeterRegistry meterRegistry,
+            final LongSupplier clock) {
+        this.stats = new ConcurrentHashMap<>();
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.meters = new ConcurrentHashMap<>();
+        this.clock = clock;
+        this.lastEviction = new AtomicLong(clock.getAsLong());
+    }
+
+
+    /**
+     * Gets the {@link InstanceStats} of the instance with the given {@code host} and {@code port}
+     * (evicting idle instances, if they were not evicted recently).
+     *
+     * @param host The host of the instance.
+     * @param port The port of the instance.
+     * @return The {@link InstanceStats} of the instance.
+     */
+    /* package */ InstanceStats stats(final String host, final int port) {
+        final var now = clock.getAsLong();
+        final var last = lastEviction.get();
+        if (now - last >= properties.getIdleEviction().toNanos() && lastEviction.compareAndSet(last, now)) {
+            evictIdle(now);
+        }
+        return stats.computeIfAbsent(host + ":" + port, this::newStats);
+    }
+
+    /**
+     * @return The instances being tracked (i.e host and port).
+     */
+    /* package */ Set<String> instances() {
+        return Set.copyOf(stats.keySet());
+    }
+
+
+    /**
+     * Evicts the {@link InstanceStats} (and removes the metrics) of the instances that have no requests in flight,
+     * and whose last request started or completed longer than the idle eviction time ago.
+     *
+     * @param now The current time (in terms of the {@link #clock}).
+     */
+    private void evictIdle(final long now) {
+        final var idleSince = now - properties.getIdleEviction().toNanos();
+        for (final var instance : stats.keySet()) {
+            // Evicted atomically, so a concurrent lookup of the instance gets either these stats or new ones.
+            stats.computeIfPresent(instance, (ignored, instanceStats) -> {
+                if (!instanceStats.isIdleSince(idleSince)) {
+                    return instanceStats;
+                }
+                meters.getOrDefault(instance, List.of()).forEach(meterRegistry::remove);
+                meters.remove(instance);
+                return null;
+            });
+        }
+    }
+
+
+    /**
+     * Creates the {@link InstanceStats} of the given {@code instance}, publishing its metrics.
+     *
+     * @param instance The instance (i.e host and port).
+     * @return The created {@link InstanceStats}.
+     */
+    private InstanceStats newStats(final String instance) {
+        final var instanceStats = new InstanceStats(
+                properties.getInitialLatency().toNanos(),
+                properties.getDecay().toNanos(),
+                properties.getFailuresToEject(),
+                properties.getEjectionDuration().toNanos(),
+                clock
+        );
+        final var latency = Gauge.builder(METRICS_PREFIX + "latency", instanceStats, s -> s.getLatency() / 1_000_000d)
+                .description("Moving average of the response time of the LTI service instance")
+                .baseUnit("milliseconds")
+                .tag("instance", instance)
+                .register(meterRegistry);
+        final var inFlight = Gauge.builder(METRICS_PREFIX + "in-flight", instanceStats, InstanceStats::getInFlight)
+                .description("Requests in flight to the LTI service instance")
+                .tag("instance", instance)
+                .register(meterRegistry);
+        final var ejected = Gauge.builder(METRICS_PREFIX + "ejected", instanceStats, s -> s.isEjected() ? 1 : 0)
+                .description("Whether the LTI service instance is ejected because of consecutive failures")
+                .tag("instance", instance)
+                .register(meterRegistry);
+        meters.put(instance, List.of(latency, inFlight, ejected));
+        return instanceStats;
+    }
+
+
+    /**
+     * The load stats of an instance of the LTI service.
+     */
+    /* package */ static final class InstanceStats {
+
+        /**
+         * The time constant of the EWMA (i.e how fast old response times are forgotten), in nanoseconds.
+         */
+        private final long decayNanos;
+        /**
+         * The amount of consecutive failures after which the instance is ejected.
+         */
+        private final int failuresToEject;
+        /**
+         * How long the instance is ejected, in nanoseconds.
+         */
+        private final long ejectionNanos;
+        /**
+         * The clock with which requests are timed (with the semantics of {@link System#nanoTime()}).
+         */
+        private final LongSupplier clock;
+        /**
+         * The amount of requests in flight.
+         */
+        private final AtomicInteger inFlight;
+        /**
+         * The EWMA of the response time, in nanoseconds.
+         */
+        private double latency;
+        /**
+         * The last time (in terms of the {@link #clock}) the {@link #latency} was updated.
+         */
+        private long lastUpdate;
+        /**
+         * The amount of consecutive failures.
+         */
+        private int consecutiveFailures;
+        /**
+         * The time (in terms of the {@link #clock}) until which the instance is ejected.
+         */
+        private long ejectedUntil;
+        /**
+         * The last time (in terms of the {@link #clock}) a request to the instance started or completed.
+         */
+        private volatile long lastActivity;
+
+
+        /**
+         * Constructor.
+         *
+         * @param initialLatency  The response time assumed until the first response is received, in nanoseconds.
+         * @param decayNanos      The time constant of the EWMA, in nanoseconds.
+         * @param failuresToEject The amount of consecutive failures after which the instance is ejected.
+         * @param ejectionNanos   How long the instance is ejected, in nanoseconds.
+         * @param clock           The clock with which requests are timed.
+         */
+        private InstanceStats(
+                final long initialLatency,
+                final long decayNanos,
+                final int failuresToEject,
+                final long ejectionNanos,
+                final LongSupplier clock) {
+            this.decayNanos = decayNanos;
+            this.failuresToEject = failuresToEject;
+            this.ejectionNanos = ejectionNanos;
+            this.clock = clock;
+            this.inFlight = new AtomicInteger();
+            this.latency = initialLatency;
+            this.lastUpdate = clock.getAsLong();
+            this.ejectedUntil = lastUpdate;
+            this.lastActivity = lastUpdate;
+        }
+
+
+        /**
+         * Records that a request to the instance started.
+         *
+         * @return The time (in terms of the {@link #clock}) the request started,
+         * to be passed to {@link #completed(long, boolean)}.
+         */
+        /* package */ long started() {
+            inFlight.incrementAndGet();
+            final var now = clock.getAsLong();
+            lastActivity = now;
+            return now;
+        }
+
+        /**
+         * Records that a request to the instance completed.
+         *
+         * @param start  The time the request started, as returned by {@link #started()}.
+         * @param failed Whether the request failed (i.e the instance could not be reached, or it answered with an error).
+         */
+        /* package */ void completed(final long start, final boolean failed) {
+            inFlight.decrementAndGet();
+            final var now = clock.getAsLong();
+            lastActivity = now;
+            final var responseTime = now - start;
+            synchronized (this) {
+                // Peak EWMA: slower responses are taken right away, faster ones are averaged in as time passes.
+                if (responseTime > latency) {
+                    latency = responseTime;
+                } else {
+                    final var weight = Math.exp(-(double) (now - lastUpdate) / decayNanos);
+                    latency = latency * weight + responseTime * (1 - weight);
+                }
+                lastUpdate = now;
+                if (!failed) {
+                    consecutiveFailures = 0;
+                } else if (++consecutiveFailures >= failuresToEject) {
+                    // Stays over the threshold, so a failure right after the ejection ends ejects it again.
+                    ejectedUntil = now + ejectionNanos;
+                }
+            }
+        }
+
+        /**
+         * Records that a request to the instance was cancelled before being answered
+         * (e.g because it timed out, or because another attempt was answered first).
+         * It is not recorded as a failure (nor as a success), as the instance might still be answering it,
+         * but as its response time is at least the elapsed time, it raises the latency if it is slower.
+         *
+         * @param start The time the request started, as returned by {@link #started()}.
+         */
+        /* package */ void cancelled(final long start) {
+            inFlight.decrementAndGet();
+            final var now = clock.getAsLong();
+            lastActivity = now;
+            final var elapsed = now - start;
+            synchronized (this) {
+                if (elapsed > latency) {
+                    latency = elapsed;
+                    lastUpdate = now;
+                }
+            }
+        }
+
+        /**
+         * Calculates the cost of sending a request to the instance:
+         * its expected response time, weighted by the requests that are already waiting for it.
+         *
+         * @return The cost.
+         */
+        /* package */ double cost() {
+            return getLatency() * (inFlight.get() + 1);
+        }
+
+        /**
+         * @return Whether the instance is ejected.
+         */
+        /* package */ synchronized boolean isEjected() {
+            return ejectedUntil - clock.getAsLong() > 0;
+        }
+
+        /**
+         * Returns the EWMA of the response time, decayed by the time elapsed since the last sample,
+         * so that instances that are not chosen (e.g after a slow response) are eventually probed again.
+         *
+         * @return The EWMA of the response time, in nanoseconds.
+         */
+        /* package */ synchronized double getLatency() {
+            return latency * Math.exp(-(double) (clock.getAsLong() - lastUpdate) / decayNanos);
+        }
+
+        /**
+         * @return The amount of requests in flight.
+         */
+        /* package */ int getInFlight() {
+            return inFlight.get();
+        }
+
+        /**
+         * Indicates whether the instance is idle (i.e it has no requests in flight,
+         * and no request to it started or completed since the given time).
+         *
+         * @param time The time (in terms of the {@link #clock}) since which the instance must be idle.
+         * @return Whether the instance is idle since the given time.
+         */
+        /* package */ boolean isIdleSince(final long time) {
+            return inFlight.get() == 0 && lastActivity - time < 0;
+        }
+    }
+}
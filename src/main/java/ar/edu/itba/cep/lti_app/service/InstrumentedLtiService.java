@@ -0,0 +1,168 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.codec.CodecException;
+import org.springframework.http.converter.HttpMessageConversionException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * An {@link InterceptingLtiService} that measures the latency of each operation,
+ * tagging it with the operation's outcome
+ * (i.e success, rejected, timeout, HTTP status class, mapping failure or error).
+ * This is the only place in which the outcomes of the operations are classified.
+ */
+class InstrumentedLtiService extends InterceptingLtiService {
+
+    /**
+     * The name of the timer that measures operations.
+     */
+    private static final String TIMER_NAME = "lti-service.requests";
+    /**
+     * The name of the tag that holds the operation name.
+     */
+    private static final String OPERATION_TAG = "operation";
+    /**
+     * The name of the tag that holds the operation's outcome.
+     */
+    private static final String OUTCOME_TAG = "outcome";
+
+    // ===========================================================================
+    // Outcomes
+    // ===========================================================================
+
+    private static final String SUCCESS_OUTCOME = "success";
+    private static final String REJECTED_OUTCOME = "rejected";
+    private static final String TIMEOUT_OUTCOME = "timeout";
+    private static final String MAPPING_FAILURE_OUTCOME = "mapping_failure";
+    private static final String ERROR_OUTCOME = "error";
+
+    // ===========================================================================
+    // Needed stuff
+    // ===========================================================================
+
+    /**
+     * The {@link MeterRegistry} in which the timers are registered.
+     */
+    private final MeterRegistry meterRegistry;
+    /**
+     * The {@link LtiServiceConfig.Properties.Metrics} used to configure the timers.
+     */
+    private final LtiServiceConfig.Properties.Metrics properties;
+    /**
+     * Already registered {@link Timer}s, by operation and outcome.
+     */
+    private final Map<LtiOperation, Map<String, Timer>> timers;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate      The {@link AsyncLtiService} to which operations are delegated.
+     * @param meterRegistry The {@link MeterRegistry} in which the timers are registered.
+     * @param properties    The {@link LtiServiceConfig.Properties.Metrics} used to configure the timers.
+     */
+    /* package */ InstrumentedLtiService(
+            final AsyncLtiService delegate,
+            final MeterRegistry meterRegistry,
+            final LtiServiceConfig.Properties.Metrics properties) {
+        super(delegate);
+        this.meterRegistry = meterRegistry;
+        this.properties = properties;
+        this.timers = new EnumMap<>(LtiOperation.class);
+        for (final var operation : LtiOperation.values()) {
+            final Map<String, Timer> operationTimers = new ConcurrentHashMap<>();
+            operationTimers.put(SUCCESS_OUTCOME, buildTimer(operation, SUCCESS_OUTCOME));
+            this.timers.put(operation, operationTimers);
+        }
+    }
+
+
+    @Override
+    protected <T> CompletableFuture<T> intercept(
+            final LtiOperation operation,
+            final Supplier<CompletableFuture<T>> invocation) {
+        final var start = System.nanoTime();
+        return invoke(invocation).whenComplete((result, throwable) -> {
+            final var outcome = throwable == null ? SUCCESS_OUTCOME : outcome(throwable);
+            timers.get(operation)
+                    .computeIfAbsent(outcome, o -> buildTimer(operation, o))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        });
+    }
+
+
+    /**
+     * Builds (and registers) the {@link Timer} for the given {@code operation} and {@code outcome}.
+     *
+     * @param operation The {@link LtiOperation} measured by the {@link Timer}.
+     * @param outcome   The outcome measured by the {@link Timer}.
+     * @return The {@link Timer}.
+     */
+    private Timer buildTimer(final LtiOperation operation, final String outcome) {
+        return Timer.builder(TIMER_NAME)
+                .description("Latency of the operations performed against the LTI service")
+                .tag(OPERATION_TAG, operation.getOperationName())
+                .tag(OUTCOME_TAG, outcome)
+                .publishPercentileHistogram(properties.isPercentileHistogram())
+                .publishPercentiles(properties.getPercentiles().stream().mapToDouble(Double::doubleValue).toArray())
+                .sla(properties.getSlo().toArray(Duration[]::new))
+                .register(meterRegistry);
+    }
+
+    /**
+     * Classifies the given {@code throwable} into an outcome, inspecting its causes.
+     *
+     * @param throwable The {@link Throwable} with which an operation failed.
+     * @return The outcome.
+     */
+    private static String outcome(final Throwable throwable) {
+        for (var cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CallNotPermittedException
+                    || cause instanceof BulkheadFullException
+                    || cause instanceof RejectedExecutionException) {
+                return REJECTED_OUTCOME;
+            }
+            if (cause instanceof InterruptedIOException || cause instanceof TimeoutException) {
+                return TIMEOUT_OUTCOME;
+            }
+            if (cause instanceof RestClientResponseException) {
+                return statusClass(((RestClientResponseException) cause).getRawStatusCode());
+            }
+            if (cause instanceof WebClientResponseException) {
+                return statusClass(((WebClientResponseException) cause).getRawStatusCode());
+            }
+            if (cause instanceof HttpMessageConversionException
+                    || cause instanceof CodecException
+                    || cause instanceof NoSuchElementException) {
+                return MAPPING_FAILURE_OUTCOME;
+            }
+        }
+        return ERROR_OUTCOME;
+    }
+
+    /**
+     * Builds the outcome for the given HTTP status code (e.g {@code http_5xx}).
+     *
+     * @param statusCode The HTTP status code.
+     * @return The outcome.
+     */
+    private static String statusClass(final int statusCode) {
+        return "http_" + (statusCode / 100) + "xx";
+    }
+}
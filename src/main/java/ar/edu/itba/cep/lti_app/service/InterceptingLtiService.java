@@ -0,0 +1,80 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import ar.edu.itba.cep.lti.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Base class for {@link AsyncLtiService} decorators that perform the same action around each operation,
+ * which is then delegated into another {@link AsyncLtiService}.
+ */
+abstract class InterceptingLtiService implements AsyncLtiService {
+
+    /**
+     * The {@link AsyncLtiService} to which operations are delegated.
+     */
+    private final AsyncLtiService delegate;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate The {@link AsyncLtiService} to which operations are delegated.
+     */
+    /* package */ InterceptingLtiService(final AsyncLtiService delegate) {
+        this.delegate = delegate;
+    }
+
+
+    @Override
+    public CompletableFuture<AuthenticationRequest> loginInitiation(final LoginInitiationRequest loginInitiationRequest) {
+        return intercept(LtiOperation.LOGIN_INITIATION, () -> delegate.loginInitiation(loginInitiationRequest));
+    }
+
+    @Override
+    public CompletableFuture<ExamSelectionResponse> examSelection(final AuthenticationResponse authenticationResponse) {
+        return intercept(LtiOperation.EXAM_SELECTION, () -> delegate.examSelection(authenticationResponse));
+    }
+
+    @Override
+    public CompletableFuture<ExamSelectedResponse> examSelected(final ExamSelectedRequest examSelectedRequest) {
+        return intercept(LtiOperation.EXAM_SELECTED, () -> delegate.examSelected(examSelectedRequest));
+    }
+
+    @Override
+    public CompletableFuture<ExamTakingResponse> takeExam(final AuthenticationResponse authenticationResponse) {
+        return intercept(LtiOperation.TAKE_EXAM, () -> delegate.takeExam(authenticationResponse));
+    }
+
+
+    /**
+     * Intercepts the given {@code invocation} of an {@code operation}.
+     *
+     * @param operation  The {@link LtiOperation} being invoked.
+     * @param invocation A {@link Supplier} that invokes the {@code operation} in the delegate
+     *                   (can be called more than once to perform the operation again).
+     * @param <T>        The concrete type of the operation's result.
+     * @return A {@link CompletableFuture} with the operation's result.
+     */
+    protected abstract <T> CompletableFuture<T> intercept(
+            final LtiOperation operation,
+            final Supplier<CompletableFuture<T>> invocation);
+
+
+    /**
+     * Invokes the given {@code invocation}, transforming any exception thrown synchronously
+     * into an exceptionally completed {@link CompletableFuture}.
+     *
+     * @param invocation The invocation to be performed.
+     * @param <T>        The concrete type of the operation's result.
+     * @return The {@link CompletableFuture} returned by the {@code invocation}.
+     */
+    protected static <T> CompletableFuture<T> invoke(final Supplier<CompletableFuture<T>> invocation) {
+        try {
+            return invocation.get();
+        } catch (final Throwable e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
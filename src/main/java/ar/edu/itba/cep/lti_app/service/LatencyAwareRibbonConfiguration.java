@@ -0,0 +1,24 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import com.netflix.loadbalancer.IRule;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Ribbon client configuration that makes the client choose instances with the {@link LatencyAwareRule}.
+ * It is not annotated with {@link org.springframework.context.annotation.Configuration},
+ * as it must only be registered in the Ribbon client contexts (not in the application context).
+ */
+class LatencyAwareRibbonConfiguration {
+
+    /**
+     * The {@link IRule} used to choose instances.
+     *
+     * @param loadTracker The {@link InstanceLoadTracker} (from the application context) that keeps the load
+     *                    of each instance.
+     * @return The created {@link IRule}.
+     */
+    @Bean
+    public IRule ribbonRule(final InstanceLoadTracker loadTracker) {
+        return new LatencyAwareRule(loadTracker);
+    }
+}
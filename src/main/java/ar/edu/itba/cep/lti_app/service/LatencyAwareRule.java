@@ -0,0 +1,94 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import com.netflix.client.config.IClientConfig;
+import com.netflix.loadbalancer.AbstractLoadBalancerRule;
+import com.netflix.loadbalancer.Server;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * A Ribbon rule that chooses among the reachable instances of the LTI service using the power of two choices:
+ * two instances are picked at random, and the one with the lower cost (according to the {@link InstanceLoadTracker})
+ * is chosen, so that slow or overloaded instances get less requests, without all the instances flocking to the
+ * fastest one. Ejected instances are not chosen, unless all of them are ejected.
+ * The instance that the current {@link InstanceAttempt} must avoid (e.g the one that is slowly answering
+ * the attempt being hedged) is not chosen either, unless it is the only candidate.
+ */
+class LatencyAwareRule extends AbstractLoadBalancerRule {
+
+    /**
+     * The {@link InstanceLoadTracker} that keeps the load of each instance.
+     */
+    private final InstanceLoadTracker loadTracker;
+
+
+    /**
+     * Constructor.
+     *
+     * @param loadTracker The {@link InstanceLoadTracker} that keeps the load of each instance.
+     */
+    /* package */ LatencyAwareRule(final InstanceLoadTracker loadTracker) {
+        this.loadTracker = loadTracker;
+    }
+
+
+    @Override
+    public void initWithNiwsConfig(final IClientConfig clientConfig) {
+        // Configured through the lti-service properties.
+    }
+
+    @Override
+    public Server choose(final Object key) {
+        final var loadBalancer = getLoadBalancer();
+        if (loadBalancer == null) {
+            return null;
+        }
+        final var candidates = candidates(loadBalancer.getReachableServers());
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        final var random = ThreadLocalRandom.current();
+        final var first = random.nextInt(candidates.size());
+        final var second = (first + 1 + random.nextInt(candidates.size() - 1)) % candidates.size();
+        final var firstServer = candidates.get(first);
+        final var secondServer = candidates.get(second);
+        return cost(firstServer) <= cost(secondServer) ? firstServer : secondServer;
+    }
+
+
+    /**
+     * Filters out the ejected {@code servers}, unless all of them are ejected
+     * (in which case they are all kept, as a possibly failing instance is better than no instance),
+     * and then the one avoided by the current {@link InstanceAttempt}, unless it is the only one left.
+     *
+     * @param servers The reachable servers.
+     * @return The servers that can be chosen.
+     */
+    private List<Server> candidates(final List<Server> servers) {
+        final var notEjected = servers.stream()
+                .filter(server -> !loadTracker.stats(server.getHost(), server.getPort()).isEjected())
+                .collect(Collectors.toList());
+        final var candidates = notEjected.isEmpty() ? servers : notEjected;
+        return InstanceAttempt.current()
+                .map(attempt -> candidates.stream()
+                        .filter(server -> !attempt.avoids(server.getHost(), server.getPort()))
+                        .collect(Collectors.toList()))
+                .filter(notAvoided -> !notAvoided.isEmpty())
+                .orElse(candidates);
+    }
+
+    /**
+     * Calculates the cost of sending a request to the given {@code server}.
+     *
+     * @param server The server.
+     * @return The cost.
+     */
+    private double cost(final Server server) {
+        return loadTracker.stats(server.getHost(), server.getPort()).cost();
+    }
+}
@@ -0,0 +1,125 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.AbstractClientHttpRequestFactoryWrapper;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+
+/**
+ * A {@link ClientHttpRequestFactory} that records, in an {@link InstanceLoadTracker},
+ * the requests performed to each instance of the LTI service.
+ * It wraps the factory used by the load balanced {@link org.springframework.web.client.RestTemplate},
+ * so requests are seen once the load balancer has resolved the service name into an instance.
+ * Requests that can not be performed, or that are answered with a server error, are recorded as failures.
+ * The instance is also recorded in the {@link InstanceAttempt} being performed (if any).
+ */
+class LoadTrackingClientHttpRequestFactory extends AbstractClientHttpRequestFactoryWrapper {
+
+    /**
+     * The {@link InstanceLoadTracker} in which requests are recorded.
+     */
+    private final InstanceLoadTracker loadTracker;
+
+
+    /**
+     * Constructor.
+     *
+     * @param requestFactory The {@link ClientHttpRequestFactory} that actually creates the requests.
+     * @param loadTracker    The {@link InstanceLoadTracker} in which requests are recorded.
+     */
+    /* package */ LoadTrackingClientHttpRequestFactory(
+            final ClientHttpRequestFactory requestFactory,
+            final InstanceLoadTracker loadTracker) {
+        super(requestFactory);
+        this.loadTracker = loadTracker;
+    }
+
+
+    @Override
+    protected ClientHttpRequest createRequest(
+            final URI uri,
+            final HttpMethod httpMethod,
+            final ClientHttpRequestFactory requestFactory) throws IOException {
+        InstanceAttempt.current().ifPresent(attempt -> attempt.sentTo(uri.getHost(), uri.getPort()));
+        return new LoadTrackingClientHttpRequest(
+                requestFactory.createRequest(uri, httpMethod),
+                loadTracker.stats(uri.getHost(), uri.getPort())
+        );
+    }
+
+
+    /**
+     * A {@link ClientHttpRequest} that records its execution in the {@link InstanceLoadTracker.InstanceStats}
+     * of the instance to which it is sent.
+     */
+    private static final class LoadTrackingClientHttpRequest implements ClientHttpRequest {
+
+        /**
+         * The {@link ClientHttpRequest} that is actually executed.
+         */
+        private final ClientHttpRequest request;
+        /**
+         * The {@link InstanceLoadTracker.InstanceStats} of the instance to which the request is sent.
+         */
+        private final InstanceLoadTracker.InstanceStats stats;
+
+
+        /**
+         * Constructor.
+         *
+         * @param request The {@link ClientHttpRequest} that is actually executed.
+         * @param stats   The {@link InstanceLoadTracker.InstanceStats} of the instance to which the request is sent.
+         */
+        private LoadTrackingClientHttpRequest(
+                final ClientHttpRequest request,
+                final InstanceLoadTracker.InstanceStats stats) {
+            this.request = request;
+            this.stats = stats;
+        }
+
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            final var start = stats.started();
+            var failed = true;
+            try {
+                final var response = request.execute();
+                failed = response.getRawStatusCode() >= 500;
+                return response;
+            } finally {
+                stats.completed(start, failed);
+            }
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return request.getBody();
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public String getMethodValue() {
+            return request.getMethodValue();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+    }
+}
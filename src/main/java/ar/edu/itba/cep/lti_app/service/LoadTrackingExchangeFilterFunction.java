@@ -0,0 +1,65 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An {@link ExchangeFilterFunction} that records, in an {@link InstanceLoadTracker},
+ * the requests performed to each instance of the LTI service.
+ * It must be added after the load balancer filter, so requests are seen once the service name
+ * has been resolved into an instance.
+ * Requests that can not be performed, or that are answered with a server error, are recorded as failures.
+ * Requests cancelled before being answered (e.g hedged attempts that lost the race) are not recorded as failures,
+ * as the instance might still be answering them: they only count towards its latency and requests in flight.
+ * The instance is also recorded in the {@link InstanceAttempt} being performed (if any) by the subscribing thread.
+ */
+class LoadTrackingExchangeFilterFunction implements ExchangeFilterFunction {
+
+    /**
+     * The {@link InstanceLoadTracker} in which requests are recorded.
+     */
+    private final InstanceLoadTracker loadTracker;
+
+
+    /**
+     * Constructor.
+     *
+     * @param loadTracker The {@link InstanceLoadTracker} in which requests are recorded.
+     */
+    /* package */ LoadTrackingExchangeFilterFunction(final InstanceLoadTracker loadTracker) {
+        this.loadTracker = loadTracker;
+    }
+
+
+    @Override
+    public Mono<ClientResponse> filter(final ClientRequest request, final ExchangeFunction next) {
+        return Mono.defer(() -> {
+            InstanceAttempt.current()
+                    .ifPresent(attempt -> attempt.sentTo(request.url().getHost(), request.url().getPort()));
+            final var stats = loadTracker.stats(request.url().getHost(), request.url().getPort());
+            final var start = stats.started();
+            final var recorded = new AtomicBoolean(); // Exactly one of the completion signals must be recorded.
+            return next.exchange(request)
+                    .doOnSuccess(response -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            stats.completed(start, response == null || response.rawStatusCode() >= 500);
+                        }
+                    })
+                    .doOnError(throwable -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            stats.completed(start, true);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            stats.cancelled(start);
+                        }
+                    });
+        });
+    }
+}
@@ -0,0 +1,170 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * A call to the LTI service (including all of its attempts), bound to the thread that performs it
+ * while it is being sent. It holds the timeouts to be applied by the client when sending it,
+ * and the actions that cancel it in the client (e.g aborting the HTTP request),
+ * which are performed when the call is aborted (because its deadline expired, or the client went away).
+ */
+final class LtiCall {
+
+    /**
+     * The name of the header that propagates the time left until the deadline of the call (in milliseconds)
+     * to the LTI service, so it can give up on calls nobody will wait for.
+     */
+    /* package */ static final String DEADLINE_HEADER = "X-Request-Timeout-Ms";
+
+    /**
+     * The call being performed by the current thread.
+     */
+    private static final ThreadLocal<LtiCall> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The deadline of the call, in terms of {@link System#nanoTime()}.
+     */
+    private final long deadline;
+    /**
+     * The max. time to establish a connection with the LTI service.
+     */
+    private final Duration connectTimeout;
+    /**
+     * The max. time to wait for data from the LTI service.
+     */
+    private final Duration readTimeout;
+    /**
+     * The actions that cancel the call in the client.
+     */
+    private final List<Runnable> cancellations;
+    /**
+     * Whether the call was aborted.
+     */
+    private boolean aborted;
+
+
+    /**
+     * Constructor.
+     *
+     * @param deadline       The deadline of the call.
+     * @param connectTimeout The max. time to establish a connection with the LTI service.
+     * @param readTimeout    The max. time to wait for data from the LTI service.
+     */
+    /* package */ LtiCall(final RequestDeadline deadline, final Duration connectTimeout, final Duration readTimeout) {
+        this.deadline = System.nanoTime() + deadline.remaining().toNanos();
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.cancellations = new ArrayList<>();
+        this.aborted = false;
+    }
+
+
+    /**
+     * @return An {@link Optional} with the call being performed by the current thread,
+     * or empty if the current thread is not performing a call.
+     */
+    /* package */ static Optional<LtiCall> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    /**
+     * Performs the given {@code invocation} as part of the given {@code call}
+     * (i.e with the {@code call} bound to the current thread while the {@code invocation} is performed).
+     *
+     * @param call       The {@link LtiCall} (or {@code null} to perform the {@code invocation} outside of a call).
+     * @param invocation The invocation to be performed.
+     * @param <T>        The type of the result of the {@code invocation}.
+     * @return The result of the {@code invocation}.
+     */
+    /* package */ static <T> T perform(final LtiCall call, final Supplier<T> invocation) {
+        final var previous = CURRENT.get();
+        CURRENT.set(call);
+        try {
+            return invocation.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+
+    /**
+     * @return The time left until the deadline of the call (negative if it already expired).
+     */
+    /* package */ Duration remaining() {
+        return Duration.ofNanos(deadline - System.nanoTime());
+    }
+
+    /**
+     * @return The max. time to establish a connection with the LTI service (bounded by the time left).
+     */
+    /* package */ Duration connectTimeout() {
+        return bound(connectTimeout);
+    }
+
+    /**
+     * @return The max. time to wait for data from the LTI service (bounded by the time left).
+     */
+    /* package */ Duration readTimeout() {
+        return bound(readTimeout);
+    }
+
+    /**
+     * Bounds the given {@code timeout} by the time left until the deadline of the call
+     * (but never less than a millisecond, as clients take a zero timeout as no timeout at all).
+     *
+     * @param timeout The timeout to be bounded.
+     * @return The bounded timeout.
+     */
+    /* package */ Duration bound(final Duration timeout) {
+        final var remaining = remaining();
+        final var min = timeout.compareTo(remaining) <= 0 ? timeout : remaining;
+        return min.toMillis() < 1 ? Duration.ofMillis(1) : min;
+    }
+
+    /**
+     * Registers an action that cancels the call in the client.
+     * If the call was already aborted (or its deadline expired), the action is performed right away.
+     *
+     * @param cancellation The action that cancels the call.
+     */
+    /* package */ void onAbort(final Runnable cancellation) {
+        synchronized (this) {
+            if (!aborted && !remaining().isNegative()) {
+                cancellations.add(cancellation);
+                return;
+            }
+        }
+        cancellation.run();
+    }
+
+    /**
+     * @return Whether the call was aborted.
+     */
+    /* package */ synchronized boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * Aborts the call, cancelling it in the client.
+     */
+    /* package */ void abort() {
+        final List<Runnable> actions;
+        synchronized (this) {
+            if (aborted) {
+                return;
+            }
+            aborted = true;
+            actions = List.copyOf(cancellations);
+            cancellations.clear();
+        }
+        actions.forEach(Runnable::run);
+    }
+}
@@ -0,0 +1,34 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Enum containing the operations that can be performed against the LTI service.
+ */
+@Getter
+@AllArgsConstructor
+enum LtiOperation {
+    /**
+     * The login initiation operation.
+     */
+    LOGIN_INITIATION("loginInitiation"),
+    /**
+     * The exam selection operation.
+     */
+    EXAM_SELECTION("examSelection"),
+    /**
+     * The exam selected operation.
+     */
+    EXAM_SELECTED("examSelected"),
+    /**
+     * The exam taking operation.
+     */
+    TAKE_EXAM("takeExam"),
+    ;
+
+    /**
+     * The name of the operation (used, for example, as a metric tag or as a configuration key).
+     */
+    private final String operationName;
+}
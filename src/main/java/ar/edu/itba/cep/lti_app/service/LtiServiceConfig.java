@@ -1,13 +1,39 @@
 package ar.edu.itba.cep.lti_app.service;
 
+import ar.edu.itba.cep.lti_app.warm_up.WarmUpRequests;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Data;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.cloud.client.loadbalancer.reactive.LoadBalancerExchangeFilterFunction;
+import org.springframework.cloud.netflix.ribbon.RibbonClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Configuration class for the LTI Service integration.
@@ -17,15 +43,357 @@ import org.springframework.web.client.RestTemplate;
 class LtiServiceConfig {
 
     /**
-     * A load balanced {@link RestTemplate}.
+     * Value of the {@code lti-service.client} property that selects the {@link RestTemplate} based client.
+     */
+    private static final String REST_TEMPLATE_CLIENT = "rest-template";
+    /**
+     * Value of the {@code lti-service.client} property that selects the {@link WebClient} based client.
+     */
+    private static final String WEB_CLIENT_CLIENT = "web-client";
+    /**
+     * Qualifier of the {@link AsyncLtiService} that actually communicates with the LTI service
+     * (i.e the one that is decorated by the {@link LtiServiceDecorator}s).
+     */
+    private static final String CLIENT_QUALIFIER = "ltiServiceClient";
+
+    // ===========================================================================
+    // Decorators order (the lower the value, the outermost the decorator)
+    // ===========================================================================
+
+    private static final int WARM_UP_ORDER = 25;
+    private static final int CACHING_ORDER = 50;
+    private static final int INSTRUMENTATION_ORDER = 100;
+    private static final int DEADLINE_ORDER = 150;
+    private static final int RETRY_ORDER = 175;
+    private static final int RESILIENCE_ORDER = 200;
+    private static final int HEDGING_ORDER = 250;
+    private static final int CONCURRENCY_LIMIT_ORDER = 300;
+
+
+    /**
+     * A {@link PooledClientHttpRequestFactory} to be used by the {@link RestTemplate}.
+     *
+     * @param properties    The {@link Properties} used to configure the pool and the client.
+     * @param meterRegistry The {@link MeterRegistry} in which the pool metrics are published.
+     * @return The created {@link PooledClientHttpRequestFactory}.
+     */
+    @Bean
+    public PooledClientHttpRequestFactory pooledClientHttpRequestFactory(
+            final Properties properties,
+            final MeterRegistry meterRegistry) {
+        return new PooledClientHttpRequestFactory(properties.getHttp(), meterRegistry);
+    }
+
+    /**
+     * A {@link WireEncoding} that chooses the encoding of the bodies exchanged with the LTI service.
+     *
+     * @param properties    The {@link Properties} used to configure the encoding.
+     * @param meterRegistry The {@link MeterRegistry} in which the fallbacks to JSON are counted.
+     * @return The created {@link WireEncoding}.
+     */
+    @Bean
+    public WireEncoding wireEncoding(final Properties properties, final MeterRegistry meterRegistry) {
+        return new WireEncoding(properties.getEncoding(), meterRegistry);
+    }
+
+    /**
+     * An {@link InstanceLoadTracker} that keeps the load of each instance of the LTI service
+     * (used to choose the instance to which each request is sent).
+     *
+     * @param properties    The {@link Properties} used to configure the tracking.
+     * @param meterRegistry The {@link MeterRegistry} in which the per-instance metrics are published.
+     * @return The created {@link InstanceLoadTracker}.
+     */
+    @Bean
+    public InstanceLoadTracker instanceLoadTracker(final Properties properties, final MeterRegistry meterRegistry) {
+        return new InstanceLoadTracker(properties.getLoadBalancing(), meterRegistry);
+    }
+
+    /**
+     * A load balanced {@link RestTemplate}, whose requests are recorded in the {@link InstanceLoadTracker}.
      *
      * @param restTemplateBuilder The {@link RestTemplateBuilder} used to create the {@link RestTemplate} instance.
+     * @param requestFactory      The {@link PooledClientHttpRequestFactory} used by the {@link RestTemplate}.
+     * @param loadTracker         The {@link InstanceLoadTracker} in which requests are recorded.
      * @return The created {@link RestTemplate}.
      */
     @Bean
     @LoadBalanced
-    public RestTemplate restTemplate(final RestTemplateBuilder restTemplateBuilder) {
-        return restTemplateBuilder.build();
+    public RestTemplate restTemplate(
+            final RestTemplateBuilder restTemplateBuilder,
+            final PooledClientHttpRequestFactory requestFactory,
+            final InstanceLoadTracker loadTracker) {
+        return restTemplateBuilder
+                .requestFactory(() -> new LoadTrackingClientHttpRequestFactory(requestFactory, loadTracker))
+                .build();
+    }
+
+    /**
+     * A load balanced {@link WebClient.Builder}, customized with the {@link WebClientCustomizer}s
+     * in the application context (e.g to use the same codecs as the rest of the application).
+     * The {@link LoadBalancerExchangeFilterFunction} is added here (instead of using {@link LoadBalanced}),
+     * as {@link LoadBalanced} builders are only customized after all singletons are created,
+     * which is too late for the {@link WebClientLtiService}, that builds its {@link WebClient} on creation.
+     * Requests are recorded in the {@link InstanceLoadTracker} once the service name is resolved.
+     *
+     * @param customizers                The {@link WebClientCustomizer}s to be applied.
+     * @param loadBalancerFilterFunction The {@link LoadBalancerExchangeFilterFunction} that resolves service names.
+     * @param loadTracker                The {@link InstanceLoadTracker} in which requests are recorded.
+     * @return The created {@link WebClient.Builder}.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "lti-service", name = "client", havingValue = WEB_CLIENT_CLIENT)
+    public WebClient.Builder loadBalancedWebClientBuilder(
+            final ObjectProvider<WebClientCustomizer> customizers,
+            final LoadBalancerExchangeFilterFunction loadBalancerFilterFunction,
+            final InstanceLoadTracker loadTracker) {
+        final var builder = WebClient.builder();
+        customizers.orderedStream().forEach(customizer -> customizer.customize(builder));
+        return builder
+                .filter(loadBalancerFilterFunction)
+                .filter(new LoadTrackingExchangeFilterFunction(loadTracker)); // Inner, so it sees the instance.
+    }
+
+    /**
+     * An {@link AsyncLtiService} that executes the blocking {@link LtiService} in a bounded pool of threads.
+     * This is the default client.
+     *
+     * @param ltiService  The blocking {@link LtiService} to be adapted.
+     * @param properties  The {@link Properties} used to configure the adapter.
+     * @param beanFactory The {@link BeanFactory} used to lazily look up tracing components.
+     * @return The created {@link AsyncLtiService}.
+     */
+    @Bean
+    @Qualifier(CLIENT_QUALIFIER)
+    @ConditionalOnProperty(
+            prefix = "lti-service",
+            name = "client",
+            havingValue = REST_TEMPLATE_CLIENT,
+            matchIfMissing = true
+    )
+    public AsyncLtiService blockingLtiServiceAdapter(
+            final LtiService ltiService,
+            final Properties properties,
+            final BeanFactory beanFactory) {
+        return new BlockingLtiServiceAdapter(ltiService, properties, beanFactory);
+    }
+
+    /**
+     * An {@link AsyncLtiService} that uses a non-blocking {@link WebClient} to communicate with the LTI service.
+     *
+     * @param webClientBuilder The load balanced {@link WebClient.Builder} used to create the {@link WebClient}.
+     * @param wireEncoding     The {@link WireEncoding} that chooses the encoding of the requests and responses.
+     * @param properties       The {@link Properties} used to configure the service.
+     * @return The created {@link AsyncLtiService}.
+     */
+    @Bean
+    @Qualifier(CLIENT_QUALIFIER)
+    @ConditionalOnProperty(prefix = "lti-service", name = "client", havingValue = WEB_CLIENT_CLIENT)
+    public AsyncLtiService webClientLtiService(
+            final WebClient.Builder webClientBuilder,
+            final WireEncoding wireEncoding,
+            final Properties properties) {
+        return new WebClientLtiService(webClientBuilder.build(), wireEncoding, properties);
+    }
+
+    /**
+     * The {@link AsyncLtiService} to be used by the rest of the application:
+     * the selected client, decorated with all the {@link LtiServiceDecorator}s.
+     *
+     * @param client     The {@link AsyncLtiService} that actually communicates with the LTI service.
+     * @param decorators The {@link LtiServiceDecorator}s to be applied.
+     * @return The decorated {@link AsyncLtiService}.
+     */
+    @Bean
+    @Primary
+    public AsyncLtiService ltiService(
+            @Qualifier(CLIENT_QUALIFIER) final AsyncLtiService client,
+            final ObjectProvider<LtiServiceDecorator> decorators) {
+        final List<LtiServiceDecorator> ordered = decorators.orderedStream()
+                .collect(Collectors.toCollection(ArrayList::new));
+        Collections.reverse(ordered); // The innermost decorator must be applied first.
+        var ltiService = client;
+        for (final var decorator : ordered) {
+            ltiService = decorator.decorate(ltiService);
+        }
+        return ltiService;
+    }
+
+    /**
+     * An {@link LtiServiceDecorator} that sends the operations performed by warm-up requests to the stub of the LTI
+     * service served by this application (only if {@code lti-app.warm-up.enabled} is not {@code false}).
+     * It is the outermost decorator, so that it decides in the thread of the request, and so that the synthetic calls
+     * are neither measured as calls to the LTI service, nor affect its circuit breakers and concurrency limits.
+     * The stub is reached through a {@link RestTemplate} that is not load balanced, but uses the same pooled client.
+     *
+     * @param restTemplateBuilder The {@link RestTemplateBuilder} used to create the stub's {@link RestTemplate}.
+     * @param requestFactory      The {@link PooledClientHttpRequestFactory} used by the stub's {@link RestTemplate}.
+     * @param wireEncoding        The {@link WireEncoding} that chooses the encoding of the requests and responses.
+     * @param environment         The {@link Environment} from where the port and the context path are taken.
+     * @return The created {@link LtiServiceDecorator}.
+     */
+    @Bean
+    @Order(WARM_UP_ORDER)
+    @ConditionalOnProperty(prefix = "lti-app.warm-up", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public LtiServiceDecorator warmUpDecorator(
+            final RestTemplateBuilder restTemplateBuilder,
+            final PooledClientHttpRequestFactory requestFactory,
+            final WireEncoding wireEncoding,
+            final Environment environment) {
+        return ltiService -> new WarmUpLtiService(ltiService, () -> {
+            final var restTemplate = restTemplateBuilder
+                    .requestFactory(() -> requestFactory)
+                    .additionalInterceptors((request, body, execution) -> {
+                        WarmUpRequests.mark(request.getHeaders());
+                        return execution.execute(request, body);
+                    })
+                    .build();
+            final var properties = new Properties();
+            properties.setBaseUrl(UriComponentsBuilder.newInstance()
+                    .scheme("http")
+                    .host("localhost")
+                    .port(environment.getRequiredProperty("local.server.port"))
+                    .path(environment.getProperty("server.servlet.context-path", ""))
+                    .path(WarmUpRequests.STUB_PATH)
+                    .toUriString());
+            return new RestTemplateLtiService(restTemplate, wireEncoding, properties);
+        });
+    }
+
+    /**
+     * An {@link LtiServiceDecorator} that caches the negative results of the "exam selected" operation.
+     * It is outside the instrumentation, so that cache hits are not measured as calls to the LTI service.
+     *
+     * @param meterRegistry The {@link MeterRegistry} in which the cache metrics are published.
+     * @param properties    The {@link Properties} used to configure the cache.
+     * @return The created {@link LtiServiceDecorator}.
+     */
+    @Bean
+    @Order(CACHING_ORDER)
+    public LtiServiceDecorator examSelectedCachingDecorator(
+            final MeterRegistry meterRegistry,
+            final Properties properties) {
+        return ltiService -> new ExamSelectedCachingLtiService(
+                ltiService,
+                meterRegistry,
+                properties.getExamSelectedCache()
+        );
+    }
+
+    /**
+     * An {@link LtiServiceDecorator} that measures each operation.
+     *
+     * @param meterRegistry The {@link MeterRegistry} in which the metrics are published.
+     * @param properties    The {@link Properties} used to configure the metrics.
+     * @return The created {@link LtiServiceDecorator}.
+     */
+    @Bean
+    @Order(INSTRUMENTATION_ORDER)
+    public LtiServiceDecorator instrumentationDecorator(final MeterRegistry meterRegistry, final Properties properties) {
+        return ltiService -> new InstrumentedLtiService(ltiService, meterRegistry, properties.getMetrics());
+    }
+
+    /**
+     * An {@link LtiServiceDecorator} that bounds each operation by the deadline of the request that performs it.
+     * It is placed inside the instrumentation, so that expired and aborted operations are measured as failures,
+     * and outside the rest of the decorators, so that the deadline bounds all of the attempts of an operation.
+     *
+     * @param meterRegistry The {@link MeterRegistry} in which the deadline metrics are published.
+     * @param properties    The {@link Properties} used to configure the deadline and the timeouts.
+     * @return The created {@link LtiServiceDecorator}.
+     */
+    @Bean
+    @Order(DEADLINE_ORDER)
+    public LtiServiceDecorator deadlineDecorator(final MeterRegistry meterRegistry, final Properties properties) {
+        return ltiService -> new DeadlineLtiService(ltiService, meterRegistry, properties);
+    }
+
+    /**
+     * An {@link LtiServiceDecorator} that retries the operations that are safe to repeat after a transient failure.
+     * It is placed inside the deadline, so that retries never outlive it,
+     * and outside the circuit breaker, so that retries are not performed while it is open.
+     *
+     * @param meterRegistry The {@link MeterRegistry} in which the retry metrics are published.
+     * @param properties    The {@link Properties} used to configure the retries.
+     * @param beanFactory   The {@link BeanFactory} used to lazily look up tracing components.
+     * @return The created {@link LtiServiceDecorator}.
+     */
+    @Bean
+    @Order(RETRY_ORDER)
+    public LtiServiceDecorator retryDecorator(
+            final MeterRegistry meterRegistry,
+            final Properties properties,
+            final BeanFactory beanFactory) {
+        return ltiService -> new RetryingLtiService(ltiService, meterRegistry, properties.getRetry(), beanFactory);
+    }
+
+    /**
+     * Creates a {@link FilterRegistrationBean} for a {@link RequestDeadlineFilter}, in order to bound the calls
+     * to the LTI service by the deadline of the request that performs them
+     * (and to cancel them if the request is aborted).
+     *
+     * @param properties The {@link Properties} used to configure the deadline.
+     * @return The {@link FilterRegistrationBean}.
+     */
+    @Bean
+    public FilterRegistrationBean<RequestDeadlineFilter> requestDeadlineFilter(final Properties properties) {
+        final var bean = new FilterRegistrationBean<RequestDeadlineFilter>();
+        bean.setFilter(new RequestDeadlineFilter(properties.getTimeouts().getDeadline()));
+        bean.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return bean;
+    }
+
+    /**
+     * An {@link LtiServiceDecorator} that guards each operation with a circuit breaker and a bulkhead.
+     *
+     * @param meterRegistry The {@link MeterRegistry} in which the breakers and bulkheads metrics are published.
+     * @param properties    The {@link Properties} used to configure the breakers and bulkheads.
+     * @return The created {@link LtiServiceDecorator}.
+     */
+    @Bean
+    @Order(RESILIENCE_ORDER)
+    public LtiServiceDecorator resilienceDecorator(final MeterRegistry meterRegistry, final Properties properties) {
+        return ltiService -> new ResilientLtiService(ltiService, meterRegistry, properties);
+    }
+
+    /**
+     * An {@link LtiServiceDecorator} that hedges the latency critical operations
+     * (only if {@code lti-service.hedging.enabled} is {@code true}).
+     * It is placed inside the circuit breaker, so that a hedged operation counts as just one call,
+     * and outside the concurrency limiter, so that each attempt is limited.
+     *
+     * @param meterRegistry The {@link MeterRegistry} in which the hedging metrics are published.
+     * @param properties    The {@link Properties} used to configure the hedging.
+     * @param beanFactory   The {@link BeanFactory} used to lazily look up tracing components.
+     * @return The created {@link LtiServiceDecorator}.
+     */
+    @Bean
+    @Order(HEDGING_ORDER)
+    @ConditionalOnProperty(prefix = "lti-service.hedging", name = "enabled", havingValue = "true")
+    public LtiServiceDecorator hedgingDecorator(
+            final MeterRegistry meterRegistry,
+            final Properties properties,
+            final BeanFactory beanFactory) {
+        return ltiService -> new HedgingLtiService(ltiService, meterRegistry, properties.getHedging(), beanFactory);
+    }
+
+    /**
+     * An {@link LtiServiceDecorator} that limits the concurrent calls of each operation,
+     * adapting the limit to the measured latency. It is the innermost decorator,
+     * so that it measures just the calls performed against the LTI service.
+     *
+     * @param meterRegistry The {@link MeterRegistry} in which the limiters metrics are published.
+     * @param properties    The {@link Properties} used to configure the limiters.
+     * @return The created {@link LtiServiceDecorator}.
+     */
+    @Bean
+    @Order(CONCURRENCY_LIMIT_ORDER)
+    public LtiServiceDecorator concurrencyLimitDecorator(final MeterRegistry meterRegistry, final Properties properties) {
+        return ltiService -> new ConcurrencyLimitedLtiService(
+                ltiService,
+                meterRegistry,
+                properties.getConcurrencyLimit()
+        );
     }
 
     /**
@@ -38,5 +406,416 @@ class LtiServiceConfig {
          * The base url where the LTI is serving.
          */
         private String baseUrl = "http://lti-service/lti/app/";
+        /**
+         * The client used to communicate with the LTI service.
+         * Either {@code rest-template} (blocking, executed in a bounded pool of threads)
+         * or {@code web-client} (non-blocking).
+         */
+        private String client = REST_TEMPLATE_CLIENT;
+        /**
+         * The amount of threads in which the blocking client performs requests
+         * (only used with the {@code rest-template} client).
+         */
+        private int blockingPoolSize = 200;
+        /**
+         * The amount of requests that can wait for a thread of the blocking client's pool
+         * (only used with the {@code rest-template} client).
+         */
+        private int blockingQueueCapacity = 1000;
+        /**
+         * Configuration of the pooled HTTP client used by the {@link RestTemplate}.
+         */
+        private final Http http = new Http();
+        /**
+         * Configuration of the encoding of the bodies exchanged with the LTI service.
+         */
+        private final Encoding encoding = new Encoding();
+        /**
+         * Configuration of the deadline and the timeouts of each operation.
+         */
+        private final Timeouts timeouts = new Timeouts();
+        /**
+         * Configuration of the metrics of the operations performed against the LTI service.
+         */
+        private final Metrics metrics = new Metrics();
+        /**
+         * Configuration of the circuit breaker of each operation performed against the LTI service.
+         */
+        private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+        /**
+         * Configuration of the bulkhead of each operation performed against the LTI service.
+         */
+        private final Bulkhead bulkhead = new Bulkhead();
+        /**
+         * Configuration of the adaptive concurrency limit of each operation performed against the LTI service.
+         */
+        private final ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit();
+        /**
+         * Configuration of the cache of negative results of the "exam selected" operation.
+         */
+        private final ExamSelectedCache examSelectedCache = new ExamSelectedCache();
+        /**
+         * Configuration of the choice of the LTI service instance to which each request is sent.
+         */
+        private final LoadBalancing loadBalancing = new LoadBalancing();
+        /**
+         * Configuration of the retries of the operations that are safe to repeat.
+         */
+        private final Retry retry = new Retry();
+        /**
+         * Configuration of the hedging of latency critical operations.
+         */
+        private final Hedging hedging = new Hedging();
+
+
+        /**
+         * Configuration properties for the encoding of the bodies exchanged with the LTI service.
+         */
+        @Data
+        /* package */ static final class Encoding {
+            /**
+             * Whether responses are negotiated in Smile (binary JSON), falling back to JSON
+             * if the LTI service does not support it.
+             */
+            private boolean binary = false;
+            /**
+             * Whether requests are sent in Smile too (only used if {@code binary} is enabled).
+             */
+            private boolean binaryRequests = true;
+            /**
+             * The time during which requests are sent in JSON after the LTI service rejected a Smile request.
+             */
+            private Duration fallbackDuration = Duration.ofMinutes(5);
+        }
+
+        /**
+         * Configuration properties for the pooled HTTP client used by the {@link RestTemplate}.
+         */
+        @Data
+        /* package */ static final class Http {
+            /**
+             * The max. amount of connections in the pool.
+             */
+            private int maxTotal = 400;
+            /**
+             * The max. amount of connections in the pool for a given route (i.e LTI service instance).
+             */
+            private int maxPerRoute = 100;
+            /**
+             * Timeout for establishing a connection.
+             */
+            private Duration connectTimeout = Duration.ofSeconds(2);
+            /**
+             * Timeout for waiting data once the connection is established.
+             */
+            private Duration readTimeout = Duration.ofSeconds(10);
+            /**
+             * Timeout for leasing a connection from the pool.
+             */
+            private Duration leaseTimeout = Duration.ofSeconds(1);
+            /**
+             * How long a connection is kept alive when the LTI service does not state it.
+             */
+            private Duration keepAlive = Duration.ofSeconds(30);
+            /**
+             * How long a connection can be idle in the pool before being evicted.
+             */
+            private Duration idleEviction = Duration.ofSeconds(30);
+            /**
+             * How long a connection can be idle in the pool before being validated on lease.
+             */
+            private Duration validateAfterInactivity = Duration.ofSeconds(2);
+        }
+
+        /**
+         * Configuration properties for the deadline and the timeouts of each operation.
+         */
+        @Data
+        /* package */ static final class Timeouts {
+            /**
+             * The time a request has to perform its calls to the LTI service (i.e how long the LMS, or the browser,
+             * waits for it). It bounds the calls performed outside of a request too.
+             */
+            private Duration deadline = Duration.ofSeconds(15);
+            /**
+             * The timeouts of each operation (those not set default to the ones of the {@link Http} client).
+             */
+            private final Map<LtiOperation, OperationTimeouts> operations = new EnumMap<>(LtiOperation.class);
+
+            /**
+             * The timeouts of an operation.
+             */
+            @Data
+            /* package */ static final class OperationTimeouts {
+                /**
+                 * Timeout for establishing a connection.
+                 */
+                private Duration connectTimeout;
+                /**
+                 * Timeout for waiting data once the connection is established
+                 * (the {@code web-client} client applies it to the whole response).
+                 */
+                private Duration readTimeout;
+            }
+        }
+
+        /**
+         * Configuration properties for the metrics of the operations performed against the LTI service.
+         */
+        @Data
+        /* package */ static final class Metrics {
+            /**
+             * Whether a percentile histogram must be published for each operation.
+             */
+            private boolean percentileHistogram = true;
+            /**
+             * Percentiles to be calculated client side for each operation.
+             */
+            private List<Double> percentiles = List.of(0.5, 0.95, 0.99);
+            /**
+             * Service level objectives for the operations (each one is published as a histogram bucket).
+             */
+            private List<Duration> slo = List.of(
+                    Duration.ofMillis(50),
+                    Duration.ofMillis(100),
+                    Duration.ofMillis(250),
+                    Duration.ofMillis(500),
+                    Duration.ofSeconds(1),
+                    Duration.ofSeconds(2),
+                    Duration.ofSeconds(5)
+            );
+        }
+
+        /**
+         * Configuration properties for the circuit breaker of each operation performed against the LTI service.
+         */
+        @Data
+        /* package */ static final class CircuitBreaker {
+            /**
+             * The failure rate (in percentage) from which the breaker opens.
+             */
+            private float failureRateThreshold = 50;
+            /**
+             * The slow calls rate (in percentage) from which the breaker opens.
+             */
+            private float slowCallRateThreshold = 80;
+            /**
+             * The duration from which a call is considered slow.
+             */
+            private Duration slowCallDurationThreshold = Duration.ofSeconds(5);
+            /**
+             * The amount of calls taken into account to calculate the failure and slow calls rates.
+             */
+            private int slidingWindowSize = 50;
+            /**
+             * The min. amount of calls needed to calculate the failure and slow calls rates.
+             */
+            private int minimumNumberOfCalls = 20;
+            /**
+             * How long the breaker stays open before letting some calls through.
+             */
+            private Duration waitDurationInOpenState = Duration.ofSeconds(10);
+            /**
+             * The amount of calls let through when the breaker is half open.
+             */
+            private int permittedNumberOfCallsInHalfOpenState = 5;
+        }
+
+        /**
+         * Configuration properties for the bulkhead of each operation performed against the LTI service.
+         */
+        @Data
+        /* package */ static final class Bulkhead {
+            /**
+             * The max. amount of concurrent calls of an operation.
+             */
+            private int maxConcurrentCalls = 100;
+        }
+
+        /**
+         * Configuration properties for the adaptive concurrency limit of each operation
+         * performed against the LTI service.
+         */
+        @Data
+        /* package */ static final class ConcurrencyLimit {
+            /**
+             * The algorithm used to adapt the limit.
+             */
+            private Algorithm algorithm = Algorithm.VEGAS;
+            /**
+             * The limit used until enough round trip times are measured.
+             */
+            private int initialLimit = 50;
+            /**
+             * The min. limit (only used by the {@link Algorithm#AIMD} algorithm).
+             */
+            private int minLimit = 10;
+            /**
+             * The max. limit.
+             */
+            private int maxLimit = 200;
+            /**
+             * Calls that take longer than this are treated as drops
+             * (only used by the {@link Algorithm#AIMD} algorithm).
+             */
+            private Duration aimdTimeout = Duration.ofSeconds(5);
+
+
+            /**
+             * The algorithms that can be used to adapt the limit.
+             */
+            /* package */ enum Algorithm {
+                /**
+                 * Increases the limit while the round trip time stays close to the min. measured one,
+                 * and decreases it when it grows (i.e when requests start to queue).
+                 */
+                VEGAS,
+                /**
+                 * Additive increase on each success, multiplicative decrease on each drop or timeout.
+                 */
+                AIMD
+            }
+        }
+
+        /**
+         * Configuration properties for the cache of negative results of the "exam selected" operation.
+         */
+        @Data
+        /* package */ static final class ExamSelectedCache {
+            /**
+             * How long a negative result (i.e non existing, or not upcoming exam) is cached.
+             * Kept short, as the exam might be created, or its starting date might be changed, in the meantime.
+             */
+            private Duration negativeTtl = Duration.ofSeconds(30);
+            /**
+             * The max. amount of cached results.
+             */
+            private long maxSize = 1000;
+        }
+
+        /**
+         * Configuration properties for the choice of the LTI service instance to which each request is sent.
+         */
+        @Data
+        /* package */ static final class LoadBalancing {
+            /**
+             * Whether instances are chosen according to their load (i.e response time and requests in flight),
+             * instead of in a round robin fashion.
+             */
+            private boolean latencyAware = true;
+            /**
+             * The response time assumed for an instance until its first response is received.
+             */
+            private Duration initialLatency = Duration.ofMillis(100);
+            /**
+             * The time constant of the moving average of the response time (i.e how fast old samples are forgotten).
+             */
+            private Duration decay = Duration.ofSeconds(10);
+            /**
+             * The amount of consecutive failures after which an instance is ejected.
+             */
+            private int failuresToEject = 5;
+            /**
+             * How long an instance is ejected.
+             */
+            private Duration ejectionDuration = Duration.ofSeconds(30);
+            /**
+             * How long an instance can go without requests before its stats (and metrics) are discarded
+             * (e.g because it left the cluster).
+             */
+            private Duration idleEviction = Duration.ofMinutes(10);
+        }
+
+        /**
+         * Configuration properties for the retries of the operations that are safe to repeat.
+         */
+        @Data
+        /* package */ static final class Retry {
+            /**
+             * The operations that are retried after a transient failure (i.e those that can be safely repeated).
+             */
+            private Set<LtiOperation> operations = EnumSet.of(LtiOperation.EXAM_SELECTION, LtiOperation.TAKE_EXAM);
+            /**
+             * The max. amount of attempts of an operation (including the first one).
+             */
+            private int maxAttempts = 3;
+            /**
+             * The backoff before the first retry (each retry waits a random time between zero and its backoff).
+             */
+            private Duration initialBackoff = Duration.ofMillis(50);
+            /**
+             * The factor by which the backoff grows with each retry.
+             */
+            private double multiplier = 2;
+            /**
+             * The max. backoff before a retry.
+             */
+            private Duration maxBackoff = Duration.ofSeconds(1);
+            /**
+             * The retries earned by each call
+             * (i.e the max. fraction of extra load caused by retries in the long run).
+             * Must not be greater than 1.
+             */
+            private double budgetRatio = 0.1;
+            /**
+             * The max. amount of retries that can be accumulated (i.e performed in a burst).
+             */
+            private double maxBudget = 10;
+        }
+
+        /**
+         * Configuration properties for the hedging of latency critical operations
+         * (i.e "login initiation" and "exam selection").
+         */
+        @Data
+        /* package */ static final class Hedging {
+            /**
+             * Whether latency critical operations are hedged. Disabled by default, as hedged operations
+             * are sent twice to the LTI service, which must be able to answer them more than once.
+             */
+            private boolean enabled = false;
+            /**
+             * The percentile of the recent response times of an operation after which it is hedged.
+             */
+            private double percentile = 0.95;
+            /**
+             * The min. time after which an operation is hedged.
+             */
+            private Duration minDelay = Duration.ofMillis(20);
+            /**
+             * The time after which an operation is hedged until there are enough response times to calculate it.
+             */
+            private Duration defaultDelay = Duration.ofMillis(500);
+            /**
+             * The min. amount of response times needed to calculate the time after which an operation is hedged.
+             */
+            private int minSamples = 100;
+            /**
+             * The amount of recent response times of each operation that are kept.
+             */
+            private int windowSize = 1000;
+            /**
+             * The hedges earned by each call (i.e the max. fraction of calls that are hedged in the long run).
+             * Must not be greater than 1, so that hedging never more than doubles the load of the LTI service.
+             */
+            private double budgetRatio = 0.1;
+            /**
+             * The max. amount of hedges that can be accumulated (i.e sent in a burst).
+             */
+            private double maxBudget = 10;
+        }
+    }
+
+
+    /**
+     * Makes Ribbon choose LTI service instances with the {@link LatencyAwareRule}
+     * (unless {@code lti-service.load-balancing.latency-aware} is {@code false}).
+     * Only the client of the LTI service (i.e the service id in the {@code lti-service.base-url}) is configured,
+     * so other Ribbon clients keep their own rules.
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "lti-service.load-balancing", name = "latency-aware", matchIfMissing = true)
+    @RibbonClient(name = "lti-service", configuration = LatencyAwareRibbonConfiguration.class)
+    /* package */ static class LatencyAwareLoadBalancingConfig {
     }
 }
@@ -0,0 +1,18 @@
+package ar.edu.itba.cep.lti_app.service;
+
+/**
+ * Defines behaviour for an object that can decorate an {@link AsyncLtiService} (e.g to add metrics or resilience).
+ * All the {@link LtiServiceDecorator} beans are applied to the {@link AsyncLtiService} client in order,
+ * being the one with the highest precedence the outermost one.
+ */
+@FunctionalInterface
+interface LtiServiceDecorator {
+
+    /**
+     * Decorates the given {@code ltiService}.
+     *
+     * @param ltiService The {@link AsyncLtiService} to be decorated.
+     * @return The decorated {@link AsyncLtiService}.
+     */
+    AsyncLtiService decorate(final AsyncLtiService ltiService);
+}
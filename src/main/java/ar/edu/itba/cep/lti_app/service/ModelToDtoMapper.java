@@ -0,0 +1,12 @@
+package ar.edu.itba.cep.lti_app.service;
+
+/**
+ * Function interface used to map a model class into its DTO version.
+ *
+ * @param <M> The model's concrete type
+ * @param <D> The DTO's concrete type
+ */
+@FunctionalInterface
+interface ModelToDtoMapper<M, D> {
+    D map(final M model);
+}
@@ -0,0 +1,247 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * An {@link HttpComponentsClientHttpRequestFactory} backed by a pool of keep-alive connections,
+ * which publishes the pool occupancy, the time spent waiting for a connection to be leased,
+ * and the amount of created connections (i.e the connection churn) as metrics.
+ * Requests that are part of an {@link LtiCall} are bounded by its timeouts and deadline.
+ */
+class PooledClientHttpRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+    /**
+     * Prefix for the name of the published metrics.
+     */
+    private static final String METRICS_PREFIX = "lti-service.http-client.";
+
+    /**
+     * The {@link RequestConfig} applied to the requests that are not part of an {@link LtiCall}.
+     */
+    private final RequestConfig defaultRequestConfig;
+
+
+    /**
+     * Constructor.
+     *
+     * @param properties    The {@link LtiServiceConfig.Properties.Http} used to configure the pool and the client.
+     * @param meterRegistry The {@link MeterRegistry} in which metrics are published.
+     */
+    /* package */ PooledClientHttpRequestFactory(
+            final LtiServiceConfig.Properties.Http properties,
+            final MeterRegistry meterRegistry) {
+        super(HttpClients.custom()
+                .setConnectionManager(new InstrumentedConnectionManager(properties, meterRegistry))
+                .setDefaultRequestConfig(requestConfig(properties))
+                .setKeepAliveStrategy((response, context) -> keepAliveDuration(response, context, properties))
+                .evictExpiredConnections()
+                .evictIdleConnections(properties.getIdleEviction().toMillis(), TimeUnit.MILLISECONDS)
+                .build()
+        );
+        this.defaultRequestConfig = requestConfig(properties);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the request is part of an {@link LtiCall}, the call's timeouts (bounded by the time left until its deadline)
+     * are applied, the deadline is propagated in the {@link LtiCall#DEADLINE_HEADER},
+     * and the request is aborted if the call is aborted.
+     */
+    @Override
+    protected void postProcessHttpRequest(final HttpUriRequest request) {
+        if (!(request instanceof HttpRequestBase)) {
+            return;
+        }
+        final var httpRequest = (HttpRequestBase) request;
+        LtiCall.current().ifPresent(call -> {
+            final var leaseTimeout = Duration.ofMillis(defaultRequestConfig.getConnectionRequestTimeout());
+            httpRequest.setConfig(
+                    RequestConfig.copy(defaultRequestConfig)
+                            .setConnectTimeout((int) call.connectTimeout().toMillis())
+                            .setSocketTimeout((int) call.readTimeout().toMillis())
+                            .setConnectionRequestTimeout((int) call.bound(leaseTimeout).toMillis())
+                            .build()
+            );
+            httpRequest.setHeader(LtiCall.DEADLINE_HEADER, Long.toString(call.remaining().toMillis()));
+            call.onAbort(httpRequest::abort);
+        });
+    }
+
+
+    /**
+     * Builds the default {@link RequestConfig} for the given {@code properties}.
+     *
+     * @param properties The {@link LtiServiceConfig.Properties.Http} with the configured timeouts.
+     * @return The {@link RequestConfig}.
+     */
+    private static RequestConfig requestConfig(final LtiServiceConfig.Properties.Http properties) {
+        return RequestConfig.custom()
+                .setConnectTimeout((int) properties.getConnectTimeout().toMillis())
+                .setSocketTimeout((int) properties.getReadTimeout().toMillis())
+                .setConnectionRequestTimeout((int) properties.getLeaseTimeout().toMillis())
+                .build();
+    }
+
+
+    /**
+     * Calculates how long a connection can be kept alive, according to the given {@code response}.
+     * If the server did not state it, the configured keep alive duration is used.
+     *
+     * @param response   The {@link HttpResponse} received through the connection.
+     * @param context    The {@link HttpContext} of the request.
+     * @param properties The {@link LtiServiceConfig.Properties.Http} with the configured keep alive duration.
+     * @return The keep alive duration, in milliseconds.
+     */
+    private static long keepAliveDuration(
+            final HttpResponse response,
+            final HttpContext context,
+            final LtiServiceConfig.Properties.Http properties) {
+        final var duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+        return duration > 0 ? duration : properties.getKeepAlive().toMillis();
+    }
+
+
+    /**
+     * A {@link PoolingHttpClientConnectionManager} that publishes metrics about its usage.
+     */
+    private static final class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+
+        /**
+         * {@link Timer} that measures the time spent waiting for a connection to be leased.
+         */
+        private final Timer leaseTimer;
+
+
+        /**
+         * Constructor.
+         *
+         * @param properties    The {@link LtiServiceConfig.Properties.Http} used to configure the pool.
+         * @param meterRegistry The {@link MeterRegistry} in which metrics are published.
+         */
+        private InstrumentedConnectionManager(
+                final LtiServiceConfig.Properties.Http properties,
+                final MeterRegistry meterRegistry) {
+            super(
+                    RegistryBuilder.<ConnectionSocketFactory>create()
+                            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                            .register("https", SSLConnectionSocketFactory.getSocketFactory())
+                            .build(),
+                    new CountingConnectionFactory(
+                            Counter.builder(METRICS_PREFIX + "connections.created")
+                                    .description("Amount of connections opened to the LTI service")
+                                    .register(meterRegistry)
+                    )
+            );
+            setMaxTotal(properties.getMaxTotal());
+            setDefaultMaxPerRoute(properties.getMaxPerRoute());
+            setValidateAfterInactivity((int) properties.getValidateAfterInactivity().toMillis());
+
+            this.leaseTimer = Timer.builder(METRICS_PREFIX + "lease")
+                    .description("Time spent waiting for a connection to the LTI service to be leased from the pool")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            registerPoolGauge(meterRegistry, "leased", PoolStats::getLeased);
+            registerPoolGauge(meterRegistry, "available", PoolStats::getAvailable);
+            registerPoolGauge(meterRegistry, "pending", PoolStats::getPending);
+            registerPoolGauge(meterRegistry, "max", PoolStats::getMax);
+        }
+
+        @Override
+        public ConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+            final var request = super.requestConnection(route, state);
+            return new ConnectionRequest() {
+                @Override
+                public HttpClientConnection get(final long timeout, final TimeUnit timeUnit)
+                        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                    final var start = System.nanoTime();
+                    try {
+                        return request.get(timeout, timeUnit);
+                    } finally {
+                        leaseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+
+
+        /**
+         * Registers a {@link Gauge} that reports a value taken from the pool's total {@link PoolStats}.
+         *
+         * @param meterRegistry The {@link MeterRegistry} in which the {@link Gauge} is registered.
+         * @param state         The value of the {@code state} tag.
+         * @param value         A {@link ToDoubleFunction} that takes the reported value from the {@link PoolStats}.
+         */
+        private void registerPoolGauge(
+                final MeterRegistry meterRegistry,
+                final String state,
+                final ToDoubleFunction<PoolStats> value) {
+            Gauge.builder(METRICS_PREFIX + "connections", this, manager -> value.applyAsDouble(manager.getTotalStats()))
+                    .description("Connections in the pool of connections to the LTI service")
+                    .tag("state", state)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * A {@link ManagedHttpClientConnectionFactory} that counts how many connections it creates.
+     */
+    private static final class CountingConnectionFactory extends ManagedHttpClientConnectionFactory {
+
+        /**
+         * {@link Counter} of created connections.
+         */
+        private final Counter counter;
+
+
+        /**
+         * Constructor.
+         *
+         * @param counter {@link Counter} of created connections.
+         */
+        private CountingConnectionFactory(final Counter counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public ManagedHttpClientConnection create(final HttpRoute route, final ConnectionConfig config) {
+            counter.increment();
+            return super.create(route, config);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The deadline of an incoming request (i.e the instant after which nobody will wait for its answer),
+ * which bounds the calls to the LTI service performed while handling it.
+ * It is bound to the thread that handles the request, so the calls performed by that thread
+ * are bound to it, and it can be aborted (e.g when the client goes away), cancelling those calls.
+ * Calls performed outside of a request (or by another thread) get their own deadline.
+ */
+public final class RequestDeadline {
+
+    /**
+     * The deadline bound to the current thread.
+     */
+    private static final ThreadLocal<RequestDeadline> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The deadline, in terms of {@link System#nanoTime()}.
+     */
+    private final long deadline;
+    /**
+     * The actions to be performed when the deadline is aborted.
+     */
+    private final List<Runnable> abortActions;
+    /**
+     * Whether the deadline was aborted.
+     */
+    private boolean aborted;
+
+
+    /**
+     * Constructor.
+     *
+     * @param deadline The deadline, in terms of {@link System#nanoTime()}.
+     */
+    private RequestDeadline(final long deadline) {
+        this.deadline = deadline;
+        this.abortActions = new ArrayList<>();
+        this.aborted = false;
+    }
+
+
+    /**
+     * Creates a deadline that expires after the given {@code timeout}.
+     *
+     * @param timeout The time until the deadline expires.
+     * @return The created {@link RequestDeadline}.
+     */
+    public static RequestDeadline after(final Duration timeout) {
+        return new RequestDeadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * @return An {@link Optional} with the deadline bound to the current thread,
+     * or empty if there is none.
+     */
+    public static Optional<RequestDeadline> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+
+    /**
+     * Binds this deadline to the current thread, until the returned {@link Binding} is closed.
+     *
+     * @return The {@link Binding}.
+     */
+    public Binding bind() {
+        final var previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Creates a deadline that expires at the same time as this one, but that is not aborted with it
+     * (e.g for work that is shared with other requests, which must outlive this one if it is aborted).
+     *
+     * @return The created {@link RequestDeadline}.
+     */
+    public RequestDeadline detach() {
+        return new RequestDeadline(deadline);
+    }
+
+    /**
+     * @return The time until the deadline expires (negative if it already expired).
+     */
+    public Duration remaining() {
+        return Duration.ofNanos(deadline - System.nanoTime());
+    }
+
+    /**
+     * Registers an action to be performed when this deadline is aborted.
+     * If it was already aborted, the action is performed right away.
+     *
+     * @param action The action to be performed.
+     */
+    public void onAbort(final Runnable action) {
+        synchronized (this) {
+            if (!aborted) {
+                abortActions.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Aborts this deadline (i.e nobody is waiting for the answer anymore),
+     * performing the registered actions (e.g cancelling the calls bound to it).
+     */
+    public void abort() {
+        final List<Runnable> actions;
+        synchronized (this) {
+            if (aborted) {
+                return;
+            }
+            aborted = true;
+            actions = List.copyOf(abortActions);
+            abortActions.clear();
+        }
+        actions.forEach(Runnable::run);
+    }
+
+
+    /**
+     * The binding of a {@link RequestDeadline} to a thread.
+     */
+    @FunctionalInterface
+    public interface Binding extends AutoCloseable {
+
+        /**
+         * Unbinds the {@link RequestDeadline} from the thread (restoring the previously bound one, if any).
+         */
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,94 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * A filter that binds a {@link RequestDeadline} to each incoming request while it is being handled,
+ * so that the calls to the LTI service performed by it are bounded by it.
+ * If the request is handled asynchronously, the deadline is aborted (cancelling the calls still in flight)
+ * when the container reports an error (e.g the client went away) or a timeout.
+ */
+class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    /**
+     * The time each request has until its deadline expires.
+     */
+    private final Duration timeout;
+
+
+    /**
+     * Constructor.
+     *
+     * @param timeout The time each request has until its deadline expires.
+     */
+    /* package */ RequestDeadlineFilter(final Duration timeout) {
+        this.timeout = timeout;
+    }
+
+
+    @Override
+    protected void doFilterInternal(
+            final HttpServletRequest request,
+            final HttpServletResponse response,
+            final FilterChain filterChain) throws ServletException, IOException {
+        final var deadline = RequestDeadline.after(timeout);
+        try (var ignored = deadline.bind()) {
+            filterChain.doFilter(request, response);
+        }
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new AbortingAsyncListener(deadline));
+        }
+    }
+
+
+    /**
+     * An {@link AsyncListener} that aborts a {@link RequestDeadline} if the request fails or times out.
+     */
+    private static final class AbortingAsyncListener implements AsyncListener {
+
+        /**
+         * The {@link RequestDeadline} to be aborted.
+         */
+        private final RequestDeadline deadline;
+
+
+        /**
+         * Constructor.
+         *
+         * @param deadline The {@link RequestDeadline} to be aborted.
+         */
+        private AbortingAsyncListener(final RequestDeadline deadline) {
+            this.deadline = deadline;
+        }
+
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            // Nothing to cancel.
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            deadline.abort();
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            deadline.abort();
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            event.getAsyncContext().addListener(this); // Listeners are dropped when the request is dispatched again.
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import com.bellotapps.webapps_commons.exceptions.ExternalServiceException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.http.impl.execchain.RequestAbortedException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * An {@link InterceptingLtiService} that guards each operation with its own {@link CircuitBreaker}
+ * and {@link Bulkhead} (i.e a bound on the amount of concurrent calls).
+ * Calls that are not permitted (i.e the breaker is open, or the bulkhead is full) fail immediately
+ * with an {@link ExternalServiceException}, without reaching the LTI service.
+ * Breaker state (and its transitions) and bulkhead capacity are published as metrics.
+ */
+class ResilientLtiService extends InterceptingLtiService {
+
+    /**
+     * The name of the gauges that indicate the state of each circuit breaker (1 for the current state, 0 otherwise).
+     */
+    private static final String STATE_GAUGE_NAME = "lti-service.circuit-breaker.state";
+    /**
+     * The name of the counters of circuit breaker state transitions.
+     */
+    private static final String TRANSITIONS_COUNTER_NAME = "lti-service.circuit-breaker.transitions";
+    /**
+     * The name of the gauges that indicate the available concurrent calls of each bulkhead.
+     */
+    private static final String AVAILABLE_CALLS_GAUGE_NAME = "lti-service.bulkhead.available-calls";
+    /**
+     * The name of the tag that holds the operation name.
+     */
+    private static final String OPERATION_TAG = "operation";
+
+    /**
+     * The {@link CircuitBreaker}s of each operation.
+     */
+    private final Map<LtiOperation, CircuitBreaker> circuitBreakers;
+    /**
+     * The {@link Bulkhead}s of each operation.
+     */
+    private final Map<LtiOperation, Bulkhead> bulkheads;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate      The {@link AsyncLtiService} to which operations are delegated.
+     * @param meterRegistry The {@link MeterRegistry} in which the metrics are published.
+     * @param properties    The {@link LtiServiceConfig.Properties} used to configure breakers and bulkheads.
+     */
+    /* package */ ResilientLtiService(
+            final AsyncLtiService delegate,
+            final MeterRegistry meterRegistry,
+            final LtiServiceConfig.Properties properties) {
+        super(delegate);
+        final var circuitBreakerConfig = circuitBreakerConfig(properties.getCircuitBreaker());
+        final var bulkheadConfig = BulkheadConfig.custom()
+                .maxConcurrentCalls(properties.getBulkhead().getMaxConcurrentCalls())
+                .maxWaitDuration(Duration.ZERO)
+                .writableStackTraceEnabled(false)
+                .build();
+        this.circuitBreakers = new EnumMap<>(LtiOperation.class);
+        this.bulkheads = new EnumMap<>(LtiOperation.class);
+        for (final var operation : LtiOperation.values()) {
+            final var name = "lti-service." + operation.getOperationName();
+            final var circuitBreaker = CircuitBreaker.of(name, circuitBreakerConfig);
+            final var bulkhead = Bulkhead.of(name, bulkheadConfig);
+            registerMetrics(operation, circuitBreaker, bulkhead, meterRegistry);
+            this.circuitBreakers.put(operation, circuitBreaker);
+            this.bulkheads.put(operation, bulkhead);
+        }
+    }
+
+
+    @Override
+    protected <T> CompletableFuture<T> intercept(
+            final LtiOperation operation,
+            final Supplier<CompletableFuture<T>> invocation) {
+        final var circuitBreaker = circuitBreakers.get(operation);
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return CompletableFuture.failedFuture(
+                    notPermitted(CallNotPermittedException.createCallNotPermittedException(circuitBreaker))
+            );
+        }
+        final var bulkhead = bulkheads.get(operation);
+        if (!bulkhead.tryAcquirePermission()) {
+            circuitBreaker.releasePermission();
+            return CompletableFuture.failedFuture(
+                    notPermitted(BulkheadFullException.createBulkheadFullException(bulkhead))
+            );
+        }
+        final var start = System.nanoTime();
+        return invoke(invocation).whenComplete((result, throwable) -> {
+            bulkhead.onComplete();
+            final var duration = System.nanoTime() - start;
+            if (throwable == null) {
+                circuitBreaker.onSuccess(duration, TimeUnit.NANOSECONDS);
+            } else {
+                circuitBreaker.onError(duration, TimeUnit.NANOSECONDS, throwable);
+            }
+        });
+    }
+
+
+    /**
+     * Builds the {@link CircuitBreakerConfig} for the given {@code properties}.
+     *
+     * @param properties The {@link LtiServiceConfig.Properties.CircuitBreaker} properties.
+     * @return The {@link CircuitBreakerConfig}.
+     */
+    private static CircuitBreakerConfig circuitBreakerConfig(
+            final LtiServiceConfig.Properties.CircuitBreaker properties) {
+        return CircuitBreakerConfig.custom()
+                .failureRateThreshold(properties.getFailureRateThreshold())
+                .slowCallRateThreshold(properties.getSlowCallRateThreshold())
+                .slowCallDurationThreshold(properties.getSlowCallDurationThreshold())
+                .slidingWindowSize(properties.getSlidingWindowSize())
+                .minimumNumberOfCalls(properties.getMinimumNumberOfCalls())
+                .waitDurationInOpenState(properties.getWaitDurationInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(properties.getPermittedNumberOfCallsInHalfOpenState())
+                .recordException(ResilientLtiService::isBackendFailure)
+                .writableStackTraceEnabled(false)
+                .build();
+    }
+
+    /**
+     * Registers the metrics of the given {@code circuitBreaker} and {@code bulkhead}.
+     *
+     * @param operation      The {@link LtiOperation} guarded by the {@code circuitBreaker} and {@code bulkhead}.
+     * @param circuitBreaker The {@link CircuitBreaker}.
+     * @param bulkhead       The {@link Bulkhead}.
+     * @param meterRegistry  The {@link MeterRegistry} in which the metrics are published.
+     */
+    private static void registerMetrics(
+            final LtiOperation operation,
+            final CircuitBreaker circuitBreaker,
+            final Bulkhead bulkhead,
+            final MeterRegistry meterRegistry) {
+        final var operationName = operation.getOperationName();
+        for (final var state : CircuitBreaker.State.values()) {
+            Gauge.builder(STATE_GAUGE_NAME, circuitBreaker, breaker -> breaker.getState() == state ? 1 : 0)
+                    .description("Whether the circuit breaker of the operation is in the given state")
+                    .tag(OPERATION_TAG, operationName)
+                    .tag("state", state.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        circuitBreaker.getEventPublisher().onStateTransition(event -> Counter.builder(TRANSITIONS_COUNTER_NAME)
+                .description("Transitions between states of the circuit breaker of the operation")
+                .tag(OPERATION_TAG, operationName)
+                .tag("from", event.getStateTransition().getFromState().name().toLowerCase())
+                .tag("to", event.getStateTransition().getToState().name().toLowerCase())
+                .register(meterRegistry)
+                .increment());
+        Gauge.builder(AVAILABLE_CALLS_GAUGE_NAME, bulkhead, b -> b.getMetrics().getAvailableConcurrentCalls())
+                .description("Concurrent calls of the operation that can still be performed")
+                .tag(OPERATION_TAG, operationName)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Indicates whether the given {@code throwable} means that the LTI service is failing
+     * (i.e any failure except those caused by a client error response, which just means a bad request,
+     * by a local rejection, which means the call was not even performed,
+     * or by a cancellation, which means the call was abandoned by this side, and is measured as a slow call).
+     *
+     * @param throwable The {@link Throwable} with which an operation failed.
+     * @return {@code true} if the failure must be recorded by the circuit breaker, or {@code false} otherwise.
+     */
+    private static boolean isBackendFailure(final Throwable throwable) {
+        for (var cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RejectedExecutionException
+                    || cause instanceof CancellationException
+                    || cause instanceof RequestAbortedException) {
+                return false;
+            }
+            if (cause instanceof RestClientResponseException) {
+                return ((RestClientResponseException) cause).getRawStatusCode() >= 500;
+            }
+            if (cause instanceof WebClientResponseException) {
+                return ((WebClientResponseException) cause).getRawStatusCode() >= 500;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wraps the given {@code cause} (i.e a rejection) in an {@link ExternalServiceException}.
+     *
+     * @param cause The rejection.
+     * @return The {@link ExternalServiceException}.
+     */
+    private static ExternalServiceException notPermitted(final RuntimeException cause) {
+        return new ExternalServiceException("lti-service", "Call to the LTI service not permitted", cause);
+    }
+}
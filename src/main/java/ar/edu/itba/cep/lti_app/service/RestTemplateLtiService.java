@@ -5,11 +5,15 @@ import ar.edu.itba.cep.lti.constants.Paths;
 import ar.edu.itba.cep.lti.dtos.*;
 import com.bellotapps.webapps_commons.exceptions.ExternalServiceException;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -22,6 +26,10 @@ class RestTemplateLtiService implements LtiService {
      * The {@link RestTemplate} used to perform requests.
      */
     private final RestTemplate restTemplate;
+    /**
+     * The {@link WireEncoding} that chooses the encoding of the requests and responses.
+     */
+    private final WireEncoding wireEncoding;
     /**
      * {@link URI} of the login initiation endpoint.
      */
@@ -44,10 +52,15 @@ class RestTemplateLtiService implements LtiService {
      * Constructor.
      *
      * @param restTemplate The {@link RestTemplate} used to perform requests.
+     * @param wireEncoding The {@link WireEncoding} that chooses the encoding of the requests and responses.
      * @param properties   The {@link LtiServiceConfig.Properties} needed to configure this service.
      */
-    public RestTemplateLtiService(final RestTemplate restTemplate, final LtiServiceConfig.Properties properties) {
+    public RestTemplateLtiService(
+            final RestTemplate restTemplate,
+            final WireEncoding wireEncoding,
+            final LtiServiceConfig.Properties properties) {
         this.restTemplate = restTemplate;
+        this.wireEncoding = wireEncoding;
         this.loginInitUri = buildWithSimplePath(properties.getBaseUrl(), Paths.LOGIN_INITIATION_PATH);
         this.examSelectionUri = buildWithSimplePath(properties.getBaseUrl(), Paths.EXAM_SELECTION_PATH);
         this.examSelectedUri = buildWithSimplePath(properties.getBaseUrl(), Paths.EXAM_SELECTED_PATH);
@@ -104,7 +117,8 @@ class RestTemplateLtiService implements LtiService {
     }
 
     /**
-     * Performs a post.
+     * Performs a post, encoded as chosen by the {@link WireEncoding}
+     * (sending it again in JSON if the LTI service does not support the chosen encoding).
      *
      * @param model            The model to post.
      * @param dtoClass         The class of the response DTO.
@@ -124,9 +138,20 @@ class RestTemplateLtiService implements LtiService {
             final URI uri,
             final ModelToDtoMapper<REQM, REQD> modelToDtoMapper,
             final DtoToModelMapper<RESPM, RESPD> dtoToModelMapper) throws ExternalServiceException {
-        final var entity = new HttpEntity<>(modelToDtoMapper.map(model));
+        final var dto = modelToDtoMapper.map(model);
         try {
-            return Optional.ofNullable(restTemplate.postForObject(uri, entity, dtoClass))
+            final var contentType = wireEncoding.requestContentType();
+            final var accept = wireEncoding.acceptableMediaTypes();
+            RESPD response;
+            try {
+                response = post(dto, contentType, accept, dtoClass, uri);
+            } catch (final RestClientResponseException e) {
+                if (!wireEncoding.fallBack(contentType, accept, e)) {
+                    throw e;
+                }
+                response = post(dto, MediaType.APPLICATION_JSON, WireEncoding.JSON_ONLY, dtoClass, uri);
+            }
+            return Optional.ofNullable(response)
                     .map(dtoToModelMapper::map)
                     .orElseThrow();
         } catch (final Throwable e) {
@@ -134,6 +159,30 @@ class RestTemplateLtiService implements LtiService {
         }
     }
 
+    /**
+     * Posts the given {@code dto}, encoded in the given {@code contentType},
+     * accepting the response in any of the given {@code accept} {@link MediaType}s.
+     *
+     * @param dto         The DTO to post.
+     * @param contentType The {@link MediaType} in which the {@code dto} is encoded.
+     * @param accept      The {@link MediaType}s accepted in the response, in order of preference.
+     * @param dtoClass    The class of the response DTO.
+     * @param uri         The {@link URI} to where to post.
+     * @param <RESPD>     The response DTO's concrete type
+     * @return The returned response DTO.
+     */
+    private <RESPD> RESPD post(
+            final Object dto,
+            final MediaType contentType,
+            final List<MediaType> accept,
+            final Class<RESPD> dtoClass,
+            final URI uri) {
+        final var headers = new HttpHeaders();
+        headers.setContentType(contentType);
+        headers.setAccept(accept);
+        return restTemplate.postForObject(uri, new HttpEntity<>(dto, headers), dtoClass);
+    }
+
 
     /**
      * Builds a {@link URI} from the given {@code baseUrl}, appending the given {@code path}.
@@ -145,27 +194,4 @@ class RestTemplateLtiService implements LtiService {
     private static URI buildWithSimplePath(final String baseUrl, final String path) {
         return UriComponentsBuilder.fromUriString(baseUrl).path(path).build().toUri();
     }
-
-
-    /**
-     * Function interface used to map a model class into its DTO version.
-     *
-     * @param <M> The model's concrete type
-     * @param <D> The DTO's concrete type
-     */
-    @FunctionalInterface
-    private interface ModelToDtoMapper<M, D> {
-        D map(final M model);
-    }
-
-    /**
-     * Function interface used to map a DTO class into its model version.
-     *
-     * @param <M> The model's concrete type
-     * @param <D> The DTO's concrete type
-     */
-    @FunctionalInterface
-    private interface DtoToModelMapper<M, D> {
-        M map(final D model);
-    }
 }
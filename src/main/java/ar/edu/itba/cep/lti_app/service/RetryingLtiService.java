@@ -0,0 +1,272 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.http.impl.execchain.RequestAbortedException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.cloud.sleuth.instrument.async.TraceableScheduledExecutorService;
+import org.springframework.util.Assert;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * An {@link InterceptingLtiService} that retries the operations that are safe to repeat
+ * when they fail because of a transient failure (i.e the LTI service could not be reached,
+ * the connection was reset, or it answered with a server error).
+ * Retries wait for an exponential backoff with full jitter (so that failed calls do not retry in lockstep),
+ * are sent to a different instance, when possible, and never outlive the deadline of the call.
+ * <p>
+ * Retries are limited by a budget shared by all operations (tokens earned by each call, and spent by each retry),
+ * so that retries can not turn an outage of the LTI service into a retry storm.
+ */
+class RetryingLtiService extends InterceptingLtiService {
+
+    /**
+     * The prefix of the names of the retry metrics.
+     */
+    private static final String METRICS_PREFIX = "lti-service.retry.";
+    /**
+     * The name of the tag that holds the operation name.
+     */
+    private static final String OPERATION_TAG = "operation";
+
+    /**
+     * The {@link LtiServiceConfig.Properties.Retry} used to configure the retries.
+     */
+    private final LtiServiceConfig.Properties.Retry properties;
+    /**
+     * The operations that are retried.
+     */
+    private final Set<LtiOperation> retriedOperations;
+    /**
+     * The {@link ScheduledExecutorService} in which retries are scheduled.
+     */
+    private final ScheduledExecutorService scheduler;
+    /**
+     * The budget of retries (i.e how many retries can be performed right now).
+     */
+    private final TokenBudget budget;
+    /**
+     * Counts the retries performed, by operation.
+     */
+    private final Map<LtiOperation, Counter> retryCounters;
+    /**
+     * Counts the retries not performed because the budget was exhausted, by operation.
+     */
+    private final Map<LtiOperation, Counter> throttledCounters;
+    /**
+     * Supplies the random numbers (between 0, inclusive, and 1, exclusive) with which the backoffs are jittered.
+     */
+    private final DoubleSupplier jitter;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate      The {@link AsyncLtiService} to which operations are delegated.
+     * @param meterRegistry The {@link MeterRegistry} in which the metrics are published.
+     * @param properties    The {@link LtiServiceConfig.Properties.Retry} used to configure the retries.
+     * @param beanFactory   The {@link BeanFactory} used to lazily look up tracing components.
+     * @throws IllegalArgumentException If the {@code properties} are not valid.
+     */
+    /* package */ RetryingLtiService(
+            final AsyncLtiService delegate,
+            final MeterRegistry meterRegistry,
+            final LtiServiceConfig.Properties.Retry properties,
+            final BeanFactory beanFactory) throws IllegalArgumentException {
+        this(
+                delegate,
+                meterRegistry,
+                properties,
+                newScheduler(beanFactory),
+                () -> ThreadLocalRandom.current().nextDouble()
+        );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param delegate      The {@link AsyncLtiService} to which operations are delegated.
+     * @param meterRegistry The {@link MeterRegistry} in which the metrics are published.
+     * @param properties    The {@link LtiServiceConfig.Properties.Retry} used to configure the retries.
+     * @param scheduler     The {@link ScheduledExecutorService} in which retries are scheduled.
+     * @param jitter        Supplies the random numbers (between 0, inclusive, and 1, exclusive)
+     *                      with which the backoffs are jittered.
+     * @throws IllegalArgumentException If the {@code properties} are not valid.
+     */
+    /* package */ RetryingLtiService(
+            final AsyncLtiService delegate,
+            final MeterRegistry meterRegistry,
+            final LtiServiceConfig.Properties.Retry properties,
+            final ScheduledExecutorService scheduler,
+            final DoubleSupplier jitter) throws IllegalArgumentException {
+        super(delegate);
+        Assert.isTrue(properties.getMaxAttempts() > 0, "The max. amount of attempts must be positive");
+        Assert.isTrue(properties.getMultiplier() >= 1, "The backoff multiplier must not be less than 1");
+        Assert.isTrue(
+                properties.getBudgetRatio() > 0 && properties.getBudgetRatio() <= 1,
+                "The retry budget ratio must be greater than 0, and not greater than 1"
+        );
+        this.properties = properties;
+        this.retriedOperations = Set.copyOf(properties.getOperations());
+        this.scheduler = scheduler;
+        this.jitter = jitter;
+        this.budget = new TokenBudget(properties.getBudgetRatio(), properties.getMaxBudget());
+        this.retryCounters = new EnumMap<>(LtiOperation.class);
+        this.throttledCounters = new EnumMap<>(LtiOperation.class);
+        for (final var operation : retriedOperations) {
+            this.retryCounters.put(operation, Counter.builder(METRICS_PREFIX + "retries")
+                    .description("Retries of the operation performed after a transient failure")
+                    .tag(OPERATION_TAG, operation.getOperationName())
+                    .register(meterRegistry));
+            this.throttledCounters.put(operation, Counter.builder(METRICS_PREFIX + "throttled")
+                    .description("Retries of the operation not performed because the retry budget was exhausted")
+                    .tag(OPERATION_TAG, operation.getOperationName())
+                    .register(meterRegistry));
+        }
+        Gauge.builder(METRICS_PREFIX + "budget", budget, TokenBudget::getTokens)
+                .description("Retries that can be performed right now")
+                .register(meterRegistry);
+    }
+
+
+    @Override
+    protected <T> CompletableFuture<T> intercept(
+            final LtiOperation operation,
+            final Supplier<CompletableFuture<T>> invocation) {
+        if (!retriedOperations.contains(operation)) {
+            return invoke(invocation);
+        }
+        budget.deposit();
+        final var result = new CompletableFuture<T>();
+        final var call = LtiCall.current().orElse(null); // Retries are performed from another thread.
+        attempt(operation, invocation, call, InstanceAttempt.any(), 1, result);
+        return result;
+    }
+
+
+    /**
+     * Creates the {@link ScheduledExecutorService} in which retries are scheduled (a single daemon thread),
+     * propagating the tracing context to the retries.
+     *
+     * @param beanFactory The {@link BeanFactory} used to lazily look up tracing components.
+     * @return The created {@link ScheduledExecutorService}.
+     */
+    private static ScheduledExecutorService newScheduler(final BeanFactory beanFactory) {
+        final var executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final var thread = new Thread(runnable, "lti-service-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        return new TraceableScheduledExecutorService(beanFactory, executor);
+    }
+
+    /**
+     * Performs an attempt of the given {@code invocation}, retrying it if it fails because of a transient failure.
+     *
+     * @param operation  The {@link LtiOperation} being invoked.
+     * @param invocation The invocation to be performed.
+     * @param call       The {@link LtiCall} of which the attempt is part (or {@code null} if there is none).
+     * @param attempt    The {@link InstanceAttempt} to be performed.
+     * @param number     The number of the attempt (starting from 1).
+     * @param result     The {@link CompletableFuture} to be completed with the operation's result.
+     * @param <T>        The concrete type of the operation's result.
+     */
+    private <T> void attempt(
+            final LtiOperation operation,
+            final Supplier<CompletableFuture<T>> invocation,
+            final LtiCall call,
+            final InstanceAttempt attempt,
+            final int number,
+            final CompletableFuture<T> result) {
+        LtiCall.perform(call, () -> InstanceAttempt.perform(attempt, () -> invoke(invocation)))
+                .whenComplete((value, throwable) -> {
+                    if (throwable == null) {
+                        result.complete(value);
+                        return;
+                    }
+                    final var backoff = backoff(number);
+                    if (number >= properties.getMaxAttempts()
+                            || !isTransient(throwable)
+                            || (call != null && (call.isAborted() || call.remaining().toNanos() <= backoff))) {
+                        result.completeExceptionally(throwable);
+                        return;
+                    }
+                    if (!budget.withdraw()) {
+                        throttledCounters.get(operation).increment();
+                        result.completeExceptionally(throwable);
+                        return;
+                    }
+                    retryCounters.get(operation).increment();
+                    final var next = InstanceAttempt.avoiding(attempt);
+                    scheduler.schedule(
+                            () -> attempt(operation, invocation, call, next, number + 1, result),
+                            backoff,
+                            TimeUnit.NANOSECONDS
+                    );
+                });
+    }
+
+    /**
+     * Calculates the time to wait before retrying a failed attempt: a random time (i.e full jitter)
+     * between zero and the exponential backoff for the attempt.
+     *
+     * @param number The number of the failed attempt (starting from 1).
+     * @return The time to wait, in nanoseconds.
+     */
+    private long backoff(final int number) {
+        final var initial = properties.getInitialBackoff().toNanos();
+        final var max = properties.getMaxBackoff().toNanos();
+        final var exponential = Math.min(max, initial * Math.pow(properties.getMultiplier(), number - 1));
+        return (long) (jitter.getAsDouble() * exponential);
+    }
+
+    /**
+     * Indicates whether the given {@code throwable} is a transient failure of the LTI service
+     * (i.e it could not be reached, the connection was reset or timed out, or it answered with a server error),
+     * which might not happen again if the operation is retried. Rejections (local, or by the circuit breaker),
+     * cancellations, and client error responses are not transient.
+     *
+     * @param throwable The {@link Throwable} with which an attempt failed.
+     * @return {@code true} if the attempt can be retried, or {@code false} otherwise.
+     */
+    private static boolean isTransient(final Throwable throwable) {
+        for (var cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RejectedExecutionException
+                    || cause instanceof CallNotPermittedException
+                    || cause instanceof BulkheadFullException
+                    || cause instanceof CancellationException
+                    || cause instanceof RequestAbortedException) {
+                return false;
+            }
+            if (cause instanceof RestClientResponseException) {
+                return ((RestClientResponseException) cause).getRawStatusCode() >= 500;
+            }
+            if (cause instanceof WebClientResponseException) {
+                return ((WebClientResponseException) cause).getRawStatusCode() >= 500;
+            }
+            if (cause instanceof IOException || cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,70 @@
+package ar.edu.itba.cep.lti_app.service;
+
+/**
+ * A token bucket that limits the amount of extra calls (e.g hedges or retries) performed against the LTI service:
+ * each call deposits a fraction of a token, and each extra call withdraws a whole token.
+ * This bounds the extra load to the given fraction of the calls, even when the LTI service is failing as a whole.
+ */
+class TokenBudget {
+
+    /**
+     * The tokens deposited by each call.
+     */
+    private final double ratio;
+    /**
+     * The max. amount of tokens that can be accumulated.
+     */
+    private final double max;
+    /**
+     * The available tokens.
+     */
+    private double tokens;
+
+
+    /**
+     * Constructor.
+     *
+     * @param ratio The tokens deposited by each call.
+     * @param max   The max. amount of tokens that can be accumulated.
+     */
+    /* package */ TokenBudget(final double ratio, final double max) {
+        this.ratio = ratio;
+        this.max = max;
+        this.tokens = 0;
+    }
+
+
+    /**
+     * Deposits the tokens earned by a call.
+     */
+    /* package */ synchronized void deposit() {
+        tokens = Math.min(max, tokens + ratio);
+    }
+
+    /**
+     * Withdraws a token, if available.
+     *
+     * @return {@code true} if a token was withdrawn (i.e an extra call can be performed), or {@code false} otherwise.
+     */
+    /* package */ synchronized boolean withdraw() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    /**
+     * Gives back a withdrawn token (i.e the extra call for which it was withdrawn was not performed after all).
+     */
+    /* package */ synchronized void refund() {
+        tokens = Math.min(max, tokens + 1);
+    }
+
+    /**
+     * @return The available tokens.
+     */
+    /* package */ synchronized double getTokens() {
+        return tokens;
+    }
+}
@@ -0,0 +1,104 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import ar.edu.itba.cep.lti.*;
+import ar.edu.itba.cep.lti_app.warm_up.WarmUpRequests;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * An {@link AsyncLtiService} that sends the operations performed by warm-up requests to a stub of the LTI service
+ * (a {@link LtiService} created on first use, as the stub is served by this same application),
+ * delegating the rest of them into another {@link AsyncLtiService}.
+ * <p>
+ * The stub operations are performed synchronously, in the thread of the warm-up request.
+ */
+class WarmUpLtiService implements AsyncLtiService {
+
+    /**
+     * The {@link AsyncLtiService} to which the operations of real requests are delegated.
+     */
+    private final AsyncLtiService delegate;
+    /**
+     * A {@link Supplier} that creates the stub {@link LtiService}.
+     */
+    private final Supplier<LtiService> stubFactory;
+    /**
+     * The stub {@link LtiService} ({@code null} until it is first used).
+     */
+    private volatile LtiService stub;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate    The {@link AsyncLtiService} to which the operations of real requests are delegated.
+     * @param stubFactory A {@link Supplier} that creates the stub {@link LtiService}.
+     */
+    /* package */ WarmUpLtiService(final AsyncLtiService delegate, final Supplier<LtiService> stubFactory) {
+        this.delegate = delegate;
+        this.stubFactory = stubFactory;
+    }
+
+
+    @Override
+    public CompletableFuture<AuthenticationRequest> loginInitiation(final LoginInitiationRequest loginInitiationRequest) {
+        return WarmUpRequests.isWarmUpRequest()
+                ? stubbed(() -> stub().loginInitiation(loginInitiationRequest))
+                : delegate.loginInitiation(loginInitiationRequest);
+    }
+
+    @Override
+    public CompletableFuture<ExamSelectionResponse> examSelection(final AuthenticationResponse authenticationResponse) {
+        return WarmUpRequests.isWarmUpRequest()
+                ? stubbed(() -> stub().examSelection(authenticationResponse))
+                : delegate.examSelection(authenticationResponse);
+    }
+
+    @Override
+    public CompletableFuture<ExamSelectedResponse> examSelected(final ExamSelectedRequest examSelectedRequest) {
+        return WarmUpRequests.isWarmUpRequest()
+                ? stubbed(() -> stub().examSelected(examSelectedRequest))
+                : delegate.examSelected(examSelectedRequest);
+    }
+
+    @Override
+    public CompletableFuture<ExamTakingResponse> takeExam(final AuthenticationResponse authenticationResponse) {
+        return WarmUpRequests.isWarmUpRequest()
+                ? stubbed(() -> stub().takeExam(authenticationResponse))
+                : delegate.takeExam(authenticationResponse);
+    }
+
+
+    /**
+     * @return The stub {@link LtiService} (created if it was not yet).
+     */
+    private LtiService stub() {
+        var stub = this.stub;
+        if (stub == null) {
+            synchronized (this) {
+                stub = this.stub;
+                if (stub == null) {
+                    stub = stubFactory.get();
+                    this.stub = stub;
+                }
+            }
+        }
+        return stub;
+    }
+
+    /**
+     * Performs the given stub {@code operation}, wrapping its result (or failure) in a {@link CompletableFuture}.
+     *
+     * @param operation The operation to be performed.
+     * @param <T>       The concrete type of the operation's result.
+     * @return A completed {@link CompletableFuture} with the operation's result.
+     */
+    private static <T> CompletableFuture<T> stubbed(final Supplier<T> operation) {
+        try {
+            return CompletableFuture.completedFuture(operation.get());
+        } catch (final Throwable e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
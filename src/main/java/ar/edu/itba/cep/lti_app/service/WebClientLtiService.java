@@ -0,0 +1,203 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import ar.edu.itba.cep.lti.*;
+import ar.edu.itba.cep.lti.constants.Paths;
+import ar.edu.itba.cep.lti.dtos.*;
+import com.bellotapps.webapps_commons.exceptions.ExternalServiceException;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Concrete implementation of {@link AsyncLtiService} using a {@link WebClient} to communicate with the real services.
+ * Requests are performed in a non-blocking fashion, so no thread is parked while waiting for the LTI service to answer.
+ */
+class WebClientLtiService implements AsyncLtiService {
+
+    /**
+     * The {@link WebClient} used to perform requests.
+     */
+    private final WebClient webClient;
+    /**
+     * The {@link WireEncoding} that chooses the encoding of the requests and responses.
+     */
+    private final WireEncoding wireEncoding;
+    /**
+     * {@link URI} of the login initiation endpoint.
+     */
+    private final URI loginInitUri;
+    /**
+     * {@link URI} of the exam selection endpoint.
+     */
+    private final URI examSelectionUri;
+    /**
+     * {@link URI} of the exam selected endpoint.
+     */
+    private final URI examSelectedUri;
+    /**
+     * {@link URI} of the exam taking endpoint.
+     */
+    private final URI examTakingUri;
+
+
+    /**
+     * Constructor.
+     *
+     * @param webClient    The {@link WebClient} used to perform requests.
+     * @param wireEncoding The {@link WireEncoding} that chooses the encoding of the requests and responses.
+     * @param properties   The {@link LtiServiceConfig.Properties} needed to configure this service.
+     */
+    /* package */ WebClientLtiService(
+            final WebClient webClient,
+            final WireEncoding wireEncoding,
+            final LtiServiceConfig.Properties properties) {
+        this.webClient = webClient;
+        this.wireEncoding = wireEncoding;
+        this.loginInitUri = buildWithSimplePath(properties.getBaseUrl(), Paths.LOGIN_INITIATION_PATH);
+        this.examSelectionUri = buildWithSimplePath(properties.getBaseUrl(), Paths.EXAM_SELECTION_PATH);
+        this.examSelectedUri = buildWithSimplePath(properties.getBaseUrl(), Paths.EXAM_SELECTED_PATH);
+        this.examTakingUri = buildWithSimplePath(properties.getBaseUrl(), Paths.EXAM_TAKING_PATH);
+    }
+
+
+    @Override
+    public CompletableFuture<AuthenticationRequest> loginInitiation(final LoginInitiationRequest loginInitiationRequest) {
+        return postForObject(
+                loginInitiationRequest,
+                AuthenticationRequestDto.class,
+                loginInitUri,
+                LoginInitiationRequestDto::fromModel,
+                AuthenticationRequestDto::toModel
+        );
+    }
+
+    @Override
+    public CompletableFuture<ExamSelectionResponse> examSelection(final AuthenticationResponse authenticationResponse) {
+        return postForObject(
+                authenticationResponse,
+                ExamSelectionResponseDto.class,
+                examSelectionUri,
+                AuthenticationResponseDto::fromModel,
+                ExamSelectionResponseDto::toModel
+        );
+    }
+
+    @Override
+    public CompletableFuture<ExamSelectedResponse> examSelected(final ExamSelectedRequest examSelectedRequest) {
+        return postForObject(
+                examSelectedRequest,
+                ExamSelectedResponseDto.class,
+                examSelectedUri,
+                ExamSelectedRequestDto::fromModel,
+                ExamSelectedResponseDto::toModel
+        );
+    }
+
+    @Override
+    public CompletableFuture<ExamTakingResponse> takeExam(final AuthenticationResponse authenticationResponse) {
+        return postForObject(
+                authenticationResponse,
+                ExamTakingResponseDto.class,
+                examTakingUri,
+                AuthenticationResponseDto::fromModel,
+                ExamTakingResponseDto::toModel
+        );
+    }
+
+    /**
+     * Performs a post, encoded as chosen by the {@link WireEncoding}
+     * (sending it again in JSON if the LTI service does not support the chosen encoding).
+     *
+     * @param model            The model to post.
+     * @param dtoClass         The class of the response DTO.
+     * @param uri              The {@link URI} to where to post.
+     * @param modelToDtoMapper A {@link ModelToDtoMapper} to map the given {@code model} into its DTO version.
+     * @param dtoToModelMapper A {@link DtoToModelMapper} to map the response DTO into its model version.
+     * @param <REQM>           The request model's concrete type
+     * @param <REQD>           The request DTO's concrete type
+     * @param <RESPM>          The response model's concrete type
+     * @param <RESPD>          The response DTO's concrete type
+     * @return A {@link CompletableFuture} that will complete with the returned response,
+     * or exceptionally with an {@link ExternalServiceException}
+     * if there is any issue when communicating performing the REST request.
+     * If the post is part of an {@link LtiCall}, the call's timeouts (applied to the whole response)
+     * and deadline are honoured, and the post is cancelled if the call is aborted.
+     */
+    private <REQM, REQD, RESPM, RESPD> CompletableFuture<RESPM> postForObject(
+            final REQM model,
+            final Class<RESPD> dtoClass,
+            final URI uri,
+            final ModelToDtoMapper<REQM, REQD> modelToDtoMapper,
+            final DtoToModelMapper<RESPM, RESPD> dtoToModelMapper) {
+        final var call = LtiCall.current();
+        final var contentType = wireEncoding.requestContentType();
+        final var accept = wireEncoding.acceptableMediaTypes();
+        final var response = Mono.fromSupplier(() -> modelToDtoMapper.map(model))
+                .flatMap(dto -> post(dto, contentType, accept, dtoClass, uri, call)
+                        .onErrorResume(
+                                e -> wireEncoding.fallBack(contentType, accept, e),
+                                e -> post(dto, MediaType.APPLICATION_JSON, WireEncoding.JSON_ONLY, dtoClass, uri, call)
+                        )
+                );
+        final var future = call
+                .map(c -> response.timeout(c.bound(c.connectTimeout().plus(c.readTimeout()))))
+                .orElse(response)
+                .map(dtoToModelMapper::map)
+                .switchIfEmpty(Mono.error(NoSuchElementException::new))
+                .onErrorMap(e -> new ExternalServiceException("lti-service", "Could not communicate with LTI service", e))
+                .toFuture();
+        call.ifPresent(c -> c.onAbort(() -> future.cancel(true))); // Cancelling the future disposes the request.
+        return future;
+    }
+
+    /**
+     * Posts the given {@code dto}, encoded in the given {@code contentType},
+     * accepting the response in any of the given {@code accept} {@link MediaType}s.
+     *
+     * @param dto         The DTO to post.
+     * @param contentType The {@link MediaType} in which the {@code dto} is encoded.
+     * @param accept      The {@link MediaType}s accepted in the response, in order of preference.
+     * @param dtoClass    The class of the response DTO.
+     * @param uri         The {@link URI} to where to post.
+     * @param call        An {@link Optional} with the {@link LtiCall} of which the post is part.
+     * @param <RESPD>     The response DTO's concrete type
+     * @return A {@link Mono} that emits the returned response DTO.
+     */
+    private <RESPD> Mono<RESPD> post(
+            final Object dto,
+            final MediaType contentType,
+            final List<MediaType> accept,
+            final Class<RESPD> dtoClass,
+            final URI uri,
+            final Optional<LtiCall> call) {
+        return webClient.post()
+                .uri(uri)
+                .contentType(contentType)
+                .headers(headers -> {
+                    headers.setAccept(accept);
+                    call.ifPresent(c -> headers.set(LtiCall.DEADLINE_HEADER, Long.toString(c.remaining().toMillis())));
+                })
+                .syncBody(dto)
+                .retrieve()
+                .bodyToMono(dtoClass);
+    }
+
+
+    /**
+     * Builds a {@link URI} from the given {@code baseUrl}, appending the given {@code path}.
+     *
+     * @param baseUrl The base url
+     * @param path    The path to be appended.
+     * @return The created {@link URI}.
+     */
+    private static URI buildWithSimplePath(final String baseUrl, final String path) {
+        return UriComponentsBuilder.fromUriString(baseUrl).path(path).build().toUri();
+    }
+}
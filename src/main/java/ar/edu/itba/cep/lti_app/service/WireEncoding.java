@@ -0,0 +1,140 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Chooses the encoding of the bodies exchanged with the LTI service.
+ * JSON is always understood by both sides. When binary encoding is enabled, responses are negotiated in Smile
+ * (a binary encoding of the JSON data model, which is smaller and cheaper to parse), with JSON as fallback.
+ * Requests can be sent in Smile too. If the LTI service rejects a Smile request (i.e {@code 415}),
+ * or can not answer in any of the accepted media types (i.e {@code 406}), the request is sent again in JSON
+ * (both its body and its response), and JSON is used for a while.
+ * <p>
+ * Smile bodies are (de)serialized by the default message converters and codecs,
+ * which support it as long as it is in the classpath.
+ */
+class WireEncoding {
+
+    /**
+     * The {@link MediaType} of Smile encoded bodies.
+     */
+    /* package */ static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+    /**
+     * The {@link MediaType}s accepted in responses when falling back to JSON.
+     */
+    /* package */ static final List<MediaType> JSON_ONLY = List.of(MediaType.APPLICATION_JSON);
+
+    /**
+     * The {@link MediaType}s accepted in responses, in order of preference.
+     */
+    private final List<MediaType> acceptableMediaTypes;
+    /**
+     * Whether requests are sent in Smile.
+     */
+    private final boolean binaryRequests;
+    /**
+     * The time during which JSON is used after the LTI service rejected a Smile request.
+     */
+    private final Duration fallbackDuration;
+    /**
+     * Counts the Smile requests rejected by the LTI service (and sent again in JSON).
+     */
+    private final Counter fallbacks;
+    /**
+     * The moment until which JSON is used, in terms of {@link System#nanoTime()}.
+     */
+    private volatile long fallbackExpiration;
+
+
+    /**
+     * Constructor.
+     *
+     * @param properties    The {@link LtiServiceConfig.Properties.Encoding} used to configure the encoding.
+     * @param meterRegistry The {@link MeterRegistry} in which the fallbacks are counted.
+     */
+    /* package */ WireEncoding(
+            final LtiServiceConfig.Properties.Encoding properties,
+            final MeterRegistry meterRegistry) {
+        this.acceptableMediaTypes = properties.isBinary() ? List.of(SMILE, MediaType.APPLICATION_JSON) : JSON_ONLY;
+        this.binaryRequests = properties.isBinary() && properties.isBinaryRequests();
+        this.fallbackDuration = properties.getFallbackDuration();
+        this.fallbacks = Counter.builder("lti-service.encoding.fallbacks")
+                .description("Smile requests rejected by the LTI service, and sent again in JSON")
+                .register(meterRegistry);
+        this.fallbackExpiration = System.nanoTime();
+    }
+
+
+    /**
+     * @return The {@link MediaType}s accepted in responses right now, in order of preference.
+     */
+    /* package */ List<MediaType> acceptableMediaTypes() {
+        return isFallingBack() ? JSON_ONLY : acceptableMediaTypes;
+    }
+
+    /**
+     * @return The {@link MediaType} in which requests must be sent right now.
+     */
+    /* package */ MediaType requestContentType() {
+        return binaryRequests && !isFallingBack() ? SMILE : MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * Indicates whether a request sent with the given {@code contentType}, accepting the given
+     * {@code acceptableMediaTypes}, that failed with the given {@code failure} must be sent again in JSON
+     * (i.e it was sent in Smile and the LTI service rejected it, or it accepted Smile and the LTI service
+     * could not answer it). If so, JSON is used for the following requests, until the fallback expires.
+     * A request sent again must be sent in JSON, accepting only {@link #JSON_ONLY}.
+     *
+     * @param contentType          The {@link MediaType} in which the request was sent.
+     * @param acceptableMediaTypes The {@link MediaType}s accepted by the request.
+     * @param failure              The {@link Throwable} with which the request failed.
+     * @return {@code true} if the request must be sent again in JSON, or {@code false} otherwise.
+     */
+    /* package */ boolean fallBack(
+            final MediaType contentType,
+            final List<MediaType> acceptableMediaTypes,
+            final Throwable failure) {
+        final var status = statusOf(failure);
+        final var rejected = SMILE.equals(contentType) && status == HttpStatus.UNSUPPORTED_MEDIA_TYPE.value();
+        final var notAcceptable = acceptableMediaTypes.contains(SMILE) && status == HttpStatus.NOT_ACCEPTABLE.value();
+        if (!rejected && !notAcceptable) {
+            return false;
+        }
+        fallbackExpiration = System.nanoTime() + fallbackDuration.toNanos();
+        fallbacks.increment();
+        return true;
+    }
+
+
+    /**
+     * @return Whether JSON must be used, because the LTI service rejected Smile a short while ago.
+     */
+    private boolean isFallingBack() {
+        return System.nanoTime() - fallbackExpiration < 0;
+    }
+
+    /**
+     * Gets the status of the given {@code failure}, if it is an error response.
+     *
+     * @param failure The {@link Throwable} to be checked.
+     * @return The status of the response, or {@code -1} if the {@code failure} is not an error response.
+     */
+    private static int statusOf(final Throwable failure) {
+        if (failure instanceof RestClientResponseException) {
+            return ((RestClientResponseException) failure).getRawStatusCode();
+        }
+        if (failure instanceof WebClientResponseException) {
+            return ((WebClientResponseException) failure).getRawStatusCode();
+        }
+        return -1;
+    }
+}
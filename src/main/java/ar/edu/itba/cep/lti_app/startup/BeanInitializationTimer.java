@@ -0,0 +1,169 @@
+package ar.edu.itba.cep.lti_app.startup;
+
+import lombok.Value;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * An {@link InstantiationAwareBeanPostProcessor} that measures how long it takes to create and initialize each bean,
+ * from right before it is instantiated until it is fully initialized.
+ * As creating a bean also creates the beans it depends on (if they were not created yet), both the total time
+ * and the time spent in the bean itself (i.e excluding the beans created in the meantime) are measured.
+ * <p>
+ * Beans are only measured until {@link #stop()} is called (i.e during startup),
+ * and beans created before this post processor was registered (e.g other post processors) are not measured.
+ */
+class BeanInitializationTimer implements InstantiationAwareBeanPostProcessor, PriorityOrdered {
+
+    /**
+     * The beans being created by the current thread, innermost first.
+     */
+    private final ThreadLocal<Deque<Frame>> inProgress;
+    /**
+     * The {@link BeanInitialization}s measured so far.
+     */
+    private final List<BeanInitialization> initializations;
+    /**
+     * Whether beans are still being measured.
+     */
+    private volatile boolean running;
+
+
+    /**
+     * Constructor.
+     */
+    /* package */ BeanInitializationTimer() {
+        this.inProgress = ThreadLocal.withInitial(ArrayDeque::new);
+        this.initializations = new ArrayList<>();
+        this.running = true;
+    }
+
+
+    @Override
+    public Object postProcessBeforeInstantiation(final Class<?> beanClass, final String beanName) {
+        if (running) {
+            inProgress.get().push(new Frame(beanName, System.nanoTime()));
+        }
+        return null;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+        if (!running) {
+            return bean;
+        }
+        final var frames = inProgress.get();
+        if (frames.stream().noneMatch(frame -> frame.beanName.equals(beanName))) {
+            return bean; // e.g an object exposed by a FactoryBean, which is not instantiated by the container.
+        }
+        Frame frame;
+        do {
+            frame = frames.pop(); // Beans whose creation failed are discarded.
+        } while (!frame.beanName.equals(beanName));
+        final var total = System.nanoTime() - frame.start;
+        if (!frames.isEmpty()) {
+            frames.peek().children += total;
+        }
+        final var initialization = new BeanInitialization(
+                beanName,
+                bean.getClass().getName(),
+                toMillis(total),
+                toMillis(total - frame.children)
+        );
+        synchronized (initializations) {
+            initializations.add(initialization);
+        }
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE; // Registered as soon as possible, so that most beans are measured.
+    }
+
+
+    /**
+     * Stops measuring beans.
+     *
+     * @return The {@link BeanInitialization}s measured until now.
+     */
+    /* package */ List<BeanInitialization> stop() {
+        running = false;
+        inProgress.remove();
+        synchronized (initializations) {
+            return List.copyOf(initializations);
+        }
+    }
+
+    /**
+     * Converts the given amount of {@code nanos} into milliseconds.
+     *
+     * @param nanos The amount of nanoseconds.
+     * @return The amount of milliseconds.
+     */
+    private static double toMillis(final long nanos) {
+        return nanos / 1_000_000d;
+    }
+
+
+    /**
+     * A bean being created.
+     */
+    private static final class Frame {
+
+        /**
+         * The name of the bean.
+         */
+        private final String beanName;
+        /**
+         * The moment at which the creation of the bean started (as given by {@link System#nanoTime()}).
+         */
+        private final long start;
+        /**
+         * The time spent creating other beans in the meantime, in nanoseconds.
+         */
+        private long children;
+
+
+        /**
+         * Constructor.
+         *
+         * @param beanName The name of the bean.
+         * @param start    The moment at which the creation of the bean started.
+         */
+        private Frame(final String beanName, final long start) {
+            this.beanName = beanName;
+            this.start = start;
+            this.children = 0;
+        }
+    }
+
+    /**
+     * The time it took to create and initialize a bean.
+     */
+    @Value
+    /* package */ static class BeanInitialization {
+        /**
+         * The name of the bean.
+         */
+        private final String name;
+        /**
+         * The name of the class of the bean.
+         */
+        private final String type;
+        /**
+         * The total time, in milliseconds.
+         */
+        private final double totalMillis;
+        /**
+         * The time spent in the bean itself (i.e excluding the beans created in the meantime), in milliseconds.
+         */
+        private final double selfMillis;
+    }
+}
@@ -0,0 +1,109 @@
+package ar.edu.itba.cep.lti_app.startup;
+
+import ar.edu.itba.cep.lti_app.warm_up.WarmUpRequests;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * A filter that reports to the {@link StartupReport} when the first launch (i.e authentication response)
+ * is successfully served. Once it is, requests just pass through. Warm-up requests are not launches.
+ */
+class FirstLaunchFilter extends OncePerRequestFilter {
+
+    /**
+     * The {@link StartupReport} to which the first launch is reported.
+     */
+    private final StartupReport startupReport;
+
+
+    /**
+     * Constructor.
+     *
+     * @param startupReport The {@link StartupReport} to which the first launch is reported.
+     */
+    /* package */ FirstLaunchFilter(final StartupReport startupReport) {
+        this.startupReport = startupReport;
+    }
+
+
+    @Override
+    protected void doFilterInternal(
+            final HttpServletRequest request,
+            final HttpServletResponse response,
+            final FilterChain filterChain) throws ServletException, IOException {
+        filterChain.doFilter(request, response);
+        if (startupReport.isLaunchServed()
+                || !HttpMethod.POST.matches(request.getMethod())
+                || WarmUpRequests.isWarmUpRequest(request)) {
+            return;
+        }
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new ReportingAsyncListener(response));
+        } else {
+            served(response);
+        }
+    }
+
+
+    /**
+     * Reports the launch to the {@link StartupReport} if it was successfully served.
+     *
+     * @param response The response of the launch.
+     */
+    private void served(final HttpServletResponse response) {
+        if (response.getStatus() < HttpServletResponse.SC_BAD_REQUEST) {
+            startupReport.launchServed();
+        }
+    }
+
+
+    /**
+     * An {@link AsyncListener} that reports a launch handled asynchronously once it completes.
+     */
+    private final class ReportingAsyncListener implements AsyncListener {
+
+        /**
+         * The response of the launch.
+         */
+        private final HttpServletResponse response;
+
+
+        /**
+         * Constructor.
+         *
+         * @param response The response of the launch.
+         */
+        private ReportingAsyncListener(final HttpServletResponse response) {
+            this.response = response;
+        }
+
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            served(response);
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            // Not served.
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            // Not served.
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            event.getAsyncContext().addListener(this); // Listeners are dropped when the request is dispatched again.
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ar.edu.itba.cep.lti_app.startup;
+
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.type.MethodMetadata;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * A {@link BeanFactoryPostProcessor} that marks as lazy the singleton beans that are not needed to serve launches,
+ * so that they are not created at startup. They are created the first time they are needed instead
+ * (which could still be at startup, if an eagerly created bean depends on them).
+ * <p>
+ * Beans are selected by the package of their class, or of the configuration class that declares them.
+ */
+class LazyInitializationPostProcessor implements BeanFactoryPostProcessor {
+
+    /**
+     * The prefixes of the names of the classes of the beans that are lazily initialized.
+     */
+    private final List<String> prefixes;
+
+
+    /**
+     * Constructor.
+     *
+     * @param prefixes The prefixes of the names of the classes of the beans that are lazily initialized.
+     */
+    /* package */ LazyInitializationPostProcessor(final List<String> prefixes) {
+        this.prefixes = List.copyOf(prefixes);
+    }
+
+
+    @Override
+    public void postProcessBeanFactory(final ConfigurableListableBeanFactory beanFactory) {
+        if (prefixes.isEmpty()) {
+            return;
+        }
+        for (final var beanName : beanFactory.getBeanDefinitionNames()) {
+            final var definition = beanFactory.getBeanDefinition(beanName);
+            if (definition.isSingleton()
+                    && !definition.isLazyInit()
+                    && definition.getRole() != BeanDefinition.ROLE_INFRASTRUCTURE
+                    && typeNames(definition).anyMatch(name -> prefixes.stream().anyMatch(name::startsWith))) {
+                definition.setLazyInit(true);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the names of the classes by which the given bean {@code definition} can be selected:
+     * its bean class, and if it is declared by a factory method, the return type and the declaring class.
+     *
+     * @param definition The {@link BeanDefinition}.
+     * @return A {@link Stream} with the names of the classes.
+     */
+    private static Stream<String> typeNames(final BeanDefinition definition) {
+        final var factoryMethod = Optional.of(definition)
+                .filter(AnnotatedBeanDefinition.class::isInstance)
+                .map(AnnotatedBeanDefinition.class::cast)
+                .map(AnnotatedBeanDefinition::getFactoryMethodMetadata);
+        return Stream
+                .of(
+                        Optional.ofNullable(definition.getBeanClassName()),
+                        factoryMethod.map(MethodMetadata::getReturnTypeName),
+                        factoryMethod.map(MethodMetadata::getDeclaringClassName)
+                )
+                .flatMap(Optional::stream);
+    }
+}
@@ -0,0 +1,118 @@
+package ar.edu.itba.cep.lti_app.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration class for the startup of the application (i.e what is initialized lazily, and how it is measured).
+ */
+@Configuration
+@EnableConfigurationProperties(StartupConfig.Properties.class)
+class StartupConfig {
+
+    /**
+     * The prefix of the startup properties.
+     */
+    private static final String PROPERTIES_PREFIX = "lti-app.startup";
+
+
+    /**
+     * A {@link BeanInitializationTimer} that measures the time taken by each bean during startup.
+     * It is static so that it is registered before the rest of the beans are created.
+     *
+     * @return The created {@link BeanInitializationTimer}.
+     */
+    @Bean
+    public static BeanInitializationTimer beanInitializationTimer() {
+        return new BeanInitializationTimer();
+    }
+
+    /**
+     * A {@link LazyInitializationPostProcessor} that makes the beans not needed to serve launches lazy.
+     * As it runs before configuration properties beans exist, its properties are bound from the {@link Environment}.
+     *
+     * @param environment The {@link Environment} from where the properties are bound.
+     * @return The created {@link LazyInitializationPostProcessor}.
+     */
+    @Bean
+    public static LazyInitializationPostProcessor lazyInitializationPostProcessor(final Environment environment) {
+        final var properties = Binder.get(environment)
+                .bind(PROPERTIES_PREFIX, Bindable.of(Properties.class))
+                .orElseGet(Properties::new);
+        return new LazyInitializationPostProcessor(properties.getLazyBeans());
+    }
+
+    /**
+     * A {@link StartupReport} that publishes (and optionally writes) how long this instance took to start.
+     *
+     * @param beanInitializationTimer The {@link BeanInitializationTimer} that measures the time taken by each bean.
+     * @param properties              The {@link Properties} used to configure the report.
+     * @param objectMapper            The {@link ObjectMapper} used to write the report.
+     * @param meterRegistry           The {@link MeterRegistry} in which the startup metrics are published.
+     * @return The created {@link StartupReport}.
+     */
+    @Bean
+    public StartupReport startupReport(
+            final BeanInitializationTimer beanInitializationTimer,
+            final Properties properties,
+            final ObjectMapper objectMapper,
+            final MeterRegistry meterRegistry) {
+        return new StartupReport(beanInitializationTimer, properties, objectMapper, meterRegistry);
+    }
+
+    /**
+     * Creates a {@link FilterRegistrationBean} for a {@link FirstLaunchFilter} applied to the launch endpoints,
+     * in order to report when the first launch is served.
+     *
+     * @param startupReport The {@link StartupReport} to which the first launch is reported.
+     * @return The {@link FilterRegistrationBean}.
+     */
+    @Bean
+    public FilterRegistrationBean<FirstLaunchFilter> firstLaunchFilter(final StartupReport startupReport) {
+        final var bean = new FilterRegistrationBean<FirstLaunchFilter>();
+        bean.setFilter(new FirstLaunchFilter(startupReport));
+        bean.addUrlPatterns("/exam-taking", "/exam-selection");
+        bean.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return bean;
+    }
+
+
+    /**
+     * Configuration properties for the startup of the application.
+     */
+    @Data
+    @ConfigurationProperties(PROPERTIES_PREFIX)
+    /* package */ static final class Properties {
+        /**
+         * The prefixes of the names of the classes (or of the configuration classes declaring them)
+         * of the beans that are not needed to serve launches, and thus are initialized lazily.
+         */
+        private List<String> lazyBeans = new ArrayList<>(List.of(
+                "org.springframework.cloud.sleuth.zipkin2.",
+                "zipkin2.",
+                "org.springframework.cloud.netflix.eureka.metadata.",
+                "org.thymeleaf.extras."
+        ));
+        /**
+         * The path of the file to which the startup report is written (or {@code null} to not write it).
+         */
+        private String reportPath;
+        /**
+         * Whether the application exits as soon as it is ready (i.e it is a training run).
+         */
+        private boolean exitWhenReady = false;
+    }
+}
@@ -0,0 +1,178 @@
+package ar.edu.itba.cep.lti_app.startup;
+
+import ar.edu.itba.cep.lti_app.startup.BeanInitializationTimer.BeanInitialization;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps track of how long this instance took to start: the time from the start of the JVM until the application
+ * is ready, the time until the first launch is served, and the time taken by each bean
+ * (as measured by the {@link BeanInitializationTimer}).
+ * <p>
+ * The times are published as metrics and, if configured, written to a JSON report
+ * (so that startup regressions can be tracked from build to build).
+ * If configured, the application exits once it is ready (i.e a training run).
+ */
+class StartupReport implements ApplicationListener<ApplicationReadyEvent> {
+
+    /**
+     * The prefix of the names of the startup metrics.
+     */
+    private static final String METRICS_PREFIX = "lti-app.startup.";
+
+    /**
+     * The {@link BeanInitializationTimer} that measures the time taken by each bean.
+     */
+    private final BeanInitializationTimer beanInitializationTimer;
+    /**
+     * The {@link StartupConfig.Properties} used to configure the report.
+     */
+    private final StartupConfig.Properties properties;
+    /**
+     * The {@link ObjectMapper} used to write the report.
+     */
+    private final ObjectMapper objectMapper;
+    /**
+     * Whether a launch has already been served.
+     */
+    private final AtomicBoolean launchServed;
+    /**
+     * The time from the start of the JVM until the application was ready, in milliseconds ({@code NaN} until then).
+     */
+    private volatile double readyMillis;
+    /**
+     * The time from the start of the JVM until the first launch was served, in milliseconds ({@code NaN} until then).
+     */
+    private volatile double firstLaunchMillis;
+    /**
+     * The time taken by each bean (empty until the application is ready).
+     */
+    private volatile List<BeanInitialization> beans;
+
+
+    /**
+     * Constructor.
+     *
+     * @param beanInitializationTimer The {@link BeanInitializationTimer} that measures the time taken by each bean.
+     * @param properties              The {@link StartupConfig.Properties} used to configure the report.
+     * @param objectMapper            The {@link ObjectMapper} used to write the report.
+     * @param meterRegistry           The {@link MeterRegistry} in which the startup metrics are published.
+     */
+    /* package */ StartupReport(
+            final BeanInitializationTimer beanInitializationTimer,
+            final StartupConfig.Properties properties,
+            final ObjectMapper objectMapper,
+            final MeterRegistry meterRegistry) {
+        this.beanInitializationTimer = beanInitializationTimer;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.launchServed = new AtomicBoolean(false);
+        this.readyMillis = Double.NaN;
+        this.firstLaunchMillis = Double.NaN;
+        this.beans = List.of();
+        TimeGauge.builder(METRICS_PREFIX + "ready", this, TimeUnit.MILLISECONDS, r -> r.readyMillis)
+                .description("Time from the start of the JVM until the application was ready")
+                .register(meterRegistry);
+        TimeGauge.builder(METRICS_PREFIX + "first-launch", this, TimeUnit.MILLISECONDS, r -> r.firstLaunchMillis)
+                .description("Time from the start of the JVM until the first launch was served")
+                .register(meterRegistry);
+    }
+
+
+    @Override
+    public void onApplicationEvent(final ApplicationReadyEvent event) {
+        readyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        beans = beanInitializationTimer.stop();
+        write();
+        if (properties.isExitWhenReady()) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    /**
+     * @return Whether a launch has already been served.
+     */
+    /* package */ boolean isLaunchServed() {
+        return launchServed.get();
+    }
+
+    /**
+     * Records that a launch was served (only the first one is recorded).
+     */
+    /* package */ void launchServed() {
+        if (!launchServed.compareAndSet(false, true)) {
+            return;
+        }
+        firstLaunchMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        try {
+            write();
+        } catch (final UncheckedIOException e) {
+            // The launch was served anyway, and the time is still published as a metric.
+        }
+    }
+
+
+    /**
+     * Writes the report to the configured path (if any).
+     *
+     * @throws UncheckedIOException If the report could not be written.
+     */
+    private void write() throws UncheckedIOException {
+        if (properties.getReportPath() == null) {
+            return;
+        }
+        final var report = new Report(
+                readyMillis,
+                Double.isNaN(firstLaunchMillis) ? null : firstLaunchMillis,
+                beans.stream()
+                        .sorted(Comparator.comparingDouble(BeanInitialization::getSelfMillis).reversed())
+                        .collect(Collectors.toList())
+        );
+        try {
+            final var path = Paths.get(properties.getReportPath());
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(path.toFile(), report);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * The startup report.
+     */
+    @Value
+    private static class Report {
+        /**
+         * The time from the start of the JVM until the application was ready, in milliseconds.
+         */
+        private final double readyMillis;
+        /**
+         * The time from the start of the JVM until the first launch was served, in milliseconds
+         * (or {@code null} if no launch was served yet).
+         */
+        private final Double firstLaunchMillis;
+        /**
+         * The time taken by each bean, slowest (by the time spent in the bean itself) first.
+         */
+        private final List<BeanInitialization> beans;
+    }
+}
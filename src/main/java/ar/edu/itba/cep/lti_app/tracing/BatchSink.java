@@ -0,0 +1,27 @@
+package ar.edu.itba.cep.lti_app.tracing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A destination for the batches of items (e.g spans) sent by a {@link BatchingReporter}.
+ * Batches are sent from a single thread, so implementations need not be thread safe.
+ *
+ * @param <T> The concrete type of the items.
+ */
+interface BatchSink<T> extends Closeable {
+
+    /**
+     * Sends the given {@code batch}.
+     *
+     * @param batch The batch to be sent.
+     * @throws IOException If the batch could not be sent.
+     */
+    void send(final List<T> batch) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+        // Nothing to release by default.
+    }
+}
@@ -0,0 +1,262 @@
+package ar.edu.itba.cep.lti_app.tracing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.util.Assert;
+import zipkin2.reporter.Reporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Reporter} that sends items (e.g spans) to a {@link BatchSink} asynchronously, in batches,
+ * from a dedicated thread. A batch is sent once it is full, or once its first item has waited for the batch interval.
+ * Reported items wait in a bounded queue, so tracing never buffers more than its capacity:
+ * when it is full (e.g the sink is slow or down), the oldest items are dropped to make room for the newest ones.
+ * <p>
+ * The queue depth, dropped items, sent items, failures and flush latency are published as metrics
+ * (tagged by the name of the reporter).
+ *
+ * @param <T> The concrete type of the reported items.
+ */
+class BatchingReporter<T> implements Reporter<T>, Closeable {
+
+    /**
+     * The prefix of the names of the reporter metrics.
+     */
+    private static final String METRICS_PREFIX = "lti-app.tracing.reporter.";
+    /**
+     * The name of the tag that holds the name of the reporter.
+     */
+    private static final String REPORTER_TAG = "reporter";
+
+    /**
+     * The {@link BatchSink} to which batches are sent.
+     */
+    private final BatchSink<T> sink;
+    /**
+     * The queue in which reported items wait until they are sent.
+     */
+    private final BlockingQueue<T> queue;
+    /**
+     * The max. amount of items in a batch.
+     */
+    private final int batchSize;
+    /**
+     * The max. time the first item of a batch waits before the batch is sent, in nanoseconds.
+     */
+    private final long batchInterval;
+    /**
+     * The max. time to wait for the queued items to be sent when the reporter is closed.
+     */
+    private final Duration closeTimeout;
+    /**
+     * The thread that sends the batches.
+     */
+    private final Thread thread;
+    /**
+     * Counts the items dropped because the queue was full (or the reporter was closed).
+     */
+    private final Counter droppedCounter;
+    /**
+     * Counts the items sent to the sink.
+     */
+    private final Counter sentCounter;
+    /**
+     * Counts the items lost because the sink failed to send their batch.
+     */
+    private final Counter failedCounter;
+    /**
+     * Measures the time taken to send each batch.
+     */
+    private final Timer flushTimer;
+    /**
+     * Guards the {@link #waiting} flag, so the thread is only interrupted while it waits for items.
+     */
+    private final Object lock;
+    /**
+     * Whether the reporter is running (i.e it has not been closed).
+     */
+    private volatile boolean running;
+    /**
+     * Whether the thread is waiting for items (and can thus be woken up by interrupting it).
+     */
+    private boolean waiting;
+
+
+    /**
+     * Constructor.
+     *
+     * @param name          The name of the reporter (used to name its thread and tag its metrics).
+     * @param sink          The {@link BatchSink} to which batches are sent.
+     * @param properties    The {@link TracingConfig.Properties.SpanReporter} used to configure the reporter.
+     * @param meterRegistry The {@link MeterRegistry} in which the reporter metrics are published.
+     * @throws IllegalArgumentException If the {@code properties} are not valid.
+     */
+    /* package */ BatchingReporter(
+            final String name,
+            final BatchSink<T> sink,
+            final TracingConfig.Properties.SpanReporter properties,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        Assert.isTrue(properties.getQueueCapacity() > 0, "The queue capacity must be positive");
+        Assert.isTrue(properties.getBatchSize() > 0, "The batch size must be positive");
+        Assert.isTrue(properties.getBatchInterval().toNanos() > 0, "The batch interval must be positive");
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.batchSize = properties.getBatchSize();
+        this.batchInterval = properties.getBatchInterval().toNanos();
+        this.closeTimeout = properties.getCloseTimeout();
+        this.droppedCounter = Counter.builder(METRICS_PREFIX + "dropped")
+                .description("Items dropped because the queue was full")
+                .tag(REPORTER_TAG, name)
+                .register(meterRegistry);
+        this.sentCounter = Counter.builder(METRICS_PREFIX + "sent")
+                .description("Items sent")
+                .tag(REPORTER_TAG, name)
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder(METRICS_PREFIX + "failed")
+                .description("Items lost because their batch could not be sent")
+                .tag(REPORTER_TAG, name)
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder(METRICS_PREFIX + "flush")
+                .description("Time taken to send each batch")
+                .tag(REPORTER_TAG, name)
+                .register(meterRegistry);
+        Gauge.builder(METRICS_PREFIX + "queue", queue, BlockingQueue::size)
+                .description("Items waiting to be sent")
+                .tag(REPORTER_TAG, name)
+                .register(meterRegistry);
+        this.lock = new Object();
+        this.running = true;
+        this.thread = new Thread(this::run, "lti-app-" + name + "-reporter");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+
+    @Override
+    public void report(final T item) {
+        if (!running) {
+            droppedCounter.increment();
+            return;
+        }
+        while (!queue.offer(item)) {
+            if (queue.poll() != null) {
+                droppedCounter.increment(); // The oldest one is dropped to make room for the newest one.
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            running = false;
+            if (waiting) {
+                thread.interrupt(); // Only while waiting for items, so that a batch being sent is not aborted.
+            }
+        }
+        try {
+            thread.join(closeTimeout.toMillis());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sink.close();
+    }
+
+
+    /**
+     * Sends batches until the reporter is closed, and then sends the items still in the queue.
+     */
+    private void run() {
+        final List<T> batch = new ArrayList<>(batchSize);
+        while (running) {
+            collect(batch);
+            flush(batch);
+        }
+        do {
+            queue.drainTo(batch, batchSize - batch.size());
+            flush(batch);
+        } while (!queue.isEmpty());
+    }
+
+    /**
+     * Collects the next batch: waits for its first item (for up to the batch interval),
+     * and then collects items until the batch is full, or until the first item has waited for the batch interval.
+     * Closing the reporter cuts the waits short, so the collected items are sent right away.
+     *
+     * @param batch The {@link List} into which the items are collected.
+     */
+    private void collect(final List<T> batch) {
+        final var first = poll(batchInterval);
+        if (first == null) {
+            return; // No items, so check whether the reporter was closed.
+        }
+        batch.add(first);
+        final var deadline = System.nanoTime() + batchInterval;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            if (batch.size() >= batchSize) {
+                return;
+            }
+            final var item = poll(deadline - System.nanoTime());
+            if (item == null) {
+                return; // The batch interval elapsed (or the reporter was closed).
+            }
+            batch.add(item);
+        }
+    }
+
+    /**
+     * Waits for the next item, unless the reporter is closed (in which case the wait is cut short).
+     *
+     * @param timeout The max. time to wait, in nanoseconds.
+     * @return The next item, or {@code null} if none arrived before the timeout, or the reporter was closed.
+     */
+    private T poll(final long timeout) {
+        synchronized (lock) {
+            if (!running) {
+                return null;
+            }
+            waiting = true;
+        }
+        try {
+            return queue.poll(timeout, TimeUnit.NANOSECONDS);
+        } catch (final InterruptedException e) {
+            return null; // Woken up by close.
+        } finally {
+            synchronized (lock) {
+                waiting = false;
+                Thread.interrupted(); // A wake up that arrived too late must not abort the next batch being sent.
+            }
+        }
+    }
+
+    /**
+     * Sends the given {@code batch} to the sink (if not empty), and clears it.
+     *
+     * @param batch The batch to be sent.
+     */
+    private void flush(final List<T> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        final var start = System.nanoTime();
+        try {
+            sink.send(batch);
+            sentCounter.increment(batch.size());
+        } catch (final IOException | RuntimeException e) {
+            failedCounter.increment(batch.size()); // Not retried, so a failing sink can not pile up items.
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batch.clear();
+        }
+    }
+}
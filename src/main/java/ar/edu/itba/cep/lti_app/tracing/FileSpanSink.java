@@ -0,0 +1,110 @@
+package ar.edu.itba.cep.lti_app.tracing;
+
+import zipkin2.Span;
+import zipkin2.codec.SpanBytesEncoder;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * A {@link BatchSink} that appends spans to a local file, one Zipkin JSON (v2) span per line,
+ * so traces can be kept without a collector (e.g to be loaded into Zipkin later).
+ * Once the file reaches its max. size, it is rolled over into a single backup (i.e the file name followed by
+ * {@code .1}), so the disk space used is bounded.
+ */
+class FileSpanSink implements BatchSink<Span> {
+
+    /**
+     * The separator written after each span.
+     */
+    private static final byte LINE_SEPARATOR = '\n';
+
+    /**
+     * The {@link Path} of the file to which spans are appended.
+     */
+    private final Path path;
+    /**
+     * The {@link Path} of the backup into which the file is rolled over.
+     */
+    private final Path backup;
+    /**
+     * The size at which the file is rolled over, in bytes.
+     */
+    private final long maxSize;
+    /**
+     * The {@link OutputStream} that writes into the file (or {@code null} if it is not open).
+     */
+    private OutputStream output;
+    /**
+     * The current size of the file, in bytes.
+     */
+    private long size;
+
+
+    /**
+     * Constructor.
+     *
+     * @param properties The {@link TracingConfig.Properties.SpanReporter.File} used to configure the sink.
+     */
+    /* package */ FileSpanSink(final TracingConfig.Properties.SpanReporter.File properties) {
+        this.path = Paths.get(properties.getPath());
+        this.backup = path.resolveSibling(path.getFileName() + ".1");
+        this.maxSize = properties.getMaxSize().toBytes();
+    }
+
+
+    @Override
+    public void send(final List<Span> batch) throws IOException {
+        if (output == null) {
+            open();
+        }
+        try {
+            for (final var span : batch) {
+                final var bytes = SpanBytesEncoder.JSON_V2.encode(span);
+                output.write(bytes);
+                output.write(LINE_SEPARATOR);
+                size += bytes.length + 1;
+            }
+            output.flush();
+        } catch (final IOException e) {
+            close(); // Reopened by the next batch.
+            throw e;
+        }
+        if (size >= maxSize) {
+            close();
+            Files.move(path, backup, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (output != null) {
+            final var closed = output;
+            output = null;
+            closed.close();
+        }
+    }
+
+
+    /**
+     * Opens the file (creating it and its parent directories if they do not exist), to append spans to it.
+     *
+     * @throws IOException If the file could not be opened.
+     */
+    private void open() throws IOException {
+        final var parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // Not a channel, so writes are not aborted (closing the file) if the reporter's thread is interrupted.
+        output = new BufferedOutputStream(new FileOutputStream(path.toFile(), true));
+        size = Files.size(path);
+    }
+}
@@ -0,0 +1,88 @@
+package ar.edu.itba.cep.lti_app.tracing;
+
+import brave.http.HttpAdapter;
+import brave.http.HttpSampler;
+import brave.sampler.RateLimitingSampler;
+import brave.sampler.Sampler;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * An {@link HttpSampler} that decides whether the traces of incoming requests are sampled according to their path:
+ * each route samples a fraction of its requests, capped to a max. amount of traces per second.
+ * Requests that do not match any route are left to the global sampler (i.e {@code spring.sleuth.sampler.*}).
+ */
+class RouteSampler extends HttpSampler {
+
+    /**
+     * The {@link Route}s, in order of precedence.
+     */
+    private final List<Route> routes;
+
+
+    /**
+     * Constructor.
+     *
+     * @param routes The {@link TracingConfig.Properties.Route}s, in order of precedence.
+     */
+    /* package */ RouteSampler(final List<TracingConfig.Properties.Route> routes) {
+        this.routes = routes.stream().map(Route::new).collect(Collectors.toUnmodifiableList());
+    }
+
+
+    @Override
+    public <Req> Boolean trySample(final HttpAdapter<Req, ?> adapter, final Req request) {
+        final var path = adapter.path(request);
+        if (path == null) {
+            return null;
+        }
+        for (final var route : routes) {
+            if (path.startsWith(route.path)) {
+                return route.isSampled();
+            }
+        }
+        return null; // Left to the global sampler.
+    }
+
+
+    /**
+     * A route, with the {@link Sampler}s that decide whether its requests are sampled.
+     */
+    private static final class Route {
+
+        /**
+         * The prefix of the paths of the requests that match the route.
+         */
+        private final String path;
+        /**
+         * The {@link Sampler} that samples the configured fraction of requests.
+         */
+        private final Sampler probabilitySampler;
+        /**
+         * The {@link Sampler} that caps the amount of traces per second (or {@code null} if they are not capped).
+         */
+        private final Sampler rateSampler;
+
+
+        /**
+         * Constructor.
+         *
+         * @param properties The {@link TracingConfig.Properties.Route} used to configure the route.
+         */
+        private Route(final TracingConfig.Properties.Route properties) {
+            this.path = properties.getPath();
+            this.probabilitySampler = Sampler.create(properties.getProbability());
+            this.rateSampler = properties.getRate() == null ? null : RateLimitingSampler.create(properties.getRate());
+        }
+
+
+        /**
+         * @return Whether the trace of a request that matches the route must be sampled.
+         */
+        private boolean isSampled() {
+            // The trace ID is ignored by both samplers. The rate is only consumed by sampled requests.
+            return probabilitySampler.isSampled(0L) && (rateSampler == null || rateSampler.isSampled(0L));
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ar.edu.itba.cep.lti_app.tracing;
+
+import brave.handler.FinishedSpanHandler;
+import brave.handler.MutableSpan;
+import brave.propagation.TraceContext;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import zipkin2.Endpoint;
+import zipkin2.Span;
+import zipkin2.reporter.Reporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A {@link FinishedSpanHandler} that keeps the traces not sampled up front only if they turn out to matter.
+ * The spans of those traces are recorded anyway (without propagating the sampling decision to other services),
+ * and buffered until the local root span (e.g the incoming request) finishes. If it failed, or it took longer than
+ * a threshold, all the buffered spans are reported. Otherwise, they are dropped without ever being exported.
+ * <p>
+ * Spans of sampled traces are not touched (i.e they are reported as usual).
+ */
+class TailSamplingSpanHandler extends FinishedSpanHandler {
+
+    /**
+     * The prefix of the names of the tail sampling metrics.
+     */
+    private static final String METRICS_PREFIX = "lti-app.tracing.tail-sampling.";
+    /**
+     * The name of the tag that holds an error.
+     */
+    private static final String ERROR_TAG = "error";
+
+    /**
+     * The {@link Reporter}s to which kept spans are reported.
+     */
+    private final ObjectProvider<Reporter<Span>> reporters;
+    /**
+     * The name of this service, reported in the spans that do not override it.
+     */
+    private final String localServiceName;
+    /**
+     * The min. duration of a local root span for its trace to be kept, in microseconds.
+     */
+    private final long latencyThreshold;
+    /**
+     * The max. amount of spans buffered for each trace.
+     */
+    private final int maxSpansPerTrace;
+    /**
+     * The spans buffered until their local root span finishes, by local root span ID.
+     */
+    private final Cache<Long, List<BufferedSpan>> pending;
+    /**
+     * Counts the traces that were kept.
+     */
+    private final Counter keptCounter;
+    /**
+     * Counts the traces that were dropped.
+     */
+    private final Counter droppedCounter;
+    /**
+     * Counts the spans that were not buffered because their trace already had too many spans.
+     */
+    private final Counter overflowCounter;
+
+
+    /**
+     * Constructor.
+     *
+     * @param properties       The {@link TracingConfig.Properties.TailSampling} used to configure the handler.
+     * @param reporters        The {@link Reporter}s to which kept spans are reported.
+     * @param localServiceName The name of this service, reported in the spans that do not override it.
+     * @param meterRegistry    The {@link MeterRegistry} in which the tail sampling metrics are published.
+     */
+    /* package */ TailSamplingSpanHandler(
+            final TracingConfig.Properties.TailSampling properties,
+            final ObjectProvider<Reporter<Span>> reporters,
+            final String localServiceName,
+            final MeterRegistry meterRegistry) {
+        this.reporters = reporters;
+        this.localServiceName = localServiceName;
+        this.latencyThreshold = properties.getLatencyThreshold().toNanos() / 1000;
+        this.maxSpansPerTrace = properties.getMaxSpansPerTrace();
+        this.pending = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxTraces())
+                .expireAfterAccess(properties.getMaxTraceDuration()) // Local root spans that never finish.
+                .build();
+        this.keptCounter = Counter.builder(METRICS_PREFIX + "kept")
+                .description("Traces not sampled up front, kept because they failed or were slow")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder(METRICS_PREFIX + "dropped")
+                .description("Traces not sampled up front, dropped because they succeeded fast enough")
+                .register(meterRegistry);
+        this.overflowCounter = Counter.builder(METRICS_PREFIX + "overflow")
+                .description("Spans not buffered because their trace already had too many spans")
+                .register(meterRegistry);
+        Gauge.builder(METRICS_PREFIX + "pending", pending, Cache::estimatedSize)
+                .description("Traces whose spans are buffered until their local root span finishes")
+                .register(meterRegistry);
+    }
+
+
+    @Override
+    public boolean handle(final TraceContext context, final MutableSpan span) {
+        if (Boolean.TRUE.equals(context.sampled())) {
+            return true; // Sampled up front, so it is reported as usual.
+        }
+        if (!context.isLocalRoot()) {
+            final var spans = pending.get(context.localRootId(), ignored -> new ArrayList<>());
+            synchronized (spans) {
+                if (spans.size() < maxSpansPerTrace) {
+                    spans.add(new BufferedSpan(context, span));
+                } else {
+                    overflowCounter.increment();
+                }
+            }
+            return false;
+        }
+        final var spans = Optional.ofNullable(pending.asMap().remove(context.localRootId())).orElseGet(List::of);
+        if (!isFailed(span) && span.finishTimestamp() - span.startTimestamp() < latencyThreshold) {
+            droppedCounter.increment();
+            return false;
+        }
+        keptCounter.increment();
+        final List<Span> kept = new ArrayList<>(spans.size() + 1);
+        synchronized (spans) {
+            spans.forEach(buffered -> kept.add(toZipkin(buffered.context, buffered.span)));
+        }
+        kept.add(toZipkin(context, span));
+        reporters.orderedStream().forEach(reporter -> kept.forEach(reporter::report));
+        return false;
+    }
+
+    @Override
+    public boolean alwaysSampleLocal() {
+        return true; // Record the spans of traces that are not sampled, so they can be kept once they finish.
+    }
+
+
+    /**
+     * Indicates whether the given {@code span} failed.
+     *
+     * @param span The {@link MutableSpan} to be checked.
+     * @return {@code true} if it failed, or {@code false} otherwise.
+     */
+    private static boolean isFailed(final MutableSpan span) {
+        return span.error() != null || span.tag(ERROR_TAG) != null;
+    }
+
+    /**
+     * Converts the given {@code span} into a Zipkin {@link Span}
+     * (the same way it would have been converted if it had been sampled up front).
+     *
+     * @param context The {@link TraceContext} of the span.
+     * @param span    The {@link MutableSpan} to be converted.
+     * @return The converted {@link Span}.
+     */
+    private Span toZipkin(final TraceContext context, final MutableSpan span) {
+        final var builder = Span.newBuilder()
+                .traceId(context.traceIdString())
+                .parentId(context.parentIdString())
+                .id(context.spanIdString())
+                .name(span.name())
+                .shared(span.shared());
+        final var start = span.startTimestamp();
+        final var finish = span.finishTimestamp();
+        builder.timestamp(start);
+        if (start != 0 && finish != 0) {
+            builder.duration(Math.max(finish - start, 1));
+        }
+        if (span.kind() != null) {
+            builder.kind(Span.Kind.valueOf(span.kind().name()));
+        }
+        builder.localEndpoint(Endpoint.newBuilder()
+                .serviceName(Optional.ofNullable(span.localServiceName()).orElse(localServiceName))
+                .ip(span.localIp())
+                .port(span.localPort())
+                .build());
+        if (span.remoteServiceName() != null || span.remoteIp() != null) {
+            builder.remoteEndpoint(Endpoint.newBuilder()
+                    .serviceName(span.remoteServiceName())
+                    .ip(span.remoteIp())
+                    .port(span.remotePort())
+                    .build());
+        }
+        span.forEachTag(Span.Builder::putTag, builder);
+        span.forEachAnnotation(Span.Builder::addAnnotation, builder);
+        if (span.error() != null && span.tag(ERROR_TAG) == null) {
+            final var error = span.error();
+            builder.putTag(ERROR_TAG, Optional.ofNullable(error.getMessage()).orElse(error.getClass().getSimpleName()));
+        }
+        return builder.build();
+    }
+
+
+    /**
+     * A span buffered until its local root span finishes.
+     */
+    private static final class BufferedSpan {
+
+        /**
+         * The {@link TraceContext} of the span.
+         */
+        private final TraceContext context;
+        /**
+         * The span.
+         */
+        private final MutableSpan span;
+
+
+        /**
+         * Constructor.
+         *
+         * @param context The {@link TraceContext} of the span.
+         * @param span    The span.
+         */
+        private BufferedSpan(final TraceContext context, final MutableSpan span) {
+            this.context = context;
+            this.span = span;
+        }
+    }
+}
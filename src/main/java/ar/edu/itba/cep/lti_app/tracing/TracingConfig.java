@@ -0,0 +1,220 @@
+package ar.edu.itba.cep.lti_app.tracing;
+
+import brave.handler.FinishedSpanHandler;
+import brave.http.HttpSampler;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.sleuth.instrument.web.ServerSampler;
+import org.springframework.cloud.sleuth.zipkin2.ZipkinAutoConfiguration;
+import org.springframework.cloud.sleuth.zipkin2.ZipkinProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.unit.DataSize;
+import zipkin2.Span;
+import zipkin2.reporter.Reporter;
+import zipkin2.reporter.Sender;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration class for the sampling and reporting of traces.
+ */
+@Configuration
+@EnableConfigurationProperties(TracingConfig.Properties.class)
+class TracingConfig {
+
+    /**
+     * Value of the {@code lti-app.tracing.reporter.sink} property that selects the {@link ZipkinSenderSink}.
+     */
+    private static final String ZIPKIN_SINK = "zipkin";
+    /**
+     * Value of the {@code lti-app.tracing.reporter.sink} property that selects the {@link FileSpanSink}.
+     */
+    private static final String FILE_SINK = "file";
+
+
+    /**
+     * An {@link HttpSampler} that samples the traces of incoming requests according to their path.
+     * Requests that do not match any of the configured routes are left to the global sampler.
+     *
+     * @param properties The {@link Properties} used to configure the routes.
+     * @return The created {@link HttpSampler}.
+     */
+    @Bean(name = ServerSampler.NAME)
+    public HttpSampler routeSampler(final Properties properties) {
+        return new RouteSampler(properties.getRoutes());
+    }
+
+    /**
+     * A {@link FinishedSpanHandler} that keeps the traces not sampled up front only if they failed or were slow.
+     *
+     * @param properties    The {@link Properties} used to configure the tail sampling.
+     * @param reporters     The {@link Reporter}s to which kept spans are reported (lazily looked up).
+     * @param environment   The {@link Environment} from where the name of this service is taken.
+     * @param meterRegistry The {@link MeterRegistry} in which the tail sampling metrics are published.
+     * @return The created {@link FinishedSpanHandler}.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "lti-app.tracing.tail-sampling", name = "enabled", havingValue = "true")
+    public FinishedSpanHandler tailSamplingSpanHandler(
+            final Properties properties,
+            final ObjectProvider<Reporter<Span>> reporters,
+            final Environment environment,
+            final MeterRegistry meterRegistry) {
+        final var localServiceName = environment.getProperty(
+                "spring.zipkin.service.name",
+                environment.getProperty("spring.application.name", "default")
+        );
+        return new TailSamplingSpanHandler(properties.getTailSampling(), reporters, localServiceName, meterRegistry);
+    }
+
+    /**
+     * A {@link Reporter} that sends spans asynchronously, in batches, from a dedicated thread,
+     * either to the Zipkin collector (through the Zipkin {@link Sender}) or to a local file.
+     * It replaces the default Zipkin {@link Reporter}.
+     *
+     * @param properties       The {@link Properties} used to configure the reporter.
+     * @param sender           The Zipkin {@link Sender} (lazily looked up, as it is not used by the file sink).
+     * @param zipkinProperties The {@link ZipkinProperties} with the encoding of the spans sent to Zipkin.
+     * @param meterRegistry    The {@link MeterRegistry} in which the reporter metrics are published.
+     * @return The created {@link Reporter}.
+     */
+    @Bean(name = ZipkinAutoConfiguration.REPORTER_BEAN_NAME, destroyMethod = "close")
+    @ConditionalOnProperty(value = "spring.zipkin.enabled", matchIfMissing = true)
+    public BatchingReporter<Span> batchingSpanReporter(
+            final Properties properties,
+            @Qualifier(ZipkinAutoConfiguration.SENDER_BEAN_NAME) final ObjectProvider<Sender> sender,
+            final ZipkinProperties zipkinProperties,
+            final MeterRegistry meterRegistry) {
+        final var reporter = properties.getReporter();
+        final BatchSink<Span> sink = FILE_SINK.equals(reporter.getSink())
+                ? new FileSpanSink(reporter.getFile())
+                : new ZipkinSenderSink(sender.getObject(), zipkinProperties.getEncoder());
+        return new BatchingReporter<>("spans", sink, reporter, meterRegistry);
+    }
+
+
+    /**
+     * Configuration properties for the sampling and reporting of traces.
+     */
+    @Data
+    @ConfigurationProperties("lti-app.tracing")
+    /* package */ static final class Properties {
+        /**
+         * The sampling of the traces of incoming requests, by path, in order of precedence.
+         * Requests that do not match any route are sampled by the global sampler (i.e {@code spring.sleuth.sampler.*}).
+         */
+        private List<Route> routes = new ArrayList<>();
+        /**
+         * Configuration of the tail sampling of the traces not sampled up front.
+         */
+        private final TailSampling tailSampling = new TailSampling();
+        /**
+         * Configuration of the reporting of spans.
+         */
+        private final SpanReporter reporter = new SpanReporter();
+
+
+        /**
+         * Configuration properties for the sampling of the traces of the requests whose path matches a route.
+         */
+        @Data
+        /* package */ static final class Route {
+            /**
+             * The prefix of the paths of the requests that match the route.
+             */
+            private String path;
+            /**
+             * The fraction of the requests that are sampled (between 0 and 1).
+             */
+            private float probability = 1;
+            /**
+             * The max. amount of traces sampled per second (or {@code null} to not cap them).
+             */
+            private Integer rate;
+        }
+
+        /**
+         * Configuration properties for the tail sampling of the traces not sampled up front.
+         */
+        @Data
+        /* package */ static final class TailSampling {
+            /**
+             * Whether the traces not sampled up front are recorded anyway, and kept if they failed or were slow.
+             */
+            private boolean enabled = false;
+            /**
+             * The min. duration of the local root span (e.g the incoming request) of a trace for it to be kept.
+             */
+            private Duration latencyThreshold = Duration.ofSeconds(2);
+            /**
+             * The max. amount of traces whose spans are buffered until their local root span finishes.
+             */
+            private long maxTraces = 10_000;
+            /**
+             * The max. amount of spans buffered for each trace.
+             */
+            private int maxSpansPerTrace = 128;
+            /**
+             * The time after which the spans of a trace whose local root span has not finished are dropped.
+             */
+            private Duration maxTraceDuration = Duration.ofMinutes(1);
+        }
+
+        /**
+         * Configuration properties for the reporting of spans.
+         */
+        @Data
+        /* package */ static final class SpanReporter {
+            /**
+             * Where spans are sent. Either {@code zipkin} (the Zipkin collector, through the {@code spring.zipkin.*}
+             * sender) or {@code file} (a local file, so no collector is needed).
+             */
+            private String sink = ZIPKIN_SINK;
+            /**
+             * The max. amount of spans waiting to be sent (the oldest ones are dropped when it is reached).
+             */
+            private int queueCapacity = 10_000;
+            /**
+             * The max. amount of spans sent in a batch.
+             */
+            private int batchSize = 200;
+            /**
+             * The max. time the first span of a batch waits before the batch is sent.
+             */
+            private Duration batchInterval = Duration.ofSeconds(1);
+            /**
+             * The max. time to wait for the queued spans to be sent when the application is stopped.
+             */
+            private Duration closeTimeout = Duration.ofSeconds(5);
+            /**
+             * Configuration of the file sink.
+             */
+            private final File file = new File();
+
+
+            /**
+             * Configuration properties for the file to which spans are appended by the {@code file} sink.
+             */
+            @Data
+            /* package */ static final class File {
+                /**
+                 * The path of the file to which spans are appended (one Zipkin JSON span per line).
+                 */
+                private String path = "spans.json";
+                /**
+                 * The size at which the file is rolled over into a single backup.
+                 */
+                private DataSize maxSize = DataSize.ofMegabytes(100);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ar.edu.itba.cep.lti_app.tracing;
+
+import zipkin2.Span;
+import zipkin2.codec.BytesEncoder;
+import zipkin2.reporter.Sender;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link BatchSink} that sends spans to a Zipkin collector through a {@link Sender} (e.g over HTTP).
+ */
+class ZipkinSenderSink implements BatchSink<Span> {
+
+    /**
+     * The {@link Sender} through which spans are sent.
+     */
+    private final Sender sender;
+    /**
+     * The {@link BytesEncoder} used to encode each span.
+     */
+    private final BytesEncoder<Span> encoder;
+
+
+    /**
+     * Constructor.
+     *
+     * @param sender  The {@link Sender} through which spans are sent.
+     * @param encoder The {@link BytesEncoder} used to encode each span (must match the {@code sender}'s encoding).
+     */
+    /* package */ ZipkinSenderSink(final Sender sender, final BytesEncoder<Span> encoder) {
+        this.sender = sender;
+        this.encoder = encoder;
+    }
+
+
+    @Override
+    public void send(final List<Span> batch) throws IOException {
+        final List<byte[]> encoded = new ArrayList<>(batch.size());
+        for (final var span : batch) {
+            encoded.add(encoder.encode(span));
+        }
+        sender.sendSpans(encoded).execute();
+    }
+}
@@ -0,0 +1,353 @@
+package ar.edu.itba.cep.lti_app.warm_up;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Performs synthetic launches against this instance, through the whole MVC stack
+ * (i.e filters, argument resolvers, controllers, redirections and views), in every locale.
+ * Besides the "exam taking" and "exam selection" launches, the requests that render the error views are performed.
+ * <p>
+ * Requests are marked as warm-up requests, so that the calls to the LTI service they perform
+ * are sent to the {@link WarmUpLtiServiceStub} instead of the real service.
+ */
+class SyntheticTraffic implements AutoCloseable {
+
+    /**
+     * The return url used in the synthetic "take exam" requests.
+     */
+    private static final String RETURN_URL = "https://lms.example.com/mod/lti/return.php?course=3&instanceid=12";
+
+    /**
+     * The base {@link URI} of this instance.
+     */
+    private final URI baseUri;
+    /**
+     * The {@link Locale}s in which the launches are performed ({@link Locale#ROOT} for no {@code Accept-Language}).
+     */
+    private final List<Locale> locales;
+    /**
+     * The {@link ExecutorService} in which the launches are performed.
+     */
+    private final ExecutorService executor;
+    /**
+     * The {@link HttpClient} used to perform requests.
+     */
+    private final HttpClient httpClient;
+
+
+    /**
+     * Constructor.
+     *
+     * @param baseUri     The base {@link URI} of this instance.
+     * @param locales     The {@link Locale}s in which the launches are performed
+     *                    ({@link Locale#ROOT} for no {@code Accept-Language}).
+     * @param concurrency The amount of launches performed concurrently.
+     */
+    /* package */ SyntheticTraffic(final URI baseUri, final List<Locale> locales, final int concurrency) {
+        this.baseUri = baseUri;
+        this.locales = List.copyOf(locales);
+        this.executor = Executors.newFixedThreadPool(concurrency);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+
+    /**
+     * Performs a round of launches (each of them in every locale), and returns the latency at the given percentile.
+     *
+     * @param launches   The amount of launches to be performed.
+     * @param percentile The percentile of the latency to be returned (between 0 and 1).
+     * @return The latency of the requests at the given {@code percentile}, in microseconds
+     * ({@code NaN} if no request was completed).
+     * @throws InterruptedException If the thread is interrupted while waiting for the launches.
+     */
+    /* package */ double round(final int launches, final double percentile) throws InterruptedException {
+        final var latencies = new ConcurrentLinkedQueue<Long>();
+        final var tasks = new ArrayList<Callable<Void>>(launches);
+        for (var i = 0; i < launches; i++) {
+            tasks.add(() -> {
+                launch(latencies);
+                return null;
+            });
+        }
+        executor.invokeAll(tasks);
+        if (latencies.isEmpty()) {
+            return Double.NaN;
+        }
+        final var sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        final var index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+
+    /**
+     * Performs a launch of each kind (plus the requests that render the error views) in every locale.
+     * A failed launch is abandoned (the following ones are performed anyway).
+     *
+     * @param latencies The queue in which the latency of each request is recorded, in microseconds.
+     * @throws InterruptedException If the thread is interrupted while performing requests.
+     */
+    private void launch(final ConcurrentLinkedQueue<Long> latencies) throws InterruptedException {
+        for (final var locale : locales) {
+            final var requests = new Requests(locale, latencies);
+            for (final var scenario : List.<Scenario>of(
+                    Requests::examTaking,
+                    Requests::examSelection,
+                    Requests::errors)) {
+                try {
+                    scenario.perform(requests);
+                } catch (final IOException | RuntimeException e) {
+                    // Warming up is best effort.
+                }
+            }
+        }
+    }
+
+    /**
+     * URL-encodes the given {@code value}.
+     *
+     * @param value The value to be encoded.
+     * @return The encoded value.
+     */
+    private static String encode(final String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Takes the value of a query param from the given {@code uri}.
+     *
+     * @param uri  The uri.
+     * @param name The name of the query param.
+     * @return The decoded value of the query param.
+     * @throws IllegalStateException If the query param is missing.
+     */
+    private static String queryParam(final URI uri, final String name) throws IllegalStateException {
+        final var query = Objects.requireNonNullElse(uri.getRawQuery(), "");
+        for (final var param : query.split("&")) {
+            final var separator = param.indexOf('=');
+            if (separator > 0 && param.substring(0, separator).equals(name)) {
+                return URLDecoder.decode(param.substring(separator + 1), StandardCharsets.UTF_8);
+            }
+        }
+        throw new IllegalStateException("Missing " + name + " query param in " + uri);
+    }
+
+
+    /**
+     * A sequence of requests performed by a synthetic launch.
+     */
+    @FunctionalInterface
+    private interface Scenario {
+
+        /**
+         * Performs the requests.
+         *
+         * @param requests The {@link Requests} used to perform them.
+         * @throws IOException          If an I/O error occurs.
+         * @throws InterruptedException If the thread is interrupted while performing requests.
+         */
+        void perform(final Requests requests) throws IOException, InterruptedException;
+    }
+
+
+    /**
+     * Performs the requests of the synthetic launches in a given locale, recording their latencies.
+     */
+    private final class Requests {
+
+        /**
+         * The {@link Locale} in which requests are performed ({@link Locale#ROOT} for no {@code Accept-Language}).
+         */
+        private final Locale locale;
+        /**
+         * The queue in which the latency of each request is recorded, in microseconds.
+         */
+        private final ConcurrentLinkedQueue<Long> latencies;
+
+
+        /**
+         * Constructor.
+         *
+         * @param locale    The {@link Locale} in which requests are performed.
+         * @param latencies The queue in which the latency of each request is recorded, in microseconds.
+         */
+        private Requests(final Locale locale, final ConcurrentLinkedQueue<Long> latencies) {
+            this.locale = locale;
+            this.latencies = latencies;
+        }
+
+
+        /**
+         * Performs an "exam taking" launch (following the redirection if it stays in this instance),
+         * and the request with which the "take exam" view is shown when the launch redirects to it.
+         *
+         * @throws IOException          If an I/O error occurs.
+         * @throws InterruptedException If the thread is interrupted while performing requests.
+         */
+        private void examTaking() throws IOException, InterruptedException {
+            final var launch = send(authenticationResponse("exam-taking", send(loginInitiation("exam-taking"))));
+            follow(launch);
+            send(get("exam-taking?examId=1"
+                    + "&tokenId=" + UUID.randomUUID()
+                    + "&accessToken=" + encode(WarmUpLtiServiceStub.jwtLike())
+                    + "&refreshToken=" + encode(WarmUpLtiServiceStub.jwtLike())
+                    + "&returnUrl=" + encode(RETURN_URL)));
+        }
+
+        /**
+         * Performs an "exam selection" launch, following it with the selection of an exam
+         * (both valid and invalid, in order to render the form errors).
+         *
+         * @throws IOException          If an I/O error occurs.
+         * @throws InterruptedException If the thread is interrupted while performing requests.
+         */
+        private void examSelection() throws IOException, InterruptedException {
+            final var launch = send(authenticationResponse("exam-selection", send(loginInitiation("exam-selection"))));
+            final var state = queryParam(location(launch), "state");
+            follow(launch);
+            send(post("exam-selection/selected", "examId=1&state=" + encode(state)));
+            send(post("exam-selection/selected", "state=" + encode(state)));
+        }
+
+        /**
+         * Performs the requests that render the error views
+         * (i.e invalid launches, expired launch handles and expired waiting room tickets).
+         *
+         * @throws IOException          If an I/O error occurs.
+         * @throws InterruptedException If the thread is interrupted while performing requests.
+         */
+        private void errors() throws IOException, InterruptedException {
+            send(get("init-login"));
+            send(post("exam-taking", ""));
+            send(get("exam-taking?launch=" + UUID.randomUUID()));
+            send(get("exam-taking/waiting-room/" + UUID.randomUUID()));
+        }
+
+
+        /**
+         * Creates the login initiation request that the LMS would perform.
+         *
+         * @param target The path of the target link (i.e the launch).
+         * @return The created {@link HttpRequest.Builder}.
+         */
+        private HttpRequest.Builder loginInitiation(final String target) {
+            return get("init-login?iss=https%3A%2F%2Flms.example.com&login_hint=2&lti_deployment_id=1"
+                    + "&target_link_uri=" + encode(baseUri.resolve(target).toString()));
+        }
+
+        /**
+         * Creates the authentication response form POST that the LMS would perform,
+         * taking the state from the authentication request redirection.
+         *
+         * @param target                The path to which the authentication response is posted.
+         * @param authenticationRequest The authentication request redirection response.
+         * @return The created {@link HttpRequest.Builder}.
+         */
+        private HttpRequest.Builder authenticationResponse(
+                final String target,
+                final HttpResponse<Void> authenticationRequest) {
+            final var state = queryParam(location(authenticationRequest), "state");
+            return post(target, "id_token=" + WarmUpLtiServiceStub.jwtLike() + "&state=" + encode(state));
+        }
+
+        /**
+         * Follows the given redirection {@code response}, if it is a redirection within this instance.
+         *
+         * @param response The response.
+         * @throws IOException          If an I/O error occurs.
+         * @throws InterruptedException If the thread is interrupted while performing the request.
+         */
+        private void follow(final HttpResponse<Void> response) throws IOException, InterruptedException {
+            if (response.statusCode() / 100 != 3) {
+                return;
+            }
+            final var location = location(response);
+            if (Objects.equals(location.getHost(), baseUri.getHost()) && location.getPort() == baseUri.getPort()) {
+                send(HttpRequest.newBuilder(location).GET());
+            }
+        }
+
+        /**
+         * Creates a GET request to the given path.
+         *
+         * @param path The path (with the query string).
+         * @return The created {@link HttpRequest.Builder}.
+         */
+        private HttpRequest.Builder get(final String path) {
+            return HttpRequest.newBuilder(baseUri.resolve(path)).GET();
+        }
+
+        /**
+         * Creates a form POST to the given path.
+         *
+         * @param path The path.
+         * @param form The url encoded form.
+         * @return The created {@link HttpRequest.Builder}.
+         */
+        private HttpRequest.Builder post(final String path, final String form) {
+            return HttpRequest.newBuilder(baseUri.resolve(path))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(form));
+        }
+
+        /**
+         * Performs the given request as a warm-up request in the {@link #locale}, recording its latency.
+         *
+         * @param request The {@link HttpRequest.Builder} of the request to be performed.
+         * @return The response.
+         * @throws IOException          If an I/O error occurs.
+         * @throws InterruptedException If the thread is interrupted while performing the request.
+         */
+        private HttpResponse<Void> send(final HttpRequest.Builder request) throws IOException, InterruptedException {
+            request.header(WarmUpRequests.HEADER, WarmUpRequests.TOKEN);
+            if (!Locale.ROOT.equals(locale)) {
+                request.header("Accept-Language", locale.toLanguageTag());
+            }
+            final var start = System.nanoTime();
+            final var response = httpClient.send(request.build(), HttpResponse.BodyHandlers.discarding());
+            latencies.add(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            return response;
+        }
+
+        /**
+         * Resolves the location of the given redirection {@code response}.
+         *
+         * @param response The redirection response.
+         * @return The {@link URI} to which it redirects.
+         * @throws IllegalStateException If the response is not a redirection.
+         */
+        private URI location(final HttpResponse<Void> response) throws IllegalStateException {
+            final var location = response.headers().firstValue("Location")
+                    .orElseThrow(() -> new IllegalStateException("Not a redirection: " + response.statusCode()));
+            return response.uri().resolve(location);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ar.edu.itba.cep.lti_app.warm_up;
+
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renders templates in every locale directly through the {@link ITemplateEngine}, with an empty model,
+ * so that they are parsed and cached, and their messages resolved, before the first launch needs them.
+ * <p>
+ * This is meant for the templates that the {@link SyntheticTraffic} cannot reach (i.e those shown when
+ * the LTI service fails, or answers with an error), which must not need a model.
+ */
+class TemplateWarmUp {
+
+    /**
+     * The {@link ITemplateEngine} with which the templates are rendered.
+     */
+    private final ITemplateEngine templateEngine;
+    /**
+     * The names of the templates.
+     */
+    private final List<String> templates;
+    /**
+     * The {@link Locale}s in which the templates are rendered ({@link Locale#ROOT} for the default messages).
+     */
+    private final List<Locale> locales;
+
+
+    /**
+     * Constructor.
+     *
+     * @param templateEngine The {@link ITemplateEngine} with which the templates are rendered.
+     * @param templates      The names of the templates.
+     * @param locales        The {@link Locale}s in which the templates are rendered
+     *                       ({@link Locale#ROOT} for the default messages).
+     */
+    /* package */ TemplateWarmUp(
+            final ITemplateEngine templateEngine,
+            final List<String> templates,
+            final List<Locale> locales) {
+        this.templateEngine = templateEngine;
+        this.templates = List.copyOf(templates);
+        this.locales = List.copyOf(locales);
+    }
+
+
+    /**
+     * Renders every template in every locale, discarding the output.
+     *
+     * @throws org.thymeleaf.exceptions.TemplateEngineException If a template cannot be rendered.
+     */
+    /* package */ void renderAll() {
+        for (final var template : templates) {
+            for (final var locale : locales) {
+                templateEngine.process(template, new Context(locale), Writer.nullWriter());
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package ar.edu.itba.cep.lti_app.warm_up;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.util.StringUtils;
+import org.thymeleaf.ITemplateEngine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Configuration class for the warm-up of the application (i.e what is performed before putting it in service).
+ */
+@Configuration
+@EnableConfigurationProperties(WarmUpConfig.Properties.class)
+class WarmUpConfig {
+
+    /**
+     * A {@link WarmUpGate} that keeps this instance out of service (i.e health and Eureka status) until it is warm.
+     *
+     * @param applicationInfoManager An {@link ObjectProvider} of the {@link ApplicationInfoManager}
+     *                               through which the Eureka instance status is changed.
+     * @param meterRegistry          The {@link MeterRegistry} in which the warm-up metrics are published.
+     * @return The created {@link WarmUpGate}.
+     */
+    @Bean
+    public WarmUpGate warmUpHealthIndicator(
+            final ObjectProvider<ApplicationInfoManager> applicationInfoManager,
+            final MeterRegistry meterRegistry) {
+        return new WarmUpGate(applicationInfoManager, meterRegistry);
+    }
+
+    /**
+     * A {@link WarmUpRunner} that warms up this instance once the application is ready.
+     *
+     * @param properties     The {@link Properties} used to configure the warm-up.
+     * @param gate           The {@link WarmUpGate} opened once the warm-up finishes.
+     * @param templateEngine The {@link ITemplateEngine} with which the templates are rendered.
+     * @param resourceLoader The {@link ResourceLoader} used to find the messages.
+     * @param environment    The {@link Environment} from where the messages basename and context path are taken.
+     * @return The created {@link WarmUpRunner}.
+     */
+    @Bean
+    public WarmUpRunner warmUpRunner(
+            final Properties properties,
+            final WarmUpGate gate,
+            final ITemplateEngine templateEngine,
+            final ResourceLoader resourceLoader,
+            final Environment environment) {
+        final var resolver = ResourcePatternUtils.getResourcePatternResolver(resourceLoader);
+        final var locales = locales(resolver, environment.getProperty("spring.messages.basename", "messages"));
+        return new WarmUpRunner(
+                properties,
+                gate,
+                new TemplateWarmUp(templateEngine, properties.getTemplates(), locales),
+                locales,
+                environment.getProperty("server.servlet.context-path", "")
+        );
+    }
+
+
+    /**
+     * Finds the locales for which there are messages ({@link Locale#ROOT} representing the default messages).
+     *
+     * @param resolver  The {@link ResourcePatternResolver} used to find the messages.
+     * @param basenames The comma separated basenames of the messages (i.e {@code spring.messages.basename}).
+     * @return The {@link Locale}s.
+     * @throws UncheckedIOException If the messages cannot be listed.
+     */
+    private static List<Locale> locales(final ResourcePatternResolver resolver, final String basenames)
+            throws UncheckedIOException {
+        final var tags = new TreeSet<String>();
+        for (final var basename : StringUtils.commaDelimitedListToSet(StringUtils.trimAllWhitespace(basenames))) {
+            final var name = StringUtils.getFilename(basename);
+            for (final var resource : resources(resolver, "classpath*:" + basename + "*.properties")) {
+                final var filename = Objects.requireNonNull(resource.getFilename());
+                final var suffix = filename.substring(name.length(), filename.length() - ".properties".length());
+                if (suffix.isEmpty() || suffix.startsWith("_")) {
+                    tags.add(suffix.isEmpty() ? "" : suffix.substring(1).replace('_', '-'));
+                }
+            }
+        }
+        final var locales = new ArrayList<Locale>(tags.size());
+        tags.forEach(tag -> locales.add(tag.isEmpty() ? Locale.ROOT : Locale.forLanguageTag(tag)));
+        return locales;
+    }
+
+    /**
+     * Finds the resources matching the given {@code pattern}.
+     *
+     * @param resolver The {@link ResourcePatternResolver} used to find the resources.
+     * @param pattern  The pattern.
+     * @return The matching {@link Resource}s.
+     * @throws UncheckedIOException If the resources cannot be listed.
+     */
+    private static Resource[] resources(final ResourcePatternResolver resolver, final String pattern)
+            throws UncheckedIOException {
+        try {
+            return resolver.getResources(pattern);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * Configuration properties for the warm-up of the application.
+     */
+    @Data
+    @ConfigurationProperties("lti-app.warm-up")
+    /* package */ static final class Properties {
+        /**
+         * Whether the instance is warmed up before being put in service
+         * (if not, it is put in service as soon as it is ready).
+         */
+        private boolean enabled = true;
+        /**
+         * The amount of synthetic launches performed concurrently.
+         */
+        private int concurrency = 4;
+        /**
+         * The amount of synthetic launches performed in each round (each of them in every locale).
+         */
+        private int launchesPerRound = 20;
+        /**
+         * The percentile (between 0 and 1) of the latency of the synthetic requests that must stabilise.
+         */
+        private double percentile = 0.9;
+        /**
+         * The max. relative change of the latency between two rounds for them to be considered stable.
+         */
+        private double tolerance = 0.1;
+        /**
+         * The amount of consecutive stable rounds after which the latency is considered stabilised.
+         */
+        private int stableRounds = 3;
+        /**
+         * The max. amount of rounds performed (after which the instance is put in service anyway).
+         */
+        private int maxRounds = 50;
+        /**
+         * The max. time taken by the warm-up (after which the instance is put in service anyway).
+         */
+        private Duration timeout = Duration.ofMinutes(2);
+        /**
+         * The templates rendered directly, as the synthetic launches cannot reach them
+         * (they are rendered with an empty model, so they must not need one).
+         */
+        private List<String> templates = new ArrayList<>(List.of(
+                "exam-with-error",
+                "external-service-exception"
+        ));
+    }
+}
@@ -0,0 +1,127 @@
+package ar.edu.itba.cep.lti_app.warm_up;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.Value;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps this instance out of service until it is warmed up: the health is reported as "out of service"
+ * (so that the health endpoint answers with a "service unavailable" status), and the instance is registered
+ * in Eureka with its initial status (i.e {@code eureka.instance.initial-status}), until the gate is opened.
+ * Opening the gate marks the instance as UP in Eureka, so that the LMS traffic starts reaching it.
+ */
+class WarmUpGate extends AbstractHealthIndicator {
+
+    /**
+     * The prefix of the names of the warm-up metrics.
+     */
+    private static final String METRICS_PREFIX = "lti-app.warm-up.";
+
+    /**
+     * An {@link ObjectProvider} of the {@link ApplicationInfoManager} through which the instance status is changed
+     * (not available if the Eureka client is disabled).
+     */
+    private final ObjectProvider<ApplicationInfoManager> applicationInfoManager;
+    /**
+     * The {@link Result} of the warm-up ({@code null} until the gate is opened).
+     */
+    private volatile Result result;
+
+
+    /**
+     * Constructor.
+     *
+     * @param applicationInfoManager An {@link ObjectProvider} of the {@link ApplicationInfoManager}
+     *                               through which the instance status is changed.
+     * @param meterRegistry          The {@link MeterRegistry} in which the warm-up metrics are published.
+     */
+    /* package */ WarmUpGate(
+            final ObjectProvider<ApplicationInfoManager> applicationInfoManager,
+            final MeterRegistry meterRegistry) {
+        super("Warm-up health check failed");
+        this.applicationInfoManager = applicationInfoManager;
+        TimeGauge.builder(METRICS_PREFIX + "duration", this, TimeUnit.MILLISECONDS, WarmUpGate::durationMillis)
+                .description("Time taken by the warm-up")
+                .register(meterRegistry);
+        Gauge.builder(METRICS_PREFIX + "rounds", this, WarmUpGate::rounds)
+                .description("Rounds of synthetic launches performed by the warm-up")
+                .register(meterRegistry);
+    }
+
+
+    @Override
+    protected void doHealthCheck(final Health.Builder builder) {
+        final var result = this.result;
+        if (result == null) {
+            builder.outOfService();
+            return;
+        }
+        builder.up()
+                .withDetail("rounds", result.getRounds())
+                .withDetail("stable", result.isStable())
+                .withDetail("duration", result.getDuration().toString());
+        if (result.getFailure() != null) {
+            builder.withDetail("failure", result.getFailure()); // Still up, as warming up is best effort.
+        }
+    }
+
+    /**
+     * Opens the gate, marking this instance as UP.
+     *
+     * @param result The {@link Result} of the warm-up.
+     */
+    /* package */ void open(final Result result) {
+        this.result = result;
+        applicationInfoManager.ifAvailable(manager -> manager.setInstanceStatus(InstanceInfo.InstanceStatus.UP));
+    }
+
+
+    /**
+     * @return The time taken by the warm-up, in milliseconds ({@code NaN} until the gate is opened).
+     */
+    private double durationMillis() {
+        final var result = this.result;
+        return result == null ? Double.NaN : result.getDuration().toMillis();
+    }
+
+    /**
+     * @return The rounds of synthetic launches performed by the warm-up ({@code NaN} until the gate is opened).
+     */
+    private double rounds() {
+        final var result = this.result;
+        return result == null ? Double.NaN : result.getRounds();
+    }
+
+
+    /**
+     * The result of a warm-up.
+     */
+    @Value
+    /* package */ static class Result {
+        /**
+         * The rounds of synthetic launches performed.
+         */
+        private final int rounds;
+        /**
+         * Whether the latency stabilised (if not, the warm-up ran out of rounds or time, or it failed).
+         */
+        private final boolean stable;
+        /**
+         * The time taken by the warm-up.
+         */
+        private final Duration duration;
+        /**
+         * The failure that cut the warm-up short (i.e its type and message), or {@code null} if it did not fail.
+         */
+        private final String failure;
+    }
+}
@@ -0,0 +1,114 @@
+package ar.edu.itba.cep.lti_app.warm_up;
+
+import ar.edu.itba.cep.lti.constants.Paths;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A local stub of the LTI service, to which the LTI service operations of the warm-up requests are sent.
+ * It serves the login initiation, exam selection, exam selected and exam taking paths with canned responses
+ * (taken from the {@code warm-up} resources), encoded as the client asks, so that the whole client side
+ * (i.e the {@link org.springframework.web.client.RestTemplate}, the message converters and the DTOs) is warmed up.
+ * <p>
+ * Requests that are not warm-up requests get a "not found" response, as if the stub did not exist.
+ */
+@RestController
+@RequestMapping(WarmUpRequests.STUB_PATH)
+public class WarmUpLtiServiceStub {
+
+    /**
+     * Placeholder (in the canned responses) that is replaced with a random UUID.
+     */
+    private static final String UUID_PLACEHOLDER = "${uuid}";
+    /**
+     * Placeholder (in the canned responses) that is replaced with a random JWT-like string.
+     */
+    private static final String JWT_PLACEHOLDER = "${jwt}";
+
+    /**
+     * The {@link ObjectMapper} used to read the canned responses.
+     */
+    private final ObjectMapper objectMapper;
+    /**
+     * The canned responses, by path (relative to the {@link WarmUpRequests#STUB_PATH}).
+     */
+    private final Map<String, String> responses;
+
+
+    /**
+     * Constructor.
+     *
+     * @param objectMapper The {@link ObjectMapper} used to read the canned responses.
+     */
+    public WarmUpLtiServiceStub(final ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.responses = Map.of(
+                Paths.LOGIN_INITIATION_PATH, readResource("warm-up/login-initiation.json"),
+                Paths.EXAM_SELECTION_PATH, readResource("warm-up/exam-selection.json"),
+                Paths.EXAM_SELECTED_PATH, readResource("warm-up/exam-selected.json"),
+                Paths.EXAM_TAKING_PATH, readResource("warm-up/exam-taking.json")
+        );
+    }
+
+
+    @PostMapping("/**")
+    public ResponseEntity<JsonNode> respond(
+            @RequestBody(required = false) final byte[] ignored,
+            final HttpServletRequest request) throws IOException {
+        final var path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        final var template = responses.get(path.substring(WarmUpRequests.STUB_PATH.length()));
+        if (template == null || !WarmUpRequests.isWarmUpRequest(request)) {
+            return ResponseEntity.notFound().build();
+        }
+        final var body = template
+                .replace(UUID_PLACEHOLDER, UUID.randomUUID().toString())
+                .replace(JWT_PLACEHOLDER, jwtLike());
+        return ResponseEntity.ok(objectMapper.readTree(body));
+    }
+
+
+    /**
+     * @return A random {@link String} that looks like a JWT.
+     */
+    /* package */ static String jwtLike() {
+        final var random = ThreadLocalRandom.current();
+        final var encoder = Base64.getUrlEncoder().withoutPadding();
+        final var payload = new byte[1200];
+        random.nextBytes(payload);
+        return "eyJhbGciOiJSUzI1NiIsInR5cCI6IkpXVCJ9." + encoder.encodeToString(payload) + ".c2lnbmF0dXJl";
+    }
+
+    /**
+     * Reads the given resource as a {@link String}.
+     *
+     * @param name The name of the resource.
+     * @return The resource's content.
+     * @throws UncheckedIOException If the resource cannot be read.
+     */
+    private static String readResource(final String name) throws UncheckedIOException {
+        try (final var input = WarmUpLtiServiceStub.class.getClassLoader().getResourceAsStream(name)) {
+            if (input == null) {
+                throw new IllegalStateException("Missing resource " + name);
+            }
+            return StreamUtils.copyToString(input, StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
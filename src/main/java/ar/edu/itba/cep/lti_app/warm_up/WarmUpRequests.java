@@ -0,0 +1,84 @@
+package ar.edu.itba.cep.lti_app.warm_up;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Identifies the synthetic requests performed while warming up: they carry a header with a random token,
+ * generated when the application starts, and thus only known by this process.
+ */
+public final class WarmUpRequests {
+
+    /**
+     * The path (relative to the context path) in which the stub of the LTI service is served.
+     */
+    public static final String STUB_PATH = "/warm-up/lti-service";
+
+    /**
+     * The name of the header that carries the token.
+     */
+    /* package */ static final String HEADER = "X-Warm-Up";
+    /**
+     * The token that identifies the warm-up requests.
+     */
+    /* package */ static final String TOKEN = randomToken();
+
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private WarmUpRequests() {
+    }
+
+
+    /**
+     * Marks a request as a warm-up request.
+     *
+     * @param headers The {@link HttpHeaders} of the request to be marked.
+     */
+    public static void mark(final HttpHeaders headers) {
+        headers.set(HEADER, TOKEN);
+    }
+
+    /**
+     * Indicates whether the request being handled by the current thread (if any) is a warm-up request.
+     *
+     * @return {@code true} if it is, or {@code false} otherwise.
+     */
+    public static boolean isWarmUpRequest() {
+        final var attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes
+                && isWarmUpRequest(((ServletRequestAttributes) attributes).getRequest());
+    }
+
+    /**
+     * Indicates whether the given {@code request} is a warm-up request.
+     *
+     * @param request The {@link HttpServletRequest} to be checked.
+     * @return {@code true} if it is, or {@code false} otherwise.
+     */
+    public static boolean isWarmUpRequest(final HttpServletRequest request) {
+        final var token = request.getHeader(HEADER);
+        return token != null && MessageDigest.isEqual(
+                token.getBytes(StandardCharsets.US_ASCII),
+                TOKEN.getBytes(StandardCharsets.US_ASCII)
+        );
+    }
+
+
+    /**
+     * @return A random token.
+     */
+    private static String randomToken() {
+        final var bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
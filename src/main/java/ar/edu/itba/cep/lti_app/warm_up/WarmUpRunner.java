@@ -0,0 +1,137 @@
+package ar.edu.itba.cep.lti_app.warm_up;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Warms up this instance once the application is ready, before it starts receiving launches:
+ * it renders every template in every locale, and performs rounds of synthetic launches until their latency
+ * stabilises (or the max. amount of rounds, or the timeout, is reached). Then, it opens the {@link WarmUpGate}.
+ * <p>
+ * The warm-up is performed in its own thread, so it does not delay the rest of the startup.
+ * If it is disabled, the gate is opened as soon as the application is ready.
+ * If it fails, the gate is opened anyway (as warming up is best effort), and the failure is logged,
+ * and reported in the {@link WarmUpGate} health details.
+ */
+class WarmUpRunner implements ApplicationListener<ApplicationReadyEvent> {
+
+    /**
+     * The {@link Logger} through which warm-up failures are reported.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmUpRunner.class);
+
+    /**
+     * The {@link WarmUpConfig.Properties} used to configure the warm-up.
+     */
+    private final WarmUpConfig.Properties properties;
+    /**
+     * The {@link WarmUpGate} opened once the warm-up finishes.
+     */
+    private final WarmUpGate gate;
+    /**
+     * The {@link TemplateWarmUp} that renders every template in every locale.
+     */
+    private final TemplateWarmUp templateWarmUp;
+    /**
+     * The {@link Locale}s in which the synthetic launches are performed.
+     */
+    private final List<Locale> locales;
+    /**
+     * The context path of the application.
+     */
+    private final String contextPath;
+
+
+    /**
+     * Constructor.
+     *
+     * @param properties     The {@link WarmUpConfig.Properties} used to configure the warm-up.
+     * @param gate           The {@link WarmUpGate} opened once the warm-up finishes.
+     * @param templateWarmUp The {@link TemplateWarmUp} that renders every template in every locale.
+     * @param locales        The {@link Locale}s in which the synthetic launches are performed.
+     * @param contextPath    The context path of the application.
+     */
+    /* package */ WarmUpRunner(
+            final WarmUpConfig.Properties properties,
+            final WarmUpGate gate,
+            final TemplateWarmUp templateWarmUp,
+            final List<Locale> locales,
+            final String contextPath) {
+        this.properties = properties;
+        this.gate = gate;
+        this.templateWarmUp = templateWarmUp;
+        this.locales = List.copyOf(locales);
+        this.contextPath = contextPath;
+    }
+
+
+    @Override
+    public void onApplicationEvent(final ApplicationReadyEvent event) {
+        if (!properties.isEnabled() || !(event.getApplicationContext() instanceof WebServerApplicationContext)) {
+            gate.open(new WarmUpGate.Result(0, false, Duration.ZERO, null));
+            return;
+        }
+        final var port = ((WebServerApplicationContext) event.getApplicationContext()).getWebServer().getPort();
+        final var baseUri = UriComponentsBuilder.newInstance()
+                .scheme("http")
+                .host("localhost")
+                .port(port)
+                .path(contextPath)
+                .path("/")
+                .build()
+                .toUri();
+        final var thread = new Thread(() -> warmUp(baseUri), "warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    /**
+     * Performs the warm-up, opening the {@link #gate} once it finishes (even if it fails).
+     *
+     * @param baseUri The base {@link URI} of this instance.
+     */
+    private void warmUp(final URI baseUri) {
+        final var start = System.nanoTime();
+        final var deadline = start + properties.getTimeout().toNanos();
+        var rounds = 0;
+        var stableRounds = 0;
+        String failure = null;
+        try (final var traffic = new SyntheticTraffic(baseUri, locales, properties.getConcurrency())) {
+            var previous = Double.NaN;
+            while (rounds < properties.getMaxRounds()
+                    && stableRounds < properties.getStableRounds()
+                    && System.nanoTime() - deadline < 0) {
+                templateWarmUp.renderAll();
+                final var latency = traffic.round(properties.getLaunchesPerRound(), properties.getPercentile());
+                rounds++;
+                stableRounds = Math.abs(latency - previous) <= properties.getTolerance() * previous
+                        ? stableRounds + 1
+                        : 0;
+                previous = latency;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final RuntimeException e) {
+            // Warming up is best effort. The instance is put in service anyway, but the failure must not go unnoticed.
+            LOGGER.warn("The warm-up failed after {} rounds. Putting the instance in service anyway", rounds, e);
+            failure = e.toString();
+        } finally {
+            gate.open(new WarmUpGate.Result(
+                    rounds,
+                    stableRounds >= properties.getStableRounds(),
+                    Duration.ofNanos(System.nanoTime() - start),
+                    failure
+            ));
+        }
+    }
+}
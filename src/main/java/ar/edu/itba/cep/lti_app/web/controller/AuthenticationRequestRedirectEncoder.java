@@ -0,0 +1,266 @@
+package ar.edu.itba.cep.lti_app.web.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Encodes the redirection to the authentication request {@link URI} (i.e {@code redirect:} followed by the uri),
+ * producing exactly the same text as {@link LtiLoginController#buildAuthenticationRequestUri(String, String, String,
+ * String, String, String, String)}, without building a {@link UriComponentsBuilder} and a {@link URI} on each launch.
+ * <p>
+ * The base of each endpoint (i.e the endpoint as rendered by the {@link URI} built by the {@link UriComponentsBuilder})
+ * is computed once and cached, and the query params are written directly into a per-thread reusable buffer.
+ * Query param values are quoted as the multi-argument {@link URI} constructors do (i.e characters that are not legal
+ * in a uri, and {@code %}, are percent-encoded), so that redirections do not change.
+ * Endpoints with their own query or fragment (or that cannot be parsed) are encoded through the
+ * {@link UriComponentsBuilder}, as those params are merged with the ones of the authentication request.
+ */
+final class AuthenticationRequestRedirectEncoder {
+
+    /**
+     * The prefix of a view name that redirects.
+     */
+    private static final String REDIRECT_PREFIX = "redirect:";
+    /**
+     * A query param added to an endpoint in order to find where its base ends.
+     * It only contains unreserved characters, so it is never quoted.
+     */
+    private static final String PROBE_PARAM_NAME = "probe";
+    /**
+     * The value of the {@link #PROBE_PARAM_NAME} query param.
+     */
+    private static final String PROBE_PARAM_VALUE = "0";
+    /**
+     * The query of a probed endpoint that has no query of its own.
+     */
+    private static final String PROBE_QUERY = PROBE_PARAM_NAME + "=" + PROBE_PARAM_VALUE;
+    /**
+     * The max. capacity of a buffer that is kept for reuse (bigger buffers are discarded after being used,
+     * so that an unusually long redirection does not keep memory pinned in every thread).
+     */
+    private static final int MAX_REUSED_BUFFER_CAPACITY = 8 * 1024;
+    /**
+     * The initial capacity of the buffers.
+     */
+    private static final int INITIAL_BUFFER_CAPACITY = 1024;
+    /**
+     * Hexadecimal digits used to percent-encode.
+     */
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    /**
+     * Bit mask of the ASCII characters (from 0 to 63) that are kept as is in a query
+     * (i.e the reserved and unreserved characters of RFC 2396, as quoted by {@link URI}).
+     */
+    private static final long LOW_MASK = lowMask("!$&'()*+,-./0123456789:;=?");
+    /**
+     * Bit mask of the ASCII characters (from 64 to 127) that are kept as is in a query
+     * (i.e the reserved and unreserved characters of RFC 2396, as quoted by {@link URI}).
+     */
+    private static final long HIGH_MASK = highMask("@ABCDEFGHIJKLMNOPQRSTUVWXYZ[]_abcdefghijklmnopqrstuvwxyz~");
+
+    /**
+     * The per-thread reusable buffers in which redirections are written.
+     */
+    private final ThreadLocal<StringBuilder> buffers;
+    /**
+     * The base of each endpoint (or empty if the endpoint must be encoded through the {@link UriComponentsBuilder}).
+     */
+    private final Cache<String, Optional<String>> bases;
+
+
+    /**
+     * Constructor.
+     *
+     * @param maxEndpoints The max. amount of endpoints whose base is cached.
+     */
+    /* package */ AuthenticationRequestRedirectEncoder(final long maxEndpoints) {
+        this.buffers = ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_BUFFER_CAPACITY));
+        this.bases = Caffeine.newBuilder().maximumSize(maxEndpoints).build();
+    }
+
+
+    /**
+     * Encodes the redirection to the authentication request {@link URI}.
+     *
+     * @param endpoint       The authentication endpoint of the LMS.
+     * @param clientId       The client id.
+     * @param loginHint      The login hint.
+     * @param redirectUri    The redirect uri.
+     * @param nonce          The nonce.
+     * @param ltiMessageHint The lti message hint (optional).
+     * @param state          The state (optional).
+     * @return The redirection (i.e {@code redirect:} followed by the authentication request {@link URI}).
+     */
+    /* package */ String encode(
+            final String endpoint,
+            final String clientId,
+            final String loginHint,
+            final String redirectUri,
+            final String nonce,
+            final String ltiMessageHint,
+            final String state) {
+        final var base = endpoint == null
+                ? Optional.<String>empty()
+                : bases.get(endpoint, AuthenticationRequestRedirectEncoder::base);
+        if (base.isEmpty()) {
+            return REDIRECT_PREFIX + LtiLoginController.buildAuthenticationRequestUri(
+                    endpoint,
+                    clientId,
+                    loginHint,
+                    redirectUri,
+                    nonce,
+                    ltiMessageHint,
+                    state
+            );
+        }
+        final var buffer = buffers.get();
+        try {
+            buffer.append(REDIRECT_PREFIX).append(base.get());
+            appendParam(buffer, '?', LtiLoginController.CLIENT_ID_PARAM, clientId);
+            appendParam(buffer, '&', LtiLoginController.LOGIN_HINT_PARAM, loginHint);
+            appendParam(buffer, '&', LtiLoginController.REDIRECT_URI_PARAM, redirectUri);
+            appendParam(buffer, '&', LtiLoginController.NONCE_PARAM, nonce);
+            buffer.append(LtiLoginController.FIXED_PART);
+            if (ltiMessageHint != null) {
+                appendParam(buffer, '&', LtiLoginController.LTI_MESSAGE_HINT_PARAM, ltiMessageHint);
+            }
+            if (state != null) {
+                appendParam(buffer, '&', LtiLoginController.STATE_PARAM, state);
+            }
+            return buffer.toString();
+        } finally {
+            if (buffer.capacity() > MAX_REUSED_BUFFER_CAPACITY) {
+                buffers.remove();
+            } else {
+                buffer.setLength(0);
+            }
+        }
+    }
+
+
+    /**
+     * Computes the base of the given {@code endpoint}, by probing how the {@link UriComponentsBuilder} renders it
+     * with a single query param.
+     *
+     * @param endpoint The endpoint.
+     * @return The base of the {@code endpoint}, or empty if it has its own query or fragment, or it cannot be parsed.
+     */
+    private static Optional<String> base(final String endpoint) {
+        final URI probed;
+        try {
+            probed = UriComponentsBuilder.fromUriString(endpoint)
+                    .queryParam(PROBE_PARAM_NAME, PROBE_PARAM_VALUE)
+                    .build()
+                    .toUri();
+        } catch (final RuntimeException e) {
+            return Optional.empty();
+        }
+        if (!PROBE_QUERY.equals(probed.getRawQuery()) || probed.getRawFragment() != null) {
+            return Optional.empty();
+        }
+        final var uri = probed.toString();
+        return Optional.of(uri.substring(0, uri.length() - PROBE_QUERY.length() - 1));
+    }
+
+    /**
+     * Appends a query param to the given {@code buffer}
+     * (only the {@code name} if the {@code value} is {@code null}, as the {@link UriComponentsBuilder} does).
+     *
+     * @param buffer    The buffer.
+     * @param separator The character that separates the param from what precedes it.
+     * @param name      The name of the param.
+     * @param value     The value of the param.
+     */
+    private static void appendParam(
+            final StringBuilder buffer,
+            final char separator,
+            final String name,
+            final String value) {
+        buffer.append(separator).append(name);
+        if (value != null) {
+            quote(value, buffer.append('='));
+        }
+    }
+
+    /**
+     * Quotes the given {@code value} as the multi-argument {@link URI} constructors quote a query,
+     * appending the result to the given {@code buffer}: ASCII characters that are not legal in a uri (and {@code %})
+     * are percent-encoded, as are non-ASCII space and control characters (in UTF-8),
+     * while the rest of the non-ASCII characters are kept as is.
+     *
+     * @param value  The value to be quoted.
+     * @param buffer The buffer to which the quoted value is appended.
+     */
+    private static void quote(final String value, final StringBuilder buffer) {
+        var start = 0;
+        for (var i = 0; i < value.length(); i++) {
+            final var c = value.charAt(i);
+            if (c < '\u0080' ? isLegal(c) : !Character.isSpaceChar(c) && !Character.isISOControl(c)) {
+                continue;
+            }
+            buffer.append(value, start, i);
+            start = i + 1;
+            if (c < '\u0080') {
+                appendEscaped(buffer, c);
+            } else {
+                for (final var b : String.valueOf(c).getBytes(StandardCharsets.UTF_8)) {
+                    appendEscaped(buffer, b);
+                }
+            }
+        }
+        buffer.append(value, start, value.length());
+    }
+
+    /**
+     * Indicates whether the given ASCII character {@code c} is kept as is in a query.
+     *
+     * @param c The character to be checked.
+     * @return {@code true} if it is kept as is, or {@code false} otherwise.
+     */
+    private static boolean isLegal(final char c) {
+        return c < 64 ? (LOW_MASK & (1L << c)) != 0 : (HIGH_MASK & (1L << (c - 64))) != 0;
+    }
+
+    /**
+     * Appends the given byte to the given {@code buffer}, percent-encoded.
+     *
+     * @param buffer The buffer.
+     * @param b      The byte.
+     */
+    private static void appendEscaped(final StringBuilder buffer, final int b) {
+        buffer.append('%').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+    }
+
+    /**
+     * Computes the bit mask of the given characters (from 0 to 63).
+     *
+     * @param chars The characters.
+     * @return The bit mask.
+     */
+    private static long lowMask(final String chars) {
+        var mask = 0L;
+        for (final var c : chars.toCharArray()) {
+            mask |= 1L << c;
+        }
+        return mask;
+    }
+
+    /**
+     * Computes the bit mask of the given characters (from 64 to 127).
+     *
+     * @param chars The characters.
+     * @return The bit mask.
+     */
+    private static long highMask(final String chars) {
+        var mask = 0L;
+        for (final var c : chars.toCharArray()) {
+            mask |= 1L << (c - 64);
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,153 @@
+package ar.edu.itba.cep.lti_app.web.controller;
+
+import ar.edu.itba.cep.lti.ExamTakingResponse;
+import ar.edu.itba.cep.lti_app.Application;
+import ar.edu.itba.cep.lti_app.launch_state.LaunchStateStore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keeps performed "take exam" launches (i.e the exam and tokens returned by the LTI service) server side
+ * for a short time, identified by short, opaque and unguessable handles,
+ * so that the exam and tokens do not have to travel in urls.
+ * Launches are kept in the {@link LaunchStateStore}, so a handle can be resolved by any instance,
+ * but only once (i.e a handle that leaks, for example through the browser's history, can not be replayed).
+ */
+@Component
+class ExamTakingLaunchHandles {
+
+    /**
+     * The amount of random bytes of a handle.
+     */
+    private static final int HANDLE_BYTES = 16;
+    /**
+     * The prefix of the keys of the launches in the {@link LaunchStateStore}.
+     */
+    private static final String KEY_PREFIX = "exam-taking-launch:";
+
+    // ===========================================================================
+    // Stored launch fields
+    // ===========================================================================
+
+    private static final String EXAM_ID_FIELD = "examId";
+    private static final String TOKEN_ID_FIELD = "tokenId";
+    private static final String ACCESS_TOKEN_FIELD = "accessToken";
+    private static final String REFRESH_TOKEN_FIELD = "refreshToken";
+    private static final String RETURN_URL_FIELD = "returnUrl";
+
+    /**
+     * The {@link LaunchStateStore} in which the launches are kept.
+     */
+    private final LaunchStateStore store;
+    /**
+     * The {@link ObjectMapper} used to encode and decode the launches.
+     */
+    private final ObjectMapper objectMapper;
+    /**
+     * How long a launch is kept.
+     */
+    private final Duration ttl;
+    /**
+     * The {@link SecureRandom} used to generate handles.
+     */
+    private final SecureRandom random;
+
+
+    /**
+     * Constructor.
+     *
+     * @param store        The {@link LaunchStateStore} in which the launches are kept.
+     * @param objectMapper The {@link ObjectMapper} used to encode and decode the launches.
+     * @param properties   An {@link Application.Properties} instance used to configure the handles.
+     */
+    /* package */ ExamTakingLaunchHandles(
+            final LaunchStateStore store,
+            final ObjectMapper objectMapper,
+            final Application.Properties properties) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.ttl = properties.getExamTakingLaunch().getHandleTtl();
+        this.random = new SecureRandom();
+    }
+
+
+    /**
+     * Keeps the given {@code launch}.
+     *
+     * @param launch The {@link ExamTakingResponse} to be kept.
+     * @return A {@link CompletableFuture} that completes with the handle with which the {@code launch}
+     * can be retrieved, once it is kept.
+     */
+    /* package */ CompletableFuture<String> create(final ExamTakingResponse launch) {
+        final var bytes = new byte[HANDLE_BYTES];
+        random.nextBytes(bytes);
+        final var handle = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        return store.put(KEY_PREFIX + handle, encode(launch), ttl).thenApply(ignored -> handle);
+    }
+
+    /**
+     * Retrieves the launch with the given {@code handle}, discarding it.
+     *
+     * @param handle The handle of the launch.
+     * @return A {@link CompletableFuture} that completes with an {@link Optional} with the {@link ExamTakingResponse},
+     * or empty if there is no launch with the given {@code handle} (i.e it never existed, it expired,
+     * or it was already retrieved).
+     */
+    /* package */ CompletableFuture<Optional<ExamTakingResponse>> take(final String handle) {
+        return store.getAndDelete(KEY_PREFIX + handle).thenApply(launch -> launch.map(this::decode));
+    }
+
+
+    /**
+     * Encodes the given {@code launch}.
+     *
+     * @param launch The {@link ExamTakingResponse} to be encoded.
+     * @return The encoded launch.
+     */
+    private String encode(final ExamTakingResponse launch) {
+        try {
+            return objectMapper.writeValueAsString(Map.of(
+                    EXAM_ID_FIELD, launch.getExamId(),
+                    TOKEN_ID_FIELD, launch.getTokenId().toString(),
+                    ACCESS_TOKEN_FIELD, launch.getAccessToken(),
+                    REFRESH_TOKEN_FIELD, launch.getRefreshToken(),
+                    RETURN_URL_FIELD, launch.getReturnUrl()
+            ));
+        } catch (final JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decodes the given {@code launch}.
+     *
+     * @param launch The encoded launch.
+     * @return The decoded {@link ExamTakingResponse}.
+     */
+    private ExamTakingResponse decode(final String launch) {
+        try {
+            final JsonNode fields = objectMapper.readTree(launch);
+            return new ExamTakingResponse(
+                    fields.path(EXAM_ID_FIELD).asLong(),
+                    UUID.fromString(fields.path(TOKEN_ID_FIELD).asText()),
+                    fields.path(ACCESS_TOKEN_FIELD).asText(),
+                    fields.path(REFRESH_TOKEN_FIELD).asText(),
+                    fields.path(RETURN_URL_FIELD).asText()
+            );
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,565 @@
+package ar.edu.itba.cep.lti_app.web.controller;
+
+import ar.edu.itba.cep.lti.AuthenticationResponse;
+import ar.edu.itba.cep.lti_app.Application;
+import ar.edu.itba.cep.lti_app.launch_state.LaunchStateStore;
+import ar.edu.itba.cep.lti_app.web.controller.LtiAuthenticationResponseControllerHelper.LtiMessageHandler;
+import com.bellotapps.webapps_commons.exceptions.ExternalServiceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control for "take exam" launches.
+ * Launches are performed immediately while there are less than the configured max. in flight.
+ * Otherwise, they are parked (server side) in a FIFO queue, and performed as soon as in-flight launches complete,
+ * while the student is shown a self-refreshing waiting page that polls the {@link Ticket} of the parked launch.
+ * Launches whose waiting page stops refreshing are considered abandoned, and discarded without being performed.
+ * <p>
+ * Launches are parked in the instance that received them, but the waiting page can be refreshed in any instance:
+ * each refresh records (in the {@link LaunchStateStore}) that the student is still waiting,
+ * which the owning instance checks before considering the launch abandoned.
+ * Once a launch is performed, whether it succeeded is published to the {@link LaunchStateStore},
+ * but not its result, as it carries the exam's tokens: it is handed only by the owning instance,
+ * so refreshes that reach another instance keep waiting until one reaches the owning instance.
+ */
+@Component
+class ExamTakingWaitingRoom implements DisposableBean {
+
+    /**
+     * The redirection to the waiting page (to which the ticket id is appended).
+     */
+    private static final String WAITING_ROOM_REDIRECTION = "exam-taking/waiting-room/";
+    /**
+     * The prefix of the keys that record (in the {@link LaunchStateStore}) that a student is still waiting.
+     */
+    private static final String SEEN_KEY_PREFIX = "waiting-room-seen:";
+    /**
+     * The prefix of the keys of the outcomes (in the {@link LaunchStateStore}) of the performed launches.
+     */
+    private static final String RESULT_KEY_PREFIX = "waiting-room-result:";
+    /**
+     * The stored result of a launch that succeeded (the result itself is not stored, as it carries credentials).
+     */
+    private static final String SUCCESS_RESULT = "+";
+    /**
+     * The stored result of a launch that failed.
+     */
+    private static final String FAILURE_RESULT = "-";
+
+    /**
+     * The {@link Application.Properties.WaitingRoom} used to configure the waiting room.
+     */
+    private final Application.Properties.WaitingRoom properties;
+    /**
+     * The {@link LaunchStateStore} in which waiting students and results are recorded.
+     */
+    private final LaunchStateStore store;
+    /**
+     * The parked launches, in arrival order.
+     */
+    private final Deque<Ticket> queue;
+    /**
+     * All the {@link Ticket}s that have not been evicted yet (i.e parked, in flight, or completed), by id.
+     */
+    private final Map<String, Ticket> tickets;
+    /**
+     * Lock that guards the {@link #queue}, the {@link #inFlight} launches and the {@link #lastDequeued} ticket.
+     */
+    private final Object lock;
+    /**
+     * {@link ScheduledExecutorService} used to evict completed {@link Ticket}s,
+     * and to check whether students are still waiting.
+     */
+    private final ScheduledExecutorService evictor;
+    /**
+     * The clock with which waiting students and completed launches are timed
+     * (with the semantics of {@link System#nanoTime()}).
+     */
+    private final LongSupplier clock;
+    /**
+     * Counts launches that were parked.
+     */
+    private final Counter parkedCounter;
+    /**
+     * Counts parked launches that were discarded because their waiting page stopped refreshing.
+     */
+    private final Counter abandonedCounter;
+    /**
+     * The amount of launches in flight.
+     */
+    private int inFlight;
+    /**
+     * The sequence number of the last {@link Ticket} taken from the {@link #queue}.
+     */
+    private long lastDequeued;
+    /**
+     * The sequence number given to the last parked {@link Ticket}.
+     */
+    private long lastSequence;
+
+
+    /**
+     * Constructor.
+     *
+     * @param properties    An {@link Application.Properties} instance used to configure the waiting room.
+     * @param store         The {@link LaunchStateStore} in which waiting students and results are recorded.
+     * @param meterRegistry The {@link MeterRegistry} in which the waiting room metrics are published.
+     */
+    @Autowired
+    /* package */ ExamTakingWaitingRoom(
+            final Application.Properties properties,
+            final LaunchStateStore store,
+            final MeterRegistry meterRegistry) {
+        this(properties, store, meterRegistry, System::nanoTime);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param properties    An {@link Application.Properties} instance used to configure the waiting room.
+     * @param store         The {@link LaunchStateStore} in which waiting students and results are recorded.
+     * @param meterRegistry The {@link MeterRegistry} in which the waiting room metrics are published.
+     * @param clock         The clock with which waiting students and completed launches are timed
+     *                      (with the semantics of {@link System#nanoTime()}).
+     */
+    /* package */ ExamTakingWaitingRoom(
+            final Application.Properties properties,
+            final LaunchStateStore store,
+            final MeterRegistry meterRegistry,
+            final LongSupplier clock) {
+        this.properties = properties.getWaitingRoom();
+        this.store = store;
+        this.clock = clock;
+        this.queue = new ArrayDeque<>();
+        this.tickets = new ConcurrentHashMap<>();
+        this.lock = new Object();
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final var thread = new Thread(runnable, "waiting-room-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final var evictionPeriod = this.properties.getResultTtl().toMillis();
+        this.evictor.scheduleWithFixedDelay(this::evictCompleted, evictionPeriod, evictionPeriod, TimeUnit.MILLISECONDS);
+        final var refreshInterval = this.properties.getRefreshInterval().toMillis();
+        this.evictor.scheduleWithFixedDelay(this::checkSeen, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+        Gauge.builder("lti-app.waiting-room.in-flight", this, ExamTakingWaitingRoom::getInFlight)
+                .description("Amount of \"take exam\" launches in flight")
+                .register(meterRegistry);
+        Gauge.builder("lti-app.waiting-room.waiting", this, ExamTakingWaitingRoom::getWaiting)
+                .description("Amount of \"take exam\" launches parked in the waiting room")
+                .register(meterRegistry);
+        this.parkedCounter = Counter.builder("lti-app.waiting-room.parked")
+                .description("\"Take exam\" launches that had to wait in the waiting room")
+                .register(meterRegistry);
+        this.abandonedCounter = Counter.builder("lti-app.waiting-room.abandoned")
+                .description("Parked \"take exam\" launches discarded because the student left the waiting room")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Admits a launch: performs it immediately if there is capacity, or parks it in the waiting room otherwise.
+     *
+     * @param response The {@link AuthenticationResponse} of the launch.
+     * @param handler  The {@link LtiMessageHandler} that performs the launch.
+     * @return A {@link CompletableFuture} that completes with the result of the {@code handler} if performed
+     * immediately, or with the redirection to the waiting page if parked.
+     */
+    /* package */ CompletableFuture<String> admit(
+            final AuthenticationResponse response,
+            final LtiMessageHandler handler) {
+        if (!properties.isEnabled()) {
+            return handler.handle(response);
+        }
+        final Ticket ticket;
+        synchronized (lock) {
+            if (queue.isEmpty() && inFlight < properties.getMaxInFlight()) {
+                inFlight++;
+                ticket = null;
+            } else if (queue.size() >= properties.getMaxQueueSize()) {
+                return CompletableFuture.failedFuture(
+                        new ExternalServiceException("lti-service", "The waiting room is full")
+                );
+            } else {
+                final var id = UUID.randomUUID().toString();
+                ticket = new Ticket(id, ++lastSequence, response, handler, clock.getAsLong());
+                queue.addLast(ticket);
+                tickets.put(ticket.getId(), ticket);
+            }
+        }
+        if (ticket == null) {
+            // Launched outside the lock, as the release might perform parked launches if it completes synchronously
+            return launch(response, handler).whenComplete((result, throwable) -> release());
+        }
+        parkedCounter.increment();
+        return recordSeen(ticket.getId())
+                .thenApply(ignored -> WAITING_ROOM_REDIRECTION + ticket.getId());
+    }
+
+    /**
+     * Looks up the status of the {@link Ticket} with the given {@code id}, recording that its student is still waiting.
+     * Tickets parked in this instance are looked up locally,
+     * while tickets parked in other instances are looked up in the {@link LaunchStateStore}
+     * (and reported as waiting until they fail, as the results of successful launches are only held locally).
+     * Results are kept for the result's TTL, so that a replayed waiting page gets the same result.
+     *
+     * @param id The {@link Ticket}'s id.
+     * @return A {@link CompletableFuture} that completes with an {@link Optional} with the {@link TicketStatus},
+     * or empty if there is no ticket with the given {@code id}
+     * (i.e it never existed, it was abandoned, or its result was evicted).
+     */
+    /* package */ CompletableFuture<Optional<TicketStatus>> poll(final String id) {
+        final var ticket = tickets.get(id);
+        if (ticket == null) {
+            return pollStore(id);
+        }
+        if (ticket.getResult().isDone()) {
+            // Completed tickets are evicted the result's TTL after completion, regardless of polls.
+            return CompletableFuture.completedFuture(Optional.of(new TicketStatus(0, ticket.getResult())));
+        }
+        ticket.touch(clock.getAsLong());
+        final var status = new TicketStatus(positionOf(ticket), null);
+        return recordSeen(id).thenApply(ignored -> Optional.of(status));
+    }
+
+    /**
+     * @return The {@link Application.Properties.WaitingRoom} used to configure the waiting room.
+     */
+    /* package */ Application.Properties.WaitingRoom getProperties() {
+        return properties;
+    }
+
+    @Override
+    public void destroy() {
+        evictor.shutdownNow();
+    }
+
+
+    /**
+     * Releases the slot of a completed launch, performing parked launches with it.
+     * Parked launches whose handler completes synchronously (e.g a fast failure) are performed in a loop,
+     * so that draining the queue does not grow the stack.
+     */
+    private void release() {
+        while (true) {
+            final Ticket next;
+            synchronized (lock) {
+                next = nextTicket();
+                if (next == null) {
+                    inFlight--;
+                    return;
+                }
+            }
+            final var result = launch(next.response, next.handler);
+            if (!result.isDone()) {
+                result.whenComplete((value, throwable) -> {
+                    complete(next, value, throwable);
+                    release();
+                });
+                return;
+            }
+            result.whenComplete((value, throwable) -> complete(next, value, throwable));
+        }
+    }
+
+    /**
+     * Completes the given {@code ticket}, publishing whether it succeeded (but not its result)
+     * to the {@link LaunchStateStore}.
+     *
+     * @param ticket    The {@link Ticket} to be completed.
+     * @param value     The value with which the launch completed (if it succeeded).
+     * @param throwable The {@link Throwable} with which the launch completed (if it failed).
+     */
+    private void complete(final Ticket ticket, final String value, final Throwable throwable) {
+        final var storedResult = throwable == null ? SUCCESS_RESULT : FAILURE_RESULT;
+        store.put(RESULT_KEY_PREFIX + ticket.getId(), storedResult, properties.getResultTtl());
+        ticket.complete(value, throwable, clock.getAsLong());
+    }
+
+    /**
+     * Looks up the status of a {@link Ticket} parked in another instance, in the {@link LaunchStateStore}.
+     *
+     * @param id The {@link Ticket}'s id.
+     * @return A {@link CompletableFuture} that completes with an {@link Optional} with the {@link TicketStatus}
+     * (with an unknown position if still waiting, or if it succeeded, as only the owning instance has its result),
+     * or empty if it is not in the {@link LaunchStateStore}.
+     */
+    private CompletableFuture<Optional<TicketStatus>> pollStore(final String id) {
+        return store.get(RESULT_KEY_PREFIX + id).thenCompose(storedResult -> {
+            if (storedResult.isPresent()) {
+                final var result = SUCCESS_RESULT.equals(storedResult.get())
+                        ? null
+                        : CompletableFuture.<String>failedFuture(
+                        new ExternalServiceException("lti-service", "The exam could not be launched")
+                );
+                return CompletableFuture.completedFuture(Optional.of(new TicketStatus(0, result)));
+            }
+            return store.get(SEEN_KEY_PREFIX + id).thenCompose(seen -> seen.isEmpty()
+                    ? CompletableFuture.completedFuture(Optional.<TicketStatus>empty())
+                    : recordSeen(id).thenApply(ignored -> Optional.of(new TicketStatus(0, null)))
+            );
+        });
+    }
+
+    /**
+     * Records (in the {@link LaunchStateStore}) that the student of the {@link Ticket} with the given {@code id}
+     * is still waiting.
+     *
+     * @param id The {@link Ticket}'s id.
+     * @return A {@link CompletableFuture} that completes once recorded.
+     */
+    private CompletableFuture<Void> recordSeen(final String id) {
+        return store.put(SEEN_KEY_PREFIX + id, "", properties.getAbandonAfter());
+    }
+
+    /**
+     * Checks whether the students of the parked {@link Ticket}s that were not seen recently by this instance
+     * were seen by other instances (i.e their waiting page was refreshed there), recording it if so.
+     */
+    /* package */ void checkSeen() {
+        final List<Ticket> waiting;
+        synchronized (lock) {
+            waiting = new ArrayList<>(queue);
+        }
+        final var notSeenSince = clock.getAsLong() - properties.getRefreshInterval().toNanos();
+        waiting.stream()
+                .filter(ticket -> ticket.lastSeen - notSeenSince < 0)
+                .forEach(ticket -> store.get(SEEN_KEY_PREFIX + ticket.getId())
+                        .thenAccept(seen -> seen.ifPresent(ignored -> ticket.touch(clock.getAsLong()))));
+    }
+
+    /**
+     * Calculates the position of the given {@code ticket} in the queue
+     * (approximate, as abandoned launches ahead of it are counted until they are discarded).
+     *
+     * @param ticket The {@link Ticket}.
+     * @return The position (1 for the next launch to be performed), or 0 if it is not waiting anymore.
+     */
+    private long positionOf(final Ticket ticket) {
+        synchronized (lock) {
+            return Math.max(0, ticket.sequence - lastDequeued);
+        }
+    }
+
+    /**
+     * Takes the next {@link Ticket} to be performed from the {@link #queue}, discarding abandoned ones.
+     * Must be called while holding the {@link #lock}.
+     *
+     * @return The next {@link Ticket}, or {@code null} if there are no more waiting launches.
+     */
+    private Ticket nextTicket() {
+        final var abandonedBefore = clock.getAsLong() - properties.getAbandonAfter().toNanos();
+        while (!queue.isEmpty()) {
+            final var ticket = queue.pollFirst();
+            lastDequeued = ticket.sequence;
+            if (ticket.lastSeen - abandonedBefore >= 0) {
+                return ticket;
+            }
+            tickets.remove(ticket.getId());
+            abandonedCounter.increment();
+        }
+        return null;
+    }
+
+    /**
+     * Removes {@link Ticket}s completed longer than the result's TTL ago.
+     */
+    /* package */ void evictCompleted() {
+        final var expiredBefore = clock.getAsLong() - properties.getResultTtl().toNanos();
+        tickets.values().removeIf(ticket -> ticket.getResult().isDone() && ticket.lastSeen - expiredBefore < 0);
+    }
+
+    /**
+     * @return The amount of launches in flight.
+     */
+    private int getInFlight() {
+        synchronized (lock) {
+            return inFlight;
+        }
+    }
+
+    /**
+     * @return The amount of launches waiting in the queue.
+     */
+    private int getWaiting() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Performs a launch, transforming any exception thrown synchronously by the {@code handler}
+     * into an exceptionally completed {@link CompletableFuture}.
+     *
+     * @param response The {@link AuthenticationResponse} of the launch.
+     * @param handler  The {@link LtiMessageHandler} that performs the launch.
+     * @return The {@link CompletableFuture} returned by the {@code handler}.
+     */
+    private static CompletableFuture<String> launch(
+            final AuthenticationResponse response,
+            final LtiMessageHandler handler) {
+        try {
+            return handler.handle(response);
+        } catch (final Throwable e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+
+    /**
+     * A launch parked in the waiting room.
+     */
+    /* package */ static final class Ticket {
+
+        /**
+         * The ticket's id (random, so it can not be guessed, as it gives access to the launch's result).
+         */
+        private final String id;
+        /**
+         * The order of arrival of the ticket.
+         */
+        private final long sequence;
+        /**
+         * The {@link AuthenticationResponse} of the parked launch.
+         */
+        private final AuthenticationResponse response;
+        /**
+         * The {@link LtiMessageHandler} that performs the parked launch.
+         */
+        private final LtiMessageHandler handler;
+        /**
+         * The result of the launch, completed once it is performed.
+         */
+        private final CompletableFuture<String> result;
+        /**
+         * The last time (in terms of the waiting room's clock) the student was seen waiting for this ticket.
+         */
+        private volatile long lastSeen;
+
+
+        /**
+         * Constructor.
+         *
+         * @param id       The ticket's id.
+         * @param sequence The order of arrival of the ticket.
+         * @param response The {@link AuthenticationResponse} of the parked launch.
+         * @param handler  The {@link LtiMessageHandler} that performs the parked launch.
+         * @param now      The current time (in terms of the waiting room's clock).
+         */
+        private Ticket(
+                final String id,
+                final long sequence,
+                final AuthenticationResponse response,
+                final LtiMessageHandler handler,
+                final long now) {
+            this.id = id;
+            this.sequence = sequence;
+            this.response = response;
+            this.handler = handler;
+            this.result = new CompletableFuture<>();
+            this.lastSeen = now;
+        }
+
+
+        /**
+         * @return The ticket's id.
+         */
+        /* package */ String getId() {
+            return id;
+        }
+
+        /**
+         * @return The result of the launch, completed once it is performed.
+         */
+        /* package */ CompletableFuture<String> getResult() {
+            return result;
+        }
+
+        /**
+         * Records that the student is still waiting for this ticket.
+         *
+         * @param now The current time (in terms of the waiting room's clock).
+         */
+        private void touch(final long now) {
+            this.lastSeen = now;
+        }
+
+        /**
+         * Completes the {@link #result} of this ticket.
+         *
+         * @param value     The value with which the launch completed (if it succeeded).
+         * @param throwable The {@link Throwable} with which the launch completed (if it failed).
+         * @param now       The current time (in terms of the waiting room's clock).
+         */
+        private void complete(final String value, final Throwable throwable, final long now) {
+            touch(now); // The result is kept from now on for the result's TTL.
+            if (throwable == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(throwable);
+            }
+        }
+    }
+
+
+    /**
+     * The status of a {@link Ticket}, as seen by the student's waiting page.
+     */
+    /* package */ static final class TicketStatus {
+
+        /**
+         * The position of the {@link Ticket} in the queue (1 for the next launch to be performed),
+         * or 0 if it is not waiting anymore, or unknown (i.e it is parked in another instance).
+         */
+        private final long position;
+        /**
+         * The (completed) result of the launch, or {@code null} if it is still waiting.
+         */
+        private final CompletableFuture<String> result;
+
+
+        /**
+         * Constructor.
+         *
+         * @param position The position of the {@link Ticket} in the queue.
+         * @param result   The (completed) result of the launch, or {@code null} if it is still waiting.
+         */
+        private TicketStatus(final long position, final CompletableFuture<String> result) {
+            this.position = position;
+            this.result = result;
+        }
+
+
+        /**
+         * @return The position of the {@link Ticket} in the queue, or 0 if it is not waiting, or unknown.
+         */
+        /* package */ long getPosition() {
+            return position;
+        }
+
+        /**
+         * @return An {@link Optional} with the (completed) result of the launch, or empty if it is still waiting.
+         */
+        /* package */ Optional<CompletableFuture<String>> getResult() {
+            return Optional.ofNullable(result);
+        }
+    }
+}
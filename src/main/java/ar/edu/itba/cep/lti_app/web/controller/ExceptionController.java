@@ -1,6 +1,8 @@
 package ar.edu.itba.cep.lti_app.web.controller;
 
 import ar.edu.itba.cep.lti_app.web.exceptions.AuthenticationResponseWithMissingParamsException;
+import ar.edu.itba.cep.lti_app.web.exceptions.FormFieldTooLongException;
+import ar.edu.itba.cep.lti_app.web.exceptions.InvalidIdTokenException;
 import ar.edu.itba.cep.lti_app.web.exceptions.LoginInitiationRequestWithMissingParamsException;
 import com.bellotapps.webapps_commons.exceptions.ExternalServiceException;
 import org.springframework.http.HttpStatus;
@@ -68,4 +70,38 @@ public class ExceptionController {
         model.addAttribute("authenticationResponseForm", e.getForm());
         return "authentication-response-error";
     }
+
+    /**
+     * Handles the {@link InvalidIdTokenException}, displaying the {@code authentication-response-error} view.
+     *
+     * @param e     The {@link InvalidIdTokenException} to be handled.
+     * @param model The {@link Model} used to bind the {@link ar.edu.itba.cep.lti_app.web.dtos.AuthenticationResponseForm}
+     *              with errors with the UI.
+     * @return The view.
+     */
+    @ExceptionHandler(value = {
+            InvalidIdTokenException.class
+    })
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String handleInvalidIdTokenException(final InvalidIdTokenException e, final Model model) {
+        model.addAttribute("authenticationResponseForm", e.getForm());
+        model.addAttribute("invalidIdToken", true);
+        return "authentication-response-error";
+    }
+
+    /**
+     * Handles the {@link FormFieldTooLongException}, displaying the {@code form-field-too-long} view.
+     *
+     * @param e     The {@link FormFieldTooLongException} to be handled.
+     * @param model The {@link Model} used to bind the name of the field that is too long with the UI.
+     * @return The view.
+     */
+    @ExceptionHandler(value = {
+            FormFieldTooLongException.class
+    })
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public String handleFormFieldTooLongException(final FormFieldTooLongException e, final Model model) {
+        model.addAttribute("field", e.getField());
+        return "form-field-too-long";
+    }
 }
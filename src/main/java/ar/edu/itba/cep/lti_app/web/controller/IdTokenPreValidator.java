@@ -0,0 +1,362 @@
+package ar.edu.itba.cep.lti_app.web.controller;
+
+import ar.edu.itba.cep.lti_app.Application;
+import ar.edu.itba.cep.lti_app.web.dtos.AuthenticationResponseForm;
+import ar.edu.itba.cep.lti_app.web.exceptions.InvalidIdTokenException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Component in charge of performing a cheap, local validation of ID tokens before sending them to the LTI service:
+ * the signature (against the key set of the issuing platform, cached by a {@link JwksCache}),
+ * the expiration ({@code exp}), the issuing time ({@code iat}) and the audience ({@code aud}).
+ * This is not the authoritative validation (which is performed by the LTI service);
+ * it just avoids a round trip to the LTI service for ID tokens that are certainly invalid.
+ * Hence, ID tokens that can not be validated locally (e.g the key set of the platform could not be fetched)
+ * are accepted.
+ */
+@Component
+class IdTokenPreValidator implements DisposableBean {
+
+    /**
+     * The name of the counters of pre-validations.
+     */
+    private static final String PRE_VALIDATIONS_COUNTER_NAME = "lti-app.id-token.pre-validations";
+    /**
+     * The signature algorithms accepted for ID tokens (i.e the JWS algorithms that use RSA keys).
+     */
+    private static final Map<String, String> SIGNATURE_ALGORITHMS = Map.of(
+            "RS256", "SHA256withRSA",
+            "RS384", "SHA384withRSA",
+            "RS512", "SHA512withRSA"
+    );
+
+    // ===========================================================================
+    // Pre-validation results
+    // ===========================================================================
+
+    private static final String VALID = "valid";
+    private static final String SKIPPED = "skipped";
+    private static final String MALFORMED = "malformed";
+    private static final String UNSUPPORTED_ALGORITHM = "unsupported_algorithm";
+    private static final String UNKNOWN_ISSUER = "unknown_issuer";
+    private static final String EXPIRED = "expired";
+    private static final String ISSUED_IN_THE_FUTURE = "issued_in_the_future";
+    private static final String WRONG_AUDIENCE = "wrong_audience";
+    private static final String UNKNOWN_KEY = "unknown_key";
+    private static final String INVALID_SIGNATURE = "invalid_signature";
+
+    /**
+     * All the pre-validation results (i.e the values of the {@code result} tag of the counters).
+     */
+    private static final List<String> RESULTS = List.of(
+            VALID,
+            SKIPPED,
+            MALFORMED,
+            UNSUPPORTED_ALGORITHM,
+            UNKNOWN_ISSUER,
+            EXPIRED,
+            ISSUED_IN_THE_FUTURE,
+            WRONG_AUDIENCE,
+            UNKNOWN_KEY,
+            INVALID_SIGNATURE
+    );
+
+    /**
+     * The {@link Application.Properties.IdTokenPreValidation} used to configure the pre-validation.
+     */
+    private final Application.Properties.IdTokenPreValidation properties;
+    /**
+     * The accepted audiences (i.e client ids), by issuer.
+     */
+    private final Map<String, Set<String>> audiences;
+    /**
+     * The {@link JwksCache} from which the platforms keys are taken, or {@code null} if the pre-validation is disabled.
+     */
+    private final JwksCache jwksCache;
+    /**
+     * The {@link ObjectMapper} used to parse the ID tokens.
+     */
+    private final ObjectMapper objectMapper;
+    /**
+     * The {@link Counter}s of pre-validations, by result.
+     */
+    private final Map<String, Counter> counters;
+
+
+    /**
+     * Constructor.
+     *
+     * @param properties    An {@link Application.Properties} instance used to configure the pre-validation.
+     * @param objectMapper  The {@link ObjectMapper} used to parse the ID tokens and key sets.
+     * @param meterRegistry The {@link MeterRegistry} in which the pre-validations are counted.
+     */
+    /* package */ IdTokenPreValidator(
+            final Application.Properties properties,
+            final ObjectMapper objectMapper,
+            final MeterRegistry meterRegistry) {
+        this.properties = properties.getIdTokenPreValidation();
+        this.objectMapper = objectMapper;
+        this.counters = RESULTS.stream().collect(Collectors.toUnmodifiableMap(
+                Function.identity(),
+                result -> Counter.builder(PRE_VALIDATIONS_COUNTER_NAME)
+                        .description("Local pre-validations of ID tokens, by result")
+                        .tag("result", result)
+                        .register(meterRegistry)
+        ));
+        this.audiences = new HashMap<>();
+        final var jwksUrls = new HashMap<String, String>();
+        for (final var platform : this.properties.getPlatforms()) {
+            this.audiences.put(platform.getIssuer(), Set.copyOf(platform.getClientIds()));
+            jwksUrls.put(platform.getIssuer(), platform.getJwksUrl());
+        }
+        this.jwksCache = this.properties.isEnabled() ? jwksCache(jwksUrls, objectMapper, meterRegistry) : null;
+    }
+
+
+    /**
+     * Pre-validates the ID token of the given {@code form}.
+     *
+     * @param form The {@link AuthenticationResponseForm} with the ID token to be pre-validated.
+     * @return A {@link CompletableFuture} that completes normally if the ID token passes the pre-validation
+     * (or could not be pre-validated), or exceptionally with an {@link InvalidIdTokenException} otherwise.
+     * It is already completed unless the key set of the platform had to be refreshed.
+     */
+    /* package */ CompletableFuture<Void> preValidate(final AuthenticationResponseForm form) {
+        if (jwksCache == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final IdToken idToken;
+        try {
+            idToken = IdToken.parse(form.getIdToken(), objectMapper);
+        } catch (final IllegalArgumentException e) {
+            return reject(form, MALFORMED);
+        }
+        final var signatureAlgorithm = SIGNATURE_ALGORITHMS.get(idToken.header.path("alg").asText());
+        if (signatureAlgorithm == null) {
+            return reject(form, UNSUPPORTED_ALGORITHM);
+        }
+        final var issuer = idToken.claims.path("iss").asText(null);
+        if (issuer == null || !audiences.containsKey(issuer)) {
+            return properties.isRejectUnknownIssuers() ? reject(form, UNKNOWN_ISSUER) : accept(SKIPPED);
+        }
+        final var claimsCheck = checkClaims(issuer, idToken.claims);
+        if (claimsCheck.isPresent()) {
+            return reject(form, claimsCheck.get());
+        }
+        return jwksCache.key(issuer, idToken.header.path("kid").asText(null)).thenCompose(lookup -> {
+            final var key = lookup.getKey();
+            if (key.isEmpty()) {
+                // Unless the key set was just fetched (e.g it was never fetched, or the refresh was throttled),
+                // the key might have been rotated, so the ID token can not be validated locally.
+                return lookup.isUpToDate() ? reject(form, UNKNOWN_KEY) : accept(SKIPPED);
+            }
+            return idToken.verify(signatureAlgorithm, key.get()) ? accept(VALID) : reject(form, INVALID_SIGNATURE);
+        });
+    }
+
+    @Override
+    public void destroy() {
+        if (jwksCache != null) {
+            jwksCache.close();
+        }
+    }
+
+
+    /**
+     * Creates the {@link JwksCache} from which the platforms keys are taken.
+     *
+     * @param jwksUrls      The urls of the key sets, by issuer.
+     * @param objectMapper  The {@link ObjectMapper} used to parse the key sets.
+     * @param meterRegistry The {@link MeterRegistry} in which the key sets refreshes are counted.
+     * @return The created {@link JwksCache}.
+     */
+    private JwksCache jwksCache(
+            final Map<String, String> jwksUrls,
+            final ObjectMapper objectMapper,
+            final MeterRegistry meterRegistry) {
+        return new JwksCache(
+                jwksUrls,
+                objectMapper,
+                properties.getJwksRefreshInterval(),
+                properties.getJwksMinRefreshInterval(),
+                properties.getJwksTimeout(),
+                meterRegistry
+        );
+    }
+
+    /**
+     * Checks the {@code exp}, {@code iat} and {@code aud} claims of an ID token.
+     *
+     * @param issuer The issuer of the ID token.
+     * @param claims The claims of the ID token.
+     * @return An {@link Optional} with the reason why the claims are not valid, or empty if they are valid.
+     */
+    private Optional<String> checkClaims(final String issuer, final JsonNode claims) {
+        final var now = Instant.now().getEpochSecond();
+        final var clockSkew = properties.getClockSkew().getSeconds();
+        final var expiration = claims.path("exp");
+        final var issuedAt = claims.path("iat");
+        if (!expiration.canConvertToLong() || !issuedAt.canConvertToLong()) {
+            return Optional.of(MALFORMED);
+        }
+        if (expiration.asLong() < now - clockSkew) {
+            return Optional.of(EXPIRED);
+        }
+        if (issuedAt.asLong() > now + clockSkew) {
+            return Optional.of(ISSUED_IN_THE_FUTURE);
+        }
+        final var accepted = audiences.get(issuer);
+        if (accepted.isEmpty()) {
+            return Optional.empty();
+        }
+        final var audience = claims.path("aud");
+        final Set<String> tokenAudiences = audience.isArray()
+                ? StreamSupport.stream(audience.spliterator(), false).map(JsonNode::asText).collect(Collectors.toSet())
+                : Set.of(audience.asText());
+        return tokenAudiences.stream().anyMatch(accepted::contains) ? Optional.empty() : Optional.of(WRONG_AUDIENCE);
+    }
+
+    /**
+     * Counts an accepted pre-validation.
+     *
+     * @param result The pre-validation result (i.e {@link #VALID} or {@link #SKIPPED}).
+     * @return An already completed {@link CompletableFuture}.
+     */
+    private CompletableFuture<Void> accept(final String result) {
+        count(result);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Counts a rejected pre-validation.
+     *
+     * @param form   The {@link AuthenticationResponseForm} with the rejected ID token.
+     * @param reason The reason why the ID token is rejected.
+     * @return A {@link CompletableFuture} completed exceptionally with an {@link InvalidIdTokenException}.
+     */
+    private CompletableFuture<Void> reject(final AuthenticationResponseForm form, final String reason) {
+        count(reason);
+        return CompletableFuture.failedFuture(new InvalidIdTokenException(form, reason));
+    }
+
+    /**
+     * Counts a pre-validation.
+     *
+     * @param result The pre-validation result (one of the {@link #RESULTS}).
+     */
+    private void count(final String result) {
+        counters.get(result).increment();
+    }
+
+    /**
+     * A parsed (but not validated) ID token (i.e a JWS in compact serialization).
+     */
+    private static final class IdToken {
+        /**
+         * The JOSE header.
+         */
+        private final JsonNode header;
+        /**
+         * The claims.
+         */
+        private final JsonNode claims;
+        /**
+         * The signing input (i.e the encoded header and payload, separated by a dot).
+         */
+        private final byte[] signingInput;
+        /**
+         * The signature.
+         */
+        private final byte[] signature;
+
+
+        /**
+         * Constructor.
+         *
+         * @param header       The JOSE header.
+         * @param claims       The claims.
+         * @param signingInput The signing input.
+         * @param signature    The signature.
+         */
+        private IdToken(final JsonNode header, final JsonNode claims, final byte[] signingInput, final byte[] signature) {
+            this.header = header;
+            this.claims = claims;
+            this.signingInput = signingInput;
+            this.signature = signature;
+        }
+
+
+        /**
+         * Parses the given {@code idToken}.
+         *
+         * @param idToken      The ID token.
+         * @param objectMapper The {@link ObjectMapper} used to parse the header and claims.
+         * @return The parsed {@link IdToken}.
+         * @throws IllegalArgumentException If the ID token is malformed.
+         */
+        private static IdToken parse(final String idToken, final ObjectMapper objectMapper)
+                throws IllegalArgumentException {
+            final var firstDot = idToken.indexOf('.');
+            final var secondDot = idToken.indexOf('.', firstDot + 1);
+            if (firstDot <= 0 || secondDot <= firstDot + 1 || idToken.indexOf('.', secondDot + 1) != -1) {
+                throw new IllegalArgumentException("Not a JWS in compact serialization");
+            }
+            final var decoder = Base64.getUrlDecoder();
+            try {
+                final var header = objectMapper.readTree(decoder.decode(idToken.substring(0, firstDot)));
+                final var claims = objectMapper.readTree(decoder.decode(idToken.substring(firstDot + 1, secondDot)));
+                if (header == null || !header.isObject() || claims == null || !claims.isObject()) {
+                    throw new IllegalArgumentException("The header and payload must be JSON objects");
+                }
+                return new IdToken(
+                        header,
+                        claims,
+                        idToken.substring(0, secondDot).getBytes(StandardCharsets.US_ASCII),
+                        decoder.decode(idToken.substring(secondDot + 1))
+                );
+            } catch (final IOException e) {
+                throw new IllegalArgumentException("The header and payload must be JSON objects", e);
+            }
+        }
+
+        /**
+         * Verifies the signature of this ID token.
+         *
+         * @param algorithm The JCA signature algorithm.
+         * @param key       The {@link PublicKey} of the signer.
+         * @return {@code true} if the signature is valid, or {@code false} otherwise.
+         */
+        private boolean verify(final String algorithm, final PublicKey key) {
+            try {
+                final var verifier = Signature.getInstance(algorithm);
+                verifier.initVerify(key);
+                verifier.update(signingInput);
+                return verifier.verify(signature);
+            } catch (final GeneralSecurityException e) {
+                return false;
+            }
+        }
+    }
+}
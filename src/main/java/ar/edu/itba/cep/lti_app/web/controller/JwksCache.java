@@ -0,0 +1,344 @@
+package ar.edu.itba.cep.lti_app.web.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cache of the JSON Web Key Sets (i.e the RSA signing keys) of the LTI platforms, by issuer.
+ * Key sets are refreshed in background, and also when a key that is not in the cached set is requested
+ * (i.e the platform rotated its keys), at most once every min. refresh interval.
+ * Requests of unknown keys performed while a key set is being refreshed wait for that refresh.
+ * A key set that can not be fetched keeps its previously fetched keys,
+ * and keys that can not be parsed are skipped (keeping the rest of the key set).
+ */
+class JwksCache implements AutoCloseable {
+
+    /**
+     * The name of the counters of key set refreshes.
+     */
+    private static final String REFRESHES_COUNTER_NAME = "lti-app.jwks.refreshes";
+
+    /**
+     * The {@link KeySet}s, by issuer.
+     */
+    private final Map<String, KeySet> keySets;
+    /**
+     * The {@link HttpClient} used to fetch the key sets.
+     */
+    private final HttpClient httpClient;
+    /**
+     * The {@link ObjectMapper} used to parse the key sets.
+     */
+    private final ObjectMapper objectMapper;
+    /**
+     * Timeout for fetching a key set.
+     */
+    private final Duration timeout;
+    /**
+     * The min. time between refreshes of a key set triggered by a request of an unknown key.
+     */
+    private final Duration minRefreshInterval;
+    /**
+     * The {@link MeterRegistry} in which the refreshes are counted.
+     */
+    private final MeterRegistry meterRegistry;
+    /**
+     * {@link ScheduledExecutorService} used to refresh the key sets in background.
+     */
+    private final ScheduledExecutorService refresher;
+
+
+    /**
+     * Constructor.
+     *
+     * @param jwksUrls           The urls of the key sets, by issuer.
+     * @param objectMapper       The {@link ObjectMapper} used to parse the key sets.
+     * @param refreshInterval    How often the key sets are refreshed in background.
+     * @param minRefreshInterval The min. time between refreshes triggered by a request of an unknown key.
+     * @param timeout            Timeout for fetching a key set.
+     * @param meterRegistry      The {@link MeterRegistry} in which the refreshes are counted.
+     */
+    /* package */ JwksCache(
+            final Map<String, String> jwksUrls,
+            final ObjectMapper objectMapper,
+            final Duration refreshInterval,
+            final Duration minRefreshInterval,
+            final Duration timeout,
+            final MeterRegistry meterRegistry) {
+        this.keySets = new HashMap<>();
+        jwksUrls.forEach((issuer, url) -> this.keySets.put(issuer, new KeySet(issuer, URI.create(url))));
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+        this.objectMapper = objectMapper;
+        this.timeout = timeout;
+        this.minRefreshInterval = minRefreshInterval;
+        this.meterRegistry = meterRegistry;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final var thread = new Thread(runnable, "jwks-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.refresher.scheduleWithFixedDelay(
+                () -> this.keySets.values().forEach(this::refresh),
+                0,
+                refreshInterval.toMillis(),
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+
+    /**
+     * Looks up the key with the given {@code keyId} of the given {@code issuer}.
+     * If the key is unknown, the lookup waits for the refresh of the key set in progress, if any,
+     * or refreshes the key set, unless it was refreshed recently.
+     *
+     * @param issuer The issuer.
+     * @param keyId  The id of the key (i.e the {@code kid} header), or {@code null} if the token does not state it,
+     *               in which case the key is only found if the key set contains a single one.
+     * @return A {@link CompletableFuture} that completes with the {@link KeyLookup}.
+     */
+    /* package */ CompletableFuture<KeyLookup> key(final String issuer, final String keyId) {
+        final var keySet = keySets.get(issuer);
+        if (keySet == null) {
+            return CompletableFuture.completedFuture(new KeyLookup(null, false));
+        }
+        final var key = keySet.find(keyId);
+        if (key.isPresent()) {
+            return CompletableFuture.completedFuture(new KeyLookup(key.get(), true));
+        }
+        final var inProgress = keySet.refreshing.get();
+        if (inProgress == null && System.nanoTime() - keySet.lastRefresh < minRefreshInterval.toNanos()) {
+            // The key might have been published after the last refresh, so its absence is not conclusive.
+            return CompletableFuture.completedFuture(new KeyLookup(null, false));
+        }
+        return (inProgress == null ? refresh(keySet) : inProgress)
+                .thenApply(refreshed -> new KeyLookup(keySet.find(keyId).orElse(null), refreshed));
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+
+    /**
+     * Refreshes the given {@code keySet}, unless it is being refreshed already.
+     *
+     * @param keySet The {@link KeySet} to be refreshed.
+     * @return A {@link CompletableFuture} that completes (always normally) when the refresh completes,
+     * with whether the key set was fetched.
+     */
+    private CompletableFuture<Boolean> refresh(final KeySet keySet) {
+        final var refresh = new CompletableFuture<Boolean>();
+        if (!keySet.refreshing.compareAndSet(null, refresh)) {
+            final var inProgress = keySet.refreshing.get();
+            // If null, the refresh just completed (and its result is unknown).
+            return inProgress == null ? CompletableFuture.completedFuture(false) : inProgress;
+        }
+        keySet.lastRefresh = System.nanoTime();
+        fetch(keySet.uri)
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("Unexpected status " + response.statusCode());
+                    }
+                    return parse(response.body());
+                })
+                .whenComplete((keys, throwable) -> {
+                    if (throwable == null) {
+                        keySet.keys = keys;
+                    }
+                    Counter.builder(REFRESHES_COUNTER_NAME)
+                            .description("Refreshes of the key sets of the LTI platforms")
+                            .tag("issuer", keySet.issuer)
+                            .tag("result", throwable == null ? "success" : "failure")
+                            .register(meterRegistry)
+                            .increment();
+                    keySet.refreshing.set(null);
+                    refresh.complete(throwable == null);
+                });
+        return refresh;
+    }
+
+    /**
+     * Fetches the key set at the given {@code uri}, transforming any exception thrown synchronously
+     * into an exceptionally completed {@link CompletableFuture}.
+     *
+     * @param uri The {@link URI} of the key set.
+     * @return A {@link CompletableFuture} that completes with the response.
+     */
+    private CompletableFuture<HttpResponse<byte[]>> fetch(final URI uri) {
+        try {
+            final var request = HttpRequest.newBuilder(uri).timeout(timeout).GET().build();
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (final Throwable e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Parses the RSA signing keys of a JSON Web Key Set.
+     *
+     * @param jwks The JSON Web Key Set.
+     * @return The keys, by id (keys without id are stored with an empty id). Keys that can not be parsed are skipped.
+     * @throws IllegalArgumentException If the key set is not valid.
+     */
+    private Map<String, PublicKey> parse(final byte[] jwks) throws IllegalArgumentException {
+        try {
+            final var keyFactory = KeyFactory.getInstance("RSA");
+            final var keys = new HashMap<String, PublicKey>();
+            for (final JsonNode jwk : objectMapper.readTree(jwks).path("keys")) {
+                if (!"RSA".equals(jwk.path("kty").asText()) || "enc".equals(jwk.path("use").asText())) {
+                    continue;
+                }
+                try {
+                    final var spec = new RSAPublicKeySpec(
+                            unsignedInteger(jwk.path("n").asText()),
+                            unsignedInteger(jwk.path("e").asText())
+                    );
+                    keys.put(jwk.path("kid").asText(""), keyFactory.generatePublic(spec));
+                } catch (final IllegalArgumentException | GeneralSecurityException e) {
+                    // A malformed key must not invalidate the rest of the key set (e.g a key being rotated).
+                }
+            }
+            return keys;
+        } catch (final IOException | GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid JSON Web Key Set", e);
+        }
+    }
+
+    /**
+     * Decodes a base64url encoded unsigned big-endian integer (as the JWK parameters are encoded).
+     *
+     * @param base64Url The encoded integer.
+     * @return The decoded integer.
+     */
+    private static BigInteger unsignedInteger(final String base64Url) {
+        return new BigInteger(1, Base64.getUrlDecoder().decode(base64Url));
+    }
+
+
+    /**
+     * The result of looking up a key.
+     */
+    /* package */ static final class KeyLookup {
+        /**
+         * The key, or {@code null} if it was not found.
+         */
+        private final PublicKey key;
+        /**
+         * Whether the key set was up to date when the key was looked up
+         * (i.e it was found, or it was not found in a key set that was just fetched).
+         */
+        private final boolean upToDate;
+
+
+        /**
+         * Constructor.
+         *
+         * @param key      The key, or {@code null} if it was not found.
+         * @param upToDate Whether the key set was up to date when the key was looked up.
+         */
+        private KeyLookup(final PublicKey key, final boolean upToDate) {
+            this.key = key;
+            this.upToDate = upToDate;
+        }
+
+
+        /**
+         * @return An {@link Optional} with the key, or empty if it was not found.
+         */
+        /* package */ Optional<PublicKey> getKey() {
+            return Optional.ofNullable(key);
+        }
+
+        /**
+         * Indicates whether the key set was up to date when the key was looked up,
+         * in which case a key that was not found is certainly not a key of the issuer.
+         *
+         * @return {@code true} if the key set was up to date, or {@code false} otherwise.
+         */
+        /* package */ boolean isUpToDate() {
+            return upToDate;
+        }
+    }
+
+    /**
+     * The key set of an issuer.
+     */
+    private static final class KeySet {
+        /**
+         * The issuer.
+         */
+        private final String issuer;
+        /**
+         * The {@link URI} of the key set.
+         */
+        private final URI uri;
+        /**
+         * The refresh in progress, or {@code null} if the key set is not being refreshed.
+         */
+        private final AtomicReference<CompletableFuture<Boolean>> refreshing;
+        /**
+         * The keys, by id, or {@code null} if they were not fetched yet.
+         */
+        private volatile Map<String, PublicKey> keys;
+        /**
+         * The last time (in terms of {@link System#nanoTime()}) a refresh was started.
+         */
+        private volatile long lastRefresh;
+
+
+        /**
+         * Constructor.
+         *
+         * @param issuer The issuer.
+         * @param uri    The {@link URI} of the key set.
+         */
+        private KeySet(final String issuer, final URI uri) {
+            this.issuer = issuer;
+            this.uri = uri;
+            this.refreshing = new AtomicReference<>();
+            this.lastRefresh = System.nanoTime() - TimeUnit.DAYS.toNanos(1); // Can be refreshed right away.
+        }
+
+
+        /**
+         * Finds the key with the given {@code keyId}.
+         *
+         * @param keyId The id of the key, or {@code null} to get the key set's single key.
+         * @return An {@link Optional} with the key, or empty if there is no such key.
+         */
+        private Optional<PublicKey> find(final String keyId) {
+            final var currentKeys = keys;
+            if (currentKeys == null) {
+                return Optional.empty();
+            }
+            if (keyId == null) {
+                return currentKeys.size() == 1 ? currentKeys.values().stream().findFirst() : Optional.empty();
+            }
+            return Optional.ofNullable(currentKeys.get(keyId));
+        }
+    }
+}
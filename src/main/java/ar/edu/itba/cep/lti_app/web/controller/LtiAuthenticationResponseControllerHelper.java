@@ -1,24 +1,104 @@
 package ar.edu.itba.cep.lti_app.web.controller;
 
 import ar.edu.itba.cep.lti.AuthenticationResponse;
+import ar.edu.itba.cep.lti_app.Application;
+import ar.edu.itba.cep.lti_app.launch_state.LaunchStateStore;
+import ar.edu.itba.cep.lti_app.service.RequestDeadline;
 import ar.edu.itba.cep.lti_app.web.dtos.AuthenticationResponseForm;
 import ar.edu.itba.cep.lti_app.web.exceptions.AuthenticationResponseWithMissingParamsException;
-import lombok.AllArgsConstructor;
+import ar.edu.itba.cep.lti_app.web.exceptions.InvalidIdTokenException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
 import org.springframework.stereotype.Component;
 
 import javax.validation.Validator;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Component in charge of providing a single point of control for handling LTI authentication responses.
+ * Duplicated responses (i.e same state and ID token, as sent by double clicks, browser back, or LMS retries)
+ * are coalesced: while a response is being handled, duplicates share its result,
+ * and once handled, the result is kept for a short time, so duplicates get it without handling it again.
+ * Results are kept in the {@link LaunchStateStore} (so duplicates that reach another instance get them too),
+ * except those that carry credentials (e.g the exam taking tokens), which are kept only in the memory of this instance,
+ * so they never reach the (possibly shared) store.
+ * A response being handled is only abandoned (i.e its calls to the LTI service are cancelled)
+ * once all the requests waiting for its result have been aborted.
  */
 @Component
-@AllArgsConstructor
 class LtiAuthenticationResponseControllerHelper {
 
     /**
      * A {@link Validator} used to validate input data.
      */
     private final Validator validator;
+    /**
+     * The {@link IdTokenPreValidator} used to reject certainly invalid ID tokens before calling the LTI service.
+     */
+    private final IdTokenPreValidator idTokenPreValidator;
+    /**
+     * The responses being handled, by {@link LaunchKey}.
+     */
+    private final Map<LaunchKey, InFlightLaunch> inFlight;
+    /**
+     * The {@link LaunchStateStore} in which the results of the (successfully) handled responses are kept.
+     */
+    private final LaunchStateStore store;
+    /**
+     * The results of the (successfully) handled responses that can not be kept in the {@link #store}
+     * (i.e they carry credentials), by {@link LaunchKey}.
+     */
+    private final Cache<LaunchKey, String> localResults;
+    /**
+     * How long the results of the handled responses are kept.
+     */
+    private final Duration resultTtl;
+    /**
+     * Counts the responses that were coalesced with one being handled.
+     */
+    private final Counter coalescedCounter;
+
+
+    /**
+     * Constructor.
+     *
+     * @param validator           A {@link Validator} used to validate input data.
+     * @param idTokenPreValidator The {@link IdTokenPreValidator} used to reject certainly invalid ID tokens.
+     * @param store               The {@link LaunchStateStore} in which the results of the handled responses are kept.
+     * @param properties          An {@link Application.Properties} instance used to configure the coalescing.
+     * @param meterRegistry       The {@link MeterRegistry} in which the coalescing metrics are published.
+     */
+    /* package */ LtiAuthenticationResponseControllerHelper(
+            final Validator validator,
+            final IdTokenPreValidator idTokenPreValidator,
+            final LaunchStateStore store,
+            final Application.Properties properties,
+            final MeterRegistry meterRegistry) {
+        this.validator = validator;
+        this.idTokenPreValidator = idTokenPreValidator;
+        this.inFlight = new ConcurrentHashMap<>();
+        this.store = store;
+        this.resultTtl = properties.getLaunchCoalescing().getResultTtl();
+        this.localResults = Caffeine.newBuilder()
+                .expireAfterWrite(resultTtl)
+                .maximumSize(properties.getLaunchCoalescing().getMaxLocalResults())
+                .build();
+        this.coalescedCounter = Counter.builder("lti-app.launches.coalesced")
+                .description("LTI launches that shared the result of a duplicated launch in flight")
+                .register(meterRegistry);
+    }
 
 
     /**
@@ -28,14 +108,235 @@ class LtiAuthenticationResponseControllerHelper {
      * @param ltiMessageHandler An {@link LtiMessageHandler} with the action to be performed in case the
      *                          {@link AuthenticationResponseForm} carries valid data.
      *                          The result will be appended to the "redirect:" prefix.
-     * @return The result of the {@link LtiMessageHandler} if the {@link AuthenticationResponseForm} carries valid data.
+     *                          It must not carry credentials, as it is kept in the {@link LaunchStateStore}.
+     * @return A {@link CompletableFuture} that will complete with the result of the {@link LtiMessageHandler}
+     * if the {@link AuthenticationResponseForm} carries valid data,
+     * or exceptionally with an {@link InvalidIdTokenException} if its ID token does not pass the pre-validation.
+     * @throws AuthenticationResponseWithMissingParamsException If the {@code form} contains errors.
+     */
+    CompletableFuture<String> handleLtiMessage(
+            final AuthenticationResponseForm form,
+            final LtiMessageHandler ltiMessageHandler) {
+        return resolveLtiMessage(form, ltiMessageHandler, true).thenApply(result -> "redirect:" + result);
+    }
+
+    /**
+     * Handles an Lti authentication response message, like
+     * {@link #handleLtiMessage(AuthenticationResponseForm, LtiMessageHandler)} does,
+     * but without appending the result to the "redirect:" prefix
+     * (i.e the caller decides how the result is shown).
+     *
+     * @param form              The {@link AuthenticationResponseForm} carrying the received data (i.e state and ID token).
+     * @param ltiMessageHandler An {@link LtiMessageHandler} with the action to be performed in case the
+     *                          {@link AuthenticationResponseForm} carries valid data.
+     * @param shareResult       Whether the result can be kept in the {@link LaunchStateStore}
+     *                          (i.e shared with other instances). Results that carry credentials must not,
+     *                          so they are only kept in the memory of this instance.
+     * @return A {@link CompletableFuture} that will complete with the result of the {@link LtiMessageHandler}
+     * if the {@link AuthenticationResponseForm} carries valid data,
+     * or exceptionally with an {@link InvalidIdTokenException} if its ID token does not pass the pre-validation.
      * @throws AuthenticationResponseWithMissingParamsException If the {@code form} contains errors.
      */
-    String handleLtiMessage(final AuthenticationResponseForm form, final LtiMessageHandler ltiMessageHandler) {
+    CompletableFuture<String> resolveLtiMessage(
+            final AuthenticationResponseForm form,
+            final LtiMessageHandler ltiMessageHandler,
+            final boolean shareResult) {
         if (!validator.validate(form).isEmpty()) {
             throw new AuthenticationResponseWithMissingParamsException(form);
         }
-        return "redirect:" + ltiMessageHandler.handle(form.toAuthenticationResponse());
+        final var key = new LaunchKey(form.getState(), form.getIdToken());
+        final var deadline = RequestDeadline.current(); // Taken now, as the rest might run in another thread.
+        return idTokenPreValidator.preValidate(form)
+                .thenCompose(ignored -> coalesce(
+                        key,
+                        form.toAuthenticationResponse(),
+                        ltiMessageHandler,
+                        shareResult,
+                        deadline
+                ));
+    }
+
+
+    /**
+     * Handles the given {@code response} with the given {@code ltiMessageHandler},
+     * unless a duplicate of it is being handled, or was handled recently,
+     * in which case the result of the duplicate is used.
+     *
+     * @param key               The {@link LaunchKey} of the {@code response}.
+     * @param response          The {@link AuthenticationResponse} to be handled.
+     * @param ltiMessageHandler The {@link LtiMessageHandler} that handles the {@code response}.
+     * @param shareResult       Whether the result can be kept in the {@link LaunchStateStore}.
+     * @param deadline          The {@link RequestDeadline} of the request that carries the {@code response}, if any.
+     * @return A {@link CompletableFuture} that will complete with the result of handling the {@code response}.
+     */
+    private CompletableFuture<String> coalesce(
+            final LaunchKey key,
+            final AuthenticationResponse response,
+            final LtiMessageHandler ltiMessageHandler,
+            final boolean shareResult,
+            final Optional<RequestDeadline> deadline) {
+        if (!shareResult) {
+            final var cached = localResults.getIfPresent(key);
+            return cached != null
+                    ? CompletableFuture.completedFuture(cached)
+                    : coalesceInFlight(key, null, response, ltiMessageHandler, deadline);
+        }
+        final var storeKey = key.toStoreKey();
+        return store.get(storeKey).thenCompose(cached -> cached
+                .map(CompletableFuture::completedFuture)
+                .orElseGet(() -> coalesceInFlight(key, storeKey, response, ltiMessageHandler, deadline))
+        );
+    }
+
+    /**
+     * Handles the given {@code response} with the given {@code ltiMessageHandler},
+     * unless a duplicate of it is being handled by this instance, in which case the result of the duplicate is used.
+     *
+     * @param key               The {@link LaunchKey} of the {@code response}.
+     * @param storeKey          The key with which the result is kept in the {@link LaunchStateStore},
+     *                          or {@code null} if it must be kept only in the memory of this instance.
+     * @param response          The {@link AuthenticationResponse} to be handled.
+     * @param ltiMessageHandler The {@link LtiMessageHandler} that handles the {@code response}.
+     * @param deadline          The {@link RequestDeadline} of the request that carries the {@code response}, if any.
+     * @return A {@link CompletableFuture} that will complete with the result of handling the {@code response}.
+     */
+    private CompletableFuture<String> coalesceInFlight(
+            final LaunchKey key,
+            final String storeKey,
+            final AuthenticationResponse response,
+            final LtiMessageHandler ltiMessageHandler,
+            final Optional<RequestDeadline> deadline) {
+        // The launch is not aborted with the request that starts it, as duplicates might be waiting for it.
+        final var launch = new InFlightLaunch(deadline.map(RequestDeadline::detach));
+        final var existing = inFlight.putIfAbsent(key, launch);
+        if (existing != null) {
+            coalescedCounter.increment();
+            return existing.join(deadline);
+        }
+        handle(response, ltiMessageHandler, launch.deadline).whenComplete((value, throwable) -> {
+            // Failures are not kept, so duplicates that arrive after a failure are handled again.
+            if (throwable == null) {
+                if (storeKey == null) {
+                    localResults.put(key, value);
+                } else {
+                    store.put(storeKey, value, resultTtl);
+                }
+            }
+            inFlight.remove(key, launch);
+            if (throwable == null) {
+                launch.result.complete(value);
+            } else {
+                launch.result.completeExceptionally(throwable);
+            }
+        });
+        return launch.join(deadline);
+    }
+
+    /**
+     * Handles the given {@code response} with the given {@code ltiMessageHandler},
+     * transforming any exception thrown synchronously into an exceptionally completed {@link CompletableFuture}
+     * (so that the in-flight result is always completed).
+     *
+     * @param response          The {@link AuthenticationResponse} to be handled.
+     * @param ltiMessageHandler The {@link LtiMessageHandler} that handles the {@code response}.
+     * @param deadline          The {@link RequestDeadline} that bounds the handling, if any.
+     * @return The {@link CompletableFuture} returned by the {@code ltiMessageHandler}.
+     */
+    private static CompletableFuture<String> handle(
+            final AuthenticationResponse response,
+            final LtiMessageHandler ltiMessageHandler,
+            final Optional<RequestDeadline> deadline) {
+        try (var ignored = deadline.map(RequestDeadline::bind).orElse(() -> {})) {
+            return ltiMessageHandler.handle(response);
+        } catch (final Throwable e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+
+    /**
+     * A response being handled, whose result is shared by the requests that carry it (i.e the duplicates).
+     */
+    private static final class InFlightLaunch {
+
+        /**
+         * The result of handling the response.
+         */
+        private final CompletableFuture<String> result;
+        /**
+         * The {@link RequestDeadline} that bounds the handling, if any.
+         */
+        private final Optional<RequestDeadline> deadline;
+        /**
+         * The amount of requests waiting for the {@link #result}, that were not aborted.
+         */
+        private final AtomicInteger waiting;
+
+
+        /**
+         * Constructor.
+         *
+         * @param deadline The {@link RequestDeadline} that bounds the handling, if any.
+         */
+        private InFlightLaunch(final Optional<RequestDeadline> deadline) {
+            this.result = new CompletableFuture<>();
+            this.deadline = deadline;
+            this.waiting = new AtomicInteger();
+        }
+
+
+        /**
+         * Makes a request wait for the {@link #result}.
+         * If all the waiting requests are aborted, the handling is aborted too.
+         *
+         * @param requestDeadline The {@link RequestDeadline} of the request, if any
+         *                        (requests without one are never aborted).
+         * @return A {@link CompletableFuture} that will complete with the {@link #result}.
+         */
+        private CompletableFuture<String> join(final Optional<RequestDeadline> requestDeadline) {
+            waiting.incrementAndGet();
+            requestDeadline.ifPresent(d -> d.onAbort(() -> {
+                if (waiting.decrementAndGet() == 0) {
+                    deadline.ifPresent(RequestDeadline::abort);
+                }
+            }));
+            return result.copy(); // Duplicates must not be able to complete the shared result.
+        }
+    }
+
+    /**
+     * Identifies duplicated LTI launches (i.e authentication responses with the same state and ID token).
+     * The ID token is part of the key so that a result is never handed to a launch with a different ID token.
+     */
+    @Value
+    private static class LaunchKey {
+        /**
+         * The state of the launch.
+         */
+        private final String state;
+        /**
+         * The ID token of the launch.
+         */
+        private final String idToken;
+
+
+        /**
+         * Builds the key with which the result of the launch is kept in the {@link LaunchStateStore}
+         * (a digest of the state and ID token, as ID tokens are too long to be used as keys).
+         *
+         * @return The key.
+         */
+        private String toStoreKey() {
+            try {
+                final var digest = MessageDigest.getInstance("SHA-256");
+                digest.update(state.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(idToken.getBytes(StandardCharsets.UTF_8));
+                return "launch-result:" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not supported", e); // Every JVM must support it.
+            }
+        }
     }
 
 
@@ -52,8 +353,9 @@ class LtiAuthenticationResponseControllerHelper {
          * Handles the given {@code response}.
          *
          * @param response The {@link AuthenticationResponse} to be handled.
-         * @return A {@link String} representing the redirection to be performed.
+         * @return A {@link CompletableFuture} that will complete with a {@link String}
+         * representing the redirection to be performed.
          */
-        String handle(final AuthenticationResponse response);
+        CompletableFuture<String> handle(final AuthenticationResponse response);
     }
 }
@@ -1,6 +1,7 @@
 package ar.edu.itba.cep.lti_app.web.controller;
 
 import ar.edu.itba.cep.lti.*;
+import ar.edu.itba.cep.lti_app.service.AsyncLtiService;
 import ar.edu.itba.cep.lti_app.web.dtos.AuthenticationResponseForm;
 import ar.edu.itba.cep.lti_app.web.dtos.ExamSelectedForm;
 import lombok.AllArgsConstructor;
@@ -13,6 +14,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.MvcUriComponentsBuilder;
 
 import javax.validation.Valid;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * LTI controller.
@@ -27,9 +29,9 @@ public class LtiExamSelectionController {
     // ===========================================================================
 
     /**
-     * The {@link LtiExamSelectionService} to which the LTI messages are routed.
+     * The {@link AsyncLtiService} to which the LTI messages are routed.
      */
-    private final LtiExamSelectionService ltiExamSelectionService;
+    private final AsyncLtiService ltiService;
     /**
      * The {@link LtiAuthenticationResponseControllerHelper} to which
      */
@@ -43,7 +45,7 @@ public class LtiExamSelectionController {
 
     @PostMapping(consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
     @ResponseStatus(code = HttpStatus.SEE_OTHER)
-    public String examSelection(final AuthenticationResponseForm form) {
+    public CompletableFuture<String> examSelection(final AuthenticationResponseForm form) {
         return ltiAuthenticationResponseControllerHelper.handleLtiMessage(form, this::examSelection);
     }
 
@@ -60,19 +62,48 @@ public class LtiExamSelectionController {
 
 
     @PostMapping(value = "/selected", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
-    public String examSelected(
+    public CompletableFuture<String> examSelected(
             @Valid @ModelAttribute("examSelectionForm") final ExamSelectedForm form,
             final BindingResult result,
             final Model model) {
         if (result.hasErrors()) {
-            return "exam-selection";
+            return CompletableFuture.completedFuture("exam-selection");
         }
 
         final var url = MvcUriComponentsBuilder.fromController(LtiExamTakingController.class).build().toString();
 
 
         final var request = new ExamSelectedRequest(form.getExamId(), form.getState(), url, null, null);
-        final var response = ltiExamSelectionService.examSelected(request);
+        return ltiService.examSelected(request).thenApply(response -> examSelectedView(form, response, model));
+    }
+
+
+    // ================================================================================================================
+    // Helpers
+    // ================================================================================================================
+
+    /**
+     * Handles the exam selection request.
+     *
+     * @param response The {@link AuthenticationResponse} representing an exam selection deep linking request.
+     * @return A {@link CompletableFuture} that will complete with a {@link String} representing the view to be shown.
+     */
+    private CompletableFuture<String> examSelection(final AuthenticationResponse response) {
+        return ltiService.examSelection(response).thenApply(selection -> "exam-selection?state=" + selection.getState());
+    }
+
+    /**
+     * Fills the given {@code model} with the given exam selected {@code response}.
+     *
+     * @param form     The {@link ExamSelectedForm} with the selected exam.
+     * @param response The {@link ExamSelectedResponse} returned by the LTI service.
+     * @param model    The {@link Model} to be filled.
+     * @return A {@link String} representing the view to be shown.
+     */
+    private static String examSelectedView(
+            final ExamSelectedForm form,
+            final ExamSelectedResponse response,
+            final Model model) {
         model.addAttribute("examId", form.getExamId());
         if (response instanceof NonExistingExamSelectedResponse) {
             model.addAttribute("cause", "non-existing");
@@ -88,19 +119,4 @@ public class LtiExamSelectionController {
         model.addAttribute("examData", existingExamSelectedResponse.getExamData());
         return "exam-selected";
     }
-
-
-    // ================================================================================================================
-    // Helpers
-    // ================================================================================================================
-
-    /**
-     * Handles the exam selection request.
-     *
-     * @param response The {@link AuthenticationResponse} representing an exam selection deep linking request.
-     * @return A {@link String} representing the view to be shown.
-     */
-    private String examSelection(final AuthenticationResponse response) {
-        return "exam-selection?state=" + ltiExamSelectionService.examSelection(response).getState();
-    }
 }
@@ -1,11 +1,11 @@
 package ar.edu.itba.cep.lti_app.web.controller;
 
 import ar.edu.itba.cep.lti.AuthenticationResponse;
-import ar.edu.itba.cep.lti.LtiExamTakingService;
+import ar.edu.itba.cep.lti.ExamTakingResponse;
 import ar.edu.itba.cep.lti_app.Application;
+import ar.edu.itba.cep.lti_app.service.AsyncLtiService;
 import ar.edu.itba.cep.lti_app.web.dtos.AuthenticationResponseForm;
-import lombok.AllArgsConstructor;
-import org.apache.commons.lang.text.StrSubstitutor;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -13,18 +13,23 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.util.Assert;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.View;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.servlet.http.HttpServletRequest;
+
+import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * LTI controller.
  */
 @Controller
 @RequestMapping("/exam-taking")
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class LtiExamTakingController implements InitializingBean {
 
     // ===========================================================================
@@ -36,22 +41,44 @@ public class LtiExamTakingController implements InitializingBean {
     private static final String REFRESH_TOKEN_VARIABLE = "refresh-token";
     private static final String TOKEN_ID_VARIABLE = "token-id";
 
+    /**
+     * The redirection to the "take exam" view for launches that carry the exam and tokens
+     * (to which the rest of the query string is appended).
+     */
+    private static final String EXAM_TAKING_REDIRECTION = "exam-taking?examId=";
+    /**
+     * The redirection to the "take exam" view for launches kept server side (to which the handle is appended).
+     */
+    private static final String LAUNCH_HANDLE_REDIRECTION = "exam-taking?launch=";
+
     // ===========================================================================
     // Needed stuff
     // ===========================================================================
 
     /**
-     * The {@link LtiExamTakingService} to which the LTI messages are routed.
+     * The {@link AsyncLtiService} to which the LTI messages are routed.
      */
-    private final LtiExamTakingService ltiExamTakingService;
+    private final AsyncLtiService ltiService;
     /**
      * The {@link LtiAuthenticationResponseControllerHelper} to which
      */
     private final LtiAuthenticationResponseControllerHelper ltiAuthenticationResponseControllerHelper;
+    /**
+     * The {@link ExamTakingWaitingRoom} in which launches wait when there are too many in flight.
+     */
+    private final ExamTakingWaitingRoom waitingRoom;
+    /**
+     * The {@link ExamTakingLaunchHandles} in which launches are kept server side (if configured to do so).
+     */
+    private final ExamTakingLaunchHandles launchHandles;
     /**
      * An {@link Application.Properties} instance used to configure behaviour of this controller.
      */
     private final Application.Properties properties;
+    /**
+     * The "exam taking" url template, compiled from the {@link #properties} when initializing.
+     */
+    private UrlTemplate examTakingUrlTemplate;
 
     // ================================================================================================================
     // Initializing bean
@@ -60,6 +87,13 @@ public class LtiExamTakingController implements InitializingBean {
     @Override
     public void afterPropertiesSet() {
         validateProperties();
+        this.examTakingUrlTemplate = UrlTemplate.compile(
+                properties.getExamTakingUrlTemplate(),
+                EXAM_ID_VARIABLE,
+                TOKEN_ID_VARIABLE,
+                ACCESS_TOKEN_VARIABLE,
+                REFRESH_TOKEN_VARIABLE
+        );
     }
 
 
@@ -68,9 +102,39 @@ public class LtiExamTakingController implements InitializingBean {
     // ================================================================================================================
 
     @PostMapping(consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
-    @ResponseStatus(code = HttpStatus.SEE_OTHER)
-    public String takeExam(final AuthenticationResponseForm form) {
-        return ltiAuthenticationResponseControllerHelper.handleLtiMessage(form, this::takeExam);
+    public CompletableFuture<String> takeExam(
+            final AuthenticationResponseForm form,
+            final HttpServletRequest request,
+            final Model model) {
+        // Redirections are performed with a 303 (the view might be rendered directly, so no @ResponseStatus is used).
+        request.setAttribute(View.RESPONSE_STATUS_ATTRIBUTE, HttpStatus.SEE_OTHER);
+        // The result carries the exam taking tokens, so it must not be shared through the launch state store.
+        return ltiAuthenticationResponseControllerHelper
+                .resolveLtiMessage(form, response -> waitingRoom.admit(response, this::takeExam), false)
+                .thenCompose(result -> view(result, model));
+    }
+
+    @GetMapping("/waiting-room/{ticket}")
+    public CompletableFuture<String> waitingRoom(@PathVariable("ticket") final String ticketId, final Model model) {
+        return waitingRoom.poll(ticketId).thenCompose(statusOptional -> {
+            if (statusOptional.isEmpty()) {
+                model.addAttribute("expired", true);
+                return CompletableFuture.completedFuture("waiting-room");
+            }
+            final var status = statusOptional.get();
+            // A failed launch is handled as if it had not waited (e.g an external service exception)
+            return status.getResult()
+                    .map(result -> result.thenCompose(value -> view(value, model)))
+                    .orElseGet(() -> {
+                        model.addAttribute("expired", false);
+                        model.addAttribute("position", status.getPosition());
+                        model.addAttribute(
+                                "refreshSeconds",
+                                waitingRoom.getProperties().getRefreshInterval().toSeconds()
+                        );
+                        return CompletableFuture.completedFuture("waiting-room");
+                    });
+        });
     }
 
     @GetMapping
@@ -81,18 +145,15 @@ public class LtiExamTakingController implements InitializingBean {
             @RequestParam("refreshToken") final String refreshToken,
             @RequestParam("returnUrl") final String returnUrl,
             final Model model) {
-        model.addAttribute("examId", examId);
-        final var valueMap = Map.of(
-                EXAM_ID_VARIABLE, examId,
-                TOKEN_ID_VARIABLE, tokenId,
-                ACCESS_TOKEN_VARIABLE, accessToken,
-                REFRESH_TOKEN_VARIABLE, refreshToken
-        );
-        final var examTakingUrl = StrSubstitutor.replace(properties.getExamTakingUrlTemplate(), valueMap);
-        model.addAttribute("returnUrl", returnUrl);
-        model.addAttribute("examTakingUrl", examTakingUrl);
+        return takeExamView(examId.toString(), tokenId.toString(), accessToken, refreshToken, returnUrl, model);
+    }
 
-        return "take-exam";
+    @GetMapping(params = "launch")
+    public CompletableFuture<String> takeExam(@RequestParam("launch") final String handle, final Model model) {
+        return launchHandles.take(handle).thenApply(launch -> launch
+                .map(present -> takeExamView(present, model))
+                .orElse("launch-expired")
+        );
     }
 
 
@@ -130,17 +191,147 @@ public class LtiExamTakingController implements InitializingBean {
      * Handles the exam take request.
      *
      * @param response The {@link AuthenticationResponse} representing an exam selection resource link launch request.
+     * @return A {@link CompletableFuture} that will complete with a {@link String} representing the view to be shown.
+     */
+    private CompletableFuture<String> takeExam(final AuthenticationResponse response) {
+        return ltiService.takeExam(response).thenApply(LtiExamTakingController::examTakingRedirection);
+    }
+
+    /**
+     * Resolves the view to be shown for the given launch {@code result}, according to the configured
+     * {@link Application.Properties.ExamTakingLaunch.Mode}, if the {@code result} carries the exam and tokens:
+     * the "take exam" view itself in the {@link Application.Properties.ExamTakingLaunch.Mode#RENDER} mode
+     * (filled as the redirection would), or the redirection with a new handle of the launch
+     * in the {@link Application.Properties.ExamTakingLaunch.Mode#HANDLE} mode.
+     * Otherwise, the redirection to the {@code result} is performed.
+     * This is done for each request (i.e after duplicated launches are coalesced, and after the waiting room),
+     * so each of them gets its own (single use) handle.
+     *
+     * @param result The result of the launch (i.e a redirection relative to the context path).
+     * @param model  The {@link Model} to be filled if the "take exam" view is rendered.
+     * @return A {@link CompletableFuture} that will complete with a {@link String} representing the view to be shown.
+     */
+    private CompletableFuture<String> view(final String result, final Model model) {
+        final var mode = properties.getExamTakingLaunch().getMode();
+        if (mode == Application.Properties.ExamTakingLaunch.Mode.REDIRECT
+                || !result.startsWith(EXAM_TAKING_REDIRECTION)) {
+            return CompletableFuture.completedFuture("redirect:/" + result);
+        }
+        final var launch = launchOf(result);
+        if (mode == Application.Properties.ExamTakingLaunch.Mode.RENDER) {
+            return CompletableFuture.completedFuture(takeExamView(launch, model));
+        }
+        return launchHandles.create(launch).thenApply(handle -> "redirect:/" + LAUNCH_HANDLE_REDIRECTION + handle);
+    }
+
+    /**
+     * Fills the given {@code model} with the given {@code launch}.
+     *
+     * @param launch The {@link ExamTakingResponse} returned by the LTI service.
+     * @param model  The {@link Model} to be filled.
      * @return A {@link String} representing the view to be shown.
      */
-    private String takeExam(final AuthenticationResponse response) {
-        final var examTakingResponse = ltiExamTakingService.takeExam(response);
-        return "exam-taking"
-                + "?examId=" + examTakingResponse.getExamId()
-                + "&tokenId=" + examTakingResponse.getTokenId()
-                + "&accessToken=" + examTakingResponse.getAccessToken()
-                + "&refreshToken=" + examTakingResponse.getRefreshToken()
-                + "&returnUrl=" + URLEncoder.encode(examTakingResponse.getReturnUrl(), StandardCharsets.UTF_8)
+    private String takeExamView(final ExamTakingResponse launch, final Model model) {
+        return takeExamView(
+                String.valueOf(launch.getExamId()),
+                String.valueOf(launch.getTokenId()),
+                launch.getAccessToken(),
+                launch.getRefreshToken(),
+                launch.getReturnUrl(),
+                model
+        );
+    }
+
+    /**
+     * Fills the given {@code model} with the given exam and tokens.
+     *
+     * @param examId       The id of the exam to be taken.
+     * @param tokenId      The id of the token pair.
+     * @param accessToken  The access token.
+     * @param refreshToken The refresh token.
+     * @param returnUrl    The url to which the user must return after taking the exam.
+     * @param model        The {@link Model} to be filled.
+     * @return A {@link String} representing the view to be shown.
+     */
+    private String takeExamView(
+            final String examId,
+            final String tokenId,
+            final String accessToken,
+            final String refreshToken,
+            final String returnUrl,
+            final Model model) {
+        model.addAttribute("examId", examId);
+        final var examTakingUrl = examTakingUrlTemplate.expand(examId, tokenId, accessToken, refreshToken);
+        model.addAttribute("returnUrl", returnUrl);
+        model.addAttribute("examTakingUrl", examTakingUrl);
+
+        return "take-exam";
+    }
+
+    /**
+     * Builds the redirection to the exam taking view.
+     *
+     * @param examTakingResponse The {@link ExamTakingResponse} returned by the LTI service.
+     * @return A {@link String} representing the view to be shown.
+     */
+    private static String examTakingRedirection(final ExamTakingResponse examTakingResponse) {
+        return examTakingRedirection(
+                String.valueOf(examTakingResponse.getExamId()),
+                String.valueOf(examTakingResponse.getTokenId()),
+                examTakingResponse.getAccessToken(),
+                examTakingResponse.getRefreshToken(),
+                examTakingResponse.getReturnUrl()
+        );
+    }
+
+    /**
+     * Builds the redirection to the exam taking view.
+     *
+     * @param examId       The id of the exam to be taken.
+     * @param tokenId      The id of the token pair.
+     * @param accessToken  The access token.
+     * @param refreshToken The refresh token.
+     * @param returnUrl    The url to which the user must return after taking the exam.
+     * @return A {@link String} representing the view to be shown.
+     */
+    /* package */ static String examTakingRedirection(
+            final String examId,
+            final String tokenId,
+            final String accessToken,
+            final String refreshToken,
+            final String returnUrl) {
+        return EXAM_TAKING_REDIRECTION + examId
+                + "&tokenId=" + tokenId
+                + "&accessToken=" + accessToken
+                + "&refreshToken=" + refreshToken
+                + "&returnUrl=" + URLEncoder.encode(returnUrl, StandardCharsets.UTF_8)
                 ;
+    }
 
+    /**
+     * Builds the launch carried by the given redirection to the exam taking view.
+     *
+     * @param redirection The redirection (as built by {@link #examTakingRedirection(ExamTakingResponse)}).
+     * @return The {@link ExamTakingResponse} carried by the {@code redirection}.
+     */
+    private static ExamTakingResponse launchOf(final String redirection) {
+        final var parameters = UriComponentsBuilder.fromUriString(redirection).build().getQueryParams();
+        return new ExamTakingResponse(
+                Long.parseLong(decode(parameters.getFirst("examId"))),
+                UUID.fromString(decode(parameters.getFirst("tokenId"))),
+                decode(parameters.getFirst("accessToken")),
+                decode(parameters.getFirst("refreshToken")),
+                decode(parameters.getFirst("returnUrl"))
+        );
+    }
+
+    /**
+     * Decodes the given query string {@code parameter} (as the servlet container does for the redirection).
+     *
+     * @param parameter The (encoded) parameter.
+     * @return The decoded parameter.
+     */
+    private static String decode(final String parameter) {
+        return URLDecoder.decode(parameter, StandardCharsets.UTF_8);
     }
 }
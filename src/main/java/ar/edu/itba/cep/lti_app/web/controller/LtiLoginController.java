@@ -1,7 +1,7 @@
 package ar.edu.itba.cep.lti_app.web.controller;
 
 import ar.edu.itba.cep.lti.AuthenticationRequest;
-import ar.edu.itba.cep.lti.LtiLoginService;
+import ar.edu.itba.cep.lti_app.service.AsyncLtiService;
 import ar.edu.itba.cep.lti_app.web.dtos.LoginInitiationRequestDto;
 import ar.edu.itba.cep.lti_app.web.exceptions.LoginInitiationRequestWithMissingParamsException;
 import lombok.AllArgsConstructor;
@@ -17,6 +17,7 @@ import org.springframework.web.util.UriComponentsBuilder;
 import javax.validation.Validator;
 import java.net.URI;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * LTI controller.
@@ -30,17 +31,27 @@ public class LtiLoginController {
     // Constants of the authentication request handler
     // ===========================================================================
 
-    private static final String CLIENT_ID_PARAM = "client_id";
-    private static final String LOGIN_HINT_PARAM = "login_hint";
-    private static final String REDIRECT_URI_PARAM = "redirect_uri";
-    private static final String NONCE_PARAM = "nonce";
-    private static final String LTI_MESSAGE_HINT_PARAM = "lti_message_hint";
-    private static final String STATE_PARAM = "state";
+    /* package */ static final String CLIENT_ID_PARAM = "client_id";
+    /* package */ static final String LOGIN_HINT_PARAM = "login_hint";
+    /* package */ static final String REDIRECT_URI_PARAM = "redirect_uri";
+    /* package */ static final String NONCE_PARAM = "nonce";
+    /* package */ static final String LTI_MESSAGE_HINT_PARAM = "lti_message_hint";
+    /* package */ static final String STATE_PARAM = "state";
     /**
      * The "fixed" part of the authentication request {@link URI}. This part of the {@link URI} is always the same
      * (it contains fixed values).
      */
-    private static final String FIXED_PART = "&prompt=none&scope=openid&response_type=id_token&response_mode=form_post";
+    /* package */ static final String FIXED_PART =
+            "&prompt=none&scope=openid&response_type=id_token&response_mode=form_post";
+    /**
+     * The max. amount of authentication endpoints whose base is cached by the {@link #REDIRECT_ENCODER}.
+     */
+    private static final long MAX_CACHED_ENDPOINTS = 1024;
+    /**
+     * The {@link AuthenticationRequestRedirectEncoder} that encodes the redirections to the authentication requests.
+     */
+    private static final AuthenticationRequestRedirectEncoder REDIRECT_ENCODER =
+            new AuthenticationRequestRedirectEncoder(MAX_CACHED_ENDPOINTS);
 
 
     // ===========================================================================
@@ -48,9 +59,9 @@ public class LtiLoginController {
     // ===========================================================================
 
     /**
-     * The {@link LtiLoginService} to which the LTI messages are routed.
+     * The {@link AsyncLtiService} to which the LTI messages are routed.
      */
-    private final LtiLoginService ltiLoginService;
+    private final AsyncLtiService ltiService;
     /**
      * A {@link Validator} used to validate input data.
      */
@@ -64,14 +75,12 @@ public class LtiLoginController {
     @GetMapping
     @PostMapping(consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
     @ResponseStatus(code = HttpStatus.TEMPORARY_REDIRECT)
-    public String loginGet(final LoginInitiationRequestDto loginInitiationRequestDto) {
+    public CompletableFuture<String> loginGet(final LoginInitiationRequestDto loginInitiationRequestDto) {
         if (!validator.validate(loginInitiationRequestDto).isEmpty()) {
             throw new LoginInitiationRequestWithMissingParamsException(loginInitiationRequestDto);
         }
-        final var authenticationRequest = ltiLoginService.loginInitiation(loginInitiationRequestDto.toModel());
-        final var uri = buildAuthenticationRequestUri(authenticationRequest);
-
-        return "redirect:" + uri.toString();
+        return ltiService.loginInitiation(loginInitiationRequestDto.toModel())
+                .thenApply(LtiLoginController::authenticationRequestRedirection);
     }
 
 
@@ -79,21 +88,54 @@ public class LtiLoginController {
     // Helpers
     // ================================================================================================================
 
+    /**
+     * Creates the redirection to the {@link URI} to which the user must be redirected to continue
+     * the authentication flow (i.e the {@link URI} to be accessed to perform the authentication request).
+     *
+     * @param request The {@link AuthenticationRequest} returned by the LTI service.
+     * @return The created redirection (i.e {@code redirect:} followed by the {@link URI}).
+     */
+    private static String authenticationRequestRedirection(final AuthenticationRequest request) {
+        return REDIRECT_ENCODER.encode(
+                request.getEndpoint(),
+                request.getClientId(),
+                request.getLoginHint(),
+                request.getRedirectUri(),
+                request.getNonce(),
+                request.getLtiMessageHint(),
+                request.getState()
+        );
+    }
+
     /**
      * Creates the {@link URI} to which the user must be redirected to continue the authentication flow
      * (i.e the {@link URI} to be accessed to perform the authentication request)
      *
-     * @return The created {@link URI}, based on properties of {@code this} instance.
+     * @param endpoint       The authentication endpoint of the LMS.
+     * @param clientId       The client id.
+     * @param loginHint      The login hint.
+     * @param redirectUri    The redirect uri.
+     * @param nonce          The nonce.
+     * @param ltiMessageHint The lti message hint (optional).
+     * @param state          The state (optional).
+     * @return The created {@link URI}.
      */
-    private static URI buildAuthenticationRequestUri(final AuthenticationRequest request) {
-        final var builder = UriComponentsBuilder.fromUriString(request.getEndpoint())
-                .queryParam(CLIENT_ID_PARAM, request.getClientId())
-                .queryParam(LOGIN_HINT_PARAM, request.getLoginHint())
-                .queryParam(REDIRECT_URI_PARAM, request.getRedirectUri())
-                .queryParam(NONCE_PARAM, request.getNonce())
+    /* package */ static URI buildAuthenticationRequestUri(
+            final String endpoint,
+            final String clientId,
+            final String loginHint,
+            final String redirectUri,
+            final String nonce,
+            final String ltiMessageHint,
+            final String state) {
+        final var builder = UriComponentsBuilder.fromUriString(endpoint)
+                .queryParam(CLIENT_ID_PARAM, clientId)
+                .queryParam(LOGIN_HINT_PARAM, loginHint)
+                .queryParam(REDIRECT_URI_PARAM, redirectUri)
+                .queryParam(NONCE_PARAM, nonce)
                 .query(FIXED_PART);
-        Optional.ofNullable(request.getLtiMessageHint()).ifPresent(v -> builder.queryParam(LTI_MESSAGE_HINT_PARAM, v));
-        Optional.ofNullable(request.getState()).ifPresent(v -> builder.queryParam(STATE_PARAM, v));
+        Optional.ofNullable(ltiMessageHint).ifPresent(v -> builder.queryParam(LTI_MESSAGE_HINT_PARAM, v));
+        Optional.ofNullable(state).ifPresent(v -> builder.queryParam(STATE_PARAM, v));
 
         return builder.build().toUri();
     }
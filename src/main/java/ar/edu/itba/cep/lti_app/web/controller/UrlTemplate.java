@@ -0,0 +1,164 @@
+package ar.edu.itba.cep.lti_app.web.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A url template with {@code ${variable}} placeholders, compiled once into literal and variable segments,
+ * so it can be expanded without parsing it again.
+ * Variable values are percent-encoded according to RFC 3986 (i.e only unreserved characters are kept as is).
+ * As with {@link org.apache.commons.lang.text.StrSubstitutor}, {@code $${} is an escaped {@code ${},
+ * and placeholders of unknown variables are kept as is.
+ */
+final class UrlTemplate {
+
+    /**
+     * The prefix of a variable placeholder.
+     */
+    private static final String VARIABLE_PREFIX = "${";
+    /**
+     * The suffix of a variable placeholder.
+     */
+    private static final char VARIABLE_SUFFIX = '}';
+    /**
+     * An escaped variable prefix.
+     */
+    private static final String ESCAPED_VARIABLE_PREFIX = "$" + VARIABLE_PREFIX;
+    /**
+     * Hexadecimal digits used to percent-encode.
+     */
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * The literal segments of the template. There is one more literal than variables
+     * (the {@code i}-th literal goes before the {@code i}-th variable).
+     */
+    private final String[] literals;
+    /**
+     * The variable segments of the template, as indexes of the values passed to {@link #expand(String...)}.
+     */
+    private final int[] variables;
+    /**
+     * The sum of the length of all the {@link #literals}.
+     */
+    private final int literalsLength;
+
+
+    /**
+     * Private constructor.
+     *
+     * @param literals  The literal segments of the template.
+     * @param variables The variable segments of the template.
+     */
+    private UrlTemplate(final String[] literals, final int[] variables) {
+        this.literals = literals;
+        this.variables = variables;
+        this.literalsLength = Arrays.stream(literals).mapToInt(String::length).sum();
+    }
+
+
+    /**
+     * Expands {@code this} template with the given {@code values}.
+     *
+     * @param values The values of the variables, in the order in which they were passed to
+     *               {@link #compile(String, String...)}.
+     * @return The expanded template.
+     */
+    /* package */ String expand(final String... values) {
+        var capacity = literalsLength;
+        for (final var variable : variables) {
+            capacity += values[variable].length();
+        }
+        final var builder = new StringBuilder(capacity);
+        for (var i = 0; i < variables.length; i++) {
+            builder.append(literals[i]);
+            encode(values[variables[i]], builder);
+        }
+        return builder.append(literals[variables.length]).toString();
+    }
+
+
+    /**
+     * Compiles the given {@code template}.
+     *
+     * @param template      The template to be compiled.
+     * @param variableNames The names of the variables that can be expanded.
+     * @return The compiled {@link UrlTemplate}.
+     */
+    /* package */ static UrlTemplate compile(final String template, final String... variableNames) {
+        final List<String> literals = new ArrayList<>();
+        final List<Integer> variables = new ArrayList<>();
+        final var literal = new StringBuilder();
+        var position = 0;
+        while (position < template.length()) {
+            if (template.startsWith(ESCAPED_VARIABLE_PREFIX, position)) {
+                literal.append(VARIABLE_PREFIX);
+                position += ESCAPED_VARIABLE_PREFIX.length();
+                continue;
+            }
+            if (!template.startsWith(VARIABLE_PREFIX, position)) {
+                literal.append(template.charAt(position++));
+                continue;
+            }
+            final var end = template.indexOf(VARIABLE_SUFFIX, position + VARIABLE_PREFIX.length());
+            if (end == -1) {
+                literal.append(template, position, template.length());
+                break;
+            }
+            final var variable = Arrays.asList(variableNames)
+                    .indexOf(template.substring(position + VARIABLE_PREFIX.length(), end));
+            if (variable == -1) {
+                literal.append(template, position, end + 1);
+            } else {
+                literals.add(literal.toString());
+                variables.add(variable);
+                literal.setLength(0);
+            }
+            position = end + 1;
+        }
+        literals.add(literal.toString());
+        return new UrlTemplate(
+                literals.toArray(String[]::new),
+                variables.stream().mapToInt(Integer::intValue).toArray()
+        );
+    }
+
+    /**
+     * Percent-encodes the given {@code value} according to RFC 3986, appending the result to the given {@code builder}.
+     *
+     * @param value   The value to be encoded.
+     * @param builder The {@link StringBuilder} to which the encoded value is appended.
+     */
+    /* package */ static void encode(final String value, final StringBuilder builder) {
+        var unreservedPrefix = 0;
+        while (unreservedPrefix < value.length() && isUnreserved(value.charAt(unreservedPrefix))) {
+            unreservedPrefix++;
+        }
+        builder.append(value, 0, unreservedPrefix);
+        if (unreservedPrefix == value.length()) {
+            return;
+        }
+        for (final var b : value.substring(unreservedPrefix).getBytes(StandardCharsets.UTF_8)) {
+            if (isUnreserved(b)) {
+                builder.append((char) b);
+            } else {
+                builder.append('%').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+            }
+        }
+    }
+
+    /**
+     * Indicates whether the given {@code c} is an unreserved character according to RFC 3986.
+     *
+     * @param c The character to be checked.
+     * @return {@code true} if it is unreserved, or {@code false} otherwise.
+     */
+    private static boolean isUnreserved(final int c) {
+        return (c >= 'a' && c <= 'z')
+                || (c >= 'A' && c <= 'Z')
+                || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+}
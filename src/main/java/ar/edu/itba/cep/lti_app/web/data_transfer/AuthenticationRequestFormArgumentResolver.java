@@ -1,5 +1,6 @@
 package ar.edu.itba.cep.lti_app.web.data_transfer;
 
+import ar.edu.itba.cep.lti_app.Application;
 import ar.edu.itba.cep.lti_app.web.dtos.AuthenticationResponseForm;
 import org.springframework.core.MethodParameter;
 import org.springframework.stereotype.Component;
@@ -8,9 +9,13 @@ import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.method.support.ModelAndViewContainer;
 
+import java.io.IOException;
+import java.util.List;
+
 /**
  * A {@link HandlerMethodArgumentResolver} that can create {@link AuthenticationResponseForm} instances
  * according to the {@link #STATE_NAME} and {@link #ID_TOKEN_NAME} field names.
+ * The fields are decoded by a {@link FormDecoder}, so that the ID token is copied just once.
  *
  * @see AuthenticationResponseForm
  */
@@ -25,6 +30,34 @@ public class AuthenticationRequestFormArgumentResolver implements HandlerMethodA
      * The name of the field for the id token.
      */
     private static final String ID_TOKEN_NAME = "id_token";
+    /**
+     * The index of the id token in the values decoded by the {@link #formDecoder}.
+     */
+    private static final int ID_TOKEN_INDEX = 0;
+    /**
+     * The index of the state in the values decoded by the {@link #formDecoder}.
+     */
+    private static final int STATE_INDEX = 1;
+
+    /**
+     * The {@link FormDecoder} that decodes the fields.
+     */
+    private final FormDecoder formDecoder;
+
+
+    /**
+     * Constructor.
+     *
+     * @param properties The {@link Application.Properties} from where the max. length of the fields is taken.
+     */
+    public AuthenticationRequestFormArgumentResolver(final Application.Properties properties) {
+        final var forms = properties.getForms();
+        this.formDecoder = new FormDecoder(
+                List.of(ID_TOKEN_NAME, STATE_NAME),
+                forms.getMaxIdTokenLength(),
+                forms.getMaxFieldLength()
+        );
+    }
 
 
     @Override
@@ -37,10 +70,8 @@ public class AuthenticationRequestFormArgumentResolver implements HandlerMethodA
             final MethodParameter parameter,
             final ModelAndViewContainer mavContainer,
             final NativeWebRequest webRequest,
-            final WebDataBinderFactory binderFactory) {
-        return new AuthenticationResponseForm(
-                webRequest.getParameter(ID_TOKEN_NAME),
-                webRequest.getParameter(STATE_NAME)
-        );
+            final WebDataBinderFactory binderFactory) throws IOException {
+        final var values = formDecoder.decode(webRequest);
+        return new AuthenticationResponseForm(values[ID_TOKEN_INDEX], values[STATE_INDEX]);
     }
 }
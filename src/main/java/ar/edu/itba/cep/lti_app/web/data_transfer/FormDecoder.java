@@ -0,0 +1,389 @@
+package ar.edu.itba.cep.lti_app.web.data_transfer;
+
+import ar.edu.itba.cep.lti_app.web.exceptions.FormFieldTooLongException;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.NativeWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes a known set of fields from a request, in a single pass over the url encoded form body
+ * (i.e without the servlet container decoding the whole form into its parameter map).
+ * <p>
+ * Only the known fields are decoded: unknown ones are skipped without being copied.
+ * A field whose value exceeds its max. length (once url-decoded, in bytes) is rejected with a
+ * {@link FormFieldTooLongException} (the value is not kept beyond that length).
+ * As the servlet container does, fields in the query string take precedence over those in the body,
+ * and the first occurrence of a field is the one taken (malformed occurrences, i.e with invalid escapes, are ignored).
+ * <p>
+ * Requests that are not form POSTs (e.g login initiations performed with a GET) are read from the servlet
+ * parameters, as are form POSTs whose body was already consumed (e.g by a filter that read a parameter).
+ * The max. lengths are enforced in those cases too.
+ */
+final class FormDecoder {
+
+    /**
+     * The size of the chunks in which the body is read.
+     */
+    private static final int CHUNK_SIZE = 4 * 1024;
+    /**
+     * The initial size of the buffers in which values are decoded.
+     */
+    private static final int INITIAL_VALUE_BUFFER_SIZE = 1024;
+    /**
+     * The max. size of a value buffer that is kept for reuse (bigger buffers are discarded after being used,
+     * so that an unusually long value, e.g an ID token, does not keep memory pinned in every thread).
+     */
+    private static final int MAX_REUSED_VALUE_BUFFER_SIZE = 8 * 1024;
+    /**
+     * The charset of the query string (i.e the one used by the servlet container to decode uris).
+     */
+    private static final Charset QUERY_CHARSET = StandardCharsets.UTF_8;
+    /**
+     * The charset of a form body without an explicit one (i.e the servlet default).
+     */
+    private static final Charset DEFAULT_BODY_CHARSET = StandardCharsets.ISO_8859_1;
+
+    /**
+     * The names of the fields.
+     */
+    private final List<String> names;
+    /**
+     * The names of the fields, encoded in ASCII (so they can be matched against the decoded bytes).
+     */
+    private final byte[][] encodedNames;
+    /**
+     * The max. length of each field's value, once url-decoded, in bytes.
+     */
+    private final int[] maxLengths;
+    /**
+     * The length of the longest name.
+     */
+    private final int maxNameLength;
+    /**
+     * Per-thread reusable buffers in which the body is read and fields are decoded.
+     */
+    private final ThreadLocal<Buffers> buffers;
+
+
+    /**
+     * Constructor.
+     *
+     * @param names      The names of the fields (the decoded values are returned in this same order).
+     * @param maxLengths The max. length of each field's value, once url-decoded, in bytes.
+     * @throws IllegalArgumentException If there is not a max. length for each field.
+     */
+    /* package */ FormDecoder(final List<String> names, final int... maxLengths) throws IllegalArgumentException {
+        if (names.size() != maxLengths.length) {
+            throw new IllegalArgumentException("There must be a max. length for each field");
+        }
+        this.names = List.copyOf(names);
+        this.encodedNames = names.stream().map(name -> name.getBytes(StandardCharsets.US_ASCII)).toArray(byte[][]::new);
+        this.maxLengths = maxLengths.clone();
+        this.maxNameLength = Arrays.stream(encodedNames).mapToInt(name -> name.length).max().orElse(0);
+        this.buffers = ThreadLocal.withInitial(() -> new Buffers(maxNameLength));
+    }
+
+
+    /**
+     * Decodes the fields of the given {@code webRequest}.
+     *
+     * @param webRequest The {@link NativeWebRequest} from which fields are decoded.
+     * @return The value of each field, in the order in which they were given ({@code null} for missing fields).
+     * @throws IOException               If the body cannot be read.
+     * @throws FormFieldTooLongException If a field exceeds its max. length.
+     */
+    /* package */ String[] decode(final NativeWebRequest webRequest) throws IOException, FormFieldTooLongException {
+        final var request = webRequest.getNativeRequest(HttpServletRequest.class);
+        if (request == null || !isFormPost(request)) {
+            return fromParameters(webRequest, characterEncoding(request, QUERY_CHARSET));
+        }
+        final var charset = characterEncoding(request, DEFAULT_BODY_CHARSET);
+        final var values = new String[encodedNames.length];
+        final var read = decode(request.getInputStream(), charset, values);
+        if (read == 0 && request.getContentLengthLong() != 0) {
+            // The body was already consumed, so the fields are only available as parameters.
+            return fromParameters(webRequest, charset);
+        }
+        final var query = request.getQueryString();
+        if (query != null) {
+            final var queryValues = new String[encodedNames.length];
+            decode(new ByteArrayInputStream(query.getBytes(QUERY_CHARSET)), QUERY_CHARSET, queryValues);
+            for (var i = 0; i < values.length; i++) {
+                if (queryValues[i] != null) {
+                    values[i] = queryValues[i];
+                }
+            }
+        }
+        return values;
+    }
+
+
+    /**
+     * Takes the fields from the servlet parameters of the given {@code webRequest}.
+     *
+     * @param webRequest The {@link NativeWebRequest}.
+     * @param charset    The {@link Charset} in which the length of the values is measured.
+     * @return The value of each field ({@code null} for missing fields).
+     * @throws FormFieldTooLongException If a field exceeds its max. length.
+     */
+    private String[] fromParameters(final NativeWebRequest webRequest, final Charset charset)
+            throws FormFieldTooLongException {
+        final var values = new String[encodedNames.length];
+        for (var i = 0; i < values.length; i++) {
+            final var value = webRequest.getParameter(names.get(i));
+            if (value != null && value.getBytes(charset).length > maxLengths[i]) {
+                throw new FormFieldTooLongException(names.get(i), maxLengths[i]);
+            }
+            values[i] = value;
+        }
+        return values;
+    }
+
+    /**
+     * Decodes the fields of an url encoded form, reading it in a single pass.
+     * Only the first occurrence of each field is taken.
+     *
+     * @param form    The {@link InputStream} from which the form is read.
+     * @param charset The {@link Charset} of the form.
+     * @param values  The array in which the value of each field is stored.
+     * @return The amount of bytes read.
+     * @throws IOException               If the form cannot be read.
+     * @throws FormFieldTooLongException If a field exceeds its max. length.
+     */
+    private long decode(final InputStream form, final Charset charset, final String[] values)
+            throws IOException, FormFieldTooLongException {
+        final var buffers = this.buffers.get();
+        try {
+            return decode(form, charset, values, buffers);
+        } finally {
+            if (buffers.value.length > MAX_REUSED_VALUE_BUFFER_SIZE) {
+                this.buffers.remove();
+            }
+        }
+    }
+
+    /**
+     * Decodes the fields of an url encoded form, reading it in a single pass, using the given {@code buffers}.
+     *
+     * @param form    The {@link InputStream} from which the form is read.
+     * @param charset The {@link Charset} of the form.
+     * @param values  The array in which the value of each field is stored.
+     * @param buffers The {@link Buffers} in which the form is read and the fields are decoded.
+     * @return The amount of bytes read.
+     * @throws IOException               If the form cannot be read.
+     * @throws FormFieldTooLongException If a field exceeds its max. length.
+     */
+    private long decode(final InputStream form, final Charset charset, final String[] values, final Buffers buffers)
+            throws IOException, FormFieldTooLongException {
+        final var taken = new boolean[values.length];
+        final var name = buffers.name;
+        var value = buffers.value;
+        var read = 0L;
+
+        var inName = true;
+        var nameLength = 0;
+        var field = -1;         // The field whose value is being decoded (-1 if the value is skipped).
+        var valueLength = 0;
+        var oversized = false;
+        var malformed = false;
+        var escape = 0;         // The hex digit of the escape that comes next (1 or 2, or 0 if not in an escape).
+        var escaped = 0;        // The value of the escape being decoded.
+
+        int chunkLength;
+        while ((chunkLength = form.read(buffers.chunk)) != -1) {
+            read += chunkLength;
+            final var chunk = buffers.chunk;
+            for (var i = 0; i < chunkLength; i++) {
+                final int b = chunk[i];
+                if (b == '&') {
+                    take(values, taken, field, inName, nameLength, name, value, valueLength, oversized,
+                            malformed || escape != 0, charset);
+                    inName = true;
+                    nameLength = 0;
+                    field = -1;
+                    valueLength = 0;
+                    oversized = false;
+                    malformed = false;
+                    escape = 0;
+                    continue;
+                }
+                if (!inName && field == -1) {
+                    continue; // Skips the value of an unknown (or already taken) field.
+                }
+                if (inName && b == '=' && escape == 0) {
+                    inName = false;
+                    field = malformed ? -1 : field(name, nameLength, taken);
+                    continue;
+                }
+                // Decodes the byte (url-decoding it).
+                final int decoded;
+                if (escape != 0) {
+                    final var digit = Character.digit(b, 16);
+                    if (digit == -1) {
+                        malformed = true;
+                        escape = 0;
+                        continue;
+                    }
+                    escaped = (escaped << 4) | digit;
+                    if (escape++ == 1) {
+                        continue;
+                    }
+                    decoded = escaped;
+                    escape = 0;
+                } else if (b == '%') {
+                    escape = 1;
+                    escaped = 0;
+                    continue;
+                } else {
+                    decoded = b == '+' ? ' ' : b;
+                }
+                if (inName) {
+                    if (nameLength < name.length) {
+                        name[nameLength] = (byte) decoded;
+                    }
+                    nameLength++;
+                } else if (valueLength < maxLengths[field]) {
+                    if (valueLength == value.length) {
+                        value = Arrays.copyOf(value, Math.min(value.length * 2, maxLengths[field]));
+                        buffers.value = value;
+                    }
+                    value[valueLength++] = (byte) decoded;
+                } else {
+                    oversized = true;
+                }
+            }
+        }
+        take(values, taken, field, inName, nameLength, name, value, valueLength, oversized,
+                malformed || escape != 0, charset);
+        return read;
+    }
+
+    /**
+     * Takes a decoded field, if it is a known field that was not taken yet.
+     *
+     * @param values      The array in which the value of each field is stored.
+     * @param taken       Indicates which fields were already taken.
+     * @param field       The field whose value was decoded (-1 if it was skipped).
+     * @param inName      Whether the field ended in its name (i.e it has no {@code =}, so its value is empty).
+     * @param nameLength  The length of the decoded name.
+     * @param name        The decoded name.
+     * @param value       The decoded value.
+     * @param valueLength The length of the decoded value.
+     * @param oversized   Whether the value exceeds the max. length of the field.
+     * @param malformed   Whether the field has invalid escapes.
+     * @param charset     The {@link Charset} of the form.
+     * @throws FormFieldTooLongException If the field is taken, and its value exceeds its max. length.
+     */
+    private void take(
+            final String[] values,
+            final boolean[] taken,
+            final int field,
+            final boolean inName,
+            final int nameLength,
+            final byte[] name,
+            final byte[] value,
+            final int valueLength,
+            final boolean oversized,
+            final boolean malformed,
+            final Charset charset) throws FormFieldTooLongException {
+        if (malformed) {
+            return;
+        }
+        final var actualField = inName ? field(name, nameLength, taken) : field;
+        if (actualField == -1) {
+            return;
+        }
+        if (oversized) {
+            throw new FormFieldTooLongException(names.get(actualField), maxLengths[actualField]);
+        }
+        taken[actualField] = true;
+        values[actualField] = new String(value, 0, inName ? 0 : valueLength, charset);
+    }
+
+    /**
+     * Finds the field with the given decoded {@code name}.
+     *
+     * @param name       The decoded name.
+     * @param nameLength The length of the decoded name.
+     * @param taken      Indicates which fields were already taken.
+     * @return The index of the field, or -1 if it is not a known field, or it was already taken.
+     */
+    private int field(final byte[] name, final int nameLength, final boolean[] taken) {
+        if (nameLength > maxNameLength) {
+            return -1;
+        }
+        for (var i = 0; i < encodedNames.length; i++) {
+            if (!taken[i] && Arrays.equals(encodedNames[i], 0, encodedNames[i].length, name, 0, nameLength)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Indicates whether the given {@code request} is a POST with an url encoded form body.
+     *
+     * @param request The {@link HttpServletRequest}.
+     * @return {@code true} if it is a form POST, or {@code false} otherwise.
+     */
+    private static boolean isFormPost(final HttpServletRequest request) {
+        final var contentType = request.getContentType();
+        return HttpMethod.POST.matches(request.getMethod())
+                && contentType != null
+                && contentType.regionMatches(true, 0, MediaType.APPLICATION_FORM_URLENCODED_VALUE, 0,
+                MediaType.APPLICATION_FORM_URLENCODED_VALUE.length());
+    }
+
+    /**
+     * Returns the {@link Charset} of the given {@code request}'s body.
+     *
+     * @param request        The {@link HttpServletRequest} (might be {@code null}).
+     * @param defaultCharset The {@link Charset} returned if the request does not specify one.
+     * @return The {@link Charset}.
+     */
+    private static Charset characterEncoding(final HttpServletRequest request, final Charset defaultCharset) {
+        final var encoding = request == null ? null : request.getCharacterEncoding();
+        return encoding == null ? defaultCharset : Charset.forName(encoding);
+    }
+
+
+    /**
+     * The buffers in which a thread reads bodies and decodes fields.
+     */
+    private static final class Buffers {
+        /**
+         * The buffer in which the body is read.
+         */
+        private final byte[] chunk;
+        /**
+         * The buffer in which names are decoded (names longer than it are unknown, so they are not kept).
+         */
+        private final byte[] name;
+        /**
+         * The buffer in which values are decoded (grown as needed, up to the max. length of the fields,
+         * and discarded after being used if it grew beyond {@link #MAX_REUSED_VALUE_BUFFER_SIZE}).
+         */
+        private byte[] value;
+
+
+        /**
+         * Constructor.
+         *
+         * @param maxNameLength The length of the longest name.
+         */
+        private Buffers(final int maxNameLength) {
+            this.chunk = new byte[CHUNK_SIZE];
+            this.name = new byte[maxNameLength];
+            this.value = new byte[INITIAL_VALUE_BUFFER_SIZE];
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ar.edu.itba.cep.lti_app.web.data_transfer;
 
+import ar.edu.itba.cep.lti_app.Application;
 import ar.edu.itba.cep.lti_app.web.dtos.AuthenticationResponseForm;
 import ar.edu.itba.cep.lti_app.web.dtos.LoginInitiationRequestDto;
 import org.springframework.core.MethodParameter;
@@ -9,9 +10,14 @@ import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.method.support.ModelAndViewContainer;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * A {@link HandlerMethodArgumentResolver} that can create {@link AuthenticationResponseForm} instances
  * according to the {@link #ISSUER_PROPERTY} and {@link #LOGIN_HINT_PROPERTY} field names.
+ * The fields are decoded by a {@link FormDecoder} (from the form body, or the query params if it is a GET).
  *
  * @see LoginInitiationRequestDto
  */
@@ -42,6 +48,34 @@ public class LoginInitiationRequestDtoArgumentResolver implements HandlerMethodA
      * The name of the field for the client id.
      */
     private static final String CLIENT_ID_PROPERTY = "client_id";
+    /**
+     * The fields, in the order in which they are passed to the {@link LoginInitiationRequestDto} constructor.
+     */
+    private static final List<String> FIELDS = List.of(
+            ISSUER_PROPERTY,
+            LOGIN_HINT_PROPERTY,
+            TARGET_LINK_URI_PROPERTY,
+            LTI_MESSAGE_HINT_PROPERTY,
+            DEPLOYMENT_ID_PROPERTY,
+            CLIENT_ID_PROPERTY
+    );
+
+    /**
+     * The {@link FormDecoder} that decodes the {@link #FIELDS}.
+     */
+    private final FormDecoder formDecoder;
+
+
+    /**
+     * Constructor.
+     *
+     * @param properties The {@link Application.Properties} from where the max. length of the fields is taken.
+     */
+    public LoginInitiationRequestDtoArgumentResolver(final Application.Properties properties) {
+        final var maxLengths = new int[FIELDS.size()];
+        Arrays.fill(maxLengths, properties.getForms().getMaxFieldLength());
+        this.formDecoder = new FormDecoder(FIELDS, maxLengths);
+    }
 
 
     @Override
@@ -54,14 +88,8 @@ public class LoginInitiationRequestDtoArgumentResolver implements HandlerMethodA
             final MethodParameter parameter,
             final ModelAndViewContainer mavContainer,
             final NativeWebRequest webRequest,
-            final WebDataBinderFactory binderFactory) {
-        return new LoginInitiationRequestDto(
-                webRequest.getParameter(ISSUER_PROPERTY),
-                webRequest.getParameter(LOGIN_HINT_PROPERTY),
-                webRequest.getParameter(TARGET_LINK_URI_PROPERTY),
-                webRequest.getParameter(LTI_MESSAGE_HINT_PROPERTY),
-                webRequest.getParameter(DEPLOYMENT_ID_PROPERTY),
-                webRequest.getParameter(CLIENT_ID_PROPERTY)
-        );
+            final WebDataBinderFactory binderFactory) throws IOException {
+        final var values = formDecoder.decode(webRequest);
+        return new LoginInitiationRequestDto(values[0], values[1], values[2], values[3], values[4], values[5]);
     }
 }
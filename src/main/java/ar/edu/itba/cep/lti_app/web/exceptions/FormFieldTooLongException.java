@@ -0,0 +1,33 @@
+package ar.edu.itba.cep.lti_app.web.exceptions;
+
+import lombok.Getter;
+
+/**
+ * Exception to be thrown when a field of an LTI form (i.e a login initiation or an authentication response)
+ * exceeds its max. length.
+ */
+@Getter
+public class FormFieldTooLongException extends RuntimeException {
+    /**
+     * The name of the field that is too long.
+     */
+    private final String field;
+    /**
+     * The max. length of the field (once url-decoded, in bytes).
+     */
+    private final int maxLength;
+
+
+    /**
+     * Constructor.
+     *
+     * @param field     The name of the field that is too long.
+     * @param maxLength The max. length of the field (once url-decoded, in bytes).
+     */
+    public FormFieldTooLongException(final String field, final int maxLength) {
+        // No stack trace, as this is an expected rejection.
+        super("The " + field + " field exceeds its max. length of " + maxLength + " bytes", null, false, false);
+        this.field = field;
+        this.maxLength = maxLength;
+    }
+}
@@ -0,0 +1,34 @@
+package ar.edu.itba.cep.lti_app.web.exceptions;
+
+import ar.edu.itba.cep.lti_app.web.dtos.AuthenticationResponseForm;
+import lombok.Getter;
+
+/**
+ * Exception to be thrown when the ID token of an {@link AuthenticationResponseForm} does not pass the local
+ * pre-validation (i.e it is malformed, expired, not meant for this tool, or not signed by its platform).
+ */
+@Getter
+public class InvalidIdTokenException extends RuntimeException {
+    /**
+     * The DTO that contains the invalid ID token.
+     */
+    private final AuthenticationResponseForm form;
+    /**
+     * The reason why the ID token is not valid.
+     */
+    private final String reason;
+
+
+    /**
+     * Constructor.
+     *
+     * @param form   The DTO that contains the invalid ID token.
+     * @param reason The reason why the ID token is not valid.
+     */
+    public InvalidIdTokenException(final AuthenticationResponseForm form, final String reason) {
+        // No stack trace, as this is an expected (and possibly frequent) rejection.
+        super("Invalid ID token: " + reason, null, false, false);
+        this.form = form;
+        this.reason = reason;
+    }
+}
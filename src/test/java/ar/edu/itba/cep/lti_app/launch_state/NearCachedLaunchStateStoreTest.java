@@ -0,0 +1,92 @@
+package ar.edu.itba.cep.lti_app.launch_state;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Tests the {@link NearCachedLaunchStateStore}, with an {@link InMemoryLaunchStateStore} as the remote store,
+ * shared by two instances of the application.
+ */
+public class NearCachedLaunchStateStoreTest {
+
+    /**
+     * How long values are kept.
+     */
+    private static final Duration TTL = Duration.ofMinutes(1);
+
+    /**
+     * The remote store, shared by the instances.
+     */
+    private InMemoryLaunchStateStore remote;
+    /**
+     * The store of the instance that writes the values.
+     */
+    private NearCachedLaunchStateStore writer;
+    /**
+     * The store of another instance.
+     */
+    private NearCachedLaunchStateStore other;
+
+
+    /**
+     * Creates the stores.
+     */
+    @Before
+    public void setUp() {
+        final var meterRegistry = new SimpleMeterRegistry();
+        this.remote = new InMemoryLaunchStateStore(100, "remote", meterRegistry);
+        this.writer = new NearCachedLaunchStateStore(
+                remote,
+                new InMemoryLaunchStateStore(100, "writer", meterRegistry),
+                Duration.ofSeconds(10)
+        );
+        this.other = new NearCachedLaunchStateStore(
+                remote,
+                new InMemoryLaunchStateStore(100, "other", meterRegistry),
+                Duration.ofSeconds(10)
+        );
+    }
+
+
+    /**
+     * Tests that values written by an instance are read by any instance.
+     */
+    @Test
+    public void testValuesAreShared() {
+        writer.put("key", "value", TTL).join();
+        Assert.assertEquals(Optional.of("value"), writer.get("key").join());
+        Assert.assertEquals(Optional.of("value"), other.get("key").join());
+        Assert.assertEquals(Optional.empty(), other.get("missing").join());
+    }
+
+    /**
+     * Tests that a value is retrieved with deletion only once, by any instance,
+     * even if the instance that wrote it (or another instance that read it) still has it cached.
+     */
+    @Test
+    public void testValuesAreRetrievedWithDeletionOnlyOnce() {
+        writer.put("key", "value", TTL).join();
+        other.get("key").join();
+
+        Assert.assertEquals(Optional.of("value"), other.getAndDelete("key").join());
+        Assert.assertEquals(Optional.empty(), remote.get("key").join());
+        Assert.assertEquals("The cached copy must not be retrieved", Optional.empty(), writer.getAndDelete("key").join());
+        Assert.assertEquals(Optional.empty(), other.getAndDelete("key").join());
+    }
+
+    /**
+     * Tests that the in-memory store retrieves a value with deletion only once.
+     */
+    @Test
+    public void testInMemoryValuesAreRetrievedWithDeletionOnlyOnce() {
+        remote.put("key", "value", TTL).join();
+        Assert.assertEquals(Optional.of("value"), remote.getAndDelete("key").join());
+        Assert.assertEquals(Optional.empty(), remote.getAndDelete("key").join());
+        Assert.assertEquals(Optional.empty(), remote.get("key").join());
+    }
+}
@@ -0,0 +1,163 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import ar.edu.itba.cep.lti_app.web.controller.ExceptionController;
+import com.bellotapps.webapps_commons.exceptions.ExternalServiceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests the {@link ConcurrencyLimitedLtiService}, with a {@link StubLtiService} as the delegate
+ * (and the {@link LtiServiceConfig.Properties.ConcurrencyLimit.Algorithm#AIMD} algorithm, which is deterministic).
+ */
+public class ConcurrencyLimitedLtiServiceTest {
+
+    /**
+     * The initial limit of each operation.
+     */
+    private static final int INITIAL_LIMIT = 10;
+
+    /**
+     * The {@link StubLtiService} to which operations are delegated.
+     */
+    private StubLtiService delegate;
+    /**
+     * The {@link SimpleMeterRegistry} in which the metrics are published.
+     */
+    private SimpleMeterRegistry meterRegistry;
+    /**
+     * The {@link ConcurrencyLimitedLtiService} being tested.
+     */
+    private ConcurrencyLimitedLtiService service;
+
+
+    /**
+     * Creates the service.
+     */
+    @Before
+    public void setUp() {
+        final var properties = new LtiServiceConfig.Properties.ConcurrencyLimit();
+        properties.setAlgorithm(LtiServiceConfig.Properties.ConcurrencyLimit.Algorithm.AIMD);
+        properties.setInitialLimit(INITIAL_LIMIT);
+        properties.setMinLimit(1);
+        this.delegate = new StubLtiService();
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.service = new ConcurrencyLimitedLtiService(delegate, meterRegistry, properties);
+    }
+
+
+    /**
+     * Tests that calls over the limit are rejected with an {@link ExternalServiceException},
+     * without reaching the LTI service, and that the limit, in-flight calls and rejections are published.
+     */
+    @Test
+    public void testCallsOverTheLimitAreRejected() {
+        for (int i = 0; i < INITIAL_LIMIT; i++) {
+            service.examSelection(null);
+        }
+        Assert.assertEquals(INITIAL_LIMIT, gauge("limit"), 0);
+        Assert.assertEquals(INITIAL_LIMIT, gauge("in-flight"), 0);
+
+        final var rejection = causeOf(service.examSelection(null));
+        Assert.assertTrue(rejection instanceof ExternalServiceException);
+        Assert.assertTrue(rejection.getCause() instanceof RejectedExecutionException);
+        Assert.assertEquals("The LTI service must not be reached", INITIAL_LIMIT, delegate.attempts().size());
+        Assert.assertEquals(1, rejections(), 0);
+
+        service.takeExam(null);
+        Assert.assertEquals("Other operations must not be limited", INITIAL_LIMIT + 1, delegate.attempts().size());
+    }
+
+    /**
+     * Tests that a rejected call is answered with a {@link HttpStatus#SERVICE_UNAVAILABLE} status.
+     *
+     * @throws Exception If performing the request fails.
+     */
+    @Test
+    public void testRejectionsAreAnsweredWithServiceUnavailable() throws Exception {
+        for (int i = 0; i < INITIAL_LIMIT; i++) {
+            service.examSelection(null);
+        }
+        final var mockMvc = MockMvcBuilders
+                .standaloneSetup(new DeadlineLtiServiceTest.ExamSelectionController(service))
+                .setControllerAdvice(new ExceptionController())
+                .build();
+
+        final var mvcResult = mockMvc.perform(get("/exam-selection"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isServiceUnavailable());
+        Assert.assertEquals(1, rejections(), 0);
+    }
+
+    /**
+     * Tests that overload failures (i.e server errors) decrease the limit,
+     * while failures that say nothing about the load (i.e client errors) do not.
+     */
+    @Test
+    public void testOnlyOverloadDecreasesTheLimit() {
+        final var clientError = service.examSelection(null);
+        delegate.attempt(0).result.completeExceptionally(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+        causeOf(clientError);
+        Assert.assertEquals(INITIAL_LIMIT, gauge("limit"), 0);
+
+        final var serverError = service.examSelection(null);
+        delegate.attempt(1).result.completeExceptionally(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+        causeOf(serverError);
+        Assert.assertTrue(gauge("limit") < INITIAL_LIMIT);
+        Assert.assertEquals(0, gauge("in-flight"), 0);
+    }
+
+
+    /**
+     * Returns the value of the given gauge of the exam selection operation.
+     *
+     * @param name The name of the gauge (without the concurrency limit metrics prefix).
+     * @return The value.
+     */
+    private double gauge(final String name) {
+        return meterRegistry.get("lti-service.concurrency-limit." + name)
+                .tag("operation", LtiOperation.EXAM_SELECTION.getOperationName())
+                .gauge()
+                .value();
+    }
+
+    /**
+     * @return The count of rejections of the exam selection operation.
+     */
+    private double rejections() {
+        return meterRegistry.get("lti-service.concurrency-limit.rejections")
+                .tag("operation", LtiOperation.EXAM_SELECTION.getOperationName())
+                .counter()
+                .count();
+    }
+
+    /**
+     * Returns the cause of the failure of the given {@code future}.
+     *
+     * @param future The {@link CompletableFuture} (which must be completed exceptionally).
+     * @return The cause of the failure.
+     */
+    private static Throwable causeOf(final CompletableFuture<?> future) {
+        try {
+            future.join();
+        } catch (final CompletionException e) {
+            return e.getCause();
+        }
+        throw new AssertionError("The operation must fail");
+    }
+}
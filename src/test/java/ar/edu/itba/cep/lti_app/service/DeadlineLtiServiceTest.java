@@ -0,0 +1,279 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import ar.edu.itba.cep.lti_app.web.controller.ExceptionController;
+import com.bellotapps.webapps_commons.exceptions.ExternalServiceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests the {@link DeadlineLtiService}, with a {@link StubLtiService} and a {@link ManualScheduler}
+ * (which runs the expirations when the test advances it, while the deadlines run on the real clock).
+ */
+public class DeadlineLtiServiceTest {
+
+    /**
+     * The {@link StubLtiService} to which the operations are delegated.
+     */
+    private StubLtiService stub;
+    /**
+     * The {@link ManualScheduler} in which expirations are scheduled.
+     */
+    private ManualScheduler scheduler;
+    /**
+     * The {@link SimpleMeterRegistry} in which the metrics are published.
+     */
+    private SimpleMeterRegistry meterRegistry;
+    /**
+     * The {@link LtiServiceConfig.Properties} with the timeouts.
+     */
+    private LtiServiceConfig.Properties properties;
+    /**
+     * The {@link DeadlineLtiService} being tested.
+     */
+    private DeadlineLtiService service;
+
+
+    /**
+     * Creates the service being tested.
+     */
+    @Before
+    public void setUp() {
+        this.stub = new StubLtiService();
+        this.scheduler = new ManualScheduler();
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.properties = new LtiServiceConfig.Properties();
+        this.service = new DeadlineLtiService(stub, meterRegistry, properties, scheduler);
+    }
+
+
+    /**
+     * Tests that an operation whose deadline expires fails with an {@link ExternalServiceException}
+     * (caused by a {@link TimeoutException}), aborting the HTTP request in flight.
+     */
+    @Test
+    public void testExpiredDeadlineAbortsTheHttpRequest() {
+        final var result = service.examSelection(null);
+        final var httpRequest = sendHttpRequest(stub.attempt(0).call);
+
+        scheduler.advance(properties.getTimeouts().getDeadline());
+        final var failure = causeOf(result);
+        Assert.assertTrue(failure instanceof ExternalServiceException);
+        Assert.assertTrue(failure.getCause() instanceof TimeoutException);
+        Assert.assertTrue("The call must be aborted", stub.attempt(0).call.isAborted());
+        Assert.assertTrue("The HTTP request must be aborted", httpRequest.isAborted());
+        Assert.assertEquals(1, counter("exceeded", LtiOperation.EXAM_SELECTION), 0);
+    }
+
+    /**
+     * Tests that aborting the request (e.g because the client went away) fails its operations
+     * with an {@link ExternalServiceException} (caused by a {@link CancellationException}),
+     * aborting the HTTP requests in flight.
+     */
+    @Test
+    public void testAbortedRequestAbortsTheHttpRequest() {
+        final var deadline = RequestDeadline.after(Duration.ofMinutes(1));
+        final CompletableFuture<?> result;
+        try (var ignored = deadline.bind()) {
+            result = service.takeExam(null);
+        }
+        final var httpRequest = sendHttpRequest(stub.attempt(0).call);
+
+        deadline.abort();
+        final var failure = causeOf(result);
+        Assert.assertTrue(failure instanceof ExternalServiceException);
+        Assert.assertTrue(failure.getCause() instanceof CancellationException);
+        Assert.assertTrue("The HTTP request must be aborted", httpRequest.isAborted());
+        Assert.assertEquals("The expiration must be cancelled", 0, scheduler.pending());
+        Assert.assertEquals(1, counter("aborted", LtiOperation.TAKE_EXAM), 0);
+    }
+
+    /**
+     * Tests that an operation that completes in time is not aborted afterwards.
+     */
+    @Test
+    public void testOperationCompletedInTimeIsNotAborted() {
+        final var result = service.examSelection(null);
+        stub.attempt(0).result.complete(null);
+
+        Assert.assertTrue(result.isDone());
+        Assert.assertEquals("The expiration must be cancelled", 0, scheduler.pending());
+        scheduler.advance(properties.getTimeouts().getDeadline());
+        Assert.assertFalse(result.isCompletedExceptionally());
+        Assert.assertFalse(stub.attempt(0).call.isAborted());
+    }
+
+    /**
+     * Tests that an operation performed once the deadline already expired fails without calling the LTI service.
+     */
+    @Test
+    public void testAlreadyExpiredDeadlineDoesNotCallTheLtiService() {
+        final CompletableFuture<?> result;
+        try (var ignored = RequestDeadline.after(Duration.ZERO).bind()) {
+            result = service.examSelection(null);
+        }
+        Assert.assertTrue(causeOf(result) instanceof ExternalServiceException);
+        Assert.assertTrue(stub.attempts().isEmpty());
+        Assert.assertEquals(1, counter("exceeded", LtiOperation.EXAM_SELECTION), 0);
+    }
+
+    /**
+     * Tests that the timeouts configured for an operation override the ones of the http client,
+     * that those not configured default to the ones of the http client,
+     * and that all of them are bounded by the time left until the deadline.
+     */
+    @Test
+    public void testOperationTimeoutsOverrideTheDefaults() {
+        final var takeExamTimeouts = new LtiServiceConfig.Properties.Timeouts.OperationTimeouts();
+        takeExamTimeouts.setReadTimeout(Duration.ofSeconds(12));
+        properties.getTimeouts().getOperations().put(LtiOperation.TAKE_EXAM, takeExamTimeouts);
+        final var http = properties.getHttp();
+
+        try (var ignored = RequestDeadline.after(Duration.ofMinutes(1)).bind()) {
+            service.takeExam(null);
+            service.examSelection(null);
+        }
+        final var takeExam = stub.attempt(0).call;
+        Assert.assertEquals(Duration.ofSeconds(12), takeExam.readTimeout());
+        Assert.assertEquals(http.getConnectTimeout(), takeExam.connectTimeout());
+        final var examSelection = stub.attempt(1).call;
+        Assert.assertEquals(http.getReadTimeout(), examSelection.readTimeout());
+        Assert.assertEquals(http.getConnectTimeout(), examSelection.connectTimeout());
+
+        final var httpRequest = sendHttpRequest(takeExam);
+        Assert.assertEquals(12_000, httpRequest.getConfig().getSocketTimeout());
+        Assert.assertEquals(http.getConnectTimeout().toMillis(), httpRequest.getConfig().getConnectTimeout());
+        final var propagated = Long.parseLong(httpRequest.getFirstHeader(LtiCall.DEADLINE_HEADER).getValue());
+        Assert.assertTrue("The deadline must be propagated", propagated > 50_000 && propagated <= 60_000);
+
+        try (var ignored = RequestDeadline.after(Duration.ofSeconds(5)).bind()) {
+            service.takeExam(null);
+        }
+        final var bounded = stub.attempt(2).call.readTimeout();
+        Assert.assertTrue("The timeout must be bounded by the deadline", bounded.compareTo(Duration.ofSeconds(5)) <= 0);
+        Assert.assertTrue(bounded.compareTo(Duration.ofSeconds(4)) > 0);
+    }
+
+    /**
+     * Tests that a request whose deadline expires while waiting for the LTI service
+     * is answered with a {@link HttpStatus#SERVICE_UNAVAILABLE} status.
+     *
+     * @throws Exception If performing the request fails.
+     */
+    @Test
+    public void testExpiredDeadlineIsAnsweredWithServiceUnavailable() throws Exception {
+        final var deadline = Duration.ofSeconds(5);
+        final var mockMvc = MockMvcBuilders.standaloneSetup(new ExamSelectionController(service))
+                .setControllerAdvice(new ExceptionController())
+                .addFilters(new RequestDeadlineFilter(deadline))
+                .build();
+
+        final var mvcResult = mockMvc.perform(get("/exam-selection"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        Assert.assertTrue(
+                "The call must be bound by the request deadline",
+                stub.attempt(0).call.remaining().compareTo(deadline) <= 0
+        );
+        scheduler.advance(deadline);
+        mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isServiceUnavailable());
+    }
+
+
+    /**
+     * Sends an HTTP request as part of the given {@code call}, as the pooled client does
+     * (i.e applying the call's timeouts, and aborting the request when the call is aborted).
+     *
+     * @param call The {@link LtiCall}.
+     * @return The HTTP request.
+     */
+    private HttpGet sendHttpRequest(final LtiCall call) {
+        final var factory = new PooledClientHttpRequestFactory(properties.getHttp(), meterRegistry);
+        final var httpRequest = new HttpGet("http://" + stub.attempt(0).instance + "/");
+        LtiCall.perform(call, () -> {
+            factory.postProcessHttpRequest(httpRequest);
+            return null;
+        });
+        return httpRequest;
+    }
+
+    /**
+     * Returns the count of the given deadline counter for the given {@code operation}.
+     *
+     * @param name      The name of the counter (without the deadline metrics prefix).
+     * @param operation The {@link LtiOperation}.
+     * @return The count.
+     */
+    private double counter(final String name, final LtiOperation operation) {
+        return meterRegistry.get("lti-service.deadline." + name)
+                .tag("operation", operation.getOperationName())
+                .counter()
+                .count();
+    }
+
+    /**
+     * Returns the cause of the failure of the given {@code future}.
+     *
+     * @param future The {@link CompletableFuture} (which must be completed exceptionally).
+     * @return The cause of the failure.
+     */
+    private static Throwable causeOf(final CompletableFuture<?> future) {
+        try {
+            future.join();
+        } catch (final CompletionException e) {
+            return e.getCause();
+        }
+        throw new AssertionError("The operation must fail");
+    }
+
+
+    /**
+     * A controller that performs an exam selection (as the LTI controllers do, asynchronously).
+     */
+    @Controller
+    /* package */ static final class ExamSelectionController {
+
+        /**
+         * The {@link AsyncLtiService} that performs the exam selection.
+         */
+        private final AsyncLtiService ltiService;
+
+
+        /**
+         * Constructor.
+         *
+         * @param ltiService The {@link AsyncLtiService} that performs the exam selection.
+         */
+        /* package */ ExamSelectionController(final AsyncLtiService ltiService) {
+            this.ltiService = ltiService;
+        }
+
+
+        /**
+         * Performs an exam selection.
+         *
+         * @return A {@link CompletableFuture} that will complete with the view to be shown.
+         */
+        @GetMapping("/exam-selection")
+        public CompletableFuture<String> examSelection() {
+            return ltiService.examSelection(null).thenApply(response -> "exam-selection");
+        }
+    }
+}
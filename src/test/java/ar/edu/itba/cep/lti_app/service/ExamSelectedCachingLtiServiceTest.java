@@ -0,0 +1,129 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import ar.edu.itba.cep.lti.ExamSelectedRequest;
+import ar.edu.itba.cep.lti.ExamSelectedResponse;
+import ar.edu.itba.cep.lti.ExistingExamSelectedResponse;
+import ar.edu.itba.cep.lti.NonExistingExamSelectedResponse;
+import ar.edu.itba.cep.lti.NotUpcomingExamSelectedResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tests the {@link ExamSelectedCachingLtiService}, with a {@link StubLtiService} as the delegate.
+ */
+public class ExamSelectedCachingLtiServiceTest {
+
+    /**
+     * The {@link StubLtiService} to which operations are delegated.
+     */
+    private StubLtiService delegate;
+    /**
+     * The {@link ExamSelectedCachingLtiService} being tested.
+     */
+    private ExamSelectedCachingLtiService service;
+
+
+    /**
+     * Creates the service.
+     */
+    @Before
+    public void setUp() {
+        this.delegate = new StubLtiService();
+        this.service = new ExamSelectedCachingLtiService(
+                delegate,
+                new SimpleMeterRegistry(),
+                new LtiServiceConfig.Properties.ExamSelectedCache()
+        );
+    }
+
+
+    /**
+     * Tests that a negative result is returned from the cache when the same launch selects the same exam again.
+     */
+    @Test
+    public void testNegativeResultsAreCachedForTheSameLaunch() {
+        final var response = new NonExistingExamSelectedResponse();
+        final var first = service.examSelected(request("state", 1L));
+        delegate.attempt(0).result.complete(response);
+        Assert.assertSame(response, first.join());
+
+        Assert.assertSame(response, service.examSelected(request("state", 1L)).join());
+        Assert.assertEquals("The service must not be reached again", 1, delegate.attempts().size());
+
+        final var notUpcoming = new NotUpcomingExamSelectedResponse();
+        final var other = service.examSelected(request("state", 2L));
+        delegate.attempt(1).result.complete(notUpcoming);
+        Assert.assertSame(notUpcoming, other.join());
+        Assert.assertSame(notUpcoming, service.examSelected(request("state", 2L)).join());
+        Assert.assertEquals(2, delegate.attempts().size());
+    }
+
+    /**
+     * Tests that a negative result is not shared with other launches selecting the same exam.
+     */
+    @Test
+    public void testNegativeResultsAreNotSharedBetweenLaunches() {
+        final var first = service.examSelected(request("state", 1L));
+        delegate.attempt(0).result.complete(new NonExistingExamSelectedResponse());
+        first.join();
+
+        final var existing = existing();
+        final var other = service.examSelected(request("other-state", 1L));
+        Assert.assertEquals("Another launch must reach the service", 2, delegate.attempts().size());
+        delegate.attempt(1).result.complete(existing);
+        Assert.assertSame(existing, other.join());
+    }
+
+    /**
+     * Tests that positive results are never cached.
+     */
+    @Test
+    public void testPositiveResultsAreNotCached() {
+        for (int i = 0; i < 2; i++) {
+            final var existing = existing();
+            final var result = service.examSelected(request("state", 1L));
+            Assert.assertEquals(i + 1, delegate.attempts().size());
+            delegate.attempt(i).result.complete(existing);
+            Assert.assertSame(existing, result.join());
+        }
+    }
+
+    /**
+     * Tests that requests without exam id or state are passed through without caching their results.
+     */
+    @Test
+    public void testRequestsWithoutKeyAreNotCached() {
+        for (final var request : new ExamSelectedRequest[]{request("state", null), request(null, 1L)}) {
+            final var attempts = delegate.attempts().size();
+            for (int i = 0; i < 2; i++) {
+                final CompletableFuture<ExamSelectedResponse> result = service.examSelected(request);
+                Assert.assertEquals(attempts + i + 1, delegate.attempts().size());
+                delegate.attempt(attempts + i).result.complete(new NonExistingExamSelectedResponse());
+                result.join();
+            }
+        }
+    }
+
+
+    /**
+     * Creates an {@link ExamSelectedRequest}.
+     *
+     * @param state  The state of the launch that selects the exam.
+     * @param examId The id of the selected exam.
+     * @return The created {@link ExamSelectedRequest}.
+     */
+    private static ExamSelectedRequest request(final String state, final Long examId) {
+        return new ExamSelectedRequest(examId, state, "https://lti-app.example.com/exam-selected", null, null);
+    }
+
+    /**
+     * @return A new {@link ExistingExamSelectedResponse}.
+     */
+    private static ExistingExamSelectedResponse existing() {
+        return new ExistingExamSelectedResponse("https://lms.example.com/deep-linking", "jwt", null);
+    }
+}
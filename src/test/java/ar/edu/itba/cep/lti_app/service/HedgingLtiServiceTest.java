@@ -0,0 +1,268 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Tests the {@link HedgingLtiService}, with a {@link StubLtiService} and a {@link ManualScheduler}.
+ */
+public class HedgingLtiServiceTest {
+
+    /**
+     * The hedging delay used until there are enough samples.
+     */
+    private static final Duration DEFAULT_DELAY = Duration.ofMillis(100);
+    /**
+     * The min. hedging delay.
+     */
+    private static final Duration MIN_DELAY = Duration.ofMillis(2);
+    /**
+     * The size of the latency window (and the min. amount of samples needed to calculate the delay).
+     */
+    private static final int WINDOW_SIZE = 10;
+
+    /**
+     * The {@link StubLtiService} to which the operations are delegated.
+     */
+    private StubLtiService stub;
+    /**
+     * The {@link ManualScheduler} in which hedges are scheduled (and the clock).
+     */
+    private ManualScheduler scheduler;
+    /**
+     * The {@link SimpleMeterRegistry} in which the metrics are published.
+     */
+    private SimpleMeterRegistry meterRegistry;
+
+
+    /**
+     * Creates the stub, scheduler and registry.
+     */
+    @Before
+    public void setUp() {
+        this.stub = new StubLtiService();
+        this.scheduler = new ManualScheduler();
+        this.meterRegistry = new SimpleMeterRegistry();
+    }
+
+
+    /**
+     * Tests that an operation that has not completed after the hedging delay is sent again, to another instance,
+     * and that the first answer wins.
+     */
+    @Test
+    public void testHedgeIsSentToAnotherInstanceAfterTheDelay() {
+        final var service = hedgingService(1, 10);
+        final var result = service.examSelection(null);
+        Assert.assertEquals(1, stub.attempts().size());
+        Assert.assertEquals(DEFAULT_DELAY.toNanos(), (long) scheduler.delays().get(0));
+
+        scheduler.advance(DEFAULT_DELAY.minusNanos(1));
+        Assert.assertEquals("The hedge must not be sent before the delay", 1, stub.attempts().size());
+        scheduler.advance(Duration.ofNanos(1));
+        Assert.assertEquals("The hedge must be sent after the delay", 2, stub.attempts().size());
+        Assert.assertNotEquals(
+                "The hedge must be sent to another instance",
+                stub.attempt(0).instance,
+                stub.attempt(1).instance
+        );
+
+        stub.attempt(1).result.complete(null);
+        Assert.assertTrue(result.isDone());
+        stub.attempt(0).result.completeExceptionally(new IllegalStateException("Late failure"));
+        Assert.assertFalse("The late failure must be discarded", result.isCompletedExceptionally());
+        Assert.assertEquals(1, counter("hedges"), 0);
+        Assert.assertEquals(1, counter("wins"), 0);
+    }
+
+    /**
+     * Tests that an operation that completes before the hedging delay is not hedged.
+     */
+    @Test
+    public void testNoHedgeIfAnsweredInTime() {
+        final var service = hedgingService(1, 10);
+        final var result = service.examSelection(null);
+        stub.attempt(0).result.complete(null);
+
+        Assert.assertTrue(result.isDone());
+        Assert.assertEquals("The hedge must be cancelled", 0, scheduler.pending());
+        scheduler.advance(DEFAULT_DELAY);
+        Assert.assertEquals(1, stub.attempts().size());
+        Assert.assertEquals(0, counter("hedges"), 0);
+    }
+
+    /**
+     * Tests that a hedged operation only fails once all of its attempts fail (with the last failure),
+     * and that an operation that fails before the hedging delay is not hedged.
+     */
+    @Test
+    public void testFailsOnlyIfAllAttemptsFail() {
+        final var service = hedgingService(1, 10);
+        final var result = service.examSelection(null);
+        scheduler.advance(DEFAULT_DELAY);
+
+        stub.attempt(0).result.completeExceptionally(new IllegalStateException("First failure"));
+        Assert.assertFalse("The hedge is still pending", result.isDone());
+        final var last = new IllegalStateException("Last failure");
+        stub.attempt(1).result.completeExceptionally(last);
+        Assert.assertSame(last, causeOf(result));
+
+        final var failedFast = service.examSelection(null);
+        stub.attempt(2).result.completeExceptionally(new IllegalStateException("Failure"));
+        Assert.assertTrue(failedFast.isCompletedExceptionally());
+        scheduler.advance(DEFAULT_DELAY);
+        Assert.assertEquals("Hedging must not retry failures", 3, stub.attempts().size());
+    }
+
+    /**
+     * Tests that the hedges are capped by the budget (i.e the budget ratio of the calls, up to the max. budget),
+     * so that the throttled hedges are not sent.
+     */
+    @Test
+    public void testBudgetCapsHedges() {
+        final var service = hedgingService(0.5, 2);
+        for (var i = 0; i < 6; i++) {
+            service.loginInitiation(null);
+        }
+        scheduler.advance(DEFAULT_DELAY);
+        Assert.assertEquals("The budget must be capped at 2 hedges", 6 + 2, stub.attempts().size());
+        Assert.assertEquals(2, counter("hedges", LtiOperation.LOGIN_INITIATION), 0);
+        Assert.assertEquals(4, counter("throttled", LtiOperation.LOGIN_INITIATION), 0);
+
+        for (var i = 0; i < 3; i++) {
+            service.loginInitiation(null);
+        }
+        scheduler.advance(DEFAULT_DELAY);
+        Assert.assertEquals("3 calls must earn 1.5 hedges", 9 + 2 + 1, stub.attempts().size());
+    }
+
+    /**
+     * Tests that the hedging delay is the configured percentile of the recent response times
+     * (but not less than the min. delay), recalculated at most once per second.
+     */
+    @Test
+    public void testDelayIsThePercentileOfTheResponseTimes() {
+        final var service = hedgingService(1, 100);
+        for (var i = 1; i <= WINDOW_SIZE; i++) {
+            respondAfter(service, Duration.ofMillis(5 * i));
+        }
+        service.examSelection(null);
+        Assert.assertEquals(
+                "The delay must not be recalculated before a second passes",
+                DEFAULT_DELAY.toNanos(),
+                last(scheduler)
+        );
+
+        scheduler.advance(Duration.ofSeconds(1));
+        service.examSelection(null);
+        Assert.assertEquals("The delay must be the 90th percentile", Duration.ofMillis(45).toNanos(), last(scheduler));
+
+        for (var i = 0; i < WINDOW_SIZE; i++) {
+            respondAfter(service, Duration.ofMillis(1));
+        }
+        scheduler.advance(Duration.ofSeconds(1));
+        service.examSelection(null);
+        Assert.assertEquals("The delay must not be less than the min. delay", MIN_DELAY.toNanos(), last(scheduler));
+    }
+
+    /**
+     * Tests that operations that are not latency critical are not hedged.
+     */
+    @Test
+    public void testOtherOperationsAreNotHedged() {
+        final var service = hedgingService(1, 10);
+        service.examSelected(null);
+        service.takeExam(null);
+        scheduler.advance(DEFAULT_DELAY);
+        Assert.assertEquals(2, stub.attempts().size());
+        Assert.assertTrue(scheduler.delays().isEmpty());
+    }
+
+
+    /**
+     * Creates the {@link HedgingLtiService} being tested.
+     *
+     * @param budgetRatio The hedging budget ratio.
+     * @param maxBudget   The max. hedging budget.
+     * @return The created {@link HedgingLtiService}.
+     */
+    private HedgingLtiService hedgingService(final double budgetRatio, final double maxBudget) {
+        final var properties = new LtiServiceConfig.Properties.Hedging();
+        properties.setPercentile(0.9);
+        properties.setMinDelay(MIN_DELAY);
+        properties.setDefaultDelay(DEFAULT_DELAY);
+        properties.setMinSamples(WINDOW_SIZE);
+        properties.setWindowSize(WINDOW_SIZE);
+        properties.setBudgetRatio(budgetRatio);
+        properties.setMaxBudget(maxBudget);
+        return new HedgingLtiService(stub, meterRegistry, properties, scheduler, scheduler::nanoTime);
+    }
+
+    /**
+     * Performs an exam selection that answers (successfully) after the given {@code responseTime}.
+     *
+     * @param service      The {@link HedgingLtiService} being tested.
+     * @param responseTime The response time.
+     */
+    private void respondAfter(final HedgingLtiService service, final Duration responseTime) {
+        final var attempts = stub.attempts().size();
+        service.examSelection(null);
+        scheduler.advance(responseTime);
+        stub.attempt(attempts).result.complete(null);
+    }
+
+    /**
+     * Returns the count of the given hedging counter for exam selections.
+     *
+     * @param name The name of the counter (without the hedging metrics prefix).
+     * @return The count.
+     */
+    private double counter(final String name) {
+        return counter(name, LtiOperation.EXAM_SELECTION);
+    }
+
+    /**
+     * Returns the count of the given hedging counter for the given {@code operation}.
+     *
+     * @param name      The name of the counter (without the hedging metrics prefix).
+     * @param operation The {@link LtiOperation}.
+     * @return The count.
+     */
+    private double counter(final String name, final LtiOperation operation) {
+        return meterRegistry.get("lti-service.hedging." + name)
+                .tag("operation", operation.getOperationName())
+                .counter()
+                .count();
+    }
+
+    /**
+     * Returns the delay of the last task scheduled in the given {@code scheduler}.
+     *
+     * @param scheduler The {@link ManualScheduler}.
+     * @return The delay, in nanoseconds.
+     */
+    private static long last(final ManualScheduler scheduler) {
+        return scheduler.delays().get(scheduler.delays().size() - 1);
+    }
+
+    /**
+     * Returns the cause of the failure of the given {@code future}.
+     *
+     * @param future The {@link CompletableFuture} (which must be completed exceptionally).
+     * @return The cause of the failure.
+     */
+    private static Throwable causeOf(final CompletableFuture<?> future) {
+        try {
+            future.join();
+        } catch (final CompletionException e) {
+            return e.getCause();
+        }
+        throw new AssertionError("The operation must fail");
+    }
+}
@@ -0,0 +1,152 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests the {@link InstanceLoadTracker}, with a manual clock.
+ */
+public class InstanceLoadTrackerTest {
+
+    /**
+     * The {@link LtiServiceConfig.Properties.LoadBalancing} used to configure the tracking.
+     */
+    private LtiServiceConfig.Properties.LoadBalancing properties;
+    /**
+     * The {@link SimpleMeterRegistry} in which the per-instance metrics are published.
+     */
+    private SimpleMeterRegistry meterRegistry;
+    /**
+     * The manual clock, in nanoseconds.
+     */
+    private AtomicLong clock;
+    /**
+     * The {@link InstanceLoadTracker} being tested.
+     */
+    private InstanceLoadTracker tracker;
+
+
+    /**
+     * Creates the tracker.
+     */
+    @Before
+    public void setUp() {
+        this.properties = new LtiServiceConfig.Properties.LoadBalancing();
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.clock = new AtomicLong();
+        this.tracker = new InstanceLoadTracker(properties, meterRegistry, clock::get);
+    }
+
+
+    /**
+     * Tests that an instance is ejected after the configured amount of consecutive failures (a success resets them),
+     * that it is not ejected anymore once the ejection duration elapses, and that a failure right after that
+     * ejects it again.
+     */
+    @Test
+    public void testConsecutiveFailuresEjectTheInstance() {
+        final var stats = tracker.stats("10.0.0.1", 8080);
+        fail(stats, properties.getFailuresToEject() - 1);
+        stats.completed(stats.started(), false);
+        fail(stats, properties.getFailuresToEject() - 1);
+        Assert.assertFalse("A success must reset the consecutive failures", stats.isEjected());
+
+        fail(stats, 1);
+        Assert.assertTrue(stats.isEjected());
+        Assert.assertEquals(
+                1,
+                meterRegistry.get("lti-service.instances.ejected").tag("instance", "10.0.0.1:8080").gauge().value(),
+                0
+        );
+        advance(properties.getEjectionDuration().minusMillis(1));
+        Assert.assertTrue(stats.isEjected());
+        advance(Duration.ofMillis(1));
+        Assert.assertFalse(stats.isEjected());
+
+        fail(stats, 1);
+        Assert.assertTrue("A failure after the ejection must eject it again", stats.isEjected());
+    }
+
+    /**
+     * Tests that cancelled requests are not recorded as failures, but that they are no longer in flight,
+     * and that they raise the latency when they are slower than it (and only then).
+     */
+    @Test
+    public void testCancelledRequestsAreNotFailures() {
+        final var stats = tracker.stats("10.0.0.1", 8080);
+        for (int i = 0; i < properties.getFailuresToEject() * 2; i++) {
+            stats.cancelled(stats.started());
+        }
+        Assert.assertFalse(stats.isEjected());
+        Assert.assertEquals(0, stats.getInFlight());
+        Assert.assertEquals(properties.getInitialLatency().toNanos(), stats.getLatency(), 0);
+
+        final var slow = stats.started();
+        advance(Duration.ofSeconds(1));
+        stats.cancelled(slow);
+        Assert.assertEquals(Duration.ofSeconds(1).toNanos(), stats.getLatency(), 0);
+
+        final var fast = stats.started();
+        Assert.assertEquals(1, stats.getInFlight());
+        stats.cancelled(fast);
+        Assert.assertEquals(Duration.ofSeconds(1).toNanos(), stats.getLatency(), 0);
+        Assert.assertEquals(0, stats.getInFlight());
+    }
+
+    /**
+     * Tests that the stats and metrics of instances without requests for the idle eviction time are discarded,
+     * while those of instances with requests (or with requests in flight) are kept.
+     */
+    @Test
+    public void testIdleInstancesAreEvicted() {
+        final var idle = tracker.stats("10.0.0.1", 8080);
+        idle.completed(idle.started(), false);
+        final var inFlight = tracker.stats("10.0.0.2", 8080);
+        inFlight.started();
+        final var active = tracker.stats("10.0.0.3", 8080);
+        Assert.assertEquals(3, meterRegistry.find("lti-service.instances.latency").gauges().size());
+
+        advance(properties.getIdleEviction().dividedBy(2));
+        active.completed(active.started(), false);
+        advance(properties.getIdleEviction().dividedBy(2).plusMillis(1));
+
+        Assert.assertSame(active, tracker.stats("10.0.0.3", 8080));
+        Assert.assertEquals(Set.of("10.0.0.2:8080", "10.0.0.3:8080"), tracker.instances());
+        Assert.assertNull(
+                meterRegistry.find("lti-service.instances.latency").tag("instance", "10.0.0.1:8080").gauge()
+        );
+        Assert.assertEquals(2, meterRegistry.find("lti-service.instances.in-flight").gauges().size());
+        Assert.assertEquals(2, meterRegistry.find("lti-service.instances.ejected").gauges().size());
+
+        Assert.assertNotSame("A returning instance must start over", idle, tracker.stats("10.0.0.1", 8080));
+        Assert.assertEquals(3, meterRegistry.find("lti-service.instances.latency").gauges().size());
+    }
+
+
+    /**
+     * Records failed requests.
+     *
+     * @param stats    The {@link InstanceLoadTracker.InstanceStats} in which the failures are recorded.
+     * @param failures The amount of failed requests.
+     */
+    private static void fail(final InstanceLoadTracker.InstanceStats stats, final int failures) {
+        for (int i = 0; i < failures; i++) {
+            stats.completed(stats.started(), true);
+        }
+    }
+
+    /**
+     * Advances the manual clock.
+     *
+     * @param duration How much the clock is advanced.
+     */
+    private void advance(final Duration duration) {
+        clock.addAndGet(duration.toNanos());
+    }
+}
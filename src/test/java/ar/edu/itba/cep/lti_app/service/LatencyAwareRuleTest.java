@@ -0,0 +1,204 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.loadbalancer.Server;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests the {@link LatencyAwareRule}, with an {@link InstanceLoadTracker} with a manual clock.
+ */
+public class LatencyAwareRuleTest {
+
+    /**
+     * The amount of choices performed to check which instances can be chosen.
+     */
+    private static final int CHOICES = 200;
+
+    /**
+     * The fast instance.
+     */
+    private static final Server FAST = new Server("10.0.0.1", 8080);
+    /**
+     * Another instance, as fast as the {@link #FAST} one.
+     */
+    private static final Server OTHER = new Server("10.0.0.2", 8080);
+    /**
+     * The slow instance.
+     */
+    private static final Server SLOW = new Server("10.0.0.3", 8080);
+
+    /**
+     * The {@link LtiServiceConfig.Properties.LoadBalancing} used to configure the tracking.
+     */
+    private LtiServiceConfig.Properties.LoadBalancing properties;
+    /**
+     * The manual clock, in nanoseconds.
+     */
+    private AtomicLong clock;
+    /**
+     * The {@link InstanceLoadTracker} that keeps the load of each instance.
+     */
+    private InstanceLoadTracker tracker;
+    /**
+     * The load balancer that holds the instances.
+     */
+    private BaseLoadBalancer loadBalancer;
+    /**
+     * The {@link LatencyAwareRule} being tested.
+     */
+    private LatencyAwareRule rule;
+
+
+    /**
+     * Creates the rule.
+     */
+    @Before
+    public void setUp() {
+        this.properties = new LtiServiceConfig.Properties.LoadBalancing();
+        this.clock = new AtomicLong();
+        this.tracker = new InstanceLoadTracker(properties, new SimpleMeterRegistry(), clock::get);
+        this.loadBalancer = new BaseLoadBalancer();
+        this.rule = new LatencyAwareRule(tracker);
+        rule.setLoadBalancer(loadBalancer);
+    }
+
+
+    /**
+     * Tests that the cheaper of the two picked instances is chosen:
+     * with two instances, always the fast one, and with three, never the slow one (which loses against any other),
+     * while the other two share the requests.
+     */
+    @Test
+    public void testTheCheaperOfTwoInstancesIsChosen() {
+        servers(FAST, SLOW);
+        respond(SLOW, Duration.ofSeconds(1));
+        respond(FAST, Duration.ofMillis(10));
+        Assert.assertEquals(Set.of(FAST), choices());
+
+        servers(FAST, OTHER, SLOW);
+        respond(OTHER, Duration.ofMillis(10));
+        Assert.assertEquals(Set.of(FAST, OTHER), choices());
+    }
+
+    /**
+     * Tests that the requests in flight count towards the cost of an instance.
+     */
+    @Test
+    public void testRequestsInFlightAreTakenIntoAccount() {
+        servers(FAST, OTHER);
+        for (int i = 0; i < 3; i++) {
+            tracker.stats(FAST.getHost(), FAST.getPort()).started();
+        }
+        Assert.assertEquals(Set.of(OTHER), choices());
+    }
+
+    /**
+     * Tests that an ejected instance is not chosen until its ejection elapses,
+     * unless all the instances are ejected.
+     */
+    @Test
+    public void testEjectedInstancesAreNotChosen() {
+        servers(FAST, OTHER);
+        eject(FAST);
+        Assert.assertEquals(Set.of(OTHER), choices());
+
+        eject(OTHER);
+        Assert.assertEquals("If all are ejected, any can be chosen", Set.of(FAST, OTHER), choices());
+
+        advance(properties.getEjectionDuration());
+        respond(OTHER, Duration.ofMillis(10)); // Not ejected anymore, and reset
+        eject(OTHER);
+        Assert.assertEquals("The instance must be chosen once its ejection elapses", Set.of(FAST), choices());
+    }
+
+    /**
+     * Tests that the instance avoided by the current {@link InstanceAttempt} (e.g the one of a hedged attempt)
+     * is not chosen, even if it is the cheapest, unless it is the only candidate.
+     */
+    @Test
+    public void testTheAvoidedInstanceIsNotChosen() {
+        servers(FAST, SLOW);
+        respond(SLOW, Duration.ofSeconds(1));
+        final var hedged = InstanceAttempt.any();
+        hedged.sentTo(FAST.getHost(), FAST.getPort());
+
+        final var hedge = InstanceAttempt.avoiding(hedged);
+        Assert.assertEquals(Set.of(SLOW), InstanceAttempt.perform(hedge, this::choices));
+        Assert.assertEquals("Outside of the hedge, the fast one must be chosen", Set.of(FAST), choices());
+
+        servers(FAST);
+        Assert.assertEquals(
+                "The avoided instance must be chosen if it is the only one",
+                Set.of(FAST),
+                InstanceAttempt.perform(hedge, this::choices)
+        );
+    }
+
+
+    /**
+     * Sets the instances held by the load balancer.
+     *
+     * @param servers The instances.
+     */
+    private void servers(final Server... servers) {
+        for (final var server : servers) {
+            server.setAlive(true);
+        }
+        loadBalancer.setServersList(List.of(servers));
+    }
+
+    /**
+     * Records a successful request to the given {@code server}.
+     *
+     * @param server       The instance.
+     * @param responseTime The response time of the request.
+     */
+    private void respond(final Server server, final Duration responseTime) {
+        final var stats = tracker.stats(server.getHost(), server.getPort());
+        final var start = stats.started();
+        advance(responseTime);
+        stats.completed(start, false);
+    }
+
+    /**
+     * Records as many failed requests to the given {@code server} as needed to eject it.
+     *
+     * @param server The instance.
+     */
+    private void eject(final Server server) {
+        final var stats = tracker.stats(server.getHost(), server.getPort());
+        for (int i = 0; i < properties.getFailuresToEject(); i++) {
+            stats.completed(stats.started(), true);
+        }
+        Assert.assertTrue(stats.isEjected());
+    }
+
+    /**
+     * Advances the manual clock.
+     *
+     * @param duration How much the clock is advanced.
+     */
+    private void advance(final Duration duration) {
+        clock.addAndGet(duration.toNanos());
+    }
+
+    /**
+     * @return The instances chosen by the rule, after choosing {@link #CHOICES} times.
+     */
+    private Set<Server> choices() {
+        final var chosen = new HashSet<Server>();
+        for (int i = 0; i < CHOICES; i++) {
+            chosen.add(rule.choose(null));
+        }
+        return chosen;
+    }
+}
@@ -0,0 +1,173 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ScheduledExecutorService} driven by a manual clock: scheduled tasks are run (in the calling thread)
+ * only when the clock is advanced past their due time. It also serves as the clock of the component being tested.
+ */
+/* package */ class ManualScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+
+    /**
+     * The tasks that were scheduled and did not run yet, by due time.
+     */
+    private final PriorityQueue<Task<?>> tasks = new PriorityQueue<>();
+    /**
+     * The delays with which tasks were scheduled, in nanoseconds.
+     */
+    private final List<Long> delays = new ArrayList<>();
+    /**
+     * The current time of the clock, in nanoseconds.
+     */
+    private long now = 0;
+
+
+    /**
+     * @return The current time of the clock, in nanoseconds (with the semantics of {@link System#nanoTime()}).
+     */
+    /* package */ long nanoTime() {
+        return now;
+    }
+
+    /**
+     * Advances the clock, running the tasks that become due.
+     *
+     * @param duration How much the clock is advanced.
+     */
+    /* package */ void advance(final Duration duration) {
+        final var until = now + duration.toNanos();
+        for (var task = tasks.peek(); task != null && task.dueTime <= until; task = tasks.peek()) {
+            tasks.poll();
+            now = Math.max(now, task.dueTime);
+            task.run();
+        }
+        now = until;
+    }
+
+    /**
+     * @return The delays with which tasks were scheduled, in nanoseconds (in scheduling order).
+     */
+    /* package */ List<Long> delays() {
+        return delays;
+    }
+
+    /**
+     * @return The amount of scheduled tasks that did not run yet (and were not cancelled).
+     */
+    /* package */ long pending() {
+        return tasks.stream().filter(task -> !task.isCancelled()).count();
+    }
+
+
+    @Override
+    public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+        return schedule(Executors.callable(command), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(final Callable<V> callable, final long delay, final TimeUnit unit) {
+        final var nanos = unit.toNanos(delay);
+        delays.add(nanos);
+        final var task = new Task<>(callable, now + nanos);
+        tasks.add(task);
+        return task;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(
+            final Runnable command,
+            final long initialDelay,
+            final long period,
+            final TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(
+            final Runnable command,
+            final long initialDelay,
+            final long delay,
+            final TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        command.run();
+    }
+
+    @Override
+    public void shutdown() {
+        tasks.clear();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        final var pending = new ArrayList<Runnable>(tasks);
+        tasks.clear();
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return false;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return false;
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) {
+        return false;
+    }
+
+
+    /**
+     * A task scheduled in a {@link ManualScheduler}.
+     *
+     * @param <V> The type of the task's result.
+     */
+    private final class Task<V> extends FutureTask<V> implements ScheduledFuture<V> {
+
+        /**
+         * The time at which the task is due.
+         */
+        private final long dueTime;
+
+
+        /**
+         * Constructor.
+         *
+         * @param callable The work of the task.
+         * @param dueTime  The time at which the task is due.
+         */
+        private Task(final Callable<V> callable, final long dueTime) {
+            super(callable);
+            this.dueTime = dueTime;
+        }
+
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(dueTime - now, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(final Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the {@link PooledClientHttpRequestFactory} against a server that accepts connections but never answers.
+ */
+public class PooledClientHttpRequestFactoryTest {
+
+    /**
+     * The server that accepts connections but never answers.
+     */
+    private ServerSocket server;
+    /**
+     * The connection accepted by the {@link #server}.
+     */
+    private CompletableFuture<Socket> connection;
+    /**
+     * The {@link PooledClientHttpRequestFactory} being tested.
+     */
+    private PooledClientHttpRequestFactory factory;
+
+
+    /**
+     * Starts the server, and creates the factory being tested.
+     *
+     * @throws IOException If the server cannot be started.
+     */
+    @Before
+    public void setUp() throws IOException {
+        this.server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        this.connection = CompletableFuture.supplyAsync(() -> {
+            try {
+                return server.accept();
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        this.factory = new PooledClientHttpRequestFactory(
+                new LtiServiceConfig.Properties.Http(),
+                new SimpleMeterRegistry()
+        );
+    }
+
+    /**
+     * Stops the server and the factory.
+     *
+     * @throws Exception If they cannot be stopped.
+     */
+    @After
+    public void tearDown() throws Exception {
+        factory.destroy();
+        server.close();
+        connection.thenAccept(socket -> {
+            try {
+                socket.close();
+            } catch (final IOException ignored) {
+                // Nothing else to do.
+            }
+        });
+    }
+
+
+    /**
+     * Tests that aborting a call aborts the HTTP request in flight, instead of waiting for the read timeout.
+     *
+     * @throws Exception If the test cannot be performed.
+     */
+    @Test
+    public void testAbortingTheCallAbortsTheRequestInFlight() throws Exception {
+        final var deadline = RequestDeadline.after(Duration.ofMinutes(1));
+        final var call = new LtiCall(deadline, Duration.ofSeconds(2), Duration.ofMinutes(1));
+        final var request = LtiCall.perform(call, this::createRequest);
+        final var response = CompletableFuture.supplyAsync(() -> {
+            try {
+                return request.execute();
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        connection.get(5, TimeUnit.SECONDS);
+
+        call.abort();
+        try {
+            response.get(5, TimeUnit.SECONDS);
+            Assert.fail("The request must fail once aborted");
+        } catch (final ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            Assert.assertTrue(e.getCause().getCause() instanceof IOException);
+        }
+    }
+
+
+    /**
+     * Creates a request to the {@link #server}.
+     *
+     * @return The created {@link ClientHttpRequest}.
+     */
+    private ClientHttpRequest createRequest() {
+        try {
+            final var uri = URI.create("http://127.0.0.1:" + server.getLocalPort() + "/");
+            return factory.createRequest(uri, HttpMethod.GET);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests the {@link RequestDeadlineFilter}.
+ */
+public class RequestDeadlineFilterTest {
+
+    /**
+     * The time each request has until its deadline expires.
+     */
+    private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+
+    /**
+     * Tests that a deadline is bound to the thread while the request is being handled, and only then.
+     *
+     * @throws Exception If filtering fails.
+     */
+    @Test
+    public void testDeadlineIsBoundWhileHandlingTheRequest() throws Exception {
+        final var bound = new AtomicReference<RequestDeadline>();
+        final FilterChain chain = (request, response) -> bound.set(RequestDeadline.current().orElse(null));
+
+        new RequestDeadlineFilter(TIMEOUT).doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(), chain);
+        Assert.assertNotNull("A deadline must be bound while handling the request", bound.get());
+        final var remaining = bound.get().remaining();
+        Assert.assertTrue(remaining.compareTo(TIMEOUT) <= 0 && remaining.compareTo(Duration.ZERO) > 0);
+        Assert.assertFalse("The deadline must be unbound afterwards", RequestDeadline.current().isPresent());
+    }
+
+    /**
+     * Tests that the deadline of an asynchronous request is aborted when the container reports an error
+     * (e.g the client went away) or a timeout, and that it is not aborted when the request completes.
+     *
+     * @throws Exception If filtering fails.
+     */
+    @Test
+    public void testDeadlineOfAsyncRequestIsAbortedOnErrorOrTimeout() throws Exception {
+        Assert.assertFalse("Completing must not abort", abortedOn(AsyncListener::onComplete));
+        Assert.assertTrue("An error must abort", abortedOn(AsyncListener::onError));
+        Assert.assertTrue("A timeout must abort", abortedOn(AsyncListener::onTimeout));
+    }
+
+
+    /**
+     * Filters a request that is handled asynchronously,
+     * reporting the given {@code event} to the listeners of its async context.
+     *
+     * @param event The event reported to the listeners.
+     * @return Whether the deadline of the request was aborted.
+     * @throws Exception If filtering fails.
+     */
+    private static boolean abortedOn(final AsyncEventReporter event) throws Exception {
+        final var aborted = new AtomicBoolean(false);
+        final FilterChain chain = (request, response) -> {
+            RequestDeadline.current().orElseThrow().onAbort(() -> aborted.set(true));
+            request.startAsync();
+        };
+        final var request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        new RequestDeadlineFilter(TIMEOUT).doFilter(request, new MockHttpServletResponse(), chain);
+
+        final var asyncContext = (MockAsyncContext) request.getAsyncContext();
+        for (final var listener : asyncContext.getListeners()) {
+            event.report(listener, new AsyncEvent(asyncContext));
+        }
+        return aborted.get();
+    }
+
+    /**
+     * Reports an {@link AsyncEvent} to an {@link AsyncListener}.
+     */
+    @FunctionalInterface
+    private interface AsyncEventReporter {
+
+        /**
+         * Reports the given {@code event} to the given {@code listener}.
+         *
+         * @param listener The {@link AsyncListener}.
+         * @param event    The {@link AsyncEvent}.
+         * @throws Exception If the listener fails.
+         */
+        void report(AsyncListener listener, AsyncEvent event) throws Exception;
+    }
+}
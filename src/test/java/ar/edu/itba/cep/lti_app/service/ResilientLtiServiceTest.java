@@ -0,0 +1,212 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import com.bellotapps.webapps_commons.exceptions.ExternalServiceException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.impl.execchain.RequestAbortedException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Tests the {@link ResilientLtiService}, with a {@link StubLtiService} as the delegate.
+ */
+public class ResilientLtiServiceTest {
+
+    /**
+     * The amount of calls taken into account by the circuit breakers (which is also the min. amount of calls).
+     */
+    private static final int WINDOW = 4;
+    /**
+     * The max. amount of concurrent calls of an operation.
+     */
+    private static final int MAX_CONCURRENT_CALLS = 2;
+
+    /**
+     * The {@link StubLtiService} to which operations are delegated.
+     */
+    private StubLtiService delegate;
+    /**
+     * The {@link SimpleMeterRegistry} in which the metrics are published.
+     */
+    private SimpleMeterRegistry meterRegistry;
+    /**
+     * The {@link ResilientLtiService} being tested.
+     */
+    private ResilientLtiService service;
+
+
+    /**
+     * Creates the service.
+     */
+    @Before
+    public void setUp() {
+        final var properties = new LtiServiceConfig.Properties();
+        properties.getCircuitBreaker().setSlidingWindowSize(WINDOW);
+        properties.getCircuitBreaker().setMinimumNumberOfCalls(WINDOW);
+        properties.getCircuitBreaker().setWaitDurationInOpenState(Duration.ofMinutes(1));
+        properties.getBulkhead().setMaxConcurrentCalls(MAX_CONCURRENT_CALLS);
+        this.delegate = new StubLtiService();
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.service = new ResilientLtiService(delegate, meterRegistry, properties);
+    }
+
+
+    /**
+     * Tests that the breaker of an operation opens when the LTI service fails (with server errors, or when it can not
+     * be reached), and that calls then fail fast with an {@link ExternalServiceException}, without reaching it,
+     * while other operations are still performed.
+     */
+    @Test
+    public void testOpenBreakerFailsFast() {
+        final List<Throwable> failures = List.of(
+                new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR),
+                WebClientResponseException.create(503, "Service Unavailable", HttpHeaders.EMPTY, new byte[0], null),
+                new ResourceAccessException("Connection refused", new IOException()),
+                new HttpServerErrorException(HttpStatus.BAD_GATEWAY)
+        );
+        for (final var failure : failures) {
+            final var result = service.examSelection(null);
+            lastAttempt().result.completeExceptionally(failure);
+            Assert.assertSame(failure, causeOf(result));
+        }
+        Assert.assertEquals(1, state("open"), 0);
+        Assert.assertEquals(0, state("closed"), 0);
+        Assert.assertEquals(1, transitions("closed", "open"), 0);
+
+        final var rejection = causeOf(service.examSelection(null));
+        Assert.assertTrue(rejection instanceof ExternalServiceException);
+        Assert.assertTrue(rejection.getCause() instanceof CallNotPermittedException);
+        Assert.assertEquals("The LTI service must not be reached", WINDOW, delegate.attempts().size());
+
+        service.takeExam(null);
+        Assert.assertEquals("Other operations must not be affected", WINDOW + 1, delegate.attempts().size());
+    }
+
+    /**
+     * Tests that failures that do not mean that the LTI service is failing (i.e client error responses,
+     * local rejections and cancellations) are not recorded, so they never open the breaker.
+     */
+    @Test
+    public void testOnlyBackendFailuresAreRecorded() {
+        final List<Throwable> failures = List.of(
+                new HttpClientErrorException(HttpStatus.BAD_REQUEST),
+                WebClientResponseException.create(404, "Not Found", HttpHeaders.EMPTY, new byte[0], null),
+                new RejectedExecutionException("Pool exhausted"),
+                new CompletionException(new CancellationException("Abandoned")),
+                new ResourceAccessException("Aborted", new RequestAbortedException("Aborted"))
+        );
+        for (int i = 0; i < WINDOW; i++) {
+            for (final var failure : failures) {
+                final var result = service.examSelection(null);
+                lastAttempt().result.completeExceptionally(failure);
+                causeOf(result);
+            }
+        }
+        Assert.assertEquals(1, state("closed"), 0);
+        Assert.assertEquals(0, transitions("closed", "open"), 0);
+        service.examSelection(null);
+        Assert.assertEquals(WINDOW * failures.size() + 1, delegate.attempts().size());
+    }
+
+    /**
+     * Tests that calls that exceed the bulkhead of an operation fail fast with an {@link ExternalServiceException},
+     * without reaching the LTI service, and that a finished call makes room for a new one.
+     */
+    @Test
+    public void testFullBulkheadRejectsCalls() {
+        for (int i = 0; i < MAX_CONCURRENT_CALLS; i++) {
+            service.loginInitiation(null);
+        }
+        Assert.assertEquals(0, availableCalls(), 0);
+
+        final var rejection = causeOf(service.loginInitiation(null));
+        Assert.assertTrue(rejection instanceof ExternalServiceException);
+        Assert.assertTrue(rejection.getCause() instanceof BulkheadFullException);
+        Assert.assertEquals("The LTI service must not be reached", MAX_CONCURRENT_CALLS, delegate.attempts().size());
+        Assert.assertEquals("Rejections must not open the breaker", 1, state("closed"), 0);
+
+        delegate.attempt(0).result.complete(null);
+        Assert.assertEquals(1, availableCalls(), 0);
+        service.loginInitiation(null);
+        Assert.assertEquals(MAX_CONCURRENT_CALLS + 1, delegate.attempts().size());
+    }
+
+
+    /**
+     * @return The last attempt performed.
+     */
+    private StubLtiService.Attempt lastAttempt() {
+        return delegate.attempt(delegate.attempts().size() - 1);
+    }
+
+    /**
+     * Returns the value of the state gauge of the exam selection breaker.
+     *
+     * @param state The state (in lower case).
+     * @return 1 if the breaker is in the given {@code state}, or 0 otherwise.
+     */
+    private double state(final String state) {
+        return meterRegistry.get("lti-service.circuit-breaker.state")
+                .tag("operation", LtiOperation.EXAM_SELECTION.getOperationName())
+                .tag("state", state)
+                .gauge()
+                .value();
+    }
+
+    /**
+     * Returns the count of transitions of the exam selection breaker between the given states.
+     *
+     * @param from The state from which the breaker transitioned (in lower case).
+     * @param to   The state to which the breaker transitioned (in lower case).
+     * @return The count (0 if there was none).
+     */
+    private double transitions(final String from, final String to) {
+        final var counter = meterRegistry.find("lti-service.circuit-breaker.transitions")
+                .tag("operation", LtiOperation.EXAM_SELECTION.getOperationName())
+                .tag("from", from)
+                .tag("to", to)
+                .counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    /**
+     * @return The available concurrent calls of the login initiation bulkhead.
+     */
+    private double availableCalls() {
+        return meterRegistry.get("lti-service.bulkhead.available-calls")
+                .tag("operation", LtiOperation.LOGIN_INITIATION.getOperationName())
+                .gauge()
+                .value();
+    }
+
+    /**
+     * Returns the cause of the failure of the given {@code future}.
+     *
+     * @param future The {@link CompletableFuture} (which must be completed exceptionally).
+     * @return The cause of the failure.
+     */
+    private static Throwable causeOf(final CompletableFuture<?> future) {
+        try {
+            future.join();
+        } catch (final CompletionException e) {
+            return e.getCause();
+        }
+        throw new AssertionError("The operation must fail");
+    }
+}
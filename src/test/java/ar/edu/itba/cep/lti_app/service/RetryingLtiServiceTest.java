@@ -0,0 +1,294 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.impl.execchain.RequestAbortedException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tests the {@link RetryingLtiService}, with a {@link StubLtiService}, a {@link ManualScheduler},
+ * and a controllable jitter.
+ */
+public class RetryingLtiServiceTest {
+
+    /**
+     * The backoff of the first retry (before the jitter).
+     */
+    private static final Duration INITIAL_BACKOFF = Duration.ofMillis(100);
+    /**
+     * The max. backoff (before the jitter).
+     */
+    private static final Duration MAX_BACKOFF = Duration.ofMillis(300);
+
+    /**
+     * The {@link StubLtiService} to which the operations are delegated.
+     */
+    private StubLtiService stub;
+    /**
+     * The {@link ManualScheduler} in which retries are scheduled.
+     */
+    private ManualScheduler scheduler;
+    /**
+     * The {@link SimpleMeterRegistry} in which the metrics are published.
+     */
+    private SimpleMeterRegistry meterRegistry;
+    /**
+     * The jitter applied to the backoffs (i.e the random number they are multiplied by).
+     */
+    private double jitter;
+
+
+    /**
+     * Creates the stub, scheduler and registry.
+     */
+    @Before
+    public void setUp() {
+        this.stub = new StubLtiService();
+        this.scheduler = new ManualScheduler();
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.jitter = 0.5;
+    }
+
+
+    /**
+     * Tests that transient failures are retried after the backoff, each time on another instance,
+     * until the max. amount of attempts, failing with the last failure.
+     */
+    @Test
+    public void testTransientFailuresAreRetriedOnAnotherInstance() {
+        final var service = retryingService(1, 10);
+        final var first = earnBudget(service, 2);
+        final var result = service.takeExam(null);
+
+        stub.attempt(first).result.completeExceptionally(new IOException("Connection reset"));
+        Assert.assertEquals("The retry must wait for the backoff", first + 1, stub.attempts().size());
+        scheduler.advance(Duration.ofMillis(50));
+        Assert.assertEquals(first + 2, stub.attempts().size());
+        Assert.assertNotEquals(stub.attempt(first).instance, stub.attempt(first + 1).instance);
+
+        stub.attempt(first + 1).result.completeExceptionally(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+        scheduler.advance(Duration.ofMillis(100));
+        Assert.assertEquals(first + 3, stub.attempts().size());
+        Assert.assertNotEquals(stub.attempt(first + 1).instance, stub.attempt(first + 2).instance);
+
+        final var last = new TimeoutException("Read timed out");
+        stub.attempt(first + 2).result.completeExceptionally(last);
+        scheduler.advance(MAX_BACKOFF);
+        Assert.assertEquals("The max. amount of attempts must not be exceeded", first + 3, stub.attempts().size());
+        Assert.assertSame(last, causeOf(result));
+        Assert.assertEquals(2, counter("retries", LtiOperation.TAKE_EXAM), 0);
+    }
+
+    /**
+     * Tests that a retry that succeeds completes the operation.
+     */
+    @Test
+    public void testSuccessfulRetryCompletesTheOperation() {
+        final var service = retryingService(1, 10);
+        final var result = service.examSelection(null);
+        stub.attempt(0).result.completeExceptionally(new IOException("Connection refused"));
+        scheduler.advance(INITIAL_BACKOFF);
+        stub.attempt(1).result.complete(null);
+        Assert.assertTrue(result.isDone());
+        Assert.assertFalse(result.isCompletedExceptionally());
+    }
+
+    /**
+     * Tests that the backoff is a random time (i.e full jitter)
+     * between zero and the exponential backoff of the attempt (capped to the max. backoff).
+     */
+    @Test
+    public void testBackoffIsFullyJittered() {
+        final var service = retryingService(1, 10, 5);
+        earnBudget(service, 10);
+        for (final var jitter : new double[]{0, 0.25, 0.999}) {
+            this.jitter = jitter;
+            final var attempts = stub.attempts().size();
+            service.takeExam(null);
+            for (var i = 0; i < 4; i++) {
+                stub.attempt(attempts + i).result.completeExceptionally(new IOException("Connection reset"));
+                scheduler.advance(MAX_BACKOFF);
+            }
+        }
+        final var expected = new long[]{100, 200, 300, 300}; // Exponential backoffs, capped to the max. backoff.
+        for (var i = 0; i < scheduler.delays().size(); i++) {
+            final var jitter = new double[]{0, 0.25, 0.999}[i / expected.length];
+            Assert.assertEquals(
+                    (long) (jitter * Duration.ofMillis(expected[i % expected.length]).toNanos()),
+                    (long) scheduler.delays().get(i)
+            );
+        }
+        Assert.assertEquals(12, scheduler.delays().size());
+    }
+
+    /**
+     * Tests that failures that are not transient (client errors, rejections and cancellations) are not retried.
+     */
+    @Test
+    public void testNonTransientFailuresAreNotRetried() {
+        final var service = retryingService(1, 10);
+        final var failures = new Throwable[]{
+                new HttpClientErrorException(HttpStatus.BAD_REQUEST),
+                new RequestAbortedException("Request aborted"),
+                new CancellationException(),
+                new IllegalStateException("Bug"),
+        };
+        for (var i = 0; i < failures.length; i++) {
+            final var result = service.examSelection(null);
+            stub.attempt(i).result.completeExceptionally(new CompletionException(failures[i]));
+            scheduler.advance(MAX_BACKOFF);
+            Assert.assertSame(failures[i], causeOf(result));
+        }
+        Assert.assertEquals(failures.length, stub.attempts().size());
+    }
+
+    /**
+     * Tests that the retries are capped by the budget (i.e the budget ratio of the calls, up to the max. budget).
+     */
+    @Test
+    public void testBudgetCapsRetries() {
+        final var service = retryingService(0.5, 1);
+        service.takeExam(null);
+        stub.attempt(0).result.completeExceptionally(new IOException("Connection reset"));
+        scheduler.advance(MAX_BACKOFF);
+        Assert.assertEquals("Half a token is not enough for a retry", 1, stub.attempts().size());
+        Assert.assertEquals(1, counter("throttled", LtiOperation.TAKE_EXAM), 0);
+
+        service.takeExam(null);
+        stub.attempt(1).result.completeExceptionally(new IOException("Connection reset"));
+        scheduler.advance(MAX_BACKOFF);
+        Assert.assertEquals("A whole token must allow a retry", 3, stub.attempts().size());
+        stub.attempt(2).result.completeExceptionally(new IOException("Connection reset"));
+        scheduler.advance(MAX_BACKOFF);
+        Assert.assertEquals("The token was spent", 3, stub.attempts().size());
+        Assert.assertEquals(2, counter("throttled", LtiOperation.TAKE_EXAM), 0);
+    }
+
+    /**
+     * Tests that retries are part of the same {@link LtiCall},
+     * and that they are not performed if the call would expire during the backoff, or if it was aborted.
+     */
+    @Test
+    public void testRetriesDoNotOutliveTheCall() {
+        final var service = retryingService(1, 10);
+        final var call = new LtiCall(RequestDeadline.after(Duration.ofMinutes(1)), Duration.ZERO, Duration.ZERO);
+        LtiCall.perform(call, () -> service.takeExam(null));
+        stub.attempt(0).result.completeExceptionally(new IOException("Connection reset"));
+        scheduler.advance(MAX_BACKOFF);
+        Assert.assertSame("The retry must be part of the call", call, stub.attempt(1).call);
+
+        call.abort();
+        stub.attempt(1).result.completeExceptionally(new IOException("Connection reset"));
+        scheduler.advance(MAX_BACKOFF);
+        Assert.assertEquals("An aborted call must not be retried", 2, stub.attempts().size());
+
+        final var expiring = new LtiCall(RequestDeadline.after(Duration.ofMillis(20)), Duration.ZERO, Duration.ZERO);
+        LtiCall.perform(expiring, () -> service.takeExam(null));
+        stub.attempt(2).result.completeExceptionally(new IOException("Connection reset"));
+        scheduler.advance(MAX_BACKOFF);
+        Assert.assertEquals("A call that expires during the backoff must not be retried", 3, stub.attempts().size());
+    }
+
+    /**
+     * Tests that operations that are not configured to be retried are not.
+     */
+    @Test
+    public void testOtherOperationsAreNotRetried() {
+        final var service = retryingService(1, 10);
+        final var result = service.loginInitiation(null);
+        stub.attempt(0).result.completeExceptionally(new IOException("Connection reset"));
+        scheduler.advance(MAX_BACKOFF);
+        Assert.assertTrue(result.isCompletedExceptionally());
+        Assert.assertEquals(1, stub.attempts().size());
+    }
+
+
+    /**
+     * Creates the {@link RetryingLtiService} being tested, with up to 3 attempts.
+     *
+     * @param budgetRatio The retry budget ratio.
+     * @param maxBudget   The max. retry budget.
+     * @return The created {@link RetryingLtiService}.
+     */
+    private RetryingLtiService retryingService(final double budgetRatio, final double maxBudget) {
+        return retryingService(budgetRatio, maxBudget, 3);
+    }
+
+    /**
+     * Creates the {@link RetryingLtiService} being tested.
+     *
+     * @param budgetRatio The retry budget ratio.
+     * @param maxBudget   The max. retry budget.
+     * @param maxAttempts The max. amount of attempts.
+     * @return The created {@link RetryingLtiService}.
+     */
+    private RetryingLtiService retryingService(
+            final double budgetRatio,
+            final double maxBudget,
+            final int maxAttempts) {
+        final var properties = new LtiServiceConfig.Properties.Retry();
+        properties.setMaxAttempts(maxAttempts);
+        properties.setInitialBackoff(INITIAL_BACKOFF);
+        properties.setMultiplier(2);
+        properties.setMaxBackoff(MAX_BACKOFF);
+        properties.setBudgetRatio(budgetRatio);
+        properties.setMaxBudget(maxBudget);
+        return new RetryingLtiService(stub, meterRegistry, properties, scheduler, () -> jitter);
+    }
+
+    /**
+     * Performs successful calls, so that the given {@code service} earns retry tokens.
+     *
+     * @param service The {@link RetryingLtiService} being tested.
+     * @param calls   The amount of calls.
+     * @return The index of the next attempt.
+     */
+    private int earnBudget(final RetryingLtiService service, final int calls) {
+        for (var i = 0; i < calls; i++) {
+            final var attempts = stub.attempts().size();
+            service.examSelection(null);
+            stub.attempt(attempts).result.complete(null);
+        }
+        return stub.attempts().size();
+    }
+
+    /**
+     * Returns the count of the given retry counter for the given {@code operation}.
+     *
+     * @param name      The name of the counter (without the retry metrics prefix).
+     * @param operation The {@link LtiOperation}.
+     * @return The count.
+     */
+    private double counter(final String name, final LtiOperation operation) {
+        return meterRegistry.get("lti-service.retry." + name)
+                .tag("operation", operation.getOperationName())
+                .counter()
+                .count();
+    }
+
+    /**
+     * Returns the cause of the failure of the given {@code future}.
+     *
+     * @param future The {@link CompletableFuture} (which must be completed exceptionally).
+     * @return The cause of the failure.
+     */
+    private static Throwable causeOf(final CompletableFuture<?> future) {
+        try {
+            future.join();
+        } catch (final CompletionException e) {
+            return e.getCause();
+        }
+        throw new AssertionError("The operation must fail");
+    }
+}
@@ -0,0 +1,134 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import ar.edu.itba.cep.lti.AuthenticationRequest;
+import ar.edu.itba.cep.lti.AuthenticationResponse;
+import ar.edu.itba.cep.lti.ExamSelectedRequest;
+import ar.edu.itba.cep.lti.ExamSelectedResponse;
+import ar.edu.itba.cep.lti.ExamSelectionResponse;
+import ar.edu.itba.cep.lti.ExamTakingResponse;
+import ar.edu.itba.cep.lti.LoginInitiationRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An {@link AsyncLtiService} whose operations complete only when the test completes them.
+ * Each call is recorded as an {@link Attempt}, which is sent to the first of the {@link #INSTANCES}
+ * that the current {@link InstanceAttempt} does not avoid (as the load balancer does).
+ */
+/* package */ class StubLtiService implements AsyncLtiService {
+
+    /**
+     * The instances of the LTI service (i.e their hosts).
+     */
+    /* package */ static final List<String> INSTANCES = List.of("lti-service-1", "lti-service-2");
+    /**
+     * The port of the instances.
+     */
+    private static final int PORT = 80;
+
+    /**
+     * The attempts performed (in calling order).
+     */
+    private final List<Attempt> attempts = new ArrayList<>();
+
+
+    /**
+     * @return The attempts performed (in calling order).
+     */
+    /* package */ synchronized List<Attempt> attempts() {
+        return List.copyOf(attempts);
+    }
+
+    /**
+     * @param index The index of the attempt.
+     * @return The attempt with the given {@code index} (in calling order).
+     */
+    /* package */ synchronized Attempt attempt(final int index) {
+        return attempts.get(index);
+    }
+
+
+    @Override
+    public CompletableFuture<AuthenticationRequest> loginInitiation(final LoginInitiationRequest loginInitiationRequest) {
+        return attempt(LtiOperation.LOGIN_INITIATION);
+    }
+
+    @Override
+    public CompletableFuture<ExamSelectionResponse> examSelection(final AuthenticationResponse authenticationResponse) {
+        return attempt(LtiOperation.EXAM_SELECTION);
+    }
+
+    @Override
+    public CompletableFuture<ExamSelectedResponse> examSelected(final ExamSelectedRequest examSelectedRequest) {
+        return attempt(LtiOperation.EXAM_SELECTED);
+    }
+
+    @Override
+    public CompletableFuture<ExamTakingResponse> takeExam(final AuthenticationResponse authenticationResponse) {
+        return attempt(LtiOperation.TAKE_EXAM);
+    }
+
+
+    /**
+     * Records an attempt of the given {@code operation}.
+     *
+     * @param operation The {@link LtiOperation} being performed.
+     * @param <T>       The concrete type of the operation's result.
+     * @return The (pending) result of the attempt.
+     */
+    private synchronized <T> CompletableFuture<T> attempt(final LtiOperation operation) {
+        final var instanceAttempt = InstanceAttempt.current().orElse(null);
+        final var instance = INSTANCES.stream()
+                .filter(host -> instanceAttempt == null || !instanceAttempt.avoids(host, PORT))
+                .findFirst()
+                .orElse(INSTANCES.get(0));
+        if (instanceAttempt != null) {
+            instanceAttempt.sentTo(instance, PORT);
+        }
+        final var attempt = new Attempt(operation, instance, LtiCall.current().orElse(null));
+        attempts.add(attempt);
+        @SuppressWarnings("unchecked") final var result = (CompletableFuture<T>) attempt.result;
+        return result;
+    }
+
+
+    /**
+     * An attempt of an operation.
+     */
+    /* package */ static final class Attempt {
+
+        /**
+         * The {@link LtiOperation} attempted.
+         */
+        /* package */ final LtiOperation operation;
+        /**
+         * The instance to which the attempt was sent (i.e its host).
+         */
+        /* package */ final String instance;
+        /**
+         * The {@link LtiCall} of which the attempt is part, or {@code null} if there is none.
+         */
+        /* package */ final LtiCall call;
+        /**
+         * The result of the attempt.
+         */
+        /* package */ final CompletableFuture<Object> result;
+
+
+        /**
+         * Constructor.
+         *
+         * @param operation The {@link LtiOperation} attempted.
+         * @param instance  The instance to which the attempt was sent.
+         * @param call      The {@link LtiCall} of which the attempt is part, or {@code null} if there is none.
+         */
+        private Attempt(final LtiOperation operation, final String instance, final LtiCall call) {
+            this.operation = operation;
+            this.instance = instance;
+            this.call = call;
+            this.result = new CompletableFuture<>();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link TokenBudget}.
+ */
+public class TokenBudgetTest {
+
+    /**
+     * Tests that each deposit earns the ratio of a token, and that a token can only be withdrawn once it is whole.
+     */
+    @Test
+    public void testDepositsEarnTheRatio() {
+        final var budget = new TokenBudget(0.25, 10);
+        Assert.assertFalse("The budget starts empty", budget.withdraw());
+        for (var i = 0; i < 3; i++) {
+            budget.deposit();
+            Assert.assertFalse(budget.withdraw());
+        }
+        budget.deposit();
+        Assert.assertTrue(budget.withdraw());
+        Assert.assertFalse(budget.withdraw());
+    }
+
+    /**
+     * Tests that the tokens never exceed the max. budget.
+     */
+    @Test
+    public void testTokensAreCapped() {
+        final var budget = new TokenBudget(1, 2);
+        for (var i = 0; i < 10; i++) {
+            budget.deposit();
+        }
+        Assert.assertEquals(2, budget.getTokens(), 0);
+        Assert.assertTrue(budget.withdraw());
+        Assert.assertTrue(budget.withdraw());
+        Assert.assertFalse(budget.withdraw());
+    }
+
+    /**
+     * Tests that a refund gives back a withdrawn token, without exceeding the max. budget.
+     */
+    @Test
+    public void testRefundsGiveBackTheToken() {
+        final var budget = new TokenBudget(1, 1);
+        budget.deposit();
+        Assert.assertTrue(budget.withdraw());
+        budget.refund();
+        Assert.assertEquals(1, budget.getTokens(), 0);
+        budget.refund();
+        Assert.assertEquals("Refunds must not exceed the max. budget", 1, budget.getTokens(), 0);
+        Assert.assertTrue(budget.withdraw());
+    }
+}
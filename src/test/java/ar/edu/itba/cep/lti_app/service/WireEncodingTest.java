@@ -0,0 +1,413 @@
+package ar.edu.itba.cep.lti_app.service;
+
+import ar.edu.itba.cep.lti.AuthenticationResponse;
+import ar.edu.itba.cep.lti.ExamSelectedRequest;
+import ar.edu.itba.cep.lti.ExamTakingResponse;
+import ar.edu.itba.cep.lti.LoginInitiationRequest;
+import ar.edu.itba.cep.lti.dtos.AuthenticationRequestDto;
+import ar.edu.itba.cep.lti.dtos.AuthenticationResponseDto;
+import ar.edu.itba.cep.lti.dtos.ExamSelectedRequestDto;
+import ar.edu.itba.cep.lti.dtos.ExamSelectedResponseDto;
+import ar.edu.itba.cep.lti.dtos.ExamSelectionResponseDto;
+import ar.edu.itba.cep.lti.dtos.ExamTakingResponseDto;
+import ar.edu.itba.cep.lti.dtos.LoginInitiationRequestDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tests the negotiation of Smile with the LTI service (and the fallback to JSON) of the {@link WireEncoding},
+ * through both the {@link RestTemplateLtiService} and the {@link WebClientLtiService},
+ * with the LTI service stubbed by a local HTTP server.
+ * Also tests that the DTOs exchanged with the LTI service are kept as is when encoded in Smile.
+ */
+public class WireEncodingTest {
+
+    /**
+     * The {@link ObjectMapper} that (de)serializes JSON.
+     */
+    private static final ObjectMapper JSON = Jackson2ObjectMapperBuilder.json().build();
+    /**
+     * The {@link ObjectMapper} that (de)serializes Smile.
+     */
+    private static final ObjectMapper SMILE = Jackson2ObjectMapperBuilder.smile().build();
+    /**
+     * The {@link MediaType}s accepted when binary encoding is enabled.
+     */
+    private static final List<MediaType> BINARY_ACCEPT = List.of(WireEncoding.SMILE, MediaType.APPLICATION_JSON);
+
+    /**
+     * The {@link AuthenticationResponse} sent to take an exam.
+     */
+    private static final AuthenticationResponse AUTHENTICATION_RESPONSE =
+            new AuthenticationResponse("id-token", "state");
+    /**
+     * The body of the "take exam" responses of the stubbed LTI service.
+     */
+    private static final JsonNode EXAM_TAKING_RESPONSE = JSON.createObjectNode()
+            .put("examId", 5L)
+            .put("tokenId", "00000000-0000-0000-0000-000000000001")
+            .put("accessToken", "access")
+            .put("refreshToken", "refresh")
+            .put("returnUrl", "https://lms.example.com/return?course=1");
+
+    /**
+     * The {@link HttpServer} that stubs the LTI service.
+     */
+    private HttpServer server;
+    /**
+     * The requests received by the {@link #server} (in arrival order).
+     */
+    private List<ReceivedRequest> requests;
+    /**
+     * The status with which the {@link #server} answers requests encoded in Smile (or 200 if it supports Smile).
+     */
+    private volatile int smileRequestStatus;
+    /**
+     * The status with which the {@link #server} answers requests that accept Smile (or 200 if it supports Smile).
+     */
+    private volatile int smileAcceptStatus;
+    /**
+     * The {@link SimpleMeterRegistry} in which the fallbacks are counted.
+     */
+    private SimpleMeterRegistry meterRegistry;
+
+
+    /**
+     * Starts the server, which answers "take exam" requests in the first accepted encoding it supports.
+     *
+     * @throws IOException If the server can not be started.
+     */
+    @Before
+    public void setUp() throws IOException {
+        this.requests = new CopyOnWriteArrayList<>();
+        this.smileRequestStatus = 200;
+        this.smileAcceptStatus = 200;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/", this::answer);
+        this.server.start();
+        this.meterRegistry = new SimpleMeterRegistry();
+    }
+
+    /**
+     * Stops the server.
+     */
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+
+    /**
+     * Tests that requests and responses are encoded in Smile when the LTI service supports it.
+     *
+     * @throws IOException If a request body can not be read.
+     */
+    @Test
+    public void testSmileIsUsedWhenSupported() throws IOException {
+        for (final var client : Client.values()) {
+            requests.clear();
+            assertLaunch(client.takeExam(this, wireEncoding(true)));
+            Assert.assertEquals(1, requests.size());
+            assertReceived(requests.get(0), WireEncoding.SMILE, BINARY_ACCEPT);
+        }
+    }
+
+    /**
+     * Tests that a Smile request rejected by the LTI service (i.e {@code 415}) is sent again in JSON,
+     * and that JSON is used for the following requests.
+     *
+     * @throws IOException If a request body can not be read.
+     */
+    @Test
+    public void testRejectedSmileRequestsAreSentAgainInJson() throws IOException {
+        smileRequestStatus = 415;
+        for (final var client : Client.values()) {
+            requests.clear();
+            final var wireEncoding = wireEncoding(true);
+            assertLaunch(client.takeExam(this, wireEncoding));
+            Assert.assertEquals(2, requests.size());
+            assertReceived(requests.get(0), WireEncoding.SMILE, BINARY_ACCEPT);
+            assertReceived(requests.get(1), MediaType.APPLICATION_JSON, WireEncoding.JSON_ONLY);
+
+            assertLaunch(client.takeExam(this, wireEncoding));
+            Assert.assertEquals("JSON must be used during the fallback", 3, requests.size());
+            assertReceived(requests.get(2), MediaType.APPLICATION_JSON, WireEncoding.JSON_ONLY);
+        }
+        Assert.assertEquals(2, meterRegistry.get("lti-service.encoding.fallbacks").counter().count(), 0);
+    }
+
+    /**
+     * Tests that a request accepting Smile that the LTI service can not answer (i.e {@code 406})
+     * is sent again accepting only JSON, and that JSON is used for the following requests.
+     *
+     * @throws IOException If a request body can not be read.
+     */
+    @Test
+    public void testNotAcceptableSmileResponsesAreNegotiatedAgainInJson() throws IOException {
+        smileAcceptStatus = 406;
+        for (final var client : Client.values()) {
+            requests.clear();
+            final var wireEncoding = wireEncoding(false);
+            assertLaunch(client.takeExam(this, wireEncoding));
+            Assert.assertEquals(2, requests.size());
+            assertReceived(requests.get(0), MediaType.APPLICATION_JSON, BINARY_ACCEPT);
+            assertReceived(requests.get(1), MediaType.APPLICATION_JSON, WireEncoding.JSON_ONLY);
+
+            assertLaunch(client.takeExam(this, wireEncoding));
+            Assert.assertEquals("JSON must be used during the fallback", 3, requests.size());
+            assertReceived(requests.get(2), MediaType.APPLICATION_JSON, WireEncoding.JSON_ONLY);
+        }
+    }
+
+    /**
+     * Tests that other error responses are not retried, even if the request was encoded in Smile.
+     */
+    @Test
+    public void testOtherErrorsAreNotRetried() {
+        smileRequestStatus = 400;
+        for (final var client : Client.values()) {
+            requests.clear();
+            try {
+                client.takeExam(this, wireEncoding(true));
+                Assert.fail("The request must fail");
+            } catch (final RuntimeException e) {
+                Assert.assertEquals(1, requests.size());
+            }
+        }
+        Assert.assertEquals(0, meterRegistry.get("lti-service.encoding.fallbacks").counter().count(), 0);
+    }
+
+    /**
+     * Tests that every DTO exchanged with the LTI service is kept as is when encoded in Smile
+     * (i.e the requests reach the LTI service with the same data as in JSON,
+     * and the responses are read into the same DTOs as from JSON).
+     *
+     * @throws IOException If a DTO can not be (de)serialized.
+     */
+    @Test
+    public void testEveryDtoRoundTripsThroughSmile() throws IOException {
+        final List<Object> requestDtos = List.of(
+                LoginInitiationRequestDto.fromModel(new LoginInitiationRequest(
+                        "https://lms.example.com",
+                        "login-hint",
+                        "https://lti-app.example.com/exam-selection",
+                        "message-hint",
+                        "deployment",
+                        "client"
+                )),
+                AuthenticationResponseDto.fromModel(AUTHENTICATION_RESPONSE),
+                ExamSelectedRequestDto.fromModel(
+                        new ExamSelectedRequest(1L, "state", "https://lti-app.example.com/exam-selected", null, null)
+                )
+        );
+        for (final var dto : requestDtos) {
+            Assert.assertEquals(
+                    dto.getClass().getSimpleName(),
+                    JSON.readTree(JSON.writeValueAsBytes(dto)),
+                    SMILE.readTree(SMILE.writeValueAsBytes(dto))
+            );
+        }
+
+        final Map<Class<?>, JsonNode> responseBodies = Map.of(
+                AuthenticationRequestDto.class, JSON.createObjectNode()
+                        .put("endpoint", "https://lms.example.com/auth")
+                        .put("clientId", "client")
+                        .put("loginHint", "login-hint")
+                        .put("redirectUri", "https://lti-app.example.com/exam-selection")
+                        .put("nonce", "nonce")
+                        .put("ltiMessageHint", "message-hint")
+                        .put("state", "state"),
+                ExamSelectionResponseDto.class, JSON.createObjectNode()
+                        .put("state", "state"),
+                ExamSelectedResponseDto.class, JSON.createObjectNode()
+                        .put("type", "existing")
+                        .put("endpoint", "https://lms.example.com/deep-linking")
+                        .put("jwt", "jwt"),
+                ExamTakingResponseDto.class, EXAM_TAKING_RESPONSE
+        );
+        for (final var body : responseBodies.entrySet()) {
+            final var fromJson = JSON.readValue(JSON.writeValueAsBytes(body.getValue()), body.getKey());
+            final var fromSmile = SMILE.readValue(SMILE.writeValueAsBytes(body.getValue()), body.getKey());
+            Assert.assertEquals(body.getKey().getSimpleName(), JSON.valueToTree(fromJson), JSON.valueToTree(fromSmile));
+        }
+    }
+
+
+    /**
+     * Creates a {@link WireEncoding} with binary encoding enabled.
+     *
+     * @param binaryRequests Whether requests are sent in Smile too.
+     * @return The created {@link WireEncoding}.
+     */
+    private WireEncoding wireEncoding(final boolean binaryRequests) {
+        final var properties = new LtiServiceConfig.Properties.Encoding();
+        properties.setBinary(true);
+        properties.setBinaryRequests(binaryRequests);
+        return new WireEncoding(properties, meterRegistry);
+    }
+
+    /**
+     * @return The {@link LtiServiceConfig.Properties} that point to the stubbed LTI service.
+     */
+    private LtiServiceConfig.Properties properties() {
+        final var properties = new LtiServiceConfig.Properties();
+        properties.setBaseUrl("http://localhost:" + server.getAddress().getPort() + "/lti/app/");
+        return properties;
+    }
+
+    /**
+     * Answers a request, recording it.
+     *
+     * @param exchange The {@link HttpExchange} with the request.
+     * @throws IOException If the request can not be answered.
+     */
+    private void answer(final HttpExchange exchange) throws IOException {
+        final var headers = exchange.getRequestHeaders();
+        final var contentType = MediaType.parseMediaType(headers.getFirst(HttpHeaders.CONTENT_TYPE));
+        final var accept = MediaType.parseMediaTypes(headers.get(HttpHeaders.ACCEPT));
+        requests.add(new ReceivedRequest(contentType, accept, exchange.getRequestBody().readAllBytes()));
+        final var status = WireEncoding.SMILE.includes(contentType) ? smileRequestStatus
+                : accept.contains(WireEncoding.SMILE) ? smileAcceptStatus
+                : 200;
+        if (status != 200) {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        final var smile = accept.get(0).equals(WireEncoding.SMILE);
+        final var body = (smile ? SMILE : JSON).writeValueAsBytes(EXAM_TAKING_RESPONSE);
+        exchange.getResponseHeaders().set(
+                HttpHeaders.CONTENT_TYPE,
+                smile ? WireEncoding.SMILE.toString() : MediaType.APPLICATION_JSON_VALUE
+        );
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    /**
+     * Asserts that the given {@code request} was encoded and negotiated as expected,
+     * and that its body holds the {@link #AUTHENTICATION_RESPONSE}.
+     *
+     * @param request     The {@link ReceivedRequest}.
+     * @param contentType The expected {@link MediaType} of the body.
+     * @param accept      The expected accepted {@link MediaType}s.
+     * @throws IOException If the body can not be read.
+     */
+    private static void assertReceived(
+            final ReceivedRequest request,
+            final MediaType contentType,
+            final List<MediaType> accept) throws IOException {
+        Assert.assertTrue(contentType.includes(request.contentType));
+        Assert.assertEquals(accept, request.accept);
+        final var mapper = WireEncoding.SMILE.includes(request.contentType) ? SMILE : JSON;
+        Assert.assertEquals(
+                JSON.valueToTree(AuthenticationResponseDto.fromModel(AUTHENTICATION_RESPONSE)),
+                mapper.readTree(request.body)
+        );
+    }
+
+    /**
+     * Asserts that the given {@code launch} holds the {@link #EXAM_TAKING_RESPONSE}.
+     *
+     * @param launch The {@link ExamTakingResponse} returned by the client.
+     */
+    private static void assertLaunch(final ExamTakingResponse launch) {
+        Assert.assertEquals(5L, launch.getExamId());
+        Assert.assertEquals(UUID.fromString("00000000-0000-0000-0000-000000000001"), launch.getTokenId());
+        Assert.assertEquals("access", launch.getAccessToken());
+        Assert.assertEquals("refresh", launch.getRefreshToken());
+        Assert.assertEquals("https://lms.example.com/return?course=1", launch.getReturnUrl());
+    }
+
+
+    /**
+     * The clients of the LTI service.
+     */
+    private enum Client {
+        /**
+         * The {@link RestTemplateLtiService}.
+         */
+        REST_TEMPLATE {
+            @Override
+            ExamTakingResponse takeExam(final WireEncodingTest test, final WireEncoding wireEncoding) {
+                return new RestTemplateLtiService(new RestTemplate(), wireEncoding, test.properties())
+                        .takeExam(AUTHENTICATION_RESPONSE);
+            }
+        },
+        /**
+         * The {@link WebClientLtiService}.
+         */
+        WEB_CLIENT {
+            @Override
+            ExamTakingResponse takeExam(final WireEncodingTest test, final WireEncoding wireEncoding) {
+                return new WebClientLtiService(WebClient.create(), wireEncoding, test.properties())
+                        .takeExam(AUTHENTICATION_RESPONSE)
+                        .join();
+            }
+        };
+
+
+        /**
+         * Takes the {@link #AUTHENTICATION_RESPONSE} exam through this client.
+         *
+         * @param test         The test (which stubs the LTI service).
+         * @param wireEncoding The {@link WireEncoding} used by the client.
+         * @return The {@link ExamTakingResponse}.
+         */
+        abstract ExamTakingResponse takeExam(final WireEncodingTest test, final WireEncoding wireEncoding);
+    }
+
+    /**
+     * A request received by the stubbed LTI service.
+     */
+    private static final class ReceivedRequest {
+
+        /**
+         * The {@link MediaType} of the body.
+         */
+        private final MediaType contentType;
+        /**
+         * The accepted {@link MediaType}s.
+         */
+        private final List<MediaType> accept;
+        /**
+         * The body.
+         */
+        private final byte[] body;
+
+
+        /**
+         * Constructor.
+         *
+         * @param contentType The {@link MediaType} of the body.
+         * @param accept      The accepted {@link MediaType}s.
+         * @param body        The body.
+         */
+        private ReceivedRequest(final MediaType contentType, final List<MediaType> accept, final byte[] body) {
+            this.contentType = contentType;
+            this.accept = accept;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package ar.edu.itba.cep.lti_app.tracing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the {@link BatchingReporter}, with a {@link BatchSink} that collects the batches it is sent.
+ */
+public class BatchingReporterTest {
+
+    /**
+     * The max. time to wait for a batch to be sent.
+     */
+    private static final long TIMEOUT_SECONDS = 5;
+    /**
+     * A {@link SinkAction} that does nothing (i.e the sink just collects the batches).
+     */
+    private static final SinkAction NOTHING = batch -> {
+    };
+
+    /**
+     * The batches sent to the sink.
+     */
+    private BlockingQueue<List<String>> batches;
+    /**
+     * Counted down when the sink is closed.
+     */
+    private CountDownLatch sinkClosed;
+    /**
+     * The {@link SimpleMeterRegistry} in which the reporter metrics are published.
+     */
+    private SimpleMeterRegistry meterRegistry;
+    /**
+     * The {@link BatchingReporter} being tested (closed after each test).
+     */
+    private BatchingReporter<String> reporter;
+
+
+    /**
+     * Creates the sink.
+     */
+    @Before
+    public void setUp() {
+        this.batches = new LinkedBlockingQueue<>();
+        this.sinkClosed = new CountDownLatch(1);
+        this.meterRegistry = new SimpleMeterRegistry();
+    }
+
+    /**
+     * Closes the reporter.
+     *
+     * @throws IOException Never.
+     */
+    @After
+    public void tearDown() throws IOException {
+        reporter.close();
+    }
+
+
+    /**
+     * Tests that a batch is sent as soon as it is full, without waiting for the batch interval.
+     *
+     * @throws InterruptedException If interrupted while waiting for a batch.
+     */
+    @Test
+    public void testFullBatchesAreSentRightAway() throws InterruptedException {
+        reporter = reporter(10, 3, Duration.ofMinutes(1), NOTHING);
+        List.of("a", "b", "c", "d").forEach(reporter::report);
+        Assert.assertEquals(List.of("a", "b", "c"), batches.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Assert.assertNull("The incomplete batch must wait", batches.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Tests that an incomplete batch is sent once its first item has waited for the batch interval.
+     *
+     * @throws InterruptedException If interrupted while waiting for a batch.
+     */
+    @Test
+    public void testIncompleteBatchesAreSentAfterTheInterval() throws InterruptedException {
+        reporter = reporter(10, 100, Duration.ofMillis(50), NOTHING);
+        reporter.report("a");
+        reporter.report("b");
+        Assert.assertEquals(List.of("a", "b"), batches.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Assert.assertEquals(2, awaitCount("sent", 2), 0);
+        Assert.assertEquals(1, meterRegistry.get("lti-app.tracing.reporter.flush").timer().count());
+    }
+
+    /**
+     * Tests that, when the queue is full (e.g the sink is slow), the oldest items are dropped (and counted)
+     * to make room for the newest ones.
+     *
+     * @throws InterruptedException If interrupted while waiting for a batch.
+     */
+    @Test
+    public void testOldestItemsAreDroppedWhenTheQueueIsFull() throws InterruptedException {
+        final var sending = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        reporter = reporter(2, 1, Duration.ofMillis(10), batch -> {
+            sending.countDown();
+            release.await(); // The first batch blocks the sink, so items pile up.
+        });
+        reporter.report("a");
+        Assert.assertTrue(sending.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        List.of("b", "c", "d", "e").forEach(reporter::report);
+        Assert.assertEquals(2, meterRegistry.get("lti-app.tracing.reporter.queue").gauge().value(), 0);
+        Assert.assertEquals(2, meterRegistry.get("lti-app.tracing.reporter.dropped").counter().count(), 0);
+
+        release.countDown();
+        for (final var item : List.of("a", "d", "e")) {
+            Assert.assertEquals(List.of(item), batches.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Tests that closing the reporter sends the incomplete batch right away (without waiting for the batch interval,
+     * nor timing out), closes the sink, and that items reported afterwards are dropped.
+     *
+     * @throws IOException          Never.
+     * @throws InterruptedException If interrupted while waiting for a batch.
+     */
+    @Test
+    public void testQueuedItemsAreSentOnClose() throws IOException, InterruptedException {
+        reporter = reporter(100, 2, Duration.ofMinutes(1), NOTHING);
+        List.of("a", "b", "c", "d", "e").forEach(reporter::report);
+        Assert.assertEquals(List.of("a", "b"), batches.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Assert.assertEquals(List.of("c", "d"), batches.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        final var start = System.nanoTime();
+        reporter.close(); // While the last item waits for the rest of its batch.
+        Assert.assertTrue(
+                "Closing must not wait for the batch interval",
+                System.nanoTime() - start < TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS)
+        );
+        Assert.assertEquals("The sink must be closed", 0, sinkClosed.getCount());
+        Assert.assertEquals(List.of(List.of("e")), List.copyOf(batches));
+
+        reporter.report("f");
+        Assert.assertEquals(1, meterRegistry.get("lti-app.tracing.reporter.dropped").counter().count(), 0);
+    }
+
+    /**
+     * Tests that the items of a batch that the sink fails to send are counted as failed (and not retried).
+     *
+     * @throws InterruptedException If interrupted while waiting for a batch.
+     */
+    @Test
+    public void testFailedBatchesAreCounted() throws InterruptedException {
+        reporter = reporter(10, 2, Duration.ofMinutes(1), batch -> {
+            throw new IOException("The collector is down");
+        });
+        List.of("a", "b", "c", "d").forEach(reporter::report);
+        Assert.assertEquals(4, awaitCount("failed", 4), 0);
+        Assert.assertEquals(0, meterRegistry.get("lti-app.tracing.reporter.sent").counter().count(), 0);
+    }
+
+
+    /**
+     * Waits for the given reporter counter to reach the {@code expected} count
+     * (as counters are incremented after the batch reaches the sink).
+     *
+     * @param name     The name of the counter (without the reporter metrics prefix).
+     * @param expected The expected count.
+     * @return The count (once it reaches the {@code expected} one, or when the wait times out).
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private double awaitCount(final String name, final double expected) throws InterruptedException {
+        final var counter = meterRegistry.get("lti-app.tracing.reporter." + name).counter();
+        for (int i = 0; i < TIMEOUT_SECONDS * 100 && counter.count() < expected; i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return counter.count();
+    }
+
+    /**
+     * Creates a {@link BatchingReporter}, whose sink collects the batches into {@link #batches},
+     * and then performs the given {@code action}.
+     *
+     * @param queueCapacity The capacity of the queue.
+     * @param batchSize     The max. amount of items in a batch.
+     * @param batchInterval The max. time the first item of a batch waits before the batch is sent.
+     * @param action        The action performed by the sink after collecting each batch.
+     * @return The created {@link BatchingReporter}.
+     */
+    private BatchingReporter<String> reporter(
+            final int queueCapacity,
+            final int batchSize,
+            final Duration batchInterval,
+            final SinkAction action) {
+        final var properties = new TracingConfig.Properties.SpanReporter();
+        properties.setQueueCapacity(queueCapacity);
+        properties.setBatchSize(batchSize);
+        properties.setBatchInterval(batchInterval);
+        properties.setCloseTimeout(Duration.ofSeconds(TIMEOUT_SECONDS));
+        final var sink = new BatchSink<String>() {
+            @Override
+            public void send(final List<String> batch) throws IOException {
+                batches.add(List.copyOf(batch));
+                try {
+                    action.perform(batch);
+                } catch (final InterruptedException e) {
+                    throw new AssertionError("The sink must not be interrupted", e);
+                }
+            }
+
+            @Override
+            public void close() {
+                sinkClosed.countDown();
+            }
+        };
+        return new BatchingReporter<>("test", sink, properties, meterRegistry);
+    }
+
+
+    /**
+     * An action performed by the sink after collecting a batch.
+     */
+    @FunctionalInterface
+    private interface SinkAction {
+
+        /**
+         * Performs the action.
+         *
+         * @param batch The batch sent to the sink.
+         * @throws IOException          If the batch could not be sent.
+         * @throws InterruptedException If interrupted while performing the action.
+         */
+        void perform(final List<String> batch) throws IOException, InterruptedException;
+    }
+}
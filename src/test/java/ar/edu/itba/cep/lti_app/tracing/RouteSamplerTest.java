@@ -0,0 +1,114 @@
+package ar.edu.itba.cep.lti_app.tracing;
+
+import brave.http.HttpServerAdapter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Tests the {@link RouteSampler}.
+ */
+public class RouteSamplerTest {
+
+    /**
+     * An {@link HttpServerAdapter} for requests that are just their path.
+     */
+    private static final HttpServerAdapter<String, Void> ADAPTER = new HttpServerAdapter<>() {
+        @Override
+        public String method(final String request) {
+            return "GET";
+        }
+
+        @Override
+        public String path(final String request) {
+            return request;
+        }
+
+        @Override
+        public String url(final String request) {
+            return request == null ? null : "http://localhost" + request;
+        }
+
+        @Override
+        public String requestHeader(final String request, final String name) {
+            return null;
+        }
+
+        @Override
+        public Integer statusCode(final Void response) {
+            return null;
+        }
+    };
+
+
+    /**
+     * Tests that routes are matched in order of precedence (i.e the first one whose path prefixes the request's),
+     * so the waiting room is sampled by its own route, although its path is under the exam taking one,
+     * and that requests that do not match any route are left to the global sampler.
+     */
+    @Test
+    public void testRoutesAreMatchedInOrderOfPrecedence() {
+        final var sampler = new RouteSampler(List.of(
+                route("/exam-taking/waiting-room", 0, null),
+                route("/exam-taking", 1, null)
+        ));
+        Assert.assertEquals(Boolean.FALSE, sampler.trySample(ADAPTER, "/exam-taking/waiting-room/ticket"));
+        Assert.assertEquals(Boolean.TRUE, sampler.trySample(ADAPTER, "/exam-taking"));
+        Assert.assertEquals(Boolean.TRUE, sampler.trySample(ADAPTER, "/exam-taking/launch"));
+        Assert.assertNull(sampler.trySample(ADAPTER, "/exam-selection"));
+        Assert.assertNull(sampler.trySample(ADAPTER, null));
+
+        final var reversed = new RouteSampler(List.of(
+                route("/exam-taking", 1, null),
+                route("/exam-taking/waiting-room", 0, null)
+        ));
+        Assert.assertEquals(
+                "The broader route must shadow the narrower one when it comes first",
+                Boolean.TRUE,
+                reversed.trySample(ADAPTER, "/exam-taking/waiting-room/ticket")
+        );
+    }
+
+    /**
+     * Tests that the traces of a route are capped to its rate, and that only sampled requests consume it.
+     */
+    @Test
+    public void testRoutesAreRateLimited() {
+        final var rate = 5;
+        final var sampler = new RouteSampler(List.of(
+                route("/exam-taking/waiting-room", 0, rate),
+                route("/exam-taking", 1, rate)
+        ));
+        Assert.assertFalse(
+                "Requests that are not sampled must not consume the rate",
+                IntStream.range(0, rate * 2).anyMatch(i -> sampler.trySample(ADAPTER, "/exam-taking/waiting-room"))
+        );
+        final var sampled = IntStream.range(0, rate * 4)
+                .filter(i -> sampler.trySample(ADAPTER, "/exam-taking"))
+                .count();
+        Assert.assertTrue("Some requests must be sampled", sampled > 0);
+        Assert.assertTrue("At most " + rate + " requests can be sampled per second", sampled <= rate);
+    }
+
+
+    /**
+     * Creates a {@link TracingConfig.Properties.Route}.
+     *
+     * @param path        The prefix of the paths of the requests that match the route.
+     * @param probability The fraction of the requests that are sampled.
+     * @param rate        The max. amount of traces sampled per second (or {@code null} to not cap them).
+     * @return The created {@link TracingConfig.Properties.Route}.
+     */
+    private static TracingConfig.Properties.Route route(
+            final String path,
+            final float probability,
+            final Integer rate) {
+        final var route = new TracingConfig.Properties.Route();
+        route.setPath(path);
+        route.setProbability(probability);
+        route.setRate(rate);
+        return route;
+    }
+}
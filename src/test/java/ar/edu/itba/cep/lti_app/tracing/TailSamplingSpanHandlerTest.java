@@ -0,0 +1,228 @@
+package ar.edu.itba.cep.lti_app.tracing;
+
+import brave.Tracing;
+import brave.sampler.Sampler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.ResolvableType;
+import zipkin2.Span;
+import zipkin2.reporter.Reporter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Tests the {@link TailSamplingSpanHandler}, with the spans created by a {@link Tracing} that does not sample
+ * (unless a test says otherwise), and with explicit timestamps.
+ */
+public class TailSamplingSpanHandlerTest {
+
+    /**
+     * The min. duration of a local root span for its trace to be kept.
+     */
+    private static final Duration LATENCY_THRESHOLD = Duration.ofSeconds(2);
+    /**
+     * The max. amount of spans buffered for each trace.
+     */
+    private static final int MAX_SPANS_PER_TRACE = 3;
+
+    /**
+     * The spans reported by the handler.
+     */
+    private List<Span> reported;
+    /**
+     * The {@link SimpleMeterRegistry} in which the tail sampling metrics are published.
+     */
+    private SimpleMeterRegistry meterRegistry;
+    /**
+     * The {@link TailSamplingSpanHandler} being tested.
+     */
+    private TailSamplingSpanHandler handler;
+    /**
+     * The {@link Tracing} whose finished spans are handled by the {@link #handler}.
+     */
+    private Tracing tracing;
+
+
+    /**
+     * Creates the handler, reporting to a {@link Reporter} registered in a bean factory (as it is looked up lazily).
+     */
+    @Before
+    public void setUp() {
+        this.reported = new CopyOnWriteArrayList<>();
+        final var beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("reporter", new CollectingReporter(reported));
+        final var properties = new TracingConfig.Properties.TailSampling();
+        properties.setLatencyThreshold(LATENCY_THRESHOLD);
+        properties.setMaxSpansPerTrace(MAX_SPANS_PER_TRACE);
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.handler = new TailSamplingSpanHandler(
+                properties,
+                beanFactory.getBeanProvider(ResolvableType.forClassWithGenerics(Reporter.class, Span.class)),
+                "lti-app",
+                meterRegistry
+        );
+        this.tracing = tracing(Sampler.NEVER_SAMPLE);
+    }
+
+    /**
+     * Closes the {@link Tracing}.
+     */
+    @After
+    public void tearDown() {
+        tracing.close();
+    }
+
+
+    /**
+     * Tests that the spans of a trace that succeeds fast enough are dropped without being reported.
+     */
+    @Test
+    public void testFastTracesAreDropped() {
+        trace(Duration.ofMillis(500), null, 2);
+        Assert.assertTrue(reported.isEmpty());
+        Assert.assertEquals(1, counter("dropped"), 0);
+        Assert.assertEquals(0, counter("kept"), 0);
+        Assert.assertEquals("The buffered spans must be released", 0, pending(), 0);
+    }
+
+    /**
+     * Tests that all the spans of a trace whose local root span is slow are reported (with their local endpoint).
+     */
+    @Test
+    public void testSlowTracesAreKept() {
+        trace(LATENCY_THRESHOLD, null, 2);
+        Assert.assertEquals(List.of("child-0", "child-1", "root"), names());
+        Assert.assertTrue(reported.stream().allMatch(span -> "lti-app".equals(span.localServiceName())));
+        Assert.assertEquals(1, reported.stream().map(Span::traceId).distinct().count());
+        Assert.assertEquals(LATENCY_THRESHOLD.toNanos() / 1000, reported.get(2).durationAsLong());
+        Assert.assertEquals(1, counter("kept"), 0);
+        Assert.assertEquals(0, pending(), 0);
+    }
+
+    /**
+     * Tests that all the spans of a trace whose local root span failed are reported, with the error tagged.
+     */
+    @Test
+    public void testFailedTracesAreKept() {
+        trace(Duration.ofMillis(500), new IllegalStateException("The launch failed"), 1);
+        Assert.assertEquals(List.of("child-0", "root"), names());
+        Assert.assertEquals("The launch failed", reported.get(1).tags().get("error"));
+        Assert.assertEquals(1, counter("kept"), 0);
+    }
+
+    /**
+     * Tests that at most the configured amount of spans is buffered for each trace (besides its local root span).
+     */
+    @Test
+    public void testSpansOverTheLimitAreNotBuffered() {
+        trace(LATENCY_THRESHOLD, null, MAX_SPANS_PER_TRACE + 2);
+        Assert.assertEquals(MAX_SPANS_PER_TRACE + 1, reported.size());
+        Assert.assertEquals(2, counter("overflow"), 0);
+    }
+
+    /**
+     * Tests that the spans of traces sampled up front are left to the usual reporting.
+     */
+    @Test
+    public void testSampledTracesAreNotTouched() {
+        tracing.close();
+        tracing = tracing(Sampler.ALWAYS_SAMPLE);
+        trace(Duration.ofMillis(500), new IllegalStateException("The launch failed"), 1);
+        Assert.assertTrue(reported.isEmpty());
+        Assert.assertEquals(0, counter("kept") + counter("dropped"), 0);
+    }
+
+
+    /**
+     * Creates a {@link Tracing} whose finished spans are handled by the {@link #handler}.
+     *
+     * @param sampler The {@link Sampler} that decides up front whether traces are sampled.
+     * @return The created {@link Tracing}.
+     */
+    private Tracing tracing(final Sampler sampler) {
+        return Tracing.newBuilder()
+                .localServiceName("lti-app")
+                .sampler(sampler)
+                .spanReporter(Reporter.NOOP)
+                .addFinishedSpanHandler(handler)
+                .build();
+    }
+
+    /**
+     * Records a trace: a local root span, with the given amount of child spans, which finish before it.
+     *
+     * @param duration The duration of the local root span.
+     * @param error    The error with which the local root span failed (or {@code null} if it succeeded).
+     * @param children The amount of child spans.
+     */
+    private void trace(final Duration duration, final Throwable error, final int children) {
+        final var start = 1_000_000L;
+        final var root = tracing.tracer().newTrace().name("root").start(start);
+        for (int i = 0; i < children; i++) {
+            tracing.tracer().newChild(root.context()).name("child-" + i).start(start + i).finish(start + i + 1);
+        }
+        if (error != null) {
+            root.error(error);
+        }
+        root.finish(start + duration.toNanos() / 1000);
+    }
+
+    /**
+     * @return The names of the reported spans (in reporting order).
+     */
+    private List<String> names() {
+        return reported.stream().map(Span::name).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the count of the given tail sampling counter.
+     *
+     * @param name The name of the counter (without the tail sampling metrics prefix).
+     * @return The count.
+     */
+    private double counter(final String name) {
+        return meterRegistry.get("lti-app.tracing.tail-sampling." + name).counter().count();
+    }
+
+    /**
+     * @return The amount of traces whose spans are buffered.
+     */
+    private double pending() {
+        return meterRegistry.get("lti-app.tracing.tail-sampling.pending").gauge().value();
+    }
+
+
+    /**
+     * A {@link Reporter} that collects the reported spans.
+     */
+    private static final class CollectingReporter implements Reporter<Span> {
+
+        /**
+         * The {@link List} in which reported spans are collected.
+         */
+        private final List<Span> spans;
+
+
+        /**
+         * Constructor.
+         *
+         * @param spans The {@link List} in which reported spans are collected.
+         */
+        private CollectingReporter(final List<Span> spans) {
+            this.spans = spans;
+        }
+
+
+        @Override
+        public void report(final Span span) {
+            spans.add(span);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package ar.edu.itba.cep.lti_app.web.controller;
+
+import ar.edu.itba.cep.lti_app.Application;
+import ar.edu.itba.cep.lti_app.web.controller.ExamTakingWaitingRoom.TicketStatus;
+import com.bellotapps.webapps_commons.exceptions.ExternalServiceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Tests the {@link ExamTakingWaitingRoom}, with a manual clock,
+ * and launches that complete only when the test completes them.
+ */
+public class ExamTakingWaitingRoomTest {
+
+    /**
+     * The redirection to the waiting page (to which the ticket id is appended).
+     */
+    private static final String WAITING_ROOM_REDIRECTION = "exam-taking/waiting-room/";
+
+    /**
+     * The {@link Application.Properties} with the configuration of the waiting room.
+     */
+    private Application.Properties properties;
+    /**
+     * The {@link MapLaunchStateStore} shared by the instances of the waiting room.
+     */
+    private MapLaunchStateStore store;
+    /**
+     * The {@link SimpleMeterRegistry} in which the waiting room metrics are published.
+     */
+    private SimpleMeterRegistry meterRegistry;
+    /**
+     * The waiting rooms created by the test (one per instance of the application).
+     */
+    private List<ExamTakingWaitingRoom> waitingRooms;
+    /**
+     * The results of the launches performed, in launching order.
+     */
+    private List<CompletableFuture<String>> launches;
+    /**
+     * The current time of the manual clock, in nanoseconds.
+     */
+    private long now;
+
+
+    /**
+     * Configures a waiting room that admits 2 launches in flight, and parks up to 3.
+     */
+    @Before
+    public void setUp() {
+        this.properties = new Application.Properties();
+        this.properties.getWaitingRoom().setMaxInFlight(2);
+        this.properties.getWaitingRoom().setMaxQueueSize(3);
+        this.store = new MapLaunchStateStore(() -> now);
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.waitingRooms = new ArrayList<>();
+        this.launches = new ArrayList<>();
+        this.now = 0;
+    }
+
+    /**
+     * Destroys the waiting rooms created by the test.
+     */
+    @After
+    public void tearDown() {
+        waitingRooms.forEach(ExamTakingWaitingRoom::destroy);
+    }
+
+
+    /**
+     * Tests that launches are performed immediately while under the max. in flight,
+     * and that they complete with the result of the launch.
+     */
+    @Test
+    public void testAdmitsLaunchesUnderTheLimit() {
+        final var waitingRoom = waitingRoom();
+        final var first = admit(waitingRoom);
+        final var second = admit(waitingRoom);
+        Assert.assertEquals("Both launches must be performed", 2, launches.size());
+
+        launches.get(0).complete("redirect:exam");
+        Assert.assertEquals("redirect:exam", first.join());
+        Assert.assertFalse(second.isDone());
+        Assert.assertEquals(0, meterRegistry.get("lti-app.waiting-room.parked").counter().count(), 0);
+    }
+
+    /**
+     * Tests that launches over the max. in flight are parked (redirecting to the waiting page),
+     * that they are performed once a launch in flight completes, and that their result can be polled then.
+     */
+    @Test
+    public void testParksLaunchesOverTheLimit() {
+        final var waitingRoom = waitingRoom();
+        fillSlots(waitingRoom);
+        final var ticket = park(waitingRoom);
+        Assert.assertEquals("The parked launch must not be performed yet", 2, launches.size());
+        Assert.assertTrue(poll(waitingRoom, ticket).getResult().isEmpty());
+
+        launches.get(0).complete("redirect:exam");
+        Assert.assertEquals("The parked launch must be performed once a slot is released", 3, launches.size());
+        Assert.assertTrue("The launch is in flight", poll(waitingRoom, ticket).getResult().isEmpty());
+        launches.get(2).complete("redirect:parked-exam");
+        Assert.assertEquals("redirect:parked-exam", poll(waitingRoom, ticket).getResult().orElseThrow().join());
+        Assert.assertEquals(1, meterRegistry.get("lti-app.waiting-room.parked").counter().count(), 0);
+    }
+
+    /**
+     * Tests that launches are rejected once the waiting room is full.
+     */
+    @Test
+    public void testRejectsLaunchesWhenFull() {
+        final var waitingRoom = waitingRoom();
+        fillSlots(waitingRoom);
+        for (var i = 0; i < properties.getWaitingRoom().getMaxQueueSize(); i++) {
+            park(waitingRoom);
+        }
+        final var rejected = admit(waitingRoom);
+        Assert.assertTrue(causeOf(rejected) instanceof ExternalServiceException);
+        Assert.assertEquals(2, launches.size());
+    }
+
+    /**
+     * Tests that the position of each parked launch is reported, and that it advances as launches are performed.
+     */
+    @Test
+    public void testReportsThePositionInTheQueue() {
+        final var waitingRoom = waitingRoom();
+        fillSlots(waitingRoom);
+        final var first = park(waitingRoom);
+        final var second = park(waitingRoom);
+        final var third = park(waitingRoom);
+        Assert.assertEquals(1, poll(waitingRoom, first).getPosition());
+        Assert.assertEquals(2, poll(waitingRoom, second).getPosition());
+        Assert.assertEquals(3, poll(waitingRoom, third).getPosition());
+
+        launches.get(0).complete("redirect:exam");
+        Assert.assertEquals("The first launch is not waiting anymore", 0, poll(waitingRoom, first).getPosition());
+        Assert.assertEquals(1, poll(waitingRoom, second).getPosition());
+        Assert.assertEquals(2, poll(waitingRoom, third).getPosition());
+    }
+
+    /**
+     * Tests that parked launches whose waiting page stopped refreshing are discarded without being performed,
+     * while the next launches (whose waiting page is still refreshing) are performed instead.
+     */
+    @Test
+    public void testSkipsAbandonedLaunches() {
+        final var waitingRoom = waitingRoom();
+        fillSlots(waitingRoom);
+        final var abandoned = park(waitingRoom);
+        final var waiting = park(waitingRoom);
+        advance(properties.getWaitingRoom().getAbandonAfter().dividedBy(2));
+        poll(waitingRoom, waiting);
+        advance(properties.getWaitingRoom().getAbandonAfter().dividedBy(2).plusSeconds(1));
+
+        launches.get(0).complete("redirect:exam");
+        Assert.assertEquals("Only the launch still waiting must be performed", 3, launches.size());
+        launches.get(2).complete("redirect:waiting-exam");
+        Assert.assertEquals("redirect:waiting-exam", poll(waitingRoom, waiting).getResult().orElseThrow().join());
+        Assert.assertTrue("The abandoned launch must be discarded", waitingRoom.poll(abandoned).join().isEmpty());
+        Assert.assertEquals(1, meterRegistry.get("lti-app.waiting-room.abandoned").counter().count(), 0);
+    }
+
+    /**
+     * Tests that a parked launch whose waiting page refreshes in another instance is not considered abandoned.
+     */
+    @Test
+    public void testLaunchesRefreshedInAnotherInstanceAreNotAbandoned() {
+        final var owner = waitingRoom();
+        final var other = waitingRoom();
+        fillSlots(owner);
+        final var ticket = park(owner);
+        advance(properties.getWaitingRoom().getAbandonAfter().dividedBy(2));
+        Assert.assertTrue(other.poll(ticket).join().isPresent());
+        owner.checkSeen();
+        advance(properties.getWaitingRoom().getAbandonAfter().dividedBy(2).plusSeconds(1));
+
+        launches.get(0).complete("redirect:exam");
+        Assert.assertEquals("The launch must be performed", 3, launches.size());
+    }
+
+    /**
+     * Tests that completed launches are kept for the result's TTL, and evicted afterwards.
+     */
+    @Test
+    public void testEvictsCompletedLaunches() {
+        final var waitingRoom = waitingRoom();
+        fillSlots(waitingRoom);
+        final var ticket = park(waitingRoom);
+        launches.get(0).complete("redirect:exam");
+        launches.get(2).complete("redirect:parked-exam");
+
+        final var resultTtl = properties.getWaitingRoom().getResultTtl();
+        advance(resultTtl.minusSeconds(1));
+        waitingRoom.evictCompleted();
+        Assert.assertEquals("redirect:parked-exam", poll(waitingRoom, ticket).getResult().orElseThrow().join());
+        advance(Duration.ofSeconds(2));
+        waitingRoom.evictCompleted();
+        Assert.assertTrue("The result must be evicted", waitingRoom.poll(ticket).join().isEmpty());
+    }
+
+    /**
+     * Tests that a launch parked in another instance is polled through the store:
+     * it is reported as waiting (with an unknown position) until it fails,
+     * while the result of a successful launch (which carries credentials) is only handed by the owning instance,
+     * and never reaches the store.
+     */
+    @Test
+    public void testPollsLaunchesParkedInAnotherInstance() {
+        final var owner = waitingRoom();
+        final var other = waitingRoom();
+        fillSlots(owner);
+        final var succeeding = park(owner);
+        final var failing = park(owner);
+
+        final var waiting = poll(other, succeeding);
+        Assert.assertEquals("The position is unknown", 0, waiting.getPosition());
+        Assert.assertTrue(waiting.getResult().isEmpty());
+
+        launches.get(0).complete("redirect:exam");
+        launches.get(1).complete("redirect:exam");
+        launches.get(2).complete("redirect:parked-exam");
+        launches.get(3).completeExceptionally(new IllegalStateException("The launch failed"));
+        Assert.assertTrue("Only the owner has the result", poll(other, succeeding).getResult().isEmpty());
+        Assert.assertEquals("redirect:parked-exam", poll(owner, succeeding).getResult().orElseThrow().join());
+        for (final var key : store.keys()) {
+            Assert.assertFalse(
+                    "The result must not be stored",
+                    store.get(key).join().orElse("").contains("parked-exam")
+            );
+        }
+        final var failed = poll(other, failing).getResult().orElseThrow();
+        Assert.assertTrue(causeOf(failed) instanceof ExternalServiceException);
+        Assert.assertTrue("Unknown tickets are not found", other.poll("unknown").join().isEmpty());
+    }
+
+    /**
+     * Tests that launches are always performed immediately if the waiting room is disabled.
+     */
+    @Test
+    public void testDisabledWaitingRoomPerformsAllLaunches() {
+        properties.getWaitingRoom().setEnabled(false);
+        final var waitingRoom = waitingRoom();
+        for (var i = 0; i < 10; i++) {
+            admit(waitingRoom);
+        }
+        Assert.assertEquals(10, launches.size());
+    }
+
+
+    /**
+     * Creates a waiting room (i.e the one of an instance of the application), with the manual clock.
+     *
+     * @return The created {@link ExamTakingWaitingRoom}.
+     */
+    private ExamTakingWaitingRoom waitingRoom() {
+        final var waitingRoom = new ExamTakingWaitingRoom(properties, store, meterRegistry, () -> now);
+        waitingRooms.add(waitingRoom);
+        return waitingRoom;
+    }
+
+    /**
+     * Admits a launch that completes only when the test completes it (through the {@link #launches}).
+     *
+     * @param waitingRoom The {@link ExamTakingWaitingRoom} that admits the launch.
+     * @return The result of the admission.
+     */
+    private CompletableFuture<String> admit(final ExamTakingWaitingRoom waitingRoom) {
+        return waitingRoom.admit(null, response -> {
+            final var launch = new CompletableFuture<String>();
+            launches.add(launch);
+            return launch;
+        });
+    }
+
+    /**
+     * Admits launches until there is no room for more launches in flight.
+     *
+     * @param waitingRoom The {@link ExamTakingWaitingRoom}.
+     */
+    private void fillSlots(final ExamTakingWaitingRoom waitingRoom) {
+        for (var i = 0; i < properties.getWaitingRoom().getMaxInFlight(); i++) {
+            admit(waitingRoom);
+        }
+    }
+
+    /**
+     * Admits a launch that must be parked.
+     *
+     * @param waitingRoom The {@link ExamTakingWaitingRoom}.
+     * @return The id of the ticket of the parked launch.
+     */
+    private String park(final ExamTakingWaitingRoom waitingRoom) {
+        final var redirection = admit(waitingRoom).join();
+        Assert.assertTrue("The launch must be parked", redirection.startsWith(WAITING_ROOM_REDIRECTION));
+        return redirection.substring(WAITING_ROOM_REDIRECTION.length());
+    }
+
+    /**
+     * Polls the ticket with the given {@code id}, which must exist.
+     *
+     * @param waitingRoom The {@link ExamTakingWaitingRoom} in which the ticket is polled.
+     * @param id          The ticket's id.
+     * @return The {@link TicketStatus}.
+     */
+    private static TicketStatus poll(final ExamTakingWaitingRoom waitingRoom, final String id) {
+        return waitingRoom.poll(id).join().orElseThrow(() -> new AssertionError("The ticket must exist"));
+    }
+
+    /**
+     * Advances the manual clock.
+     *
+     * @param duration How much the clock is advanced.
+     */
+    private void advance(final Duration duration) {
+        now += duration.toNanos();
+    }
+
+    /**
+     * Returns the cause of the failure of the given {@code future}.
+     *
+     * @param future The {@link CompletableFuture} (which must be completed exceptionally).
+     * @return The cause of the failure.
+     */
+    private static Throwable causeOf(final CompletableFuture<String> future) {
+        try {
+            future.join();
+        } catch (final CompletionException e) {
+            return e.getCause();
+        }
+        throw new AssertionError("The launch must fail");
+    }
+}
@@ -0,0 +1,534 @@
+package ar.edu.itba.cep.lti_app.web.controller;
+
+import ar.edu.itba.cep.lti_app.Application;
+import ar.edu.itba.cep.lti_app.web.dtos.AuthenticationResponseForm;
+import ar.edu.itba.cep.lti_app.web.exceptions.InvalidIdTokenException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests the {@link IdTokenPreValidator}, with the key sets of the platforms served by a local HTTP server.
+ */
+public class IdTokenPreValidatorTest {
+
+    /**
+     * The issuer of the platform whose key set is served.
+     */
+    private static final String ISSUER = "https://lms.example.com";
+    /**
+     * The issuer of the platform whose key set can not be fetched.
+     */
+    private static final String BROKEN_ISSUER = "https://broken-lms.example.com";
+    /**
+     * The client id given to this tool by the platforms.
+     */
+    private static final String CLIENT_ID = "lti-app";
+    /**
+     * The id of the platform's signing key.
+     */
+    private static final String KEY_ID = "key-1";
+    /**
+     * The name of the counters of pre-validations.
+     */
+    private static final String PRE_VALIDATIONS_COUNTER_NAME = "lti-app.id-token.pre-validations";
+    /**
+     * The name of the counters of key set refreshes.
+     */
+    private static final String REFRESHES_COUNTER_NAME = "lti-app.jwks.refreshes";
+
+    /**
+     * The platform's signing key pair.
+     */
+    private static KeyPair platformKeys;
+    /**
+     * A key pair that is not the platform's one.
+     */
+    private static KeyPair otherKeys;
+
+    /**
+     * The platform's key set served by the {@link #server}.
+     */
+    private AtomicReference<byte[]> jwks;
+    /**
+     * The {@link HttpServer} that serves the key sets.
+     */
+    private HttpServer server;
+    /**
+     * The {@link SimpleMeterRegistry} in which the pre-validations are counted.
+     */
+    private SimpleMeterRegistry meterRegistry;
+    /**
+     * The {@link IdTokenPreValidator} being tested, or {@code null} if it was not created yet.
+     */
+    private IdTokenPreValidator validator;
+
+
+    /**
+     * Generates the key pairs.
+     *
+     * @throws GeneralSecurityException Never.
+     */
+    @BeforeClass
+    public static void generateKeys() throws GeneralSecurityException {
+        final var generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        platformKeys = generator.generateKeyPair();
+        otherKeys = generator.generateKeyPair();
+    }
+
+    /**
+     * Starts the server, which serves the platform's key set, and fails when the broken key set is requested.
+     *
+     * @throws IOException If the server can not be started.
+     */
+    @Before
+    public void setUp() throws IOException {
+        this.jwks = new AtomicReference<>(jwks(jwk(KEY_ID, platformKeys)));
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/jwks", exchange -> {
+            final var body = jwks.get();
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        this.server.createContext("/broken", exchange -> {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        this.server.start();
+        this.meterRegistry = new SimpleMeterRegistry();
+    }
+
+    /**
+     * Destroys the validator and stops the server.
+     */
+    @After
+    public void tearDown() {
+        if (validator != null) {
+            validator.destroy();
+        }
+        server.stop(0);
+    }
+
+
+    /**
+     * Tests that an ID token signed by its platform, with valid claims, is accepted,
+     * and that the counters of each result are registered when the validator is created.
+     */
+    @Test
+    public void testValidTokensAreAccepted() {
+        validator(false);
+        Assert.assertEquals("There must be a counter for each result", 10, preValidationCounters().size());
+        awaitRefresh(ISSUER);
+        preValidate(token(header("RS256", KEY_ID), claims(ISSUER, CLIENT_ID), platformKeys.getPrivate())).join();
+        Assert.assertEquals(1, count("valid"), 0);
+        Assert.assertEquals("Counters must not be registered again", 10, preValidationCounters().size());
+    }
+
+    /**
+     * Tests that ID tokens that are not JWSs in compact serialization, or without time claims, are rejected.
+     */
+    @Test
+    public void testMalformedTokensAreRejected() {
+        validator(false);
+        assertRejected("not-a-jws", "malformed");
+        final var claims = claims(ISSUER, CLIENT_ID);
+        claims.remove("exp");
+        assertRejected(token(header("RS256", KEY_ID), claims, platformKeys.getPrivate()), "malformed");
+        Assert.assertEquals(2, count("malformed"), 0);
+    }
+
+    /**
+     * Tests that ID tokens signed with an algorithm that does not use RSA keys are rejected.
+     */
+    @Test
+    public void testUnsupportedAlgorithmsAreRejected() {
+        validator(false);
+        final var idToken = token(header("HS256", KEY_ID), claims(ISSUER, CLIENT_ID), platformKeys.getPrivate());
+        assertRejected(idToken, "unsupported_algorithm");
+    }
+
+    /**
+     * Tests that expired ID tokens are rejected.
+     */
+    @Test
+    public void testExpiredTokensAreRejected() {
+        validator(false);
+        final var claims = claims(ISSUER, CLIENT_ID);
+        claims.put("exp", Instant.now().minusSeconds(120).getEpochSecond());
+        assertRejected(token(header("RS256", KEY_ID), claims, platformKeys.getPrivate()), "expired");
+    }
+
+    /**
+     * Tests that ID tokens issued in the future (beyond the tolerated clock skew) are rejected.
+     */
+    @Test
+    public void testTokensIssuedInTheFutureAreRejected() {
+        validator(false);
+        final var claims = claims(ISSUER, CLIENT_ID);
+        claims.put("iat", Instant.now().plusSeconds(120).getEpochSecond());
+        assertRejected(token(header("RS256", KEY_ID), claims, platformKeys.getPrivate()), "issued_in_the_future");
+    }
+
+    /**
+     * Tests that ID tokens not meant for this tool are rejected.
+     */
+    @Test
+    public void testTokensForOtherAudiencesAreRejected() {
+        validator(false);
+        final var idToken = token(header("RS256", KEY_ID), claims(ISSUER, "other-tool"), platformKeys.getPrivate());
+        assertRejected(idToken, "wrong_audience");
+    }
+
+    /**
+     * Tests that ID tokens signed with a key that is not in the (just refreshed) key set of the platform are rejected.
+     */
+    @Test
+    public void testTokensSignedWithUnknownKeysAreRejected() {
+        validator(false, Duration.ZERO);
+        awaitRefresh(ISSUER);
+        final var idToken = token(header("RS256", "key-2"), claims(ISSUER, CLIENT_ID), otherKeys.getPrivate());
+        assertRejected(idToken, "unknown_key");
+    }
+
+    /**
+     * Tests that ID tokens signed with a key the platform rotated in are accepted once the key set is refreshed.
+     */
+    @Test
+    public void testRotatedKeysAreFetched() {
+        validator(false, Duration.ZERO);
+        awaitRefresh(ISSUER);
+        jwks.set(jwks(jwk(KEY_ID, platformKeys), jwk("key-2", otherKeys)));
+        preValidate(token(header("RS256", "key-2"), claims(ISSUER, CLIENT_ID), otherKeys.getPrivate())).join();
+        Assert.assertEquals(1, count("valid"), 0);
+    }
+
+    /**
+     * Tests that ID tokens signed with a key the platform rotated in are accepted without being validated
+     * (instead of being rejected) while the refreshes of the key set are throttled.
+     */
+    @Test
+    public void testRotatedKeysAreSkippedWhileRefreshesAreThrottled() {
+        validator(false);
+        awaitRefresh(ISSUER);
+        jwks.set(jwks(jwk(KEY_ID, platformKeys), jwk("key-2", otherKeys)));
+        preValidate(token(header("RS256", "key-2"), claims(ISSUER, CLIENT_ID), otherKeys.getPrivate())).join();
+        Assert.assertEquals(1, count("skipped"), 0);
+        Assert.assertEquals(0, count("unknown_key"), 0);
+    }
+
+    /**
+     * Tests that a key that can not be parsed does not invalidate the rest of the key set.
+     */
+    @Test
+    public void testMalformedKeysAreSkipped() {
+        final var malformed = Map.<String, Object>of("kty", "RSA", "use", "sig", "kid", "bad", "n", "!!", "e", "AQAB");
+        jwks.set(jwks(malformed, jwk(KEY_ID, platformKeys)));
+        validator(false);
+        awaitRefresh(ISSUER);
+        preValidate(token(header("RS256", KEY_ID), claims(ISSUER, CLIENT_ID), platformKeys.getPrivate())).join();
+        Assert.assertEquals(1, count("valid"), 0);
+    }
+
+    /**
+     * Tests that ID tokens whose signature does not match the platform's key are rejected.
+     */
+    @Test
+    public void testTokensWithInvalidSignaturesAreRejected() {
+        validator(false);
+        awaitRefresh(ISSUER);
+        final var idToken = token(header("RS256", KEY_ID), claims(ISSUER, CLIENT_ID), otherKeys.getPrivate());
+        assertRejected(idToken, "invalid_signature");
+    }
+
+    /**
+     * Tests that ID tokens issued by platforms that are not configured are rejected, if configured to do so.
+     */
+    @Test
+    public void testUnknownIssuersAreRejectedIfConfigured() {
+        validator(true);
+        final var claims = claims("https://other.example.com", CLIENT_ID);
+        final var idToken = token(header("RS256", KEY_ID), claims, otherKeys.getPrivate());
+        assertRejected(idToken, "unknown_issuer");
+    }
+
+    /**
+     * Tests that ID tokens issued by platforms that are not configured are accepted without being validated
+     * (as the LTI service performs the authoritative validation).
+     */
+    @Test
+    public void testUnknownIssuersAreSkipped() {
+        validator(false);
+        final var claims = claims("https://other.example.com", CLIENT_ID);
+        final var idToken = token(header("RS256", KEY_ID), claims, otherKeys.getPrivate());
+        preValidate(idToken).join();
+        Assert.assertEquals(1, count("skipped"), 0);
+        Assert.assertEquals(0, count("unknown_issuer"), 0);
+    }
+
+    /**
+     * Tests that ID tokens whose platform's key set was never loaded are accepted without being validated,
+     * even if they are signed with an unknown key.
+     */
+    @Test
+    public void testTokensAreSkippedIfTheKeySetWasNeverLoaded() {
+        validator(false);
+        awaitRefresh(BROKEN_ISSUER);
+        final var idToken = token(header("RS256", KEY_ID), claims(BROKEN_ISSUER, CLIENT_ID), otherKeys.getPrivate());
+        preValidate(idToken).join();
+        Assert.assertEquals(1, count("skipped"), 0);
+        Assert.assertEquals(0, count("unknown_key"), 0);
+    }
+
+    /**
+     * Tests that nothing is validated when the pre-validation is disabled.
+     */
+    @Test
+    public void testNothingIsValidatedIfDisabled() {
+        final var properties = new Application.Properties();
+        this.validator = new IdTokenPreValidator(properties, new ObjectMapper(), meterRegistry);
+        preValidate("not-a-jws").join();
+        Assert.assertEquals(0, preValidationCounters().stream().mapToDouble(Counter::count).sum(), 0);
+    }
+
+
+    /**
+     * Creates the {@link IdTokenPreValidator} being tested, enabled for the platform whose key set is served,
+     * and for the platform whose key set can not be fetched.
+     *
+     * @param rejectUnknownIssuers Whether ID tokens issued by platforms that are not configured are rejected.
+     */
+    private void validator(final boolean rejectUnknownIssuers) {
+        validator(rejectUnknownIssuers, new Application.Properties.IdTokenPreValidation().getJwksMinRefreshInterval());
+    }
+
+    /**
+     * Creates the {@link IdTokenPreValidator} being tested, enabled for the platform whose key set is served,
+     * and for the platform whose key set can not be fetched.
+     *
+     * @param rejectUnknownIssuers   Whether ID tokens issued by platforms that are not configured are rejected.
+     * @param jwksMinRefreshInterval The min. time between refreshes of a key set triggered by an unknown key.
+     */
+    private void validator(final boolean rejectUnknownIssuers, final Duration jwksMinRefreshInterval) {
+        final var properties = new Application.Properties();
+        final var preValidation = properties.getIdTokenPreValidation();
+        preValidation.setEnabled(true);
+        preValidation.setRejectUnknownIssuers(rejectUnknownIssuers);
+        preValidation.setJwksMinRefreshInterval(jwksMinRefreshInterval);
+        preValidation.setPlatforms(List.of(platform(ISSUER, "/jwks"), platform(BROKEN_ISSUER, "/broken")));
+        this.validator = new IdTokenPreValidator(properties, new ObjectMapper(), meterRegistry);
+    }
+
+    /**
+     * Creates the configuration of a platform.
+     *
+     * @param issuer The issuer of the platform.
+     * @param path   The path (in the {@link #server}) of the platform's key set.
+     * @return The created {@link Application.Properties.IdTokenPreValidation.Platform}.
+     */
+    private Application.Properties.IdTokenPreValidation.Platform platform(final String issuer, final String path) {
+        final var platform = new Application.Properties.IdTokenPreValidation.Platform();
+        platform.setIssuer(issuer);
+        platform.setJwksUrl("http://localhost:" + server.getAddress().getPort() + path);
+        platform.setClientIds(List.of(CLIENT_ID));
+        return platform;
+    }
+
+    /**
+     * Waits until the key set of the given {@code issuer} is refreshed (successfully or not) for the first time.
+     *
+     * @param issuer The issuer.
+     */
+    private void awaitRefresh(final String issuer) {
+        final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (meterRegistry.find(REFRESHES_COUNTER_NAME).tag("issuer", issuer).counters().isEmpty()) {
+            Assert.assertTrue("The key set was not refreshed", System.nanoTime() < deadline);
+            try {
+                Thread.sleep(10);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /**
+     * Pre-validates the given {@code idToken}.
+     *
+     * @param idToken The ID token.
+     * @return The result of the pre-validation.
+     */
+    private CompletableFuture<Void> preValidate(final String idToken) {
+        return validator.preValidate(new AuthenticationResponseForm(idToken, "state"));
+    }
+
+    /**
+     * Asserts that the given {@code idToken} is rejected for the given {@code reason}, and that it is counted.
+     *
+     * @param idToken The ID token.
+     * @param reason  The reason why it must be rejected.
+     */
+    private void assertRejected(final String idToken, final String reason) {
+        final var before = count(reason);
+        try {
+            preValidate(idToken).join();
+            Assert.fail("The ID token must be rejected");
+        } catch (final CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof InvalidIdTokenException);
+            Assert.assertEquals(reason, ((InvalidIdTokenException) e.getCause()).getReason());
+        }
+        Assert.assertEquals(before + 1, count(reason), 0);
+        Assert.assertEquals(0, count("valid") + count("skipped"), 0);
+    }
+
+    /**
+     * @param result The pre-validation result.
+     * @return The amount of pre-validations with the given {@code result}.
+     */
+    private double count(final String result) {
+        return meterRegistry.get(PRE_VALIDATIONS_COUNTER_NAME).tag("result", result).counter().count();
+    }
+
+    /**
+     * @return The counters of pre-validations.
+     */
+    private List<Counter> preValidationCounters() {
+        return List.copyOf(meterRegistry.find(PRE_VALIDATIONS_COUNTER_NAME).counters());
+    }
+
+
+    /**
+     * Creates a JSON Web Key.
+     *
+     * @param keyId The id of the key.
+     * @param keys  The {@link KeyPair} whose public key is represented.
+     * @return The created JSON Web Key.
+     */
+    private static Map<String, Object> jwk(final String keyId, final KeyPair keys) {
+        final var publicKey = (RSAPublicKey) keys.getPublic();
+        return Map.of(
+                "kty", "RSA",
+                "use", "sig",
+                "kid", keyId,
+                "n", base64Url(unsigned(publicKey.getModulus())),
+                "e", base64Url(unsigned(publicKey.getPublicExponent()))
+        );
+    }
+
+    /**
+     * Creates a JSON Web Key Set.
+     *
+     * @param keys The JSON Web Keys.
+     * @return The serialized JSON Web Key Set.
+     */
+    @SafeVarargs
+    private static byte[] jwks(final Map<String, Object>... keys) {
+        try {
+            return new ObjectMapper().writeValueAsBytes(Map.of("keys", List.of(keys)));
+        } catch (final JsonProcessingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Creates a JOSE header.
+     *
+     * @param algorithm The signature algorithm.
+     * @param keyId     The id of the signing key.
+     * @return The created header.
+     */
+    private static Map<String, Object> header(final String algorithm, final String keyId) {
+        return Map.of("alg", algorithm, "kid", keyId, "typ", "JWT");
+    }
+
+    /**
+     * Creates valid claims of an ID token.
+     *
+     * @param issuer   The issuer of the ID token.
+     * @param audience The audience of the ID token.
+     * @return The created claims (which can be modified).
+     */
+    private static Map<String, Object> claims(final String issuer, final String audience) {
+        final var now = Instant.now().getEpochSecond();
+        final var claims = new HashMap<String, Object>();
+        claims.put("iss", issuer);
+        claims.put("aud", List.of(audience));
+        claims.put("sub", "student");
+        claims.put("iat", now);
+        claims.put("exp", now + 300);
+        return claims;
+    }
+
+    /**
+     * Creates an ID token (i.e a JWS in compact serialization), signed with SHA-256 and RSA.
+     *
+     * @param header The JOSE header.
+     * @param claims The claims.
+     * @param key    The signing key.
+     * @return The created ID token.
+     */
+    private static String token(
+            final Map<String, Object> header,
+            final Map<String, Object> claims,
+            final PrivateKey key) {
+        try {
+            final var objectMapper = new ObjectMapper();
+            final var signingInput = base64Url(objectMapper.writeValueAsBytes(header))
+                    + "." + base64Url(objectMapper.writeValueAsBytes(claims));
+            final var signer = Signature.getInstance("SHA256withRSA");
+            signer.initSign(key);
+            signer.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+            return signingInput + "." + base64Url(signer.sign());
+        } catch (final JsonProcessingException | GeneralSecurityException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * @param value A non negative integer.
+     * @return The unsigned big-endian representation of the given {@code value} (as JWK parameters are encoded).
+     */
+    private static byte[] unsigned(final BigInteger value) {
+        final var bytes = value.toByteArray();
+        return bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+    }
+
+    /**
+     * @param bytes The bytes to be encoded.
+     * @return The base64url encoding (without padding) of the given {@code bytes}.
+     */
+    private static String base64Url(final byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,239 @@
+package ar.edu.itba.cep.lti_app.web.controller;
+
+import ar.edu.itba.cep.lti.AuthenticationResponse;
+import ar.edu.itba.cep.lti_app.Application;
+import ar.edu.itba.cep.lti_app.launch_state.LaunchStateStore;
+import ar.edu.itba.cep.lti_app.service.RequestDeadline;
+import ar.edu.itba.cep.lti_app.web.dtos.AuthenticationResponseForm;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.validation.Validation;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the coalescing of duplicated LTI launches performed by the {@link LtiAuthenticationResponseControllerHelper}.
+ */
+public class LtiAuthenticationResponseControllerHelperTest {
+
+    /**
+     * The {@link AuthenticationResponseForm} of the launches (duplicates of each other).
+     */
+    private static final AuthenticationResponseForm FORM = new AuthenticationResponseForm("id-token", "state");
+
+    /**
+     * The {@link SimpleMeterRegistry} in which the coalescing metrics are published.
+     */
+    private SimpleMeterRegistry meterRegistry;
+    /**
+     * The {@link MapLaunchStateStore} in which the results of the launches are kept.
+     */
+    private MapLaunchStateStore store;
+    /**
+     * The {@link LtiAuthenticationResponseControllerHelper} being tested.
+     */
+    private LtiAuthenticationResponseControllerHelper helper;
+    /**
+     * The amount of times the LTI message handler was called.
+     */
+    private AtomicInteger calls;
+    /**
+     * The result of the LTI message handler (completed by each test).
+     */
+    private CompletableFuture<String> result;
+    /**
+     * Whether the deadline bound to the LTI message handler was aborted.
+     */
+    private AtomicBoolean handlingAborted;
+
+
+    /**
+     * Creates the {@link LtiAuthenticationResponseControllerHelper} being tested,
+     * with ID token pre-validation disabled and an in-memory {@link LaunchStateStore}.
+     */
+    @Before
+    public void setUp() {
+        final var properties = new Application.Properties();
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.store = new MapLaunchStateStore();
+        this.helper = new LtiAuthenticationResponseControllerHelper(
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new IdTokenPreValidator(properties, new ObjectMapper(), meterRegistry),
+                store,
+                properties,
+                meterRegistry
+        );
+        this.calls = new AtomicInteger();
+        this.result = new CompletableFuture<>();
+        this.handlingAborted = new AtomicBoolean();
+    }
+
+
+    /**
+     * Tests that duplicated launches in flight share a single call to the LTI message handler,
+     * and that a duplicate that arrives once it was handled gets the kept result.
+     */
+    @Test
+    public void testDuplicatesShareOneCall() {
+        final var first = launch(Optional.empty());
+        final var second = launch(Optional.empty());
+        final var other = launch(new AuthenticationResponseForm("another-id-token", "state"), Optional.empty());
+        Assert.assertEquals("Duplicates must share the call", 2, calls.get());
+
+        result.complete("exam");
+        Assert.assertEquals("redirect:exam", first.join());
+        Assert.assertEquals("redirect:exam", second.join());
+        Assert.assertEquals("redirect:exam", other.join());
+        Assert.assertEquals("redirect:exam", launch(Optional.empty()).join());
+        Assert.assertEquals("The kept result must be used", 2, calls.get());
+        Assert.assertEquals(1, meterRegistry.get("lti-app.launches.coalesced").counter().count(), 0);
+    }
+
+    /**
+     * Tests that results that can not be shared (i.e they carry credentials) are never kept in the store,
+     * but duplicates handled by this instance still get them.
+     */
+    @Test
+    public void testUnsharedResultsAreKeptOnlyInMemory() {
+        final var first = helper.resolveLtiMessage(FORM, this::handle, false);
+        final var second = helper.resolveLtiMessage(FORM, this::handle, false);
+        result.complete("exam-taking?accessToken=secret");
+        Assert.assertEquals("exam-taking?accessToken=secret", first.join());
+        Assert.assertEquals("exam-taking?accessToken=secret", second.join());
+        Assert.assertTrue("Results with credentials must not be stored", store.keys().isEmpty());
+
+        final var duplicate = helper.resolveLtiMessage(FORM, this::handle, false);
+        Assert.assertEquals("exam-taking?accessToken=secret", duplicate.join());
+        Assert.assertEquals("The result kept in memory must be used", 1, calls.get());
+    }
+
+    /**
+     * Tests that aborting one of the requests waiting for a launch does not abort the launch,
+     * nor the other requests.
+     */
+    @Test
+    public void testAbortingOneWaiterKeepsTheOthers() {
+        final var firstDeadline = RequestDeadline.after(Duration.ofMinutes(1));
+        final var secondDeadline = RequestDeadline.after(Duration.ofMinutes(1));
+        launch(Optional.of(firstDeadline));
+        final var second = launch(Optional.of(secondDeadline));
+
+        firstDeadline.abort();
+        Assert.assertFalse("The launch must not be aborted while a request waits for it", handlingAborted.get());
+        result.complete("exam");
+        Assert.assertEquals("redirect:exam", second.join());
+    }
+
+    /**
+     * Tests that the launch is aborted once every request waiting for it is aborted (and not before).
+     */
+    @Test
+    public void testAbortedAfterTheLastWaiterLeaves() {
+        final var firstDeadline = RequestDeadline.after(Duration.ofMinutes(1));
+        final var secondDeadline = RequestDeadline.after(Duration.ofMinutes(1));
+        final var thirdDeadline = RequestDeadline.after(Duration.ofMinutes(1));
+        launch(Optional.of(firstDeadline));
+        launch(Optional.of(secondDeadline));
+        launch(Optional.of(thirdDeadline));
+
+        firstDeadline.abort();
+        secondDeadline.abort();
+        Assert.assertFalse("The launch must not be aborted while a request waits for it", handlingAborted.get());
+        thirdDeadline.abort();
+        Assert.assertTrue("The launch must be aborted once no request waits for it", handlingAborted.get());
+    }
+
+    /**
+     * Tests that a failed launch fails every request waiting for it,
+     * and that the failure is not kept (i.e a later duplicate is handled again).
+     */
+    @Test
+    public void testFailureReachesEveryWaiter() {
+        final var first = launch(Optional.empty());
+        final var second = launch(Optional.empty());
+        final var failure = new IllegalStateException("LTI service failure");
+
+        result.completeExceptionally(failure);
+        Assert.assertSame(failure, causeOf(first));
+        Assert.assertSame(failure, causeOf(second));
+
+        result = CompletableFuture.completedFuture("exam");
+        Assert.assertEquals("redirect:exam", launch(Optional.empty()).join());
+        Assert.assertEquals("A failed launch must be handled again", 2, calls.get());
+    }
+
+    /**
+     * Tests that a request cannot complete the result shared with its duplicates.
+     */
+    @Test
+    public void testWaiterCannotCompleteTheSharedResult() {
+        final var first = launch(Optional.empty());
+        final var second = launch(Optional.empty());
+
+        first.complete("tampered");
+        result.complete("exam");
+        Assert.assertEquals("redirect:exam", second.join());
+    }
+
+
+    /**
+     * Performs a launch with the {@link #FORM}.
+     *
+     * @param deadline The {@link RequestDeadline} of the request that performs it, if any.
+     * @return The {@link CompletableFuture} returned by the {@link #helper}.
+     */
+    private CompletableFuture<String> launch(final Optional<RequestDeadline> deadline) {
+        return launch(FORM, deadline);
+    }
+
+    /**
+     * Performs a launch with the given {@code form}, as the request with the given {@code deadline} would do
+     * (i.e with the deadline bound to the thread).
+     *
+     * @param form     The {@link AuthenticationResponseForm} of the launch.
+     * @param deadline The {@link RequestDeadline} of the request that performs it, if any.
+     * @return The {@link CompletableFuture} returned by the {@link #helper}.
+     */
+    private CompletableFuture<String> launch(
+            final AuthenticationResponseForm form,
+            final Optional<RequestDeadline> deadline) {
+        try (var ignored = deadline.map(RequestDeadline::bind).orElse(() -> {})) {
+            return helper.handleLtiMessage(form, this::handle);
+        }
+    }
+
+    /**
+     * The LTI message handler: completes with the {@link #result}, and flags when its deadline is aborted.
+     *
+     * @param response The {@link AuthenticationResponse} to be handled.
+     * @return The {@link #result}.
+     */
+    private CompletableFuture<String> handle(final AuthenticationResponse response) {
+        calls.incrementAndGet();
+        RequestDeadline.current().ifPresent(d -> d.onAbort(() -> handlingAborted.set(true)));
+        return result;
+    }
+
+    /**
+     * Returns the cause of the failure of the given {@code future}.
+     *
+     * @param future The {@link CompletableFuture} (which must be completed exceptionally).
+     * @return The cause of the failure.
+     */
+    private static Throwable causeOf(final CompletableFuture<String> future) {
+        try {
+            future.join();
+        } catch (final CompletionException e) {
+            return e.getCause();
+        }
+        throw new AssertionError("The launch must fail");
+    }
+}
@@ -0,0 +1,251 @@
+package ar.edu.itba.cep.lti_app.web.controller;
+
+import ar.edu.itba.cep.lti.AuthenticationRequest;
+import ar.edu.itba.cep.lti.AuthenticationResponse;
+import ar.edu.itba.cep.lti.ExamSelectedRequest;
+import ar.edu.itba.cep.lti.ExamSelectedResponse;
+import ar.edu.itba.cep.lti.ExamSelectionResponse;
+import ar.edu.itba.cep.lti.ExamTakingResponse;
+import ar.edu.itba.cep.lti.LoginInitiationRequest;
+import ar.edu.itba.cep.lti_app.Application;
+import ar.edu.itba.cep.lti_app.Application.Properties.ExamTakingLaunch.Mode;
+import ar.edu.itba.cep.lti_app.service.AsyncLtiService;
+import ar.edu.itba.cep.lti_app.web.dtos.AuthenticationResponseForm;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.ui.ExtendedModelMap;
+
+import javax.validation.Validation;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests how the {@link LtiExamTakingController} shows the exam once a "take exam" launch is performed,
+ * in each {@link Mode}.
+ */
+public class LtiExamTakingControllerTest {
+
+    /**
+     * The {@link ExamTakingResponse} returned by the LTI service.
+     */
+    private static final ExamTakingResponse LAUNCH = new ExamTakingResponse(
+            5,
+            UUID.fromString("00000000-0000-0000-0000-000000000001"),
+            "access",
+            "refresh",
+            "https://lms.example.com/return?course=1&name=a b"
+    );
+    /**
+     * The "exam taking" url of the {@link #LAUNCH}.
+     */
+    private static final String EXAM_TAKING_URL = "https://exams.example.com/5"
+            + "?token=00000000-0000-0000-0000-000000000001&access=access&refresh=refresh";
+    /**
+     * The prefix of the keys of the launches kept server side.
+     */
+    private static final String HANDLE_KEY_PREFIX = "exam-taking-launch:";
+
+    /**
+     * The {@link Application.Properties} used to configure the controller.
+     */
+    private Application.Properties properties;
+    /**
+     * The {@link MapLaunchStateStore} in which launch state is kept.
+     */
+    private MapLaunchStateStore store;
+    /**
+     * The {@link TakeExamLtiService} that performs the launches.
+     */
+    private TakeExamLtiService ltiService;
+    /**
+     * The {@link ExamTakingWaitingRoom} of the controller.
+     */
+    private ExamTakingWaitingRoom waitingRoom;
+
+
+    /**
+     * Creates the properties and the store.
+     */
+    @Before
+    public void setUp() {
+        this.properties = new Application.Properties();
+        this.properties.setExamTakingUrlTemplate(
+                "https://exams.example.com/${exam-id}?token=${token-id}&access=${access-token}&refresh=${refresh-token}"
+        );
+        this.store = new MapLaunchStateStore();
+        this.ltiService = new TakeExamLtiService();
+    }
+
+    /**
+     * Destroys the waiting room.
+     */
+    @After
+    public void tearDown() {
+        if (waitingRoom != null) {
+            waitingRoom.destroy();
+        }
+    }
+
+
+    /**
+     * Tests that, in the {@link Mode#REDIRECT} mode, the launch redirects to the "take exam" view
+     * with the exam and tokens, without keeping anything server side.
+     */
+    @Test
+    public void testRedirectModeRedirectsWithTheExamAndTokens() {
+        final var controller = controller(Mode.REDIRECT);
+        final var view = controller.takeExam(form(), new MockHttpServletRequest(), new ExtendedModelMap()).join();
+        Assert.assertEquals(
+                "redirect:/exam-taking?examId=5&tokenId=00000000-0000-0000-0000-000000000001"
+                        + "&accessToken=access&refreshToken=refresh"
+                        + "&returnUrl=https%3A%2F%2Flms.example.com%2Freturn%3Fcourse%3D1%26name%3Da+b",
+                view
+        );
+        Assert.assertFalse(hasHandles());
+    }
+
+    /**
+     * Tests that, in the {@link Mode#RENDER} mode, the "take exam" view is rendered as the response of the launch,
+     * with the same model the redirection would get, and without keeping anything server side.
+     */
+    @Test
+    public void testRenderModeRendersTheLaunchDirectly() {
+        final var controller = controller(Mode.RENDER);
+        final var model = new ExtendedModelMap();
+        final var view = controller.takeExam(form(), new MockHttpServletRequest(), model).join();
+        Assert.assertEquals("take-exam", view);
+        Assert.assertEquals("5", model.get("examId"));
+        Assert.assertEquals(LAUNCH.getReturnUrl(), model.get("returnUrl"));
+        Assert.assertEquals(EXAM_TAKING_URL, model.get("examTakingUrl"));
+        Assert.assertFalse("The launch must not be kept server side", hasHandles());
+    }
+
+    /**
+     * Tests that, in the {@link Mode#HANDLE} mode, the launch redirects with a handle
+     * that shows the "take exam" view only once.
+     */
+    @Test
+    public void testHandleModeHandlesCanBeUsedOnce() {
+        final var controller = controller(Mode.HANDLE);
+        final var view = controller.takeExam(form(), new MockHttpServletRequest(), new ExtendedModelMap()).join();
+        final var redirection = "redirect:/exam-taking?launch=";
+        Assert.assertTrue(view.startsWith(redirection));
+        Assert.assertTrue("The launch must be kept server side", hasHandles());
+
+        final var handle = view.substring(redirection.length());
+        final var model = new ExtendedModelMap();
+        Assert.assertEquals("take-exam", controller.takeExam(handle, model).join());
+        Assert.assertEquals(EXAM_TAKING_URL, model.get("examTakingUrl"));
+        Assert.assertFalse("The launch must be deleted once shown", hasHandles());
+        Assert.assertEquals(
+                "The handle must not be replayed",
+                "launch-expired",
+                controller.takeExam(handle, new ExtendedModelMap()).join()
+        );
+    }
+
+    /**
+     * Tests that, in the {@link Mode#HANDLE} mode, a duplicated launch (e.g a double submit, or an LMS retry)
+     * gets its own handle, instead of the (single use) handle of the launch it is coalesced with.
+     */
+    @Test
+    public void testHandleModeDuplicatesGetTheirOwnHandle() {
+        final var controller = controller(Mode.HANDLE);
+        final var redirection = "redirect:/exam-taking?launch=";
+        final var first = controller.takeExam(form(), new MockHttpServletRequest(), new ExtendedModelMap()).join();
+        final var second = controller.takeExam(form(), new MockHttpServletRequest(), new ExtendedModelMap()).join();
+        Assert.assertEquals("The duplicate must be coalesced", 1, ltiService.calls.get());
+        Assert.assertTrue(first.startsWith(redirection));
+        Assert.assertTrue(second.startsWith(redirection));
+        Assert.assertNotEquals("Each launch must get its own handle", first, second);
+
+        for (final var view : new String[]{first, second}) {
+            final var model = new ExtendedModelMap();
+            Assert.assertEquals("take-exam", controller.takeExam(view.substring(redirection.length()), model).join());
+            Assert.assertEquals(EXAM_TAKING_URL, model.get("examTakingUrl"));
+        }
+    }
+
+
+    /**
+     * Creates the {@link LtiExamTakingController} being tested, with the given {@code mode}.
+     *
+     * @param mode The {@link Mode} in which the exam is shown.
+     * @return The created {@link LtiExamTakingController}.
+     */
+    private LtiExamTakingController controller(final Mode mode) {
+        properties.getExamTakingLaunch().setMode(mode);
+        final var meterRegistry = new SimpleMeterRegistry();
+        final var objectMapper = new ObjectMapper();
+        this.waitingRoom = new ExamTakingWaitingRoom(properties, store, meterRegistry);
+        final var controller = new LtiExamTakingController(
+                ltiService,
+                new LtiAuthenticationResponseControllerHelper(
+                        Validation.buildDefaultValidatorFactory().getValidator(),
+                        new IdTokenPreValidator(properties, objectMapper, meterRegistry),
+                        store,
+                        properties,
+                        meterRegistry
+                ),
+                waitingRoom,
+                new ExamTakingLaunchHandles(store, objectMapper, properties),
+                properties
+        );
+        controller.afterPropertiesSet();
+        return controller;
+    }
+
+    /**
+     * @return Whether there are launches kept server side.
+     */
+    private boolean hasHandles() {
+        return store.keys().stream().anyMatch(key -> key.startsWith(HANDLE_KEY_PREFIX));
+    }
+
+    /**
+     * @return The {@link AuthenticationResponseForm} of a "take exam" launch.
+     */
+    private static AuthenticationResponseForm form() {
+        return new AuthenticationResponseForm("id-token", "state");
+    }
+
+
+    /**
+     * An {@link AsyncLtiService} that only performs "take exam" launches, returning the {@link #LAUNCH}.
+     */
+    private static final class TakeExamLtiService implements AsyncLtiService {
+
+        /**
+         * The amount of "take exam" launches performed.
+         */
+        private final AtomicInteger calls = new AtomicInteger();
+
+
+        @Override
+        public CompletableFuture<AuthenticationRequest> loginInitiation(final LoginInitiationRequest request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<ExamSelectionResponse> examSelection(final AuthenticationResponse response) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<ExamSelectedResponse> examSelected(final ExamSelectedRequest request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<ExamTakingResponse> takeExam(final AuthenticationResponse response) {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(LAUNCH);
+        }
+    }
+}
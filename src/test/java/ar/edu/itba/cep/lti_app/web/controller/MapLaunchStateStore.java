@@ -0,0 +1,101 @@
+package ar.edu.itba.cep.lti_app.web.controller;
+
+import ar.edu.itba.cep.lti_app.launch_state.LaunchStateStore;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link LaunchStateStore} backed by a {@link Map}, whose values expire according to a given clock.
+ */
+/* package */ final class MapLaunchStateStore implements LaunchStateStore {
+
+    /**
+     * The stored values, by key.
+     */
+    private final Map<String, Entry> values;
+    /**
+     * The clock with which values expire (with the semantics of {@link System#nanoTime()}).
+     */
+    private final LongSupplier clock;
+
+
+    /**
+     * Constructor, for a store whose values expire in real time.
+     */
+    /* package */ MapLaunchStateStore() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param clock The clock with which values expire (with the semantics of {@link System#nanoTime()}).
+     */
+    /* package */ MapLaunchStateStore(final LongSupplier clock) {
+        this.values = new ConcurrentHashMap<>();
+        this.clock = clock;
+    }
+
+
+    /**
+     * @return The keys of the stored values (including the expired ones).
+     */
+    /* package */ Set<String> keys() {
+        return Set.copyOf(values.keySet());
+    }
+
+
+    @Override
+    public CompletableFuture<Optional<String>> get(final String key) {
+        final var now = clock.getAsLong();
+        final var entry = values.computeIfPresent(key, (ignored, value) -> value.expiresAt - now > 0 ? value : null);
+        return CompletableFuture.completedFuture(Optional.ofNullable(entry).map(value -> value.value));
+    }
+
+    @Override
+    public CompletableFuture<Void> put(final String key, final String value, final Duration ttl) {
+        values.put(key, new Entry(value, clock.getAsLong() + ttl.toNanos()));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> getAndDelete(final String key) {
+        final var now = clock.getAsLong();
+        final var entry = Optional.ofNullable(values.remove(key)).filter(value -> value.expiresAt - now > 0);
+        return CompletableFuture.completedFuture(entry.map(value -> value.value));
+    }
+
+
+    /**
+     * A stored value.
+     */
+    private static final class Entry {
+
+        /**
+         * The value.
+         */
+        private final String value;
+        /**
+         * The time at which the value expires.
+         */
+        private final long expiresAt;
+
+
+        /**
+         * Constructor.
+         *
+         * @param value     The value.
+         * @param expiresAt The time at which the value expires.
+         */
+        private Entry(final String value, final long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ar.edu.itba.cep.lti_app.web.controller;
+
+import org.apache.commons.lang.text.StrSubstitutor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * Tests the compilation and expansion of {@link UrlTemplate}s.
+ */
+public class UrlTemplateTest {
+
+    /**
+     * Tests that variables are expanded with their values (in the order in which their names are given),
+     * and that a variable can appear more than once.
+     */
+    @Test
+    public void testVariablesAreExpanded() {
+        final var template = UrlTemplate.compile("https://exams.example.com/${exam-id}?token=${token}&exam=${exam-id}",
+                "token", "exam-id");
+        Assert.assertEquals("https://exams.example.com/5?token=abc&exam=5", template.expand("abc", "5"));
+        Assert.assertEquals("https://exams.example.com", UrlTemplate.compile("https://exams.example.com").expand());
+    }
+
+    /**
+     * Tests that values are percent-encoded according to RFC 3986 (i.e only unreserved characters are kept as is).
+     */
+    @Test
+    public void testValuesArePercentEncoded() {
+        final var template = UrlTemplate.compile("/exam?return=${url}", "url");
+        Assert.assertEquals(
+                "/exam?return=https%3A%2F%2Flms.example.com%2Fcourse%3Fid%3D1%26name%3Da%20b%2Bc",
+                template.expand("https://lms.example.com/course?id=1&name=a b+c")
+        );
+        Assert.assertEquals("/exam?return=AZaz09-._~", template.expand("AZaz09-._~"));
+        Assert.assertEquals("/exam?return=", template.expand(""));
+    }
+
+    /**
+     * Tests that multi-byte values are percent-encoded as their UTF-8 bytes,
+     * both at the beginning and after an unreserved prefix.
+     */
+    @Test
+    public void testMultiByteValuesAreEncodedAsUtf8() {
+        final var template = UrlTemplate.compile("/student?name=${name}", "name");
+        Assert.assertEquals("/student?name=%C3%B1and%C3%BA", template.expand("ñandú"));
+        Assert.assertEquals("/student?name=Jos%C3%A9%20%E6%9D%8E", template.expand("José 李"));
+        Assert.assertEquals("/student?name=a%F0%9F%98%80b", template.expand("a😀b"));
+    }
+
+    /**
+     * Tests that {@code $${} is an escaped {@code ${} (as with {@link StrSubstitutor}),
+     * so the placeholder that follows it is kept as a literal.
+     */
+    @Test
+    public void testEscapedPlaceholdersAreNotExpanded() {
+        final var template = "/exam?literal=$${exam-id}&id=${exam-id}&dollar=$$";
+        Assert.assertEquals(
+                "/exam?literal=${exam-id}&id=5&dollar=$$",
+                UrlTemplate.compile(template, "exam-id").expand("5")
+        );
+        Assert.assertEquals(
+                StrSubstitutor.replace(template, Map.of("exam-id", "5")),
+                UrlTemplate.compile(template, "exam-id").expand("5")
+        );
+    }
+
+    /**
+     * Tests that placeholders of unknown variables are kept as is (as with {@link StrSubstitutor}).
+     */
+    @Test
+    public void testUnknownVariablesAreKept() {
+        final var template = "/exam?id=${exam-id}&other=${unknown}&empty=${}";
+        Assert.assertEquals(
+                "/exam?id=5&other=${unknown}&empty=${}",
+                UrlTemplate.compile(template, "exam-id").expand("5")
+        );
+        Assert.assertEquals(
+                StrSubstitutor.replace(template, Map.of("exam-id", "5")),
+                UrlTemplate.compile(template, "exam-id").expand("5")
+        );
+    }
+
+    /**
+     * Tests that an unterminated placeholder is kept as a literal,
+     * while the placeholders that precede it are expanded.
+     */
+    @Test
+    public void testUnterminatedPlaceholdersAreKept() {
+        final var template = "/exam?id=${exam-id}&token=${token";
+        Assert.assertEquals(
+                "/exam?id=5&token=${token",
+                UrlTemplate.compile(template, "exam-id", "token").expand("5", "abc")
+        );
+        Assert.assertEquals("/exam?id=${", UrlTemplate.compile("/exam?id=${", "exam-id").expand("5"));
+    }
+}
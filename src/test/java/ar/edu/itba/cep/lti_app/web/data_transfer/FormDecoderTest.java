@@ -0,0 +1,211 @@
+package ar.edu.itba.cep.lti_app.web.data_transfer;
+
+import ar.edu.itba.cep.lti_app.web.exceptions.FormFieldTooLongException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Tests the {@link FormDecoder}.
+ */
+public class FormDecoderTest {
+
+    /**
+     * The max. length of the ID token used by the tests.
+     */
+    private static final int MAX_ID_TOKEN_LENGTH = 16 * 1024;
+    /**
+     * The max. length of the state used by the tests.
+     */
+    private static final int MAX_STATE_LENGTH = 8;
+
+    /**
+     * The {@link FormDecoder} being tested (decoding the ID token and the state, in that order).
+     */
+    private final FormDecoder formDecoder =
+            new FormDecoder(List.of("id_token", "state"), MAX_ID_TOKEN_LENGTH, MAX_STATE_LENGTH);
+
+
+    /**
+     * Tests that {@code %} escapes and {@code +} are url-decoded, in the charset of the request.
+     *
+     * @throws IOException Never.
+     */
+    @Test
+    public void testPercentAndPlusAreDecoded() throws IOException {
+        final var request = formPost("id_token=a%2Bb+c%3D%26%25&state=%C3%A1+");
+        request.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        assertDecoded(request, "a+b c=&%", "á ");
+    }
+
+    /**
+     * Tests that a form without an explicit charset is decoded in ISO-8859-1 (i.e the servlet default).
+     *
+     * @throws IOException Never.
+     */
+    @Test
+    public void testDefaultCharsetIsIso88591() throws IOException {
+        assertDecoded(formPost("state=%E1"), null, "á");
+    }
+
+    /**
+     * Tests that unknown fields are skipped, that the first occurrence of a field is the one taken,
+     * and that a field without {@code =} has an empty value.
+     *
+     * @throws IOException Never.
+     */
+    @Test
+    public void testFirstOccurrenceOfKnownFieldsIsTaken() throws IOException {
+        assertDecoded(formPost("other=x&id_token&state=first&state=second&&"), "", "first");
+    }
+
+    /**
+     * Tests that occurrences with invalid (or truncated) escapes are ignored, so that later ones are taken.
+     *
+     * @throws IOException Never.
+     */
+    @Test
+    public void testBadEscapesAreIgnored() throws IOException {
+        assertDecoded(formPost("state=%zz&id_token=%4&state=ok&st%61te=late"), null, "ok");
+        assertDecoded(formPost("state=%4"), null, null);
+        assertDecoded(formPost("st%ate=bad&state=%"), null, null);
+    }
+
+    /**
+     * Tests that fields in the query string take precedence over those in the body.
+     *
+     * @throws IOException Never.
+     */
+    @Test
+    public void testQueryStringTakesPrecedence() throws IOException {
+        final var request = formPost("id_token=body&state=body");
+        request.setQueryString("state=q%C3%BAery");
+        assertDecoded(request, "body", "qúery");
+    }
+
+    /**
+     * Tests that the fields of a form POST whose body was already read are taken from the servlet parameters.
+     *
+     * @throws IOException Never.
+     */
+    @Test
+    public void testParametersAreUsedIfTheBodyWasAlreadyRead() throws IOException {
+        final var request = formPost("id_token=body&state=body");
+        request.addParameter("id_token", "parameter");
+        request.addParameter("state", "param");
+        request.getInputStream().readAllBytes();
+        assertDecoded(request, "parameter", "param");
+    }
+
+    /**
+     * Tests that the fields of a request that is not a form POST are taken from the servlet parameters.
+     *
+     * @throws IOException Never.
+     */
+    @Test
+    public void testParametersAreUsedIfNotAFormPost() throws IOException {
+        final var request = new MockHttpServletRequest(HttpMethod.GET.name(), "/login");
+        request.addParameter("id_token", "token");
+        request.addParameter("state", "state");
+        assertDecoded(request, "token", "state");
+    }
+
+    /**
+     * Tests that a value of exactly the max. length is accepted, and that a longer one is rejected as too long.
+     *
+     * @throws IOException Never.
+     */
+    @Test
+    public void testValuesLongerThanTheMaxLengthAreRejected() throws IOException {
+        final var longest = "x".repeat(MAX_ID_TOKEN_LENGTH);
+        assertDecoded(formPost("id_token=" + longest + "&state=12345678"), longest, "12345678");
+        assertTooLong(formPost("id_token=" + longest + "x&state=s"), "id_token");
+        assertTooLong(formPost("state=%41%42%43%44%45%46%47%48%49"), "state");
+    }
+
+    /**
+     * Tests that the max. lengths are enforced too when the fields are taken from the servlet parameters.
+     *
+     * @throws IOException Never.
+     */
+    @Test
+    public void testParametersLongerThanTheMaxLengthAreRejected() throws IOException {
+        final var request = new MockHttpServletRequest(HttpMethod.GET.name(), "/login");
+        request.addParameter("id_token", "x".repeat(MAX_ID_TOKEN_LENGTH + 1));
+        assertTooLong(request, "id_token");
+    }
+
+    /**
+     * Tests that long values are decoded correctly one after the other
+     * (i.e the buffers are reused, or discarded once they grew too much).
+     *
+     * @throws IOException Never.
+     */
+    @Test
+    public void testConsecutiveLongValues() throws IOException {
+        for (var length : new int[]{MAX_ID_TOKEN_LENGTH, 3, MAX_ID_TOKEN_LENGTH / 2, 0}) {
+            final var idToken = "y".repeat(length);
+            assertDecoded(formPost("id_token=" + idToken + "&state=s"), idToken, "s");
+        }
+    }
+
+    /**
+     * Tests that a max. length is required for each field.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxLengthIsRequiredForEachField() {
+        new FormDecoder(List.of("id_token", "state"), MAX_ID_TOKEN_LENGTH);
+    }
+
+
+    /**
+     * Creates a form POST with the given {@code body}.
+     *
+     * @param body The url encoded body.
+     * @return The created {@link MockHttpServletRequest}.
+     */
+    private static MockHttpServletRequest formPost(final String body) {
+        final var request = new MockHttpServletRequest(HttpMethod.POST.name(), "/login");
+        request.setContentType(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+        request.setContent(body.getBytes(StandardCharsets.US_ASCII));
+        return request;
+    }
+
+    /**
+     * Asserts that the given {@code request} is decoded into the given values.
+     *
+     * @param request The {@link MockHttpServletRequest} to be decoded.
+     * @param idToken The expected ID token.
+     * @param state   The expected state.
+     * @throws IOException Never.
+     */
+    private void assertDecoded(final MockHttpServletRequest request, final String idToken, final String state)
+            throws IOException {
+        final var values = formDecoder.decode(new ServletWebRequest(request));
+        Assert.assertArrayEquals(new String[]{idToken, state}, values);
+    }
+
+    /**
+     * Asserts that decoding the given {@code request} fails because the given {@code field} is too long.
+     *
+     * @param request The {@link MockHttpServletRequest} to be decoded.
+     * @param field   The name of the field that is too long.
+     * @throws IOException Never.
+     */
+    private void assertTooLong(final MockHttpServletRequest request, final String field) throws IOException {
+        try {
+            formDecoder.decode(new ServletWebRequest(request));
+        } catch (final FormFieldTooLongException e) {
+            Assert.assertEquals(field, e.getField());
+            return;
+        }
+        Assert.fail("The " + field + " field must be rejected as too long");
+    }
+}